@@ -0,0 +1,281 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Arnés mínimo de microbenchmarks, al estilo de JMH, sin dependencias.
+ *
+ * Cada benchmark se ejecuta en el hilo actual: primero varias iteraciones de
+ * calentamiento (para que el JIT compile el código) y luego las iteraciones
+ * medidas. En cada iteración se repite la operación durante un tiempo fijo y
+ * se obtiene:
+ * <ul>
+ *     <li>throughput (operaciones por segundo) y tiempo promedio por operación,
+ *         con su desviación estándar entre iteraciones;</li>
+ *     <li>bytes asignados por operación y tasa de asignación (MB/s), leídos de
+ *         com.sun.management.ThreadMXBean, equivalentes a gc.alloc.rate.norm y
+ *         gc.alloc.rate del perfilador gc de JMH;</li>
+ *     <li>cantidad y tiempo de recolecciones de basura durante la medición.</li>
+ * </ul>
+ *
+ * Los resultados se pueden guardar como línea base (archivo TSV) y comparar
+ * contra una línea base guardada con otra versión del código.
+ */
+final class ArnesBenchmark {
+
+    /** Operación a medir; el valor devuelto se consume para que el JIT no la elimine. */
+    interface Operacion {
+        Object ejecutar() throws Exception;
+    }
+
+    /** Diferencia (en %) a partir de la cual la comparación marca un cambio. */
+    private static final double UMBRAL_CAMBIO = 10.0;
+
+    private final int iteracionesCalentamiento;
+    private final int iteracionesMedicion;
+    private final long nanosPorIteracion;
+    private final Map<String, Operacion> benchmarks = new LinkedHashMap<>();
+
+    /** Destino de los resultados, para que el JIT no descarte las operaciones. */
+    private static volatile int sumidero;
+
+    ArnesBenchmark(int iteracionesCalentamiento, int iteracionesMedicion, long msPorIteracion) {
+        this.iteracionesCalentamiento = iteracionesCalentamiento;
+        this.iteracionesMedicion = iteracionesMedicion;
+        this.nanosPorIteracion = msPorIteracion * 1_000_000L;
+    }
+
+    void agregar(String nombre, Operacion operacion) {
+        benchmarks.put(nombre, operacion);
+    }
+
+    /**
+     * Ejecuta los benchmarks cuyo nombre contiene el filtro (todos si es null)
+     * e imprime cada resultado apenas termina.
+     */
+    List<Resultado> ejecutar(String filtro, PrintStream salida) throws Exception {
+        List<Resultado> resultados = new ArrayList<>();
+        salida.println(String.format(Locale.ROOT, "%-44s %14s %12s %10s %12s %10s %5s",
+                "Benchmark", "ops/s", "us/op", "± us/op", "B/op", "MB/s", "GC"));
+
+        for (Map.Entry<String, Operacion> e : benchmarks.entrySet()) {
+            if (filtro != null && !e.getKey().contains(filtro)) {
+                continue;
+            }
+            Resultado r = medir(e.getKey(), e.getValue());
+            resultados.add(r);
+            salida.println(r.formatear());
+        }
+        return resultados;
+    }
+
+    private Resultado medir(String nombre, Operacion operacion) throws Exception {
+        for (int i = 0; i < iteracionesCalentamiento; i++) {
+            iteracion(operacion);
+        }
+        System.gc();
+
+        double[] nsPorOp = new double[iteracionesMedicion];
+        long opsTotal = 0;
+        long nanosTotal = 0;
+        long bytesTotal = 0;
+        long gcInicio = conteoGc();
+        long gcMsInicio = tiempoGcMs();
+        for (int i = 0; i < iteracionesMedicion; i++) {
+            long[] it = iteracion(operacion);
+            opsTotal += it[0];
+            nanosTotal += it[1];
+            bytesTotal += it[2];
+            nsPorOp[i] = (double) it[1] / it[0];
+        }
+
+        Resultado r = new Resultado(nombre);
+        r.opsPorSegundo = opsTotal * 1e9 / nanosTotal;
+        r.nsPorOp = (double) nanosTotal / opsTotal;
+        r.errorNs = desviacion(nsPorOp);
+        r.bytesPorOp = (bytesTotal < 0) ? -1 : (double) bytesTotal / opsTotal;
+        r.mbPorSegundo = (bytesTotal < 0) ? -1 : bytesTotal * 1e9 / nanosTotal / (1024 * 1024);
+        r.gcConteo = conteoGc() - gcInicio;
+        r.gcMs = tiempoGcMs() - gcMsInicio;
+        return r;
+    }
+
+    /** Repite la operación durante una iteración; devuelve {ops, nanos, bytes}. */
+    private long[] iteracion(Operacion operacion) throws Exception {
+        int acumulado = 0;
+        long ops = 0;
+        long bytesInicio = bytesAsignados();
+        long inicio = System.nanoTime();
+        long fin = inicio + nanosPorIteracion;
+        long ahora;
+        do {
+            Object resultado = operacion.ejecutar();
+            acumulado += (resultado == null) ? 0 : System.identityHashCode(resultado);
+            ops++;
+            ahora = System.nanoTime();
+        } while (ahora < fin);
+        long bytesFin = bytesAsignados();
+        sumidero += acumulado;
+
+        long bytes = (bytesInicio < 0 || bytesFin < 0) ? -1 : bytesFin - bytesInicio;
+        return new long[] { ops, ahora - inicio, bytes };
+    }
+
+    private static double desviacion(double[] valores) {
+        if (valores.length < 2) {
+            return 0;
+        }
+        double media = 0;
+        for (double v : valores) {
+            media += v;
+        }
+        media /= valores.length;
+        double suma = 0;
+        for (double v : valores) {
+            suma += (v - media) * (v - media);
+        }
+        return Math.sqrt(suma / (valores.length - 1));
+    }
+
+    /** Bytes asignados por el hilo actual, o -1 si la JVM no lo soporta. */
+    private static long bytesAsignados() {
+        java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        if (mx instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) mx).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    private static long conteoGc() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long tiempoGcMs() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    /* =========================================================
+     *  LÍNEA BASE
+     * ========================================================= */
+
+    private static final String CABECERA =
+            "benchmark\tops_s\tns_op\terror_ns\tbytes_op\talloc_mb_s\tgc_conteo\tgc_ms";
+
+    /** Guarda los resultados en un archivo TSV (las líneas con # son comentarios). */
+    static void guardar(List<Resultado> resultados, Path archivo) throws IOException {
+        List<String> lineas = new ArrayList<>();
+        lineas.add("# " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version")
+                + ", " + Runtime.getRuntime().availableProcessors() + " CPU, "
+                + System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        lineas.add(CABECERA);
+        for (Resultado r : resultados) {
+            lineas.add(String.format(Locale.ROOT, "%s\t%.1f\t%.1f\t%.1f\t%.1f\t%.1f\t%d\t%d",
+                    r.nombre, r.opsPorSegundo, r.nsPorOp, r.errorNs,
+                    r.bytesPorOp, r.mbPorSegundo, r.gcConteo, r.gcMs));
+        }
+        Path carpeta = archivo.toAbsolutePath().getParent();
+        if (carpeta != null) {
+            Files.createDirectories(carpeta);
+        }
+        Files.write(archivo, lineas, StandardCharsets.UTF_8);
+    }
+
+    static Map<String, Resultado> leer(Path archivo) throws IOException {
+        Map<String, Resultado> base = new LinkedHashMap<>();
+        for (String linea : Files.readAllLines(archivo, StandardCharsets.UTF_8)) {
+            if (linea.isEmpty() || linea.startsWith("#") || linea.startsWith("benchmark\t")) {
+                continue;
+            }
+            String[] c = linea.split("\t");
+            Resultado r = new Resultado(c[0]);
+            r.opsPorSegundo = Double.parseDouble(c[1]);
+            r.nsPorOp = Double.parseDouble(c[2]);
+            r.errorNs = Double.parseDouble(c[3]);
+            r.bytesPorOp = Double.parseDouble(c[4]);
+            r.mbPorSegundo = Double.parseDouble(c[5]);
+            r.gcConteo = Long.parseLong(c[6]);
+            r.gcMs = Long.parseLong(c[7]);
+            base.put(r.nombre, r);
+        }
+        return base;
+    }
+
+    /**
+     * Compara tiempo y asignación por operación contra la línea base. Un
+     * cambio de tiempo se marca solo si supera el umbral y además queda fuera
+     * del error de ambas mediciones.
+     */
+    static void comparar(List<Resultado> actuales, Map<String, Resultado> base, PrintStream salida) {
+        salida.println();
+        salida.println(String.format(Locale.ROOT, "%-44s %12s %12s %8s %12s %12s %8s",
+                "Benchmark", "base us/op", "us/op", "Δ%", "base B/op", "B/op", "Δ%"));
+        for (Resultado r : actuales) {
+            Resultado b = base.get(r.nombre);
+            if (b == null) {
+                salida.println(String.format(Locale.ROOT, "%-44s %12s", r.nombre, "(nuevo)"));
+                continue;
+            }
+            double deltaTiempo = porcentaje(b.nsPorOp, r.nsPorOp);
+            double deltaBytes = porcentaje(b.bytesPorOp, r.bytesPorOp);
+            boolean fueraDeError = Math.abs(r.nsPorOp - b.nsPorOp) > (r.errorNs + b.errorNs);
+
+            String marca = "";
+            if (fueraDeError && deltaTiempo > UMBRAL_CAMBIO) {
+                marca = "  REGRESIÓN";
+            } else if (fueraDeError && deltaTiempo < -UMBRAL_CAMBIO) {
+                marca = "  MEJORA";
+            }
+            if (deltaBytes > UMBRAL_CAMBIO) {
+                marca += "  +ASIGNACIÓN";
+            }
+            salida.println(String.format(Locale.ROOT, "%-44s %12.3f %12.3f %+8.1f %12.0f %12.0f %+8.1f%s",
+                    r.nombre, b.nsPorOp / 1000, r.nsPorOp / 1000, deltaTiempo,
+                    b.bytesPorOp, r.bytesPorOp, deltaBytes, marca));
+        }
+    }
+
+    private static double porcentaje(double antes, double despues) {
+        return (antes <= 0) ? 0 : (despues - antes) * 100.0 / antes;
+    }
+
+    /** Resultado de un benchmark. */
+    static final class Resultado {
+        final String nombre;
+        double opsPorSegundo;
+        double nsPorOp;
+        double errorNs;
+        double bytesPorOp;
+        double mbPorSegundo;
+        long gcConteo;
+        long gcMs;
+
+        Resultado(String nombre) {
+            this.nombre = nombre;
+        }
+
+        String formatear() {
+            return String.format(Locale.ROOT, "%-44s %14.1f %12.3f %10.3f %12.0f %10.1f %5d",
+                    nombre, opsPorSegundo, nsPorOp / 1000, errorNs / 1000,
+                    bytesPorOp, mbPorSegundo, gcConteo);
+        }
+    }
+}
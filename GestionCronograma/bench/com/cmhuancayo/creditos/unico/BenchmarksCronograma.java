@@ -0,0 +1,185 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks del cálculo de cronogramas, la exportación a PDF y el mapeo de
+ * filas de cronograma_de_pago a {@link Cuota}.
+ *
+ * Compilar y ejecutar desde la carpeta GestionCronograma (sin module-info,
+ * con src y bench en el classpath):
+ * <pre>
+ * javac -encoding UTF-8 -cp "lib/*" -d build/bench \
+ *       $(find src bench -name '*.java' ! -name module-info.java)
+ * java -cp "build/bench:lib/*" com.cmhuancayo.creditos.unico.BenchmarksCronograma \
+ *       --comparar bench/linea-base.tsv
+ * </pre>
+ *
+ * Opciones:
+ * <ul>
+ *     <li>{@code --filtro texto}: solo los benchmarks cuyo nombre lo contiene.</li>
+ *     <li>{@code --guardar archivo}: guarda los resultados como nueva línea base.</li>
+ *     <li>{@code --comparar archivo}: compara contra una línea base guardada.</li>
+ *     <li>{@code --rapido}: menos iteraciones, para probar que todo corre.</li>
+ *     <li>{@code --sin-verificar}: omite la comparación diferencial previa.</li>
+ * </ul>
+ *
+ * Antes de medir se ejecuta {@link VerificadorMotorCronograma}: no tiene
+ * sentido comparar tiempos si el resultado cambió.
+ */
+public final class BenchmarksCronograma {
+
+    private BenchmarksCronograma() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String filtro = null;
+        Path guardar = null;
+        Path comparar = null;
+        boolean rapido = false;
+        boolean verificar = true;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--filtro":
+                    filtro = args[++i];
+                    break;
+                case "--guardar":
+                    guardar = Paths.get(args[++i]);
+                    break;
+                case "--comparar":
+                    comparar = Paths.get(args[++i]);
+                    break;
+                case "--rapido":
+                    rapido = true;
+                    break;
+                case "--sin-verificar":
+                    verificar = false;
+                    break;
+                default:
+                    System.err.println("Opción desconocida: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        if (verificar && !VerificadorMotorCronograma.verificar(rapido ? 500 : 5_000, 1L, System.out)) {
+            System.err.println("El motor no coincide con el cálculo de referencia; no se mide.");
+            System.exit(1);
+        }
+
+        ArnesBenchmark arnes = rapido
+                ? new ArnesBenchmark(1, 2, 200)
+                : new ArnesBenchmark(5, 5, 1000);
+        registrar(arnes);
+
+        List<ArnesBenchmark.Resultado> resultados = arnes.ejecutar(filtro, System.out);
+        if (comparar != null) {
+            ArnesBenchmark.comparar(resultados, ArnesBenchmark.leer(comparar), System.out);
+        }
+        if (guardar != null) {
+            ArnesBenchmark.guardar(resultados, guardar);
+            System.out.println("Línea base guardada en " + guardar);
+        }
+    }
+
+    private static void registrar(ArnesBenchmark arnes) throws Exception {
+        CalculadoraCreditoService servicio = new CalculadoraCreditoService();
+        CalculadoraReferencia referencia = new CalculadoraReferencia();
+
+        // --- Generación del cronograma inicial ---
+        for (int n : new int[] { 6, 12, 36, 120 }) {
+            Credito credito = credito(n);
+            arnes.agregar("generarCronograma.n" + n, () -> servicio.generarCronograma(credito));
+        }
+        Credito credito120 = credito(120);
+        arnes.agregar("generarCronogramaCompacto.n120",
+                () -> servicio.generarCronogramaCompacto(credito120));
+        arnes.agregar("referenciaBigDecimal.generarCronograma.n120",
+                () -> referencia.generarCronograma(credito120));
+
+        // --- Recálculos sobre un cronograma de 36 cuotas con 10 pagadas ---
+        Credito credito36 = credito(36);
+        List<Cuota> cronograma36 = servicio.generarCronograma(credito36);
+        for (int i = 0; i < 10; i++) {
+            cronograma36.get(i).setEstadoCuota("Pagada");
+        }
+        BigDecimal amortizacion = new BigDecimal("2500.00");
+        arnes.agregar("recalcularPorAmortizacion.reducirCuota", () -> servicio.recalcularPorAmortizacion(
+                credito36, cronograma36, amortizacion, "REDUCIR_CUOTA", 0));
+        arnes.agregar("recalcularPorAmortizacion.reducirPlazo", () -> servicio.recalcularPorAmortizacion(
+                credito36, cronograma36, amortizacion, "REDUCIR_PLAZO", 0));
+        BigDecimal nuevaTasa = new BigDecimal("28.50");
+        arnes.agregar("recalcularPorReprogramacion.n48", () -> servicio.recalcularPorReprogramacion(
+                credito36, cronograma36, 48, nuevaTasa));
+
+        // --- Exportación a PDF (36 cuotas, a un archivo temporal) ---
+        Cliente cliente = new Cliente();
+        cliente.setNombres("MARIA ELENA");
+        cliente.setApellidoPaterno("QUISPE");
+        cliente.setApellidoMaterno("HUAMAN");
+        cliente.setNumeroDocumento("45871236");
+        List<Cuota> cuotasPdf = servicio.generarCronograma(credito36);
+        File pdf = File.createTempFile("bench-cronograma", ".pdf");
+        pdf.deleteOnExit();
+        arnes.agregar("CronogramaPdfExporter.exportar.n36", () -> {
+            CronogramaPdfExporter.exportar(credito36, cliente, cuotasPdf, pdf);
+            return pdf;
+        });
+
+        // --- Mapeo de filas de cronograma_de_pago (120 filas por operación) ---
+        ResultSet rs = ResultSetEnMemoria.crear(COLUMNAS_CRONOGRAMA, filasCronograma(servicio.generarCronograma(credito120)));
+        arnes.agregar("CuotaDAO.mapearCuota.120filas", () -> {
+            rs.beforeFirst();
+            List<Cuota> cuotas = new ArrayList<>(120);
+            while (rs.next()) {
+                cuotas.add(CuotaDAO.mapearCuota(rs));
+            }
+            return cuotas;
+        });
+    }
+
+    private static Credito credito(int n) {
+        Credito c = new Credito();
+        c.setCodigoContrato(1000 + n);
+        c.setMontoDesembolso(new BigDecimal("15000.00"));
+        c.setNumeroCuotas(n);
+        c.setTasaInteresCompensatorio(new BigDecimal("35.50"));
+        c.setFechaDesembolso(java.sql.Date.valueOf("2025-01-31"));
+        return c;
+    }
+
+    /** Columnas de CuotaDAO.SQL_LISTAR_POR_CONTRATO. */
+    private static final String[] COLUMNAS_CRONOGRAMA = {
+            "nro_cuota", "codigo_contrato", "estado_cuota", "fecha_vencimiento",
+            "capital", "interes", "seguro_degravamen", "seguros_comisiones", "itf",
+            "monto_cuota", "dias", "saldo_capital", "monto_pagado", "fecha_ultimo_pago"
+    };
+
+    /** Filas en texto, como las devolvería PostgreSQL para estas cuotas. */
+    private static List<String[]> filasCronograma(List<Cuota> cuotas) {
+        List<String[]> filas = new ArrayList<>();
+        for (Cuota c : cuotas) {
+            boolean pagada = c.getNroCuota() <= 10;
+            filas.add(new String[] {
+                    String.valueOf(c.getNroCuota()),
+                    String.valueOf(c.getCodigoContrato()),
+                    pagada ? "Pagada" : "Pendiente",
+                    new java.sql.Date(c.getFechaVencimiento().getTime()).toString(),
+                    c.getCapital().toPlainString(),
+                    c.getInteres().toPlainString(),
+                    "0.00", "0.00", "0.00",
+                    c.getMontoCuota().toPlainString(),
+                    "30",
+                    c.getSaldoCapital().setScale(2).toPlainString(),
+                    pagada ? c.getMontoCuota().toPlainString() : "0.00",
+                    pagada ? "2025-03-05 10:15:00" : null
+            });
+        }
+        return filas;
+    }
+}
@@ -0,0 +1,103 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ResultSet de solo lectura sobre filas en memoria, para medir el mapeo de
+ * filas a objetos sin base de datos.
+ *
+ * Los valores se guardan como texto y se convierten en cada lectura, como hace
+ * el driver de PostgreSQL con el protocolo de texto, para que la asignación de
+ * memoria medida se parezca a la real. Solo implementa lo que usan los DAO:
+ * next, beforeFirst, close y los getters por nombre de columna.
+ */
+final class ResultSetEnMemoria implements InvocationHandler {
+
+    private final Map<String, Integer> columnas = new HashMap<>();
+    private final List<String[]> filas;
+    private int actual = -1;
+    private boolean cerrado;
+
+    private ResultSetEnMemoria(String[] nombres, List<String[]> filas) {
+        for (int i = 0; i < nombres.length; i++) {
+            columnas.put(nombres[i], i);
+        }
+        this.filas = filas;
+    }
+
+    /** Crea el ResultSet; cada fila tiene un valor (o null) por columna. */
+    static ResultSet crear(String[] columnas, List<String[]> filas) {
+        return (ResultSet) Proxy.newProxyInstance(
+                ResultSetEnMemoria.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class },
+                new ResultSetEnMemoria(columnas, filas));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "next":
+                return ++actual < filas.size();
+            case "beforeFirst":
+                actual = -1;
+                return null;
+            case "close":
+                cerrado = true;
+                return null;
+            case "isClosed":
+                return cerrado;
+            case "getString":
+                return valor(args[0]);
+            case "getInt": {
+                String v = valor(args[0]);
+                return (v == null) ? 0 : Integer.parseInt(v);
+            }
+            case "getBigDecimal": {
+                String v = valor(args[0]);
+                return (v == null) ? null : new BigDecimal(v);
+            }
+            case "getDate": {
+                String v = valor(args[0]);
+                return (v == null) ? null : Date.valueOf(v);
+            }
+            case "getTimestamp": {
+                String v = valor(args[0]);
+                return (v == null) ? null : Timestamp.valueOf(v);
+            }
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "ResultSetEnMemoria[" + filas.size() + " filas]";
+            default:
+                throw new SQLException("No soportado en ResultSetEnMemoria: " + method.getName());
+        }
+    }
+
+    private String valor(Object columna) throws SQLException {
+        if (cerrado) {
+            throw new SQLException("El ResultSet está cerrado.");
+        }
+        if (actual < 0 || actual >= filas.size()) {
+            throw new SQLException("No hay fila actual.");
+        }
+        Integer indice = (columna instanceof Integer)
+                ? (Integer) columna - 1
+                : columnas.get(columna);
+        if (indice == null) {
+            throw new SQLException("Columna inexistente: " + columna);
+        }
+        return filas.get(actual)[indice];
+    }
+}
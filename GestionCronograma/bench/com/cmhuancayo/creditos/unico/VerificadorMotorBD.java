@@ -0,0 +1,243 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Comparación diferencial entre sp_generarcronogramadepago y
+ * {@link MotorCronogramaBD}, contra una base de datos real.
+ *
+ * Para cada caso toma un contrato existente, le pone datos aleatorios
+ * (monto, cuotas, TEA, TCEA y fecha de vigencia), llama al procedimiento y
+ * compara, cuota por cuota y campo por campo, lo que guardó con lo que
+ * calcula el motor en Java. Los montos se comparan con equals, es decir,
+ * también deben coincidir en escala. Cada caso se deshace con rollback: la
+ * base de datos queda como estaba.
+ *
+ * Si el procedimiento falla (p. ej. un monto que no cabe en la columna), el
+ * motor también debe fallar con ArithmeticException.
+ *
+ * Uso: VerificadorMotorBD [casos] [semilla]
+ */
+public final class VerificadorMotorBD {
+
+    private static final String SQL_CONTRATOS =
+            "SELECT codigo_contrato FROM contrato ORDER BY codigo_contrato LIMIT ?";
+
+    private static final String SQL_DATOS_ALEATORIOS =
+            "UPDATE contrato " +
+            "   SET monto_desembolso = ?, numero_cuotas = ?, " +
+            "       tasa_interes_compensatorio = ?, tasa_costo_efectivo_anual = ?, " +
+            "       fecha_vigencia = ? " +
+            " WHERE codigo_contrato = ?";
+
+    private static final String SQL_GENERAR = "CALL sp_generarcronogramadepago(?)";
+
+    private static final String SQL_CRONOGRAMA =
+            "SELECT nro_cuota, codigo_contrato, estado_cuota, fecha_vencimiento, " +
+            "       capital, interes, seguro_degravamen, seguros_comisiones, itf, " +
+            "       monto_cuota, dias, saldo_capital, monto_pagado " +
+            "  FROM cronograma_de_pago " +
+            " WHERE codigo_contrato = ? " +
+            " ORDER BY nro_cuota";
+
+    private final Connection cn;
+    private final Random rnd;
+
+    private long comparaciones;
+    private long diferencias;
+
+    private VerificadorMotorBD(Connection cn, long semilla) {
+        this.cn = cn;
+        this.rnd = new Random(semilla);
+    }
+
+    public static void main(String[] args) throws SQLException {
+        int casos = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+        long semilla = (args.length > 1) ? Long.parseLong(args[1]) : 20_251_017L;
+        if (!verificar(casos, semilla, System.out)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Ejecuta la comparación e imprime las primeras diferencias.
+     *
+     * @return true si no hubo diferencias
+     */
+    static boolean verificar(int casos, long semilla, java.io.PrintStream salida) throws SQLException {
+        try (Connection cn = ConexionDB.abrirConexionFisica()) {
+            cn.setAutoCommit(false);
+            List<Integer> contratos = contratos(cn, casos);
+            if (contratos.isEmpty()) {
+                salida.println("No hay contratos en la base de datos.");
+                return false;
+            }
+
+            VerificadorMotorBD v = new VerificadorMotorBD(cn, semilla);
+            for (int i = 0; i < casos; i++) {
+                try {
+                    v.caso(contratos.get(i % contratos.size()), salida);
+                } finally {
+                    cn.rollback();
+                }
+            }
+            salida.println("Verificación del motor de la BD: " + v.comparaciones
+                    + " cronogramas comparados, " + v.diferencias + " con diferencias.");
+            return v.diferencias == 0;
+        }
+    }
+
+    private static List<Integer> contratos(Connection cn, int limite) throws SQLException {
+        List<Integer> lista = new ArrayList<>();
+        try (PreparedStatement ps = cn.prepareStatement(SQL_CONTRATOS)) {
+            ps.setInt(1, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(rs.getInt(1));
+                }
+            }
+        }
+        cn.commit();
+        return lista;
+    }
+
+    private void caso(int contrato, java.io.PrintStream salida) throws SQLException {
+        // Casi siempre montos y plazos habituales; a veces montos que no caben en las cuotas
+        BigDecimal monto = (rnd.nextInt(20) == 0)
+                ? BigDecimal.valueOf((long) (rnd.nextDouble() * 9_999_999_999L) + 1L, 2)
+                : BigDecimal.valueOf(rnd.nextInt(20_000_000) + 1L, 2);
+        int cuotas = (rnd.nextInt(10) == 0) ? rnd.nextInt(3) + 1 : rnd.nextInt(120) + 1;
+        BigDecimal tea = BigDecimal.valueOf(rnd.nextInt(15_000) + 1L, 2);
+        BigDecimal tcea = tea.add(BigDecimal.valueOf(rnd.nextInt(2_000), 2));
+        LocalDate vigencia = LocalDate.of(2020, 1, 1).plusDays(rnd.nextInt(3_000));
+
+        try (PreparedStatement ps = cn.prepareStatement(SQL_DATOS_ALEATORIOS)) {
+            ps.setBigDecimal(1, monto);
+            ps.setInt(2, cuotas);
+            ps.setBigDecimal(3, tea);
+            ps.setBigDecimal(4, tcea);
+            ps.setDate(5, java.sql.Date.valueOf(vigencia));
+            ps.setInt(6, contrato);
+            ps.executeUpdate();
+        }
+
+        String descripcion = "contrato " + contrato + " (monto " + monto + ", " + cuotas
+                + " cuotas, TEA " + tea + ", TCEA " + tcea + ", vigencia " + vigencia + ")";
+
+        List<Cuota> esperado = null;
+        SQLException errorBD = null;
+        try (PreparedStatement ps = cn.prepareStatement(SQL_GENERAR)) {
+            ps.setInt(1, contrato);
+            ps.execute();
+            esperado = leerCronograma(contrato);
+        } catch (SQLException ex) {
+            errorBD = ex;
+        }
+
+        List<Cuota> obtenido = null;
+        ArithmeticException errorMotor = null;
+        try {
+            obtenido = MotorCronogramaBD.generar(contrato, monto, cuotas, vigencia, tea, tcea);
+        } catch (ArithmeticException ex) {
+            errorMotor = ex;
+        }
+
+        comparaciones++;
+        String diferencia;
+        if (errorBD != null || errorMotor != null) {
+            diferencia = (errorBD != null && errorMotor != null) ? null
+                    : "procedimiento: " + (errorBD != null ? errorBD.getMessage() : "sin error")
+                    + "; motor: " + (errorMotor != null ? errorMotor.getMessage() : "sin error");
+        } else {
+            diferencia = primeraDiferencia(esperado, obtenido);
+        }
+        if (diferencia == null) {
+            return;
+        }
+        diferencias++;
+        if (diferencias <= 10) {
+            salida.println(descripcion + ": " + diferencia);
+        }
+    }
+
+    private List<Cuota> leerCronograma(int contrato) throws SQLException {
+        List<Cuota> lista = new ArrayList<>();
+        try (PreparedStatement ps = cn.prepareStatement(SQL_CRONOGRAMA)) {
+            ps.setInt(1, contrato);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Cuota c = new Cuota();
+                    c.setNroCuota(rs.getInt("nro_cuota"));
+                    c.setCodigoContrato(rs.getInt("codigo_contrato"));
+                    c.setEstadoCuota(rs.getString("estado_cuota"));
+                    c.setFechaVencimiento(rs.getDate("fecha_vencimiento"));
+                    c.setCapital(rs.getBigDecimal("capital"));
+                    c.setInteres(rs.getBigDecimal("interes"));
+                    c.setSeguroDegravamen(rs.getBigDecimal("seguro_degravamen"));
+                    c.setSegurosComisiones(rs.getBigDecimal("seguros_comisiones"));
+                    c.setItf(rs.getBigDecimal("itf"));
+                    c.setMontoCuota(rs.getBigDecimal("monto_cuota"));
+                    c.setDias(rs.getInt("dias"));
+                    c.setSaldoCapital(rs.getBigDecimal("saldo_capital"));
+                    c.setMontoPagado(rs.getBigDecimal("monto_pagado"));
+                    lista.add(c);
+                }
+            }
+        }
+        return lista;
+    }
+
+    private static String primeraDiferencia(List<Cuota> esperado, List<Cuota> obtenido) {
+        if (esperado.size() != obtenido.size()) {
+            return "se esperaban " + esperado.size() + " cuotas y se obtuvieron " + obtenido.size();
+        }
+        for (int i = 0; i < esperado.size(); i++) {
+            Cuota a = esperado.get(i);
+            Cuota b = obtenido.get(i);
+            String campo = null;
+            if (a.getCodigoContrato() != b.getCodigoContrato()) campo = "codigoContrato";
+            else if (a.getNroCuota() != b.getNroCuota()) campo = "nroCuota";
+            else if (!Objects.equals(a.getEstadoCuota(), b.getEstadoCuota())) campo = "estadoCuota";
+            else if (!Objects.equals(a.getFechaVencimiento(), b.getFechaVencimiento())) campo = "fechaVencimiento";
+            else if (!Objects.equals(a.getCapital(), b.getCapital())) campo = "capital";
+            else if (!Objects.equals(a.getInteres(), b.getInteres())) campo = "interes";
+            else if (!Objects.equals(a.getMontoCuota(), b.getMontoCuota())) campo = "montoCuota";
+            else if (!Objects.equals(a.getSaldoCapital(), b.getSaldoCapital())) campo = "saldoCapital";
+            else if (!Objects.equals(a.getSeguroDegravamen(), b.getSeguroDegravamen())) campo = "seguroDegravamen";
+            else if (!Objects.equals(a.getSegurosComisiones(), b.getSegurosComisiones())) campo = "segurosComisiones";
+            else if (!Objects.equals(a.getItf(), b.getItf())) campo = "itf";
+            else if (a.getDias() != b.getDias()) campo = "dias";
+            else if (!Objects.equals(a.getMontoPagado(), b.getMontoPagado())) campo = "montoPagado";
+            if (campo != null) {
+                return "cuota " + (i + 1) + ", campo " + campo
+                        + " (BD " + valor(a, campo) + ", motor " + valor(b, campo) + ")";
+            }
+        }
+        return null;
+    }
+
+    private static Object valor(Cuota c, String campo) {
+        switch (campo) {
+            case "fechaVencimiento": return c.getFechaVencimiento();
+            case "capital": return c.getCapital();
+            case "interes": return c.getInteres();
+            case "montoCuota": return c.getMontoCuota();
+            case "saldoCapital": return c.getSaldoCapital();
+            case "seguroDegravamen": return c.getSeguroDegravamen();
+            case "segurosComisiones": return c.getSegurosComisiones();
+            case "itf": return c.getItf();
+            case "dias": return c.getDias();
+            case "montoPagado": return c.getMontoPagado();
+            default: return "";
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Comparación diferencial entre {@link CalculadoraCreditoService} (que usa
+ * {@link MotorCronogramaRapido}) y {@link CalculadoraReferencia} (solo
+ * BigDecimal).
+ *
+ * Compara, cuota por cuota y campo por campo, el cronograma inicial, la
+ * amortización en sus dos modos y la reprogramación. Los montos se comparan
+ * con equals, es decir, también deben coincidir en escala.
+ *
+ * <ul>
+ *     <li>Primero, casos límite fijos: tasas 0, 0.01 y 999.99 (la mayor de
+ *         NUMERIC(5,2)), 1 cuota y {@value #MAXIMO_CUOTAS}, montos de 0.01
+ *         a 999999.99 (el mayor de NUMERIC(8,2)) y montos que no se
+ *         reparten exacto, donde la última cuota absorbe el redondeo. En
+ *         estos además se comprueba que la última cuota deje el saldo en 0 y
+ *         que la suma del capital sea el monto desembolsado.</li>
+ *     <li>Después, créditos aleatorios. Incluyen casos que el motor no
+ *         cubre (montos con otras escalas) para comprobar también el camino
+ *         de respaldo.</li>
+ * </ul>
+ *
+ * Termina con código 1 si hay alguna diferencia, para poder usarlo como
+ * verificación antes de publicar un cambio en el cálculo.
+ *
+ * Uso: VerificadorMotorCronograma [casos aleatorios] [semilla]
+ */
+public final class VerificadorMotorCronograma {
+
+    /** Mayor plazo que se verifica en los casos límite. */
+    private static final int MAXIMO_CUOTAS = 360;
+
+    private static final String[] TASAS_LIMITE = { "0", "0.00", "0.01", "0.05", "12.00", "999.99" };
+    private static final int[] CUOTAS_LIMITE = { 1, 2, 3, 7, 12, MAXIMO_CUOTAS };
+    // 0.01 y 0.02 entre varias cuotas dejan capital 0 hasta la última;
+    // 100.00 / 3 y 1000.01 / 7 no se reparten exacto
+    private static final String[] MONTOS_LIMITE = { "0.01", "0.02", "1.00", "100.00", "1000.01", "999999.99" };
+
+    private final CalculadoraCreditoService servicio = new CalculadoraCreditoService();
+    private final CalculadoraReferencia referencia = new CalculadoraReferencia();
+    private final Random rnd;
+
+    private long comparaciones;
+    private long diferencias;
+
+    private VerificadorMotorCronograma(long semilla) {
+        this.rnd = new Random(semilla);
+    }
+
+    public static void main(String[] args) {
+        int casos = (args.length > 0) ? Integer.parseInt(args[0]) : 20_000;
+        long semilla = (args.length > 1) ? Long.parseLong(args[1]) : 20_251_017L;
+        if (!verificar(casos, semilla, System.out)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Ejecuta la comparación e imprime las primeras diferencias.
+     *
+     * @return true si no hubo diferencias
+     */
+    static boolean verificar(int casos, long semilla, java.io.PrintStream salida) {
+        VerificadorMotorCronograma v = new VerificadorMotorCronograma(semilla);
+        v.casosLimite(salida);
+        for (int i = 0; i < casos; i++) {
+            v.caso(v.creditoAleatorio(i), salida);
+        }
+        salida.println("Verificación del motor de cronogramas: " + v.comparaciones
+                + " cronogramas comparados, " + v.diferencias + " con diferencias.");
+        return v.diferencias == 0;
+    }
+
+    /** Todas las combinaciones de tasa, plazo y monto límite. */
+    private void casosLimite(java.io.PrintStream salida) {
+        int codigo = -1;
+        for (String tasa : TASAS_LIMITE) {
+            for (int cuotas : CUOTAS_LIMITE) {
+                for (String monto : MONTOS_LIMITE) {
+                    Credito c = new Credito();
+                    c.setCodigoContrato(codigo--);
+                    c.setMontoDesembolso(new BigDecimal(monto));
+                    c.setNumeroCuotas(cuotas);
+                    c.setTasaInteresCompensatorio(new BigDecimal(tasa));
+                    c.setFechaDesembolso(java.sql.Date.valueOf("2024-01-31"));
+                    comprobarCierre(c, servicio.generarCronograma(c), salida);
+                    caso(c, salida);
+                }
+            }
+        }
+    }
+
+    /** La última cuota deja el saldo en 0 y el capital suma el monto desembolsado. */
+    private void comprobarCierre(Credito credito, List<Cuota> cuotas, java.io.PrintStream salida) {
+        comparaciones++;
+        String diferencia = null;
+        if (cuotas.size() != credito.getNumeroCuotas()) {
+            diferencia = cuotas.size() + " cuotas";
+        } else {
+            Cuota ultima = cuotas.get(cuotas.size() - 1);
+            BigDecimal capital = BigDecimal.ZERO;
+            for (Cuota c : cuotas) {
+                capital = capital.add(c.getCapital());
+            }
+            if (ultima.getSaldoCapital().signum() != 0) {
+                diferencia = "saldo final " + ultima.getSaldoCapital();
+            } else if (capital.compareTo(credito.getMontoDesembolso()) != 0) {
+                diferencia = "capital total " + capital;
+            }
+        }
+        if (diferencia != null) {
+            diferencias++;
+            if (diferencias <= 10) {
+                salida.println("cierre del cronograma (monto " + credito.getMontoDesembolso()
+                        + ", " + credito.getNumeroCuotas() + " cuotas, tasa "
+                        + credito.getTasaInteresCompensatorio() + "): " + diferencia);
+            }
+        }
+    }
+
+    private void caso(Credito credito, java.io.PrintStream salida) {
+        List<Cuota> esperado = referencia.generarCronograma(credito);
+        List<Cuota> obtenido = servicio.generarCronograma(credito);
+        comparar("generarCronograma", credito, esperado, obtenido, salida);
+        if (esperado.isEmpty()) {
+            return;
+        }
+
+        // Algunas cuotas pagadas y, a veces, una pendiente sin fecha
+        int pagadas = rnd.nextInt(esperado.size());
+        for (int i = 0; i < pagadas; i++) {
+            esperado.get(i).setEstadoCuota("Pagada");
+        }
+        if (rnd.nextInt(5) == 0 && pagadas + 1 < esperado.size()) {
+            esperado.get(pagadas + 1).setFechaVencimiento(null);
+        }
+
+        BigDecimal amortizacion = BigDecimal.valueOf(rnd.nextInt(5_000_000),
+                (rnd.nextInt(10) == 0) ? 3 : 2);
+        for (String tipo : new String[] { "REDUCIR_CUOTA", "REDUCIR_PLAZO" }) {
+            comparar("recalcularPorAmortizacion " + tipo + " " + amortizacion, credito,
+                    referencia.recalcularPorAmortizacion(credito, esperado, amortizacion, tipo, 0),
+                    servicio.recalcularPorAmortizacion(credito, esperado, amortizacion, tipo, 0),
+                    salida);
+        }
+
+        int nuevoPlazo = rnd.nextInt(120) + 1;
+        BigDecimal nuevaTasa = rnd.nextBoolean() ? null : BigDecimal.valueOf(rnd.nextInt(5000), 2);
+        comparar("recalcularPorReprogramacion " + nuevoPlazo + " " + nuevaTasa, credito,
+                referencia.recalcularPorReprogramacion(credito, esperado, nuevoPlazo, nuevaTasa),
+                servicio.recalcularPorReprogramacion(credito, esperado, nuevoPlazo, nuevaTasa),
+                salida);
+    }
+
+    private Credito creditoAleatorio(int codigo) {
+        Credito c = new Credito();
+        c.setCodigoContrato(codigo);
+
+        // Casi siempre montos con dos decimales, como en la BD
+        int escala = (rnd.nextInt(10) == 0) ? rnd.nextInt(4) : 2;
+        c.setMontoDesembolso(BigDecimal.valueOf(rnd.nextInt(100_000_000) + 1L, escala));
+        c.setNumeroCuotas((rnd.nextInt(10) == 0) ? rnd.nextInt(3) + 1 : rnd.nextInt(360) + 1);
+        c.setTasaInteresCompensatorio((rnd.nextInt(20) == 0)
+                ? BigDecimal.ZERO
+                : BigDecimal.valueOf(rnd.nextInt(99_999) + 1L, 2));
+        c.setFechaDesembolso(rnd.nextBoolean()
+                ? new Date(1_000_000_000_000L + (long) (rnd.nextDouble() * 1e12))
+                : new java.sql.Date(1_600_000_000_000L + rnd.nextInt(1000) * 86_400_000L));
+        return c;
+    }
+
+    private void comparar(String operacion, Credito credito,
+                          List<Cuota> esperado, List<Cuota> obtenido,
+                          java.io.PrintStream salida) {
+        comparaciones++;
+        String diferencia = primeraDiferencia(esperado, obtenido);
+        if (diferencia == null) {
+            return;
+        }
+        diferencias++;
+        if (diferencias <= 10) {
+            salida.println(operacion + " (monto " + credito.getMontoDesembolso()
+                    + ", " + credito.getNumeroCuotas() + " cuotas, tasa "
+                    + credito.getTasaInteresCompensatorio() + "): " + diferencia);
+        }
+    }
+
+    private static String primeraDiferencia(List<Cuota> esperado, List<Cuota> obtenido) {
+        if (esperado.size() != obtenido.size()) {
+            return "se esperaban " + esperado.size() + " cuotas y se obtuvieron " + obtenido.size();
+        }
+        for (int i = 0; i < esperado.size(); i++) {
+            Cuota a = esperado.get(i);
+            Cuota b = obtenido.get(i);
+            String campo = null;
+            if (a.getCodigoContrato() != b.getCodigoContrato()) campo = "codigoContrato";
+            else if (a.getNroCuota() != b.getNroCuota()) campo = "nroCuota";
+            else if (!Objects.equals(a.getEstadoCuota(), b.getEstadoCuota())) campo = "estadoCuota";
+            else if (!mismaFecha(a.getFechaVencimiento(), b.getFechaVencimiento())) campo = "fechaVencimiento";
+            else if (!Objects.equals(a.getCapital(), b.getCapital())) campo = "capital";
+            else if (!Objects.equals(a.getInteres(), b.getInteres())) campo = "interes";
+            else if (!Objects.equals(a.getMontoCuota(), b.getMontoCuota())) campo = "montoCuota";
+            else if (!Objects.equals(a.getSaldoCapital(), b.getSaldoCapital())) campo = "saldoCapital";
+            else if (!Objects.equals(a.getSeguroDegravamen(), b.getSeguroDegravamen())) campo = "seguroDegravamen";
+            else if (!Objects.equals(a.getSegurosComisiones(), b.getSegurosComisiones())) campo = "segurosComisiones";
+            else if (!Objects.equals(a.getItf(), b.getItf())) campo = "itf";
+            else if (a.getDias() != b.getDias()) campo = "dias";
+            if (campo != null) {
+                return "cuota " + (i + 1) + ", campo " + campo;
+            }
+        }
+        return null;
+    }
+
+    /** Mismo instante y misma clase (java.util.Date o java.sql.Date). */
+    private static boolean mismaFecha(Date a, Date b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.getClass() == b.getClass() && a.getTime() == b.getTime();
+    }
+}
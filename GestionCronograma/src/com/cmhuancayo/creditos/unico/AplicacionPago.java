@@ -0,0 +1,59 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.math.BigDecimal;
+
+/**
+ * Parte de un pago parcial aplicada a una cuota.
+ *
+ * Un pago parcial se reparte sobre varias cuotas consecutivas; la función
+ * fn_registrarpagoparcial devuelve una fila por cada cuota que recibió dinero
+ * y {@link CuotaDAO#registrarPagoParcialDetallado} las convierte en esta clase.
+ */
+public class AplicacionPago {
+
+    /** Número de cuota que recibió parte del pago. */
+    private int nroCuota;
+
+    /** Monto del pago aplicado a esta cuota. */
+    private BigDecimal montoAplicado;
+
+    /** Lo que aún falta pagar de la cuota luego de aplicar el pago. */
+    private BigDecimal saldoRestante;
+
+    /** Estado en que quedó la cuota ("Pagada", "Vencida" o "PARCIAL"). */
+    private String estadoResultante;
+
+    // --- Getters y Setters ---
+
+    public int getNroCuota() {
+        return nroCuota;
+    }
+
+    public void setNroCuota(int nroCuota) {
+        this.nroCuota = nroCuota;
+    }
+
+    public BigDecimal getMontoAplicado() {
+        return montoAplicado;
+    }
+
+    public void setMontoAplicado(BigDecimal montoAplicado) {
+        this.montoAplicado = montoAplicado;
+    }
+
+    public BigDecimal getSaldoRestante() {
+        return saldoRestante;
+    }
+
+    public void setSaldoRestante(BigDecimal saldoRestante) {
+        this.saldoRestante = saldoRestante;
+    }
+
+    public String getEstadoResultante() {
+        return estadoResultante;
+    }
+
+    public void setEstadoResultante(String estadoResultante) {
+        this.estadoResultante = estadoResultante;
+    }
+}
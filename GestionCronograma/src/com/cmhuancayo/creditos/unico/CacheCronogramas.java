@@ -0,0 +1,239 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caché en memoria del cronograma de cada contrato
+ * ({@link CuotaDAO#listarPorContrato}) y de los créditos de cada cliente
+ * ({@link CreditoDAO#listarPorCliente}), para no volver a consultarlos al
+ * cambiar de contrato en el combo o al reabrir la pestaña de un cliente.
+ *
+ * <ul>
+ *     <li>Tamaño acotado (LRU) y tiempo de vida por entrada, con
+ *         {@link CacheLRU}. El tiempo de vida cubre los cambios que no pasan
+ *         por los DAO de esta aplicación.</li>
+ *     <li>Los DAO invalidan en cada escritura: lo que cambia un contrato
+ *         invalida su cronograma y la lista de créditos de su cliente. Si la
+ *         escritura está dentro de una {@link UnidadDeTrabajo}, la invalidación
+ *         se hace al confirmar (con un ROLLBACK no cambió nada).</li>
+ *     <li>Dentro de una unidad de trabajo no se usa la caché: la transacción
+ *         debe ver sus propios cambios, y lo que lee todavía no está
+ *         confirmado.</li>
+ *     <li>Una lectura que empezó antes de una invalidación no se guarda
+ *         (puede traer datos anteriores al cambio): ver {@link #version()}.</li>
+ *     <li>Se guardan y entregan copias, así que quien recibe las cuotas o los
+ *         créditos los puede modificar sin afectar a la caché.</li>
+ * </ul>
+ *
+ * Métricas: cache.cronogramas.aciertos / .fallos / .aciertos_pct,
+ * cache.creditos.aciertos / .fallos / .aciertos_pct y cache.invalidaciones.
+ *
+ * Configuración (propiedades del sistema):
+ * <ul>
+ *     <li>cmh.cache.cronogramas.maximo (256 entradas por tipo)</li>
+ *     <li>cmh.cache.cronogramas.vida_ms (60000)</li>
+ * </ul>
+ */
+public final class CacheCronogramas {
+
+    private static final int MAXIMO = Integer.getInteger("cmh.cache.cronogramas.maximo", 256);
+    private static final long VIDA_MS = Long.getLong("cmh.cache.cronogramas.vida_ms", 60_000L);
+
+    private static final CacheLRU<Integer, List<Cuota>> CUOTAS = new CacheLRU<>(MAXIMO, VIDA_MS);
+    private static final CacheLRU<Integer, List<Credito>> CREDITOS = new CacheLRU<>(MAXIMO, VIDA_MS);
+
+    /** Cliente de cada contrato que aparece en una lista de créditos guardada. */
+    private static final Map<Integer, Integer> CLIENTE_DE_CONTRATO = new ConcurrentHashMap<>();
+
+    /** Aumenta con cada invalidación; protegido por el monitor de la clase. */
+    private static long version;
+
+    static {
+        Metricas.registrarIndicador("cache.cronogramas.aciertos_pct",
+                () -> porcentajeAciertos("cache.cronogramas"));
+        Metricas.registrarIndicador("cache.creditos.aciertos_pct",
+                () -> porcentajeAciertos("cache.creditos"));
+    }
+
+    private CacheCronogramas() {
+    }
+
+    /**
+     * Versión actual de la caché. Se toma antes de consultar la BD y se pasa
+     * al guardar el resultado: si hubo una invalidación entre medio, no se guarda.
+     */
+    static synchronized long version() {
+        return version;
+    }
+
+    /* =========================================================
+     *  CRONOGRAMAS
+     * ========================================================= */
+
+    /** Copia del cronograma guardado, o null si no está (o hay una unidad de trabajo activa). */
+    static List<Cuota> cuotas(int codigoContrato) {
+        if (UnidadDeTrabajo.activa()) {
+            return null;
+        }
+        List<Cuota> guardado = CUOTAS.obtener(codigoContrato);
+        if (guardado == null) {
+            Metricas.incrementar("cache.cronogramas.fallos");
+            return null;
+        }
+        Metricas.incrementar("cache.cronogramas.aciertos");
+        return copiarCuotas(guardado);
+    }
+
+    static void guardarCuotas(int codigoContrato, List<Cuota> cuotas, long versionLeida) {
+        if (UnidadDeTrabajo.activa()) {
+            return;
+        }
+        List<Cuota> copia = copiarCuotas(cuotas);
+        synchronized (CacheCronogramas.class) {
+            if (version == versionLeida) {
+                CUOTAS.guardar(codigoContrato, copia);
+            }
+        }
+    }
+
+    /* =========================================================
+     *  CRÉDITOS POR CLIENTE
+     * ========================================================= */
+
+    /** Copia de los créditos guardados del cliente, o null si no están. */
+    static List<Credito> creditos(int codigoCliente) {
+        if (UnidadDeTrabajo.activa()) {
+            return null;
+        }
+        List<Credito> guardado = CREDITOS.obtener(codigoCliente);
+        if (guardado == null) {
+            Metricas.incrementar("cache.creditos.fallos");
+            return null;
+        }
+        Metricas.incrementar("cache.creditos.aciertos");
+        return copiarCreditos(guardado);
+    }
+
+    static void guardarCreditos(int codigoCliente, List<Credito> creditos, long versionLeida) {
+        if (UnidadDeTrabajo.activa()) {
+            return;
+        }
+        List<Credito> copia = copiarCreditos(creditos);
+        synchronized (CacheCronogramas.class) {
+            if (version == versionLeida) {
+                for (Credito c : copia) {
+                    CLIENTE_DE_CONTRATO.put(c.getCodigoContrato(), codigoCliente);
+                }
+                CREDITOS.guardar(codigoCliente, copia);
+            }
+        }
+    }
+
+    /* =========================================================
+     *  INVALIDACIÓN
+     * ========================================================= */
+
+    /**
+     * El contrato cambió (cuotas, pagos o datos del contrato): se descartan
+     * su cronograma y la lista de créditos de su cliente. Dentro de una
+     * unidad de trabajo, al confirmarla.
+     */
+    public static void invalidarContrato(int codigoContrato) {
+        UnidadDeTrabajo.alConfirmar(() -> {
+            synchronized (CacheCronogramas.class) {
+                version++;
+                CUOTAS.invalidar(codigoContrato);
+                Integer cliente = CLIENTE_DE_CONTRATO.remove(codigoContrato);
+                if (cliente != null) {
+                    CREDITOS.invalidar(cliente);
+                }
+            }
+            Metricas.incrementar("cache.invalidaciones");
+        });
+    }
+
+    /** Cambió la lista de créditos del cliente (p. ej. se le creó uno). */
+    public static void invalidarCliente(int codigoCliente) {
+        UnidadDeTrabajo.alConfirmar(() -> {
+            synchronized (CacheCronogramas.class) {
+                version++;
+                CREDITOS.invalidar(codigoCliente);
+            }
+            Metricas.incrementar("cache.invalidaciones");
+        });
+    }
+
+    /** Descarta todo (cambios masivos, como la corrección de montos pagados). */
+    public static void limpiar() {
+        UnidadDeTrabajo.alConfirmar(() -> {
+            synchronized (CacheCronogramas.class) {
+                version++;
+                CUOTAS.limpiar();
+                CREDITOS.limpiar();
+                CLIENTE_DE_CONTRATO.clear();
+            }
+            Metricas.incrementar("cache.invalidaciones");
+        });
+    }
+
+    /* =========================================================
+     *  AUXILIARES
+     * ========================================================= */
+
+    private static long porcentajeAciertos(String prefijo) {
+        long aciertos = Metricas.contador(prefijo + ".aciertos");
+        long total = aciertos + Metricas.contador(prefijo + ".fallos");
+        return (total == 0) ? 0L : aciertos * 100L / total;
+    }
+
+    private static List<Cuota> copiarCuotas(List<Cuota> cuotas) {
+        List<Cuota> copia = new ArrayList<>(cuotas.size());
+        for (Cuota c : cuotas) {
+            Cuota n = new Cuota();
+            n.setNroCuota(c.getNroCuota());
+            n.setCodigoContrato(c.getCodigoContrato());
+            n.setEstadoCuota(c.getEstadoCuota());
+            n.setFechaVencimiento(copiarFecha(c.getFechaVencimiento()));
+            n.setCapital(c.getCapital());
+            n.setInteres(c.getInteres());
+            n.setSeguroDegravamen(c.getSeguroDegravamen());
+            n.setSegurosComisiones(c.getSegurosComisiones());
+            n.setItf(c.getItf());
+            n.setDias(c.getDias());
+            n.setMontoCuota(c.getMontoCuota());
+            n.setSaldoCapital(c.getSaldoCapital());
+            n.setMontoPagado(c.getMontoPagado());
+            n.setFechaUltimoPago(copiarFecha(c.getFechaUltimoPago()));
+            copia.add(n);
+        }
+        return copia;
+    }
+
+    private static List<Credito> copiarCreditos(List<Credito> creditos) {
+        List<Credito> copia = new ArrayList<>(creditos.size());
+        for (Credito c : creditos) {
+            Credito n = new Credito();
+            n.setCodigoContrato(c.getCodigoContrato());
+            n.setCodigoSolicitud(c.getCodigoSolicitud());
+            n.setCodigoCliente(c.getCodigoCliente());
+            n.setMontoDesembolso(c.getMontoDesembolso());
+            n.setTasaInteresCompensatorio(c.getTasaInteresCompensatorio());
+            n.setTasaCostoEfectivoAnual(c.getTasaCostoEfectivoAnual());
+            n.setNumeroCuotas(c.getNumeroCuotas());
+            n.setFechaDesembolso(copiarFecha(c.getFechaDesembolso()));
+            n.setSaldoCapital(c.getSaldoCapital());
+            n.setEstadoContrato(c.getEstadoContrato());
+            copia.add(n);
+        }
+        return copia;
+    }
+
+    /** Copia conservando la clase (java.sql.Date / Timestamp / java.util.Date). */
+    private static Date copiarFecha(Date fecha) {
+        return (fecha == null) ? null : (Date) fecha.clone();
+    }
+}
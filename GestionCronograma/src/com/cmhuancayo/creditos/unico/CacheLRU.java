@@ -0,0 +1,87 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caché pequeña en memoria, con tamaño máximo (se descarta la entrada usada
+ * hace más tiempo) y tiempo de vida por entrada.
+ *
+ * Pensada para resultados de consultas que se repiten en poco tiempo; los
+ * valores deben ser inmutables, porque se entregan tal cual a quien los pida.
+ * Es segura para varios hilos (métodos sincronizados).
+ *
+ * @param <K> clave
+ * @param <V> valor
+ */
+public class CacheLRU<K, V> {
+
+    private final int maximo;
+    private final long vidaNanos;
+
+    /** Entradas de la menos a la más recientemente usada. */
+    private final LinkedHashMap<K, Entrada<V>> entradas;
+
+    /**
+     * @param maximo     cantidad máxima de entradas
+     * @param vidaMillis milisegundos que una entrada sigue siendo válida
+     */
+    public CacheLRU(int maximo, long vidaMillis) {
+        this.maximo = Math.max(1, maximo);
+        this.vidaNanos = vidaMillis * 1_000_000L;
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entrada<V>> mayor) {
+                return size() > CacheLRU.this.maximo;
+            }
+        };
+    }
+
+    /** Valor guardado para la clave, o null si no hay o ya venció. */
+    public synchronized V obtener(K clave) {
+        Entrada<V> e = entradas.get(clave);
+        if (e == null) {
+            return null;
+        }
+        if (System.nanoTime() - e.creada > vidaNanos) {
+            entradas.remove(clave);
+            return null;
+        }
+        return e.valor;
+    }
+
+    public synchronized void guardar(K clave, V valor) {
+        entradas.put(clave, new Entrada<>(valor, System.nanoTime()));
+    }
+
+    public synchronized void invalidar(K clave) {
+        entradas.remove(clave);
+    }
+
+    public synchronized void limpiar() {
+        entradas.clear();
+    }
+
+    /** Cantidad de entradas, sin contar las vencidas. */
+    public synchronized int tamano() {
+        long ahora = System.nanoTime();
+        Iterator<Entrada<V>> it = entradas.values().iterator();
+        while (it.hasNext()) {
+            if (ahora - it.next().creada > vidaNanos) {
+                it.remove();
+            }
+        }
+        return entradas.size();
+    }
+
+    private static final class Entrada<V> {
+        final V valor;
+        final long creada;
+
+        Entrada(V valor, long creada) {
+            this.valor = valor;
+            this.creada = creada;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Caché LRU de sentencias preparadas de una conexión física del pool.
+ *
+ * La clave es el texto SQL (y si es prepareStatement o prepareCall). Al
+ * preparar una sentencia que está en caché se reutiliza el mismo objeto del
+ * driver; al cerrarla (close() del DAO) vuelve a la caché en lugar de
+ * cerrarse. Al reutilizar el mismo PreparedStatement, el driver de PostgreSQL
+ * lo promueve a sentencia preparada en el servidor luego de
+ * {@code prepareThreshold} ejecuciones y ya no vuelve a planificarla.
+ *
+ * Una sentencia prestada no está en la caché: si se prepara dos veces el
+ * mismo SQL a la vez, la segunda se crea aparte. Las sentencias a las que se
+ * les cambió la configuración (fetchSize, maxRows, timeout, ...) no se
+ * guardan, se cierran al devolverse.
+ *
+ * Se usa desde un solo hilo a la vez (el que tiene prestada la conexión),
+ * pero los métodos están sincronizados por si el pool la cierra desde otro.
+ */
+final class CacheSentencias {
+
+    /** Métodos de Statement que dejan la sentencia con una configuración distinta a la original. */
+    private static final Set<String> MODIFICADORES = new HashSet<>(Arrays.asList(
+            "setFetchSize", "setFetchDirection", "setMaxRows", "setLargeMaxRows",
+            "setMaxFieldSize", "setQueryTimeout", "setEscapeProcessing",
+            "setCursorName", "setPoolable", "closeOnCompletion"));
+
+    private final Connection fisica;
+    private final int tamano;
+
+    /** Sentencias libres, de la menos a la más recientemente usada. */
+    private final LinkedHashMap<String, PreparedStatement> libres =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    CacheSentencias(Connection fisica, int tamano) {
+        this.fisica = fisica;
+        this.tamano = Math.max(0, tamano);
+    }
+
+    /**
+     * Devuelve un proxy de sentencia preparada para el SQL indicado,
+     * reutilizando una de la caché si existe.
+     *
+     * @param conexion conexión que verá el DAO en Statement.getConnection()
+     * @param llamada  true para prepareCall, false para prepareStatement
+     */
+    PreparedStatement preparar(Connection conexion, String sql, boolean llamada) throws SQLException {
+        String clave = (llamada ? "C:" : "P:") + sql;
+
+        PreparedStatement ps;
+        synchronized (this) {
+            ps = libres.remove(clave);
+        }
+        if (ps != null) {
+            Metricas.incrementar("sentencias.cache.aciertos");
+        } else {
+            Metricas.incrementar("sentencias.cache.fallos");
+            ps = llamada ? fisica.prepareCall(sql) : fisica.prepareStatement(sql);
+        }
+
+        Class<?> tipo = llamada ? CallableStatement.class : PreparedStatement.class;
+        return (PreparedStatement) Proxy.newProxyInstance(
+                CacheSentencias.class.getClassLoader(),
+                new Class<?>[] { tipo },
+                new SentenciaCacheada(conexion, clave, ps));
+    }
+
+    /**
+     * Cierra físicamente todas las sentencias libres
+     * (antes de descartar la conexión).
+     */
+    void cerrarTodas() {
+        List<PreparedStatement> aCerrar;
+        synchronized (this) {
+            aCerrar = new ArrayList<>(libres.values());
+            libres.clear();
+        }
+        for (PreparedStatement ps : aCerrar) {
+            cerrarFisica(ps);
+        }
+    }
+
+    synchronized int cantidadLibres() {
+        return libres.size();
+    }
+
+    /* =========================================================
+     *  AUXILIARES
+     * ========================================================= */
+
+    private void devolver(String clave, PreparedStatement ps, boolean alterada) {
+        if (tamano == 0 || alterada || !limpiar(ps)) {
+            cerrarFisica(ps);
+            return;
+        }
+
+        PreparedStatement expulsada = null;
+        PreparedStatement duplicada = null;
+        synchronized (this) {
+            if (libres.containsKey(clave)) {
+                duplicada = ps;
+            } else {
+                libres.put(clave, ps);
+                if (libres.size() > tamano) {
+                    Iterator<PreparedStatement> it = libres.values().iterator();
+                    expulsada = it.next();
+                    it.remove();
+                }
+            }
+        }
+        if (duplicada != null) {
+            cerrarFisica(duplicada);
+        }
+        if (expulsada != null) {
+            Metricas.incrementar("sentencias.cache.expulsadas");
+            cerrarFisica(expulsada);
+        }
+    }
+
+    /** Deja la sentencia sin parámetros ni resultados pendientes. */
+    private static boolean limpiar(PreparedStatement ps) {
+        try {
+            if (ps.isClosed()) {
+                return false;
+            }
+            ResultSet rs = ps.getResultSet();
+            if (rs != null) {
+                rs.close();
+            }
+            ps.clearParameters();
+            ps.clearBatch();
+            ps.clearWarnings();
+            return true;
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private static void cerrarFisica(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException ignored) {}
+    }
+
+    /**
+     * Manejador del proxy entregado al DAO: close() devuelve la sentencia a la
+     * caché y el resto de llamadas se delega a la sentencia del driver.
+     */
+    private final class SentenciaCacheada implements InvocationHandler {
+
+        private final Connection conexion;
+        private final String clave;
+        private final PreparedStatement ps;
+        private boolean cerrada;
+        private boolean alterada;
+
+        SentenciaCacheada(Connection conexion, String clave, PreparedStatement ps) {
+            this.conexion = conexion;
+            this.clave = clave;
+            this.ps = ps;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String nombre = method.getName();
+            int nParams = method.getParameterCount();
+
+            if ("close".equals(nombre) && nParams == 0) {
+                if (!cerrada) {
+                    cerrada = true;
+                    devolver(clave, ps, alterada);
+                }
+                return null;
+            }
+            if ("isClosed".equals(nombre) && nParams == 0) {
+                return cerrada || ps.isClosed();
+            }
+            if ("getConnection".equals(nombre) && nParams == 0) {
+                return conexion;
+            }
+            if ("equals".equals(nombre) && nParams == 1) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(nombre) && nParams == 0) {
+                return System.identityHashCode(proxy);
+            }
+            if ("toString".equals(nombre) && nParams == 0) {
+                return ps.toString();
+            }
+            if (cerrada) {
+                throw new SQLException("La sentencia ya fue cerrada.");
+            }
+            if (MODIFICADORES.contains(nombre)) {
+                alterada = true;
+            }
+
+            try {
+                return method.invoke(ps, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+}
@@ -2,10 +2,17 @@ package com.cmhuancayo.creditos.unico;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
 
 /**
  * Servicio de cálculo de cronogramas de crédito.
@@ -15,10 +22,15 @@ import java.util.List;
  *     <li>Generar el cronograma inicial de un crédito (cuota fija, sistema francés).</li>
  *     <li>Recalcular un cronograma por una amortización extraordinaria.</li>
  *     <li>Recalcular un cronograma por reprogramación (nuevo plazo y/o nueva tasa).</li>
+ *     <li>Simular en lote los cronogramas de muchos créditos, en paralelo.</li>
  * </ul>
  *
  * Importante: esta clase NO accede a la base de datos, solo trabaja con objetos
  * {@link Credito} y {@link Cuota} en memoria.
+ *
+ * Los cálculos de cuotas se hacen con {@link MotorCronogramaRapido} (centavos
+ * en long, mismo resultado que BigDecimal); el cálculo con BigDecimal queda
+ * solo para montos que el motor no puede representar.
  */
 public class CalculadoraCreditoService {
 
@@ -29,6 +41,10 @@ public class CalculadoraCreditoService {
     /** Modo de redondeo estándar para montos y tasas. */
     private static final RoundingMode ROUND_MODE = RoundingMode.HALF_UP;
 
+    /** (1 + r)^-n de la cuota fija, por tasa mensual y número de cuotas. */
+    private static final TablaFactoresInteres<Double> DESCUENTOS = new TablaFactoresInteres<>(
+            "cuotaFija", (tasaMensual, n) -> Math.pow(1 + tasaMensual.doubleValue(), -(double) n));
+
     // =========================================================
     // 1. GENERACIÓN DE CRONOGRAMA ESTÁNDAR (CRÉDITO NUEVO)
     // =========================================================
@@ -47,53 +63,108 @@ public class CalculadoraCreditoService {
      * @return Lista de cuotas generadas. Si faltan datos mínimos, retorna una lista vacía.
      */
     public List<Cuota> generarCronograma(Credito credito) {
-        List<Cuota> cuotas = new ArrayList<>();
+        MotorCronogramaRapido.Cronograma cronograma = generarCronogramaCompacto(credito);
+        return (cronograma.tamano() == 0) ? new ArrayList<>() : cronograma.aCuotas();
+    }
 
+    /**
+     * Igual que {@link #generarCronograma(Credito)}, pero devuelve el
+     * cronograma en arreglos de centavos sin crear objetos {@link Cuota}
+     * (se crean solo si se piden con {@link MotorCronogramaRapido.Cronograma#aCuotas()}).
+     *
+     * @param credito Datos básicos del crédito (monto, tasa, número de cuotas, fecha de desembolso).
+     * @return Cronograma generado; sin cuotas si faltan datos mínimos.
+     */
+    public MotorCronogramaRapido.Cronograma generarCronogramaCompacto(Credito credito) {
         // Validación mínima de datos
         if (credito.getMontoDesembolso() == null ||
                 credito.getNumeroCuotas() <= 0 ||
                 credito.getTasaInteresCompensatorio() == null) {
-            return cuotas;
+            return MotorCronogramaRapido.Cronograma.deCuotas(
+                    credito.getCodigoContrato(), new ArrayList<>());
         }
 
         BigDecimal principal = credito.getMontoDesembolso();
         int n = credito.getNumeroCuotas();
-        BigDecimal tasaAnual = credito.getTasaInteresCompensatorio();
 
         // TEA -> tasa mensual (r)
-        BigDecimal tasaMensual = tasaAnual
-                .divide(BigDecimal.valueOf(12 * 100.0), SCALE_INTERES, ROUND_MODE);
+        BigDecimal tasaMensual = tasaMensual(credito.getTasaInteresCompensatorio());
+        BigDecimal cuotaFija = calcularCuotaFija(principal, tasaMensual, n);
 
-        // Cálculo de la cuota fija usando fórmula del sistema francés
-        BigDecimal cuotaFija;
-        double P = principal.doubleValue();
-        double r = tasaMensual.doubleValue();
-        double nDouble = n;
+        Date fechaBase = (credito.getFechaDesembolso() != null)
+                ? credito.getFechaDesembolso()
+                : new Date();
 
-        if (r == 0.0) {
-            // Sin interés: dividir capital entre número de cuotas
-            cuotaFija = principal
-                    .divide(BigDecimal.valueOf(n), SCALE_MONEDA, ROUND_MODE);
-        } else {
-            double cuotaDouble = P * r / (1 - Math.pow(1 + r, -nDouble));
-            cuotaFija = BigDecimal.valueOf(cuotaDouble)
-                    .setScale(SCALE_MONEDA, ROUND_MODE);
+        // Fecha de vencimiento = fecha desembolso + i meses (i desde 1)
+        MotorCronogramaRapido.Cronograma rapido = MotorCronogramaRapido.cuotaFija(
+                credito.getCodigoContrato(), principal, tasaMensual, cuotaFija, n, fechaBase, 1);
+        if (rapido != null) {
+            return rapido;
+        }
+        return MotorCronogramaRapido.Cronograma.deCuotas(credito.getCodigoContrato(),
+                generarCuotaFijaExacta(credito.getCodigoContrato(), principal,
+                        tasaMensual, cuotaFija, n, fechaBase, 1));
+    }
+
+    /**
+     * Cronograma idéntico al que guarda sp_generarcronogramadepago (días
+     * reales de cada mes, seguro de desgravamen, ITF y ajuste de la última
+     * cuota), calculado en Java con {@link MotorCronogramaBD}.
+     *
+     * El cronograma que vale es el de la base de datos; este sirve para
+     * mostrarlo antes de guardarlo sin ir al servidor. Usa la TCEA para la
+     * cuota fija y la TEA para el interés, igual que el procedimiento.
+     *
+     * @param credito Crédito con monto, número de cuotas, TEA, TCEA y fecha de desembolso (vigencia).
+     * @return Lista de cuotas generadas. Si faltan datos mínimos, retorna una lista vacía.
+     */
+    public List<Cuota> generarCronogramaComoBD(Credito credito) {
+        if (credito.getMontoDesembolso() == null ||
+                credito.getNumeroCuotas() <= 0 ||
+                credito.getTasaInteresCompensatorio() == null ||
+                credito.getTasaCostoEfectivoAnual() == null ||
+                credito.getTasaCostoEfectivoAnual().signum() <= 0 ||
+                credito.getFechaDesembolso() == null) {
+            return new ArrayList<>();
         }
 
+        Date fecha = credito.getFechaDesembolso();
+        LocalDate fechaVigencia = (fecha instanceof java.sql.Date)
+                ? ((java.sql.Date) fecha).toLocalDate()
+                : fecha.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+
+        return MotorCronogramaBD.generar(credito.getCodigoContrato(),
+                credito.getMontoDesembolso(),
+                credito.getNumeroCuotas(),
+                fechaVigencia,
+                credito.getTasaInteresCompensatorio(),
+                credito.getTasaCostoEfectivoAnual());
+    }
+
+    /**
+     * Cálculo con BigDecimal del sistema francés, para los casos que
+     * {@link MotorCronogramaRapido} no puede representar en centavos.
+     * La cuota i (desde 0) vence primerMes + i meses después de fechaBase.
+     */
+    private List<Cuota> generarCuotaFijaExacta(int codigoContrato,
+                                               BigDecimal principal,
+                                               BigDecimal tasaMensual,
+                                               BigDecimal cuotaFija,
+                                               int n,
+                                               Date fechaBase,
+                                               int primerMes) {
+        Metricas.incrementar("cronograma.calculo.bigdecimal");
+        List<Cuota> cuotas = new ArrayList<>();
         BigDecimal saldo = principal;
-        Date fechaBase = (credito.getFechaDesembolso() != null)
-                ? credito.getFechaDesembolso()
-                : new Date();
 
         // Generación cuota por cuota
         for (int i = 1; i <= n; i++) {
             Cuota c = new Cuota();
-            c.setCodigoContrato(credito.getCodigoContrato());
+            c.setCodigoContrato(codigoContrato);
             c.setNroCuota(i);
             c.setEstadoCuota("Pendiente");
 
-            // Fecha de vencimiento = fecha desembolso + i meses
-            Date fechaVenc = sumarMeses(fechaBase, i);
+            Date fechaVenc = sumarMeses(fechaBase, primerMes + i - 1);
             c.setFechaVencimiento(fechaVenc);
 
             BigDecimal interes = saldo.multiply(tasaMensual)
@@ -124,6 +195,96 @@ public class CalculadoraCreditoService {
         return cuotas;
     }
 
+    /**
+     * Genera en paralelo los cronogramas de un lote de créditos (por ejemplo,
+     * toda la cartera al cambiar las tasas) usando todos los núcleos.
+     *
+     * @see #generarCronogramasEnLote(Collection, int, BiConsumer)
+     */
+    public ResultadoSimulacionLote generarCronogramasEnLote(
+            Collection<Credito> creditos,
+            BiConsumer<Credito, List<Cuota>> consumidor) {
+        return generarCronogramasEnLote(creditos,
+                Runtime.getRuntime().availableProcessors(), consumidor);
+    }
+
+    /**
+     * Genera en paralelo los cronogramas de un lote de créditos.
+     *
+     * Cada cronograma se entrega al consumidor apenas se calcula y no se
+     * guarda, así el lote completo nunca está en memoria a la vez. El
+     * consumidor se llama desde varios hilos al mismo tiempo y sin un orden
+     * fijo, por lo que debe ser seguro entre hilos. Los créditos con datos
+     * incompletos se entregan con una lista vacía.
+     *
+     * @param creditos    créditos a simular
+     * @param paralelismo cantidad de hilos (1 = secuencial en un hilo aparte)
+     * @param consumidor  recibe cada crédito con su cronograma generado
+     * @return contadores y rendimiento (créditos/s y cuotas/s) del lote
+     */
+    public ResultadoSimulacionLote generarCronogramasEnLote(
+            Collection<Credito> creditos,
+            int paralelismo,
+            BiConsumer<Credito, List<Cuota>> consumidor) {
+        return generarCronogramasCompactosEnLote(creditos, paralelismo,
+                (credito, cronograma) -> consumidor.accept(credito,
+                        (cronograma.tamano() == 0) ? new ArrayList<>() : cronograma.aCuotas()));
+    }
+
+    /**
+     * Igual que {@link #generarCronogramasEnLote(Collection, int, BiConsumer)},
+     * pero entrega cada cronograma en arreglos de centavos, sin crear objetos
+     * {@link Cuota}. Es la forma más rápida cuando solo se necesitan totales o
+     * montos (por ejemplo, el interés total de la cartera con una tasa nueva).
+     */
+    public ResultadoSimulacionLote generarCronogramasCompactosEnLote(
+            Collection<Credito> creditos,
+            int paralelismo,
+            BiConsumer<Credito, MotorCronogramaRapido.Cronograma> consumidor) {
+
+        int hilos = Math.max(1, paralelismo);
+        LongAdder procesados = new LongAdder();
+        LongAdder sinCronograma = new LongAdder();
+        LongAdder cuotas = new LongAdder();
+
+        long inicio = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(hilos);
+        try {
+            pool.submit(() -> creditos.parallelStream().forEach(credito -> {
+                MotorCronogramaRapido.Cronograma cronograma = generarCronogramaCompacto(credito);
+                procesados.increment();
+                if (cronograma.tamano() == 0) {
+                    sinCronograma.increment();
+                }
+                cuotas.add(cronograma.tamano());
+                consumidor.accept(credito, cronograma);
+            })).get();
+
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Simulación en lote interrumpida.", ex);
+        } catch (ExecutionException ex) {
+            Throwable causa = ex.getCause();
+            if (causa instanceof RuntimeException) {
+                throw (RuntimeException) causa;
+            }
+            if (causa instanceof Error) {
+                throw (Error) causa;
+            }
+            throw new IllegalStateException("Error en la simulación en lote.", causa);
+        } finally {
+            pool.shutdown();
+        }
+        long duracion = System.nanoTime() - inicio;
+
+        Metricas.registrarTiempo("simulacion.lote", duracion);
+        Metricas.sumar("simulacion.creditos", procesados.sum());
+        Metricas.sumar("simulacion.cuotas", cuotas.sum());
+
+        return new ResultadoSimulacionLote(procesados.sum(), sinCronograma.sum(),
+                cuotas.sum(), duracion, hilos);
+    }
+
     // =========================================================
     // 2. AMORTIZACIÓN EXTRAORDINARIA
     // =========================================================
@@ -188,8 +349,7 @@ public class CalculadoraCreditoService {
         if (tasaAnual == null) {
             tasaAnual = BigDecimal.ZERO;
         }
-        BigDecimal tasaMensual = tasaAnual
-                .divide(BigDecimal.valueOf(12 * 100.0), SCALE_INTERES, ROUND_MODE);
+        BigDecimal tasaMensual = tasaMensual(tasaAnual);
 
         // 3) Estrategia de recálculo según tipoReduccion
         if ("REDUCIR_CUOTA".equalsIgnoreCase(tipoReduccion)) {
@@ -279,77 +439,25 @@ public class CalculadoraCreditoService {
         if (tasaAnual == null) {
             tasaAnual = BigDecimal.ZERO;
         }
-        BigDecimal tasaMensual = tasaAnual
-                .divide(BigDecimal.valueOf(12 * 100.0), SCALE_INTERES, ROUND_MODE);
+        BigDecimal tasaMensual = tasaMensual(tasaAnual);
 
         int n = nuevoNumeroCuotas;
-        BigDecimal cuotaFija;
-
-        double P = saldoVivo.doubleValue();
-        double r = tasaMensual.doubleValue();
-        double nDouble = n;
-
-        if (r == 0.0) {
-            cuotaFija = saldoVivo
-                    .divide(BigDecimal.valueOf(n), SCALE_MONEDA, ROUND_MODE);
-        } else {
-            double cuotaDouble = P * r / (1 - Math.pow(1 + r, -nDouble));
-            cuotaFija = BigDecimal.valueOf(cuotaDouble)
-                    .setScale(SCALE_MONEDA, ROUND_MODE);
-        }
+        BigDecimal cuotaFija = calcularCuotaFija(saldoVivo, tasaMensual, n);
 
         // Base de fechas: la fecha de vencimiento de la primera cuota pendiente,
-        // y desde allí se van sumando meses.
+        // y desde allí se van sumando meses (la primera cuota usa la misma fecha).
         Date fechaBase = pendientes.get(0).getFechaVencimiento();
         if (fechaBase == null) {
             fechaBase = new Date();
         }
 
-        BigDecimal saldo = saldoVivo;
-
-        for (int i = 1; i <= n; i++) {
-            Cuota c = new Cuota();
-            c.setEstadoCuota("Pendiente");
-
-            // Para la primera cuota usamos la fecha de la primera pendiente;
-            // desde la segunda se suman meses.
-            Date fechaVenc = sumarMeses(fechaBase, i - 1);
-            c.setFechaVencimiento(fechaVenc);
-
-            BigDecimal interes = saldo.multiply(tasaMensual)
-                    .setScale(SCALE_MONEDA, ROUND_MODE);
-            BigDecimal capital = cuotaFija.subtract(interes)
-                    .setScale(SCALE_MONEDA, ROUND_MODE);
-
-            // Ajuste en la última cuota para dejar saldo en 0
-            if (i == n) {
-                capital = saldo;
-                cuotaFija = capital.add(interes).setScale(SCALE_MONEDA, ROUND_MODE);
-            }
-
-            saldo = saldo.subtract(capital).setScale(SCALE_MONEDA, ROUND_MODE);
-
-            c.setCapital(capital);
-            c.setInteres(interes);
-            c.setSeguroDegravamen(BigDecimal.ZERO);
-            c.setSegurosComisiones(BigDecimal.ZERO);
-            c.setItf(BigDecimal.ZERO);
-            c.setDias(30);
-            c.setMontoCuota(cuotaFija);
-            c.setSaldoCapital(saldo.compareTo(BigDecimal.ZERO) < 0 ? BigDecimal.ZERO : saldo);
-
-            nuevo.add(c);
+        MotorCronogramaRapido.Cronograma rapido = MotorCronogramaRapido.cuotaFija(
+                credito.getCodigoContrato(), saldoVivo, tasaMensual, cuotaFija, n, fechaBase, 0);
+        if (rapido != null) {
+            return rapido.aCuotas();
         }
-
-        // Numerar cuotas y asignar contrato
-        int nro = 1;
-        for (Cuota c : nuevo) {
-            c.setCodigoContrato(credito.getCodigoContrato());
-            c.setNroCuota(nro++);
-            c.setEstadoCuota("Pendiente");
-        }
-
-        return nuevo;
+        return generarCuotaFijaExacta(credito.getCodigoContrato(), saldoVivo,
+                tasaMensual, cuotaFija, n, fechaBase, 0);
     }
 
     // =========================================================
@@ -363,24 +471,17 @@ public class CalculadoraCreditoService {
     private List<Cuota> recalcularReduciendoCuota(BigDecimal principal,
                                                   BigDecimal tasaMensual,
                                                   List<Cuota> pendientes) {
-        List<Cuota> nuevo = new ArrayList<>();
-
         int n = pendientes.size();
-        BigDecimal cuotaFija;
-
-        double P = principal.doubleValue();
-        double r = tasaMensual.doubleValue();
-        double nDouble = n;
+        BigDecimal cuotaFija = calcularCuotaFija(principal, tasaMensual, n);
 
-        if (r == 0.0) {
-            cuotaFija = principal
-                    .divide(BigDecimal.valueOf(n), SCALE_MONEDA, ROUND_MODE);
-        } else {
-            double cuotaDouble = P * r / (1 - Math.pow(1 + r, -nDouble));
-            cuotaFija = BigDecimal.valueOf(cuotaDouble)
-                    .setScale(SCALE_MONEDA, ROUND_MODE);
+        MotorCronogramaRapido.Cronograma rapido = MotorCronogramaRapido.cuotaFija(
+                0, principal, tasaMensual, cuotaFija, pendientes);
+        if (rapido != null) {
+            return rapido.aCuotas();
         }
 
+        Metricas.incrementar("cronograma.calculo.bigdecimal");
+        List<Cuota> nuevo = new ArrayList<>();
         BigDecimal saldo = principal;
 
         for (int i = 0; i < n; i++) {
@@ -427,6 +528,13 @@ public class CalculadoraCreditoService {
                                                   BigDecimal tasaMensual,
                                                   List<Cuota> pendientes,
                                                   BigDecimal cuotaReferencia) {
+        MotorCronogramaRapido.Cronograma rapido = MotorCronogramaRapido.reduciendoPlazo(
+                0, principal, tasaMensual, cuotaReferencia, pendientes);
+        if (rapido != null) {
+            return rapido.aCuotas();
+        }
+
+        Metricas.incrementar("cronograma.calculo.bigdecimal");
         List<Cuota> nuevo = new ArrayList<>();
 
         BigDecimal saldo = principal;
@@ -498,6 +606,31 @@ public class CalculadoraCreditoService {
         return nuevo;
     }
 
+    /** TEA (en %) -> tasa mensual en escala {@link #SCALE_INTERES}. */
+    private static BigDecimal tasaMensual(BigDecimal tasaAnual) {
+        return tasaAnual.divide(BigDecimal.valueOf(12 * 100.0), SCALE_INTERES, ROUND_MODE);
+    }
+
+    /**
+     * Cuota fija del sistema francés: P * r / (1 - (1 + r)^-n), o P / n si
+     * la tasa es cero.
+     */
+    private static BigDecimal calcularCuotaFija(BigDecimal principal,
+                                                BigDecimal tasaMensual,
+                                                int n) {
+        double P = principal.doubleValue();
+        double r = tasaMensual.doubleValue();
+
+        if (r == 0.0) {
+            // Sin interés: dividir capital entre número de cuotas
+            return principal
+                    .divide(BigDecimal.valueOf(n), SCALE_MONEDA, ROUND_MODE);
+        }
+        double cuotaDouble = P * r / (1 - DESCUENTOS.obtener(tasaMensual, n));
+        return BigDecimal.valueOf(cuotaDouble)
+                .setScale(SCALE_MONEDA, ROUND_MODE);
+    }
+
     /**
      * Suma una cantidad de meses a una fecha base.
      *
@@ -40,6 +40,13 @@ CREATE TABLE cliente (
     scoring             NUMERIC(5,2) NOT NULL,
     -- 1 = activo, 0 = eliminado lógico
     estado_registro     SMALLINT     NOT NULL DEFAULT 1,
+    -- Cuotas en estado 'Vencida' de todos sus contratos; lo mantiene el
+    -- trigger trg_cronograma_estado_cliente (ver sp_recalcularestadostodosclientes)
+    cuotas_vencidas     INTEGER      NOT NULL DEFAULT 0,
+    estado_general      VARCHAR(10)  GENERATED ALWAYS AS (
+                            CASE WHEN cuotas_vencidas > 0
+                                 THEN 'Atrasado' ELSE 'Al Día' END
+                        ) STORED,
     CONSTRAINT pk_cliente PRIMARY KEY (codigo_cliente),
     CONSTRAINT chk_cliente_numero_documento
         CHECK (
@@ -208,6 +215,10 @@ CREATE TABLE cronograma_de_pago (
     monto_cuota        NUMERIC(8,2) NOT NULL,
     dias               INTEGER      NOT NULL,
     saldo_capital      NUMERIC(10,2) NOT NULL,
+    -- Acumulado de PAGO_CUOTA / PAGO_PARCIAL vigentes de la cuota; lo
+    -- mantiene el trigger trg_movimiento_pago_ai (ver fn_verificarmontospagados)
+    monto_pagado       NUMERIC(10,2) NOT NULL DEFAULT 0,
+    fecha_ultimo_pago  TIMESTAMP,
     CONSTRAINT pk_cronograma_de_pago
         PRIMARY KEY (nro_cuota, codigo_contrato),
     CONSTRAINT fk_cronograma_contrato
@@ -256,6 +267,12 @@ CREATE TABLE movimiento_pago (
                                 'CONDONACION','CANCELACION_TOTAL')),
     monto              NUMERIC(8,2) NOT NULL,
     usuario_registro   VARCHAR(50),
+    -- TRUE: el pago se aplicó al cronograma actual del contrato y cuenta en
+    -- su monto_pagado. Al reemplazar el cronograma (amortización,
+    -- reprogramación) los pagos del anterior pasan a FALSE: sus nro_cuota
+    -- ya no corresponden a las cuotas nuevas. Lo pagado de cada cuota
+    -- anterior queda en historial_cronograma_detalle.
+    vigente            BOOLEAN      NOT NULL DEFAULT TRUE,
     CONSTRAINT pk_movimiento_pago PRIMARY KEY (codigo_movimiento),
     CONSTRAINT fk_movimiento_contrato
         FOREIGN KEY (codigo_contrato)
@@ -300,6 +317,8 @@ CREATE TABLE historial_cronograma_detalle (
     monto_cuota              NUMERIC(10,2) NOT NULL,
     dias                     INTEGER       NOT NULL,
     saldo_capital            NUMERIC(10,2),
+    monto_pagado             NUMERIC(10,2) NOT NULL DEFAULT 0,
+    fecha_ultimo_pago        TIMESTAMP,
     CONSTRAINT pk_historial_cronograma_detalle
         PRIMARY KEY (codigo_historial_detalle),
     CONSTRAINT fk_historial_detalle_historial
@@ -309,16 +328,63 @@ CREATE TABLE historial_cronograma_detalle (
         ON DELETE CASCADE
 );
 
+-- Avance del recálculo de estados por tramos de codigo_cliente
+-- (RecalculoEstados / fn_recalcularestadostramo): una fila por tramo y
+-- fecha de proceso. Al reanudar una ejecución interrumpida solo se procesan
+-- los tramos PENDIENTE.
+CREATE TABLE recalculo_estados_tramo (
+    fecha_proceso        DATE        NOT NULL,
+    cliente_desde        INTEGER     NOT NULL,
+    cliente_hasta        INTEGER     NOT NULL,
+    estado               VARCHAR(10) NOT NULL DEFAULT 'PENDIENTE'
+                         CHECK (estado IN ('PENDIENTE','TERMINADO')),
+    cuotas_vencidas      INTEGER,
+    cuotas_al_dia        INTEGER,
+    contratos_cancelados INTEGER,
+    clientes_corregidos  INTEGER,
+    terminado_en         TIMESTAMP,
+    CONSTRAINT pk_recalculo_estados_tramo
+        PRIMARY KEY (fecha_proceso, cliente_desde)
+);
+
 -- Cliente
 CREATE INDEX idx_cliente_apellido_paterno
     ON cliente(apellido_paterno);
 
+-- text_pattern_ops: permite usar el índice en búsquedas por prefijo
+-- (numero_documento LIKE '4512%'); la igualdad ya la cubre el UNIQUE.
 CREATE INDEX idx_cliente_numero_documento
-    ON cliente(numero_documento);
+    ON cliente(numero_documento text_pattern_ops);
 
 CREATE INDEX idx_cliente_scoring
     ON cliente(scoring);
 
+-- Filtro por estado en el listado (ordenado por codigo_cliente)
+CREATE INDEX idx_cliente_estado_general
+    ON cliente(estado_general, codigo_cliente);
+
+-- Búsqueda por nombre con ILIKE '%texto%': índices trigram (pg_trgm).
+-- Si la extensión no se puede crear (sin permisos), la búsqueda sigue
+-- funcionando, solo que sin índice.
+DO $$
+BEGIN
+    BEGIN
+        CREATE EXTENSION IF NOT EXISTS pg_trgm;
+    EXCEPTION WHEN OTHERS THEN
+        RAISE NOTICE 'No se pudo crear pg_trgm: %', SQLERRM;
+    END;
+
+    IF EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm') THEN
+        EXECUTE 'CREATE INDEX IF NOT EXISTS idx_cliente_nombres_trgm '
+             || 'ON cliente USING gin (nombres gin_trgm_ops)';
+        EXECUTE 'CREATE INDEX IF NOT EXISTS idx_cliente_apellido_paterno_trgm '
+             || 'ON cliente USING gin (apellido_paterno gin_trgm_ops)';
+        EXECUTE 'CREATE INDEX IF NOT EXISTS idx_cliente_apellido_materno_trgm '
+             || 'ON cliente USING gin (apellido_materno gin_trgm_ops)';
+    END IF;
+END;
+$$;
+
 -- Solicitud
 CREATE INDEX idx_solicitud_fecha
     ON solicitud(fecha_solicitud);
@@ -329,6 +395,10 @@ CREATE INDEX idx_solicitud_monto
 CREATE INDEX idx_solicitud_estado
     ON solicitud(estado_solicitud);
 
+-- Contratos de un tramo de clientes (fn_recalcularestadostramo)
+CREATE INDEX idx_solicitud_cliente
+    ON solicitud(codigo_cliente);
+
 -- Pre_aprobacion
 CREATE INDEX idx_preaprobacion_estado
     ON pre_aprobacion(estado_solicitud);
@@ -343,10 +413,30 @@ CREATE INDEX idx_contrato_monto_desembolso
 CREATE INDEX idx_contrato_fecha_vigencia
     ON contrato(fecha_vigencia);
 
+CREATE INDEX idx_contrato_solicitud
+    ON contrato(codigo_solicitud);
+
 -- Cronograma
 CREATE INDEX idx_cronograma_monto_cuota
     ON cronograma_de_pago(monto_cuota);
 
+-- La PK empieza por nro_cuota; este índice sirve para buscar por contrato
+-- (y por estado dentro del contrato).
+CREATE INDEX idx_cronograma_contrato_estado
+    ON cronograma_de_pago(codigo_contrato, estado_cuota);
+
+-- Cuotas que todavía pueden vencer, por fecha (fn_marcarcuotasvencidas).
+-- Parcial: las Pagada / Vencida / Cerrada, que son la mayoría, no entran.
+-- Solo los contratos VIGENTE tienen cuotas Pendiente / PARCIAL: al salir de
+-- VIGENTE pasan a 'Cerrada' (trg_contrato_cierra_cuotas).
+CREATE INDEX idx_cronograma_por_vencer
+    ON cronograma_de_pago(fecha_vencimiento)
+    WHERE estado_cuota IN ('Pendiente', 'PARCIAL');
+
+-- Movimientos
+CREATE INDEX idx_movimiento_contrato_cuota
+    ON movimiento_pago(codigo_contrato, nro_cuota);
+
 -- Analista
 CREATE INDEX idx_analista_apellido_paterno
     ON analista(apellido_paterno);
@@ -387,6 +477,9 @@ DECLARE
     v_fecha_vencimiento          DATE;
     v_fecha_anterior             DATE;
     v_dias_mes                   INTEGER;
+    -- (1 + tasa diaria)^días, por número de días (un mes tiene 28 a 31)
+    v_factor_dias                NUMERIC[];
+    d                            INTEGER;
     i                            INTEGER;
 BEGIN
     -- 1) Obtener datos del contrato
@@ -426,6 +519,11 @@ BEGIN
           power(1 + v_tasa_mensual_cuota, v_numero_cuotas) ) /
         ( power(1 + v_tasa_mensual_cuota, v_numero_cuotas) - 1 );
 
+    -- power() una vez por cada largo de mes, no una vez por cuota
+    FOR d IN 28..31 LOOP
+        v_factor_dias[d] := power(1 + v_tasa_diaria_interes, d);
+    END LOOP;
+
     i := 1;
 
     -- 4) Generar cuotas
@@ -434,7 +532,8 @@ BEGIN
         v_dias_mes          := (v_fecha_vencimiento - v_fecha_anterior);
 
         v_interes_mes := v_saldo_pendiente *
-                         ( power(1 + v_tasa_diaria_interes, v_dias_mes) - 1 );
+                         ( COALESCE(v_factor_dias[v_dias_mes],
+                                    power(1 + v_tasa_diaria_interes, v_dias_mes)) - 1 );
         v_seguro_mes  := (v_saldo_pendiente * v_tasa_prima_seguro_mensual)
                          * (v_dias_mes / 30.0);
         v_itf_mes     := v_monto_cuota_fija * v_tasa_itf;
@@ -796,6 +895,9 @@ $$;
 -- ============================================================================
 -- sp_registrar_pago_cuota
 -- Inserta un movimiento de tipo PAGO_CUOTA
+-- Notifica en el canal cronograma_cambios (payload: codigo_contrato) para
+-- que las demás instancias de la aplicación descarten lo que tengan en caché.
+-- NOTIFY es transaccional: se entrega solo si la transacción se confirma.
 -- ============================================================================
 
 CREATE OR REPLACE PROCEDURE sp_registrar_pago_cuota(
@@ -843,40 +945,54 @@ BEGIN
            SET estado_contrato = 'CANCELADO'
          WHERE codigo_contrato = p_codigo_contrato;
     END IF;
+
+    PERFORM pg_notify('cronograma_cambios', p_codigo_contrato::text);
 END;
 $$;
 
 -- ============================================================================
--- sp_registrarpagoparcial
--- Distribuye un monto sobre varias cuotas (PAGO_PARCIAL)
+-- fn_registrarpagoparcial
+-- Distribuye un monto sobre varias cuotas (PAGO_PARCIAL) en una sola pasada:
+--   1) bloquea las cuotas del contrato desde la cuota de inicio,
+--   2) toma el saldo de cada una (monto_cuota - monto_pagado),
+--   3) reparte el monto con una suma acumulada (window) en orden de cuota,
+--   4) inserta todos los movimientos y actualiza todas las cuotas con un
+--      INSERT y un UPDATE de varias filas.
+-- Estado de cada cuota: 'Pagada' si queda cubierta; si no, 'Vencida' cuando
+-- fecha_vencimiento < CURRENT_DATE (el mismo criterio que
+-- fn_recalcularestadostramo) y 'PARCIAL' en otro caso.
+-- Devuelve una fila por cada cuota que recibió dinero.
+-- Notifica en cronograma_cambios (también cuando se llama desde
+-- sp_registrarpagoparcial).
 -- ============================================================================
 
-CREATE OR REPLACE PROCEDURE sp_registrarpagoparcial(
-    IN p_codigo_contrato  INTEGER,
-    IN p_nro_cuota_inicio INTEGER,
-    IN p_monto_pago       NUMERIC(10,2),
-    IN p_usuario          VARCHAR(50)
+CREATE OR REPLACE FUNCTION fn_registrarpagoparcial(
+    p_codigo_contrato  INTEGER,
+    p_nro_cuota_inicio INTEGER,
+    p_monto_pago       NUMERIC(10,2),
+    p_usuario          VARCHAR(50)
+)
+RETURNS TABLE (
+    cuota             INTEGER,
+    monto_aplicado    NUMERIC(10,2),
+    saldo_restante    NUMERIC(10,2),
+    estado_resultante VARCHAR(20)
 )
 LANGUAGE plpgsql
 AS $$
 DECLARE
-    v_monto_restante NUMERIC(10,2);
-    v_nro_cuota      INTEGER;
-    v_max_nro        INTEGER;
-    v_monto_cuota    NUMERIC(10,2);
-    v_estado_actual  VARCHAR(20);
-    v_pagado_actual  NUMERIC(10,2);
-    v_saldo_cuota    NUMERIC(10,2);
+    v_max_nro INTEGER;
+    v_inicio  INTEGER;
 BEGIN
     IF p_monto_pago <= 0 THEN
         RAISE EXCEPTION 'El monto a pagar debe ser mayor que cero'
         USING ERRCODE = '45000';
     END IF;
 
-    SELECT MAX(nro_cuota)
+    SELECT MAX(cp.nro_cuota)
     INTO v_max_nro
-    FROM cronograma_de_pago
-    WHERE codigo_contrato = p_codigo_contrato;
+    FROM cronograma_de_pago cp
+    WHERE cp.codigo_contrato = p_codigo_contrato;
 
     IF v_max_nro IS NULL THEN
         RAISE EXCEPTION 'El contrato % no tiene cronograma de pago',
@@ -884,91 +1000,106 @@ BEGIN
         USING ERRCODE = '45000';
     END IF;
 
-    v_monto_restante := p_monto_pago;
-    v_nro_cuota      := p_nro_cuota_inicio;
-
-    IF v_nro_cuota < 1 THEN
-        v_nro_cuota := 1;
-    END IF;
-    IF v_nro_cuota > v_max_nro THEN
-        v_nro_cuota := v_max_nro;
-    END IF;
-
-    WHILE v_nro_cuota <= v_max_nro AND v_monto_restante > 0 LOOP
-
-        SELECT  c.monto_cuota,
-                c.estado_cuota,
-                COALESCE(SUM(m.monto),0)
-        INTO    v_monto_cuota,
-                v_estado_actual,
-                v_pagado_actual
-        FROM cronograma_de_pago c
-        LEFT JOIN movimiento_pago m
-               ON m.codigo_contrato = c.codigo_contrato
-              AND m.nro_cuota       = c.nro_cuota
-              AND m.tipo_movimiento IN ('PAGO_CUOTA','PAGO_PARCIAL')
-        WHERE c.codigo_contrato = p_codigo_contrato
-          AND c.nro_cuota       = v_nro_cuota
-        GROUP BY c.monto_cuota, c.estado_cuota;
-
-        IF v_monto_cuota IS NULL THEN
-            EXIT;
-        END IF;
-
-        IF v_pagado_actual >= v_monto_cuota
-           OR v_estado_actual = 'Pagada' THEN
-            v_nro_cuota := v_nro_cuota + 1;
-            CONTINUE;
-        END IF;
-
-        v_saldo_cuota := v_monto_cuota - v_pagado_actual;
-
-        IF v_monto_restante >= v_saldo_cuota THEN
-            -- Completa la cuota
-            INSERT INTO movimiento_pago(
-                codigo_contrato, nro_cuota,
-                fecha_movimiento, tipo_movimiento,
-                monto, usuario_registro
-            ) VALUES (
-                p_codigo_contrato, v_nro_cuota,
-                CURRENT_TIMESTAMP, 'PAGO_PARCIAL',
-                v_saldo_cuota, p_usuario
-            );
-
-            UPDATE cronograma_de_pago
-            SET estado_cuota = 'Pagada'
-            WHERE codigo_contrato = p_codigo_contrato
-              AND nro_cuota       = v_nro_cuota;
-
-            v_monto_restante := v_monto_restante - v_saldo_cuota;
-            v_nro_cuota      := v_nro_cuota + 1;
-
-        ELSE
-            -- Solo parte de la cuota
-            INSERT INTO movimiento_pago(
-                codigo_contrato, nro_cuota,
-                fecha_movimiento, tipo_movimiento,
-                monto, usuario_registro
-            ) VALUES (
-                p_codigo_contrato, v_nro_cuota,
-                CURRENT_TIMESTAMP, 'PAGO_PARCIAL',
-                v_monto_restante, p_usuario
-            );
+    v_inicio := LEAST(GREATEST(p_nro_cuota_inicio, 1), v_max_nro);
+
+    -- Bloqueo previo: dos pagos simultáneos del mismo contrato se serializan
+    -- y el segundo ve lo que pagó el primero.
+    PERFORM 1
+      FROM cronograma_de_pago cp
+     WHERE cp.codigo_contrato = p_codigo_contrato
+       AND cp.nro_cuota >= v_inicio
+       FOR UPDATE;
+
+    PERFORM pg_notify('cronograma_cambios', p_codigo_contrato::text);
+
+    RETURN QUERY
+    WITH saldos AS (
+        SELECT cp.nro_cuota,
+               cp.fecha_vencimiento,
+               cp.monto_cuota - cp.monto_pagado AS saldo
+          FROM cronograma_de_pago cp
+         WHERE cp.codigo_contrato = p_codigo_contrato
+           AND cp.nro_cuota >= v_inicio
+           AND cp.estado_cuota NOT IN ('Pagada', 'Cerrada')
+           AND cp.monto_cuota > cp.monto_pagado
+    ),
+    acumulado AS (
+        SELECT s.nro_cuota,
+               s.fecha_vencimiento,
+               s.saldo,
+               SUM(s.saldo) OVER (ORDER BY s.nro_cuota) - s.saldo AS cubierto_antes
+          FROM saldos s
+    ),
+    asignacion AS (
+        SELECT a.nro_cuota,
+               a.fecha_vencimiento,
+               a.saldo,
+               LEAST(a.saldo, p_monto_pago - a.cubierto_antes) AS aplicado
+          FROM acumulado a
+         WHERE a.cubierto_antes < p_monto_pago
+    ),
+    movimientos AS (
+        INSERT INTO movimiento_pago(
+            codigo_contrato, nro_cuota,
+            fecha_movimiento, tipo_movimiento,
+            monto, usuario_registro
+        )
+        SELECT p_codigo_contrato, x.nro_cuota,
+               CURRENT_TIMESTAMP, 'PAGO_PARCIAL',
+               x.aplicado, p_usuario
+          FROM asignacion x
+        RETURNING nro_cuota
+    ),
+    actualizadas AS (
+        UPDATE cronograma_de_pago cp
+           SET estado_cuota = CASE WHEN x.aplicado >= x.saldo
+                                   THEN 'Pagada'
+                                   WHEN x.fecha_vencimiento < CURRENT_DATE
+                                   THEN 'Vencida'
+                                   ELSE 'PARCIAL' END
+          FROM asignacion x
+         WHERE cp.codigo_contrato = p_codigo_contrato
+           AND cp.nro_cuota       = x.nro_cuota
+        RETURNING cp.nro_cuota, cp.estado_cuota
+    )
+    SELECT x.nro_cuota,
+           x.aplicado::NUMERIC(10,2),
+           (x.saldo - x.aplicado)::NUMERIC(10,2),
+           u.estado_cuota::VARCHAR(20)
+      FROM asignacion x
+      JOIN actualizadas u ON u.nro_cuota = x.nro_cuota
+     WHERE EXISTS (SELECT 1 FROM movimientos mv WHERE mv.nro_cuota = x.nro_cuota)
+     ORDER BY x.nro_cuota;
+END;
+$$;
 
-            UPDATE cronograma_de_pago
-            SET estado_cuota = 'PARCIAL'
-            WHERE codigo_contrato = p_codigo_contrato
-              AND nro_cuota       = v_nro_cuota;
+-- ============================================================================
+-- sp_registrarpagoparcial
+-- Versión PROCEDURE (sin resultado) de fn_registrarpagoparcial
+-- (la notificación en cronograma_cambios la envía la función)
+-- ============================================================================
 
-            v_monto_restante := 0;
-        END IF;
-    END LOOP;
+CREATE OR REPLACE PROCEDURE sp_registrarpagoparcial(
+    IN p_codigo_contrato  INTEGER,
+    IN p_nro_cuota_inicio INTEGER,
+    IN p_monto_pago       NUMERIC(10,2),
+    IN p_usuario          VARCHAR(50)
+)
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    PERFORM *
+       FROM fn_registrarpagoparcial(p_codigo_contrato, p_nro_cuota_inicio,
+                                    p_monto_pago, p_usuario);
 END;
 $$;
 
 -- ============================================================================
 -- sp_archivarcronogramaactual
 -- Copia el cronograma actual a las tablas de historial
+-- Se llama antes de reemplazar el cronograma (amortización, reprogramación,
+-- refinanciación), en la misma transacción: la notificación en
+-- cronograma_cambios se entrega al confirmar, ya con el cronograma nuevo.
 -- ============================================================================
 
 CREATE OR REPLACE PROCEDURE sp_archivarcronogramaactual(
@@ -1013,7 +1144,9 @@ BEGIN
         itf,
         monto_cuota,
         dias,
-        saldo_capital
+        saldo_capital,
+        monto_pagado,
+        fecha_ultimo_pago
     )
     SELECT
         v_codigo_historial,
@@ -1028,14 +1161,19 @@ BEGIN
         cp.itf,
         cp.monto_cuota,
         cp.dias,
-        cp.saldo_capital
+        cp.saldo_capital,
+        cp.monto_pagado,
+        cp.fecha_ultimo_pago
     FROM cronograma_de_pago cp
     WHERE cp.codigo_contrato = p_codigo_contrato;
+
+    PERFORM pg_notify('cronograma_cambios', p_codigo_contrato::text);
 END;
 $$;
 
 -- ============================================================================
--- sp_recalcularestadocliente (dummy)
+-- sp_recalcularestadocliente
+-- Recalcula desde cero cuotas_vencidas (y con ello estado_general) de un cliente
 -- ============================================================================
 CREATE OR REPLACE PROCEDURE sp_recalcularestadocliente(
     IN p_codigo_cliente INTEGER
@@ -1043,46 +1181,329 @@ CREATE OR REPLACE PROCEDURE sp_recalcularestadocliente(
 LANGUAGE plpgsql
 AS $$
 BEGIN
-    -- Ya no actualiza una columna; el estado se calcula al vuelo en las consultas.
-    RAISE NOTICE 'sp_recalcularestadocliente(%) ejecutado (sin cambios).',
-                 p_codigo_cliente;
+    UPDATE cliente c
+       SET cuotas_vencidas = (
+               SELECT COUNT(*)
+                 FROM cronograma_de_pago cp
+                 JOIN contrato co ON cp.codigo_contrato = co.codigo_contrato
+                 JOIN solicitud s ON co.codigo_solicitud = s.codigo_solicitud
+                WHERE s.codigo_cliente = c.codigo_cliente
+                  AND cp.estado_cuota = 'Vencida'
+           )
+     WHERE c.codigo_cliente = p_codigo_cliente;
 END;
 $$;
 
 -- ============================================================================
--- sp_recalcularestadostodosclientes (cursor simple)
+-- sp_recalcularestadostodosclientes
+-- Reconstrucción masiva: un solo UPDATE que solo toca a los clientes
+-- cuyo conteo guardado no coincide con el real.
 -- ============================================================================
 CREATE OR REPLACE PROCEDURE sp_recalcularestadostodosclientes()
 LANGUAGE plpgsql
 AS $$
 DECLARE
-    v_codigo INTEGER;
+    v_corregidos INTEGER;
 BEGIN
-    FOR v_codigo IN
-        SELECT codigo_cliente FROM cliente
-    LOOP
-        CALL sp_recalcularestadocliente(v_codigo);
-    END LOOP;
+    WITH conteo AS (
+        SELECT s.codigo_cliente, COUNT(*)::INTEGER AS vencidas
+          FROM cronograma_de_pago cp
+          JOIN contrato co ON cp.codigo_contrato = co.codigo_contrato
+          JOIN solicitud s ON co.codigo_solicitud = s.codigo_solicitud
+         WHERE cp.estado_cuota = 'Vencida'
+         GROUP BY s.codigo_cliente
+    )
+    UPDATE cliente c
+       SET cuotas_vencidas = COALESCE(conteo.vencidas, 0)
+      FROM cliente c2
+      LEFT JOIN conteo ON conteo.codigo_cliente = c2.codigo_cliente
+     WHERE c.codigo_cliente = c2.codigo_cliente
+       AND c.cuotas_vencidas <> COALESCE(conteo.vencidas, 0);
+
+    GET DIAGNOSTICS v_corregidos = ROW_COUNT;
+    RAISE NOTICE 'sp_recalcularestadostodosclientes: % clientes corregidos.',
+                 v_corregidos;
 END;
 $$;
 
 -- ============================================================================
--- TRIGGER movimiento_pago AFTER INSERT
+-- fn_marcarcuotasvencidas
+-- Marca como 'Vencida' hasta p_limite cuotas Pendiente / PARCIAL con
+-- vencimiento anterior a p_fecha, y devuelve cuántas marcó. Todas son de
+-- contratos VIGENTE (las de los demás quedan 'Cerrada', ver
+-- trg_contrato_cierra_cuotas), así que no hace falta leer contrato: las
+-- candidatas salen solo de idx_cronograma_por_vencer; las que otra
+-- transacción tiene bloqueadas (un pago en curso) se saltan y quedan para
+-- la siguiente llamada. ProgramadorCuotasVencidas la llama por lotes, una
+-- transacción corta por lote, hasta que devuelve menos de p_limite.
+-- cliente.cuotas_vencidas se actualiza una sola vez por lote, agrupado por
+-- cliente y en orden de codigo_cliente (sin esperas cruzadas entre
+-- procesos); mientras tanto el trigger por fila queda apagado con
+-- cmh.conteo_vencidas_por_lote, solo en esta transacción.
 -- ============================================================================
+CREATE OR REPLACE FUNCTION fn_marcarcuotasvencidas(
+    p_fecha  DATE,
+    p_limite INTEGER
+)
+RETURNS INTEGER
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    v_marcadas   INTEGER;
+    v_clientes   INTEGER[];
+    v_cantidades INTEGER[];
+BEGIN
+    PERFORM set_config('cmh.conteo_vencidas_por_lote', 'on', true);
+
+    WITH lote AS (
+        SELECT cp.codigo_contrato, cp.nro_cuota
+          FROM cronograma_de_pago cp
+         WHERE cp.estado_cuota IN ('Pendiente', 'PARCIAL')
+           AND cp.fecha_vencimiento < p_fecha
+         LIMIT p_limite
+           FOR UPDATE SKIP LOCKED
+    ),
+    marcadas AS (
+        UPDATE cronograma_de_pago cp
+           SET estado_cuota = 'Vencida'
+          FROM lote
+         WHERE cp.codigo_contrato = lote.codigo_contrato
+           AND cp.nro_cuota       = lote.nro_cuota
+        RETURNING cp.codigo_contrato
+    ),
+    por_cliente AS (
+        SELECT s.codigo_cliente, COUNT(*)::INTEGER AS cantidad
+          FROM marcadas m
+          JOIN contrato co ON co.codigo_contrato = m.codigo_contrato
+          JOIN solicitud s ON s.codigo_solicitud = co.codigo_solicitud
+         GROUP BY s.codigo_cliente
+    )
+    SELECT (SELECT COUNT(*) FROM marcadas)::INTEGER,
+           array_agg(pc.codigo_cliente ORDER BY pc.codigo_cliente),
+           array_agg(pc.cantidad       ORDER BY pc.codigo_cliente)
+      INTO v_marcadas, v_clientes, v_cantidades
+      FROM por_cliente pc;
+
+    PERFORM set_config('cmh.conteo_vencidas_por_lote', 'off', true);
+
+    IF v_clientes IS NOT NULL THEN
+        -- Bloqueo en orden fijo y luego un solo UPDATE por lote
+        PERFORM 1
+           FROM cliente c
+          WHERE c.codigo_cliente = ANY (v_clientes)
+          ORDER BY c.codigo_cliente
+            FOR UPDATE;
+
+        UPDATE cliente c
+           SET cuotas_vencidas = c.cuotas_vencidas + x.cantidad
+          FROM unnest(v_clientes, v_cantidades) AS x(codigo_cliente, cantidad)
+         WHERE c.codigo_cliente = x.codigo_cliente;
+    END IF;
 
-CREATE OR REPLACE FUNCTION trg_movimiento_pago_ai_fn()
+    RETURN v_marcadas;
+END;
+$$;
+
+-- ============================================================================
+-- fn_recalcularestadostramo
+-- Recálculo de estados de los clientes p_desde..p_hasta (inclusive) a la
+-- fecha p_fecha, con sentencias de conjunto (lo usa RecalculoEstados, un
+-- tramo por transacción):
+--   1) cuotas Pendiente / PARCIAL de contratos VIGENTE con vencimiento
+--      anterior a p_fecha -> 'Vencida' (fn_registrarpagoparcial usa el
+--      mismo criterio con CURRENT_DATE: un pago incompleto no saca a una
+--      cuota de 'Vencida');
+--   2) cuotas 'Vencida' de contratos VIGENTE que ya no vencieron (p. ej.
+--      tras reprogramar) -> PARCIAL si tienen algo pagado, si no Pendiente;
+--   3) contratos VIGENTE con todas sus cuotas pagadas -> CANCELADO;
+--   4) cliente.cuotas_vencidas, solo donde no coincide con el conteo real
+--      (los triggers ya lo ajustan en 1 y 2; esto corrige desfases).
+-- Devuelve cuántas filas cambió cada paso. Si cambió alguna cuota,
+-- notifica a todos en cronograma_cambios.
+-- ============================================================================
+CREATE OR REPLACE FUNCTION fn_recalcularestadostramo(
+    p_desde INTEGER,
+    p_hasta INTEGER,
+    p_fecha DATE
+)
+RETURNS TABLE (
+    marcadas_vencidas     INTEGER,
+    devueltas_al_dia      INTEGER,
+    contratos_a_cancelado INTEGER,
+    clientes_ajustados    INTEGER
+)
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    UPDATE cronograma_de_pago cp
+       SET estado_cuota = 'Vencida'
+      FROM contrato co
+      JOIN solicitud s ON co.codigo_solicitud = s.codigo_solicitud
+     WHERE cp.codigo_contrato = co.codigo_contrato
+       AND s.codigo_cliente BETWEEN p_desde AND p_hasta
+       AND co.estado_contrato = 'VIGENTE'
+       AND cp.estado_cuota IN ('Pendiente', 'PARCIAL')
+       AND cp.fecha_vencimiento < p_fecha;
+    GET DIAGNOSTICS marcadas_vencidas = ROW_COUNT;
+
+    UPDATE cronograma_de_pago cp
+       SET estado_cuota = CASE WHEN cp.monto_pagado > 0
+                               THEN 'PARCIAL' ELSE 'Pendiente' END
+      FROM contrato co
+      JOIN solicitud s ON co.codigo_solicitud = s.codigo_solicitud
+     WHERE cp.codigo_contrato = co.codigo_contrato
+       AND s.codigo_cliente BETWEEN p_desde AND p_hasta
+       AND co.estado_contrato = 'VIGENTE'
+       AND cp.estado_cuota = 'Vencida'
+       AND cp.fecha_vencimiento >= p_fecha;
+    GET DIAGNOSTICS devueltas_al_dia = ROW_COUNT;
+
+    UPDATE contrato co
+       SET estado_contrato = 'CANCELADO'
+      FROM solicitud s
+     WHERE co.codigo_solicitud = s.codigo_solicitud
+       AND s.codigo_cliente BETWEEN p_desde AND p_hasta
+       AND co.estado_contrato = 'VIGENTE'
+       AND EXISTS (SELECT 1
+                     FROM cronograma_de_pago cp
+                    WHERE cp.codigo_contrato = co.codigo_contrato)
+       AND NOT EXISTS (SELECT 1
+                         FROM cronograma_de_pago cp
+                        WHERE cp.codigo_contrato = co.codigo_contrato
+                          AND cp.estado_cuota <> 'Pagada');
+    GET DIAGNOSTICS contratos_a_cancelado = ROW_COUNT;
+
+    WITH conteo AS (
+        SELECT s.codigo_cliente, COUNT(*)::INTEGER AS vencidas
+          FROM cronograma_de_pago cp
+          JOIN contrato co ON cp.codigo_contrato = co.codigo_contrato
+          JOIN solicitud s ON co.codigo_solicitud = s.codigo_solicitud
+         WHERE cp.estado_cuota = 'Vencida'
+           AND s.codigo_cliente BETWEEN p_desde AND p_hasta
+         GROUP BY s.codigo_cliente
+    )
+    UPDATE cliente c
+       SET cuotas_vencidas = COALESCE(conteo.vencidas, 0)
+      FROM cliente c2
+      LEFT JOIN conteo ON conteo.codigo_cliente = c2.codigo_cliente
+     WHERE c.codigo_cliente = c2.codigo_cliente
+       AND c2.codigo_cliente BETWEEN p_desde AND p_hasta
+       AND c.cuotas_vencidas <> COALESCE(conteo.vencidas, 0);
+    GET DIAGNOSTICS clientes_ajustados = ROW_COUNT;
+
+    IF marcadas_vencidas + devueltas_al_dia > 0 THEN
+        PERFORM pg_notify('cronograma_cambios', '0');
+    END IF;
+
+    RETURN NEXT;
+END;
+$$;
+
+-- ============================================================================
+-- TRIGGER cronograma_de_pago: mantiene cliente.cuotas_vencidas
+-- Solo se dispara cuando una cuota entra o sale del estado 'Vencida', así
+-- cubre los pagos (procedimientos y trigger de movimiento_pago), los
+-- reemplazos de cronograma y los cambios de estado hechos desde los DAO.
+-- fn_marcarcuotasvencidas lo apaga (cmh.conteo_vencidas_por_lote = 'on') y
+-- actualiza el contador ella misma, una vez por lote.
+-- ============================================================================
+
+CREATE OR REPLACE FUNCTION trg_cronograma_estado_cliente_fn()
 RETURNS trigger
 LANGUAGE plpgsql
 AS $$
+DECLARE
+    v_contrato INTEGER;
+    v_delta    INTEGER;
 BEGIN
-    IF NEW.tipo_movimiento = 'PAGO_CUOTA'
-       AND NEW.nro_cuota IS NOT NULL THEN
-        UPDATE cronograma_de_pago
-        SET estado_cuota = 'Pagada'
-        WHERE codigo_contrato = NEW.codigo_contrato
-          AND nro_cuota       = NEW.nro_cuota;
+    IF TG_OP = 'INSERT' THEN
+        v_contrato := NEW.codigo_contrato;
+        v_delta    := 1;
+    ELSIF TG_OP = 'DELETE' THEN
+        v_contrato := OLD.codigo_contrato;
+        v_delta    := -1;
+    ELSE
+        v_contrato := NEW.codigo_contrato;
+        v_delta    := CASE WHEN NEW.estado_cuota = 'Vencida' THEN 1 ELSE -1 END;
     END IF;
-    RETURN NEW;
+
+    UPDATE cliente c
+       SET cuotas_vencidas = GREATEST(c.cuotas_vencidas + v_delta, 0)
+      FROM contrato co
+      JOIN solicitud s ON co.codigo_solicitud = s.codigo_solicitud
+     WHERE co.codigo_contrato = v_contrato
+       AND c.codigo_cliente   = s.codigo_cliente;
+
+    RETURN NULL;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS trg_cronograma_estado_cliente_ai
+    ON cronograma_de_pago;
+DROP TRIGGER IF EXISTS trg_cronograma_estado_cliente_ad
+    ON cronograma_de_pago;
+DROP TRIGGER IF EXISTS trg_cronograma_estado_cliente_au
+    ON cronograma_de_pago;
+
+CREATE TRIGGER trg_cronograma_estado_cliente_ai
+AFTER INSERT ON cronograma_de_pago
+FOR EACH ROW
+WHEN (NEW.estado_cuota = 'Vencida')
+EXECUTE FUNCTION trg_cronograma_estado_cliente_fn();
+
+CREATE TRIGGER trg_cronograma_estado_cliente_ad
+AFTER DELETE ON cronograma_de_pago
+FOR EACH ROW
+WHEN (OLD.estado_cuota = 'Vencida')
+EXECUTE FUNCTION trg_cronograma_estado_cliente_fn();
+
+CREATE TRIGGER trg_cronograma_estado_cliente_au
+AFTER UPDATE OF estado_cuota ON cronograma_de_pago
+FOR EACH ROW
+WHEN ((OLD.estado_cuota = 'Vencida') <> (NEW.estado_cuota = 'Vencida')
+      AND current_setting('cmh.conteo_vencidas_por_lote', true)
+          IS DISTINCT FROM 'on')
+EXECUTE FUNCTION trg_cronograma_estado_cliente_fn();
+
+-- ============================================================================
+-- TRIGGER movimiento_pago AFTER INSERT (por sentencia)
+-- Suma los pagos insertados a monto_pagado / fecha_ultimo_pago de cada cuota
+-- y marca como 'Pagada' las cuotas con PAGO_CUOTA. Solo cuentan los pagos
+-- vigentes, con la misma regla que fn_verificarmontospagados. Al ser por sentencia,
+-- un INSERT de varias filas (fn_registrarpagoparcial) se aplica con un
+-- solo UPDATE agrupado por cuota.
+-- Notifica en cronograma_cambios una vez por contrato afectado (cubre
+-- también los pagos insertados directamente en movimiento_pago).
+-- ============================================================================
+
+CREATE OR REPLACE FUNCTION trg_movimiento_pago_ai_fn()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    UPDATE cronograma_de_pago cp
+       SET monto_pagado      = cp.monto_pagado + n.total,
+           fecha_ultimo_pago = GREATEST(cp.fecha_ultimo_pago, n.ultima_fecha),
+           estado_cuota      = CASE WHEN n.pago_cuota THEN 'Pagada'
+                                    ELSE cp.estado_cuota END
+      FROM (SELECT codigo_contrato,
+                   nro_cuota,
+                   SUM(monto)                          AS total,
+                   MAX(fecha_movimiento)               AS ultima_fecha,
+                   bool_or(tipo_movimiento = 'PAGO_CUOTA') AS pago_cuota
+              FROM nuevos
+             WHERE vigente
+               AND nro_cuota IS NOT NULL
+               AND tipo_movimiento IN ('PAGO_CUOTA','PAGO_PARCIAL')
+             GROUP BY codigo_contrato, nro_cuota) n
+     WHERE cp.codigo_contrato = n.codigo_contrato
+       AND cp.nro_cuota       = n.nro_cuota;
+
+    PERFORM pg_notify('cronograma_cambios', c.codigo_contrato::text)
+       FROM (SELECT DISTINCT codigo_contrato
+               FROM nuevos
+              WHERE tipo_movimiento IN ('PAGO_CUOTA','PAGO_PARCIAL')) c;
+    RETURN NULL;
 END;
 $$;
 
@@ -1091,9 +1512,118 @@ DROP TRIGGER IF EXISTS trg_movimiento_pago_ai
 
 CREATE TRIGGER trg_movimiento_pago_ai
 AFTER INSERT ON movimiento_pago
-FOR EACH ROW
+REFERENCING NEW TABLE AS nuevos
+FOR EACH STATEMENT
 EXECUTE FUNCTION trg_movimiento_pago_ai_fn();
 
+-- ============================================================================
+-- TRIGGER contrato: cierra las cuotas pendientes al salir de VIGENTE
+-- Cuando un contrato pasa a REFINANCIADO o CANCELADO, sus cuotas Pendiente /
+-- PARCIAL ya no se cobran: quedan 'Cerrada', un estado final que no vuelve
+-- a cambiar, y salen de idx_cronograma_por_vencer. Así fn_marcarcuotasvencidas
+-- no las vuelve a leer en cada ejecución. Las 'Vencida' se mantienen (siguen
+-- contando en cliente.cuotas_vencidas) y lo pagado no se toca.
+-- ============================================================================
+
+CREATE OR REPLACE FUNCTION trg_contrato_cierra_cuotas_fn()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    UPDATE cronograma_de_pago
+       SET estado_cuota = 'Cerrada'
+     WHERE codigo_contrato = NEW.codigo_contrato
+       AND estado_cuota IN ('Pendiente', 'PARCIAL');
+
+    PERFORM pg_notify('cronograma_cambios', NEW.codigo_contrato::text);
+    RETURN NULL;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS trg_contrato_cierra_cuotas
+    ON contrato;
+
+CREATE TRIGGER trg_contrato_cierra_cuotas
+AFTER UPDATE OF estado_contrato ON contrato
+FOR EACH ROW
+WHEN (OLD.estado_contrato = 'VIGENTE' AND NEW.estado_contrato <> 'VIGENTE')
+EXECUTE FUNCTION trg_contrato_cierra_cuotas_fn();
+
+-- ============================================================================
+-- fn_verificarmontospagados
+-- Compara monto_pagado / fecha_ultimo_pago de cada cuota con lo que dice
+-- movimiento_pago (la fuente de verdad) y devuelve las diferencias.
+-- Con p_corregir = TRUE además las reconstruye desde los movimientos.
+-- Solo cuentan los pagos vigentes (movimiento_pago.vigente): los del
+-- cronograma anterior a un reemplazo no se aplican a las cuotas nuevas
+-- aunque tengan el mismo nro_cuota.
+-- ============================================================================
+
+CREATE OR REPLACE FUNCTION fn_verificarmontospagados(
+    p_corregir BOOLEAN DEFAULT FALSE
+)
+RETURNS TABLE (
+    contrato_afectado       INTEGER,
+    cuota                   INTEGER,
+    monto_registrado        NUMERIC(10,2),
+    monto_segun_movimientos NUMERIC(10,2),
+    fecha_registrada        TIMESTAMP,
+    fecha_segun_movimientos TIMESTAMP
+)
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    RETURN QUERY
+    WITH libro AS (
+        SELECT m.codigo_contrato,
+               m.nro_cuota,
+               SUM(m.monto)            AS total,
+               MAX(m.fecha_movimiento) AS ultima_fecha
+          FROM movimiento_pago m
+         WHERE m.vigente
+           AND m.nro_cuota IS NOT NULL
+           AND m.tipo_movimiento IN ('PAGO_CUOTA','PAGO_PARCIAL')
+         GROUP BY m.codigo_contrato, m.nro_cuota
+    ),
+    diferencias AS (
+        SELECT cp.codigo_contrato,
+               cp.nro_cuota,
+               cp.monto_pagado,
+               COALESCE(l.total, 0) AS total,
+               cp.fecha_ultimo_pago,
+               l.ultima_fecha
+          FROM cronograma_de_pago cp
+          LEFT JOIN libro l
+                 ON l.codigo_contrato = cp.codigo_contrato
+                AND l.nro_cuota       = cp.nro_cuota
+         WHERE cp.monto_pagado <> COALESCE(l.total, 0)
+            OR cp.fecha_ultimo_pago IS DISTINCT FROM l.ultima_fecha
+    ),
+    corregidas AS (
+        UPDATE cronograma_de_pago cp
+           SET monto_pagado      = d.total,
+               fecha_ultimo_pago = d.ultima_fecha
+          FROM diferencias d
+         WHERE p_corregir
+           AND cp.codigo_contrato = d.codigo_contrato
+           AND cp.nro_cuota       = d.nro_cuota
+        RETURNING cp.nro_cuota
+    )
+    SELECT d.codigo_contrato,
+           d.nro_cuota,
+           d.monto_pagado,
+           d.total::NUMERIC(10,2),
+           d.fecha_ultimo_pago,
+           d.ultima_fecha
+      FROM diferencias d
+     ORDER BY d.codigo_contrato, d.nro_cuota;
+END;
+$$;
+""";
+
+    // Datos de prueba, en otro text block: una constante de la clase no puede
+    // pasar de 64 KB y el esquema solo ya se acerca a ese límite.
+    private static final String DATOS_SQL = """
 -- ============================================================================
 -- 3. INSERTS DE PRUEBA
 -- ============================================================================
@@ -1373,6 +1903,7 @@ $$;
 
     public static void ejecutar(Connection conn) throws SQLException {
         ejecutarScript(conn, SCHEMA_SQL);
+        ejecutarScript(conn, DATOS_SQL);
     }
 
     /**
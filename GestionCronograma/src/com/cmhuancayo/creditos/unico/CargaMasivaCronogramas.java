@@ -0,0 +1,241 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.function.IntUnaryOperator;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Escritura masiva de cuotas con COPY de PostgreSQL, para los procesos en
+ * lote (resimulación de cartera, migración desde el core anterior, campañas
+ * de refinanciamiento) que escriben millones de filas. COPY es mucho más
+ * rápido que INSERT por lotes de JDBC.
+ *
+ * <ul>
+ *     <li>Las cuotas se leen de un {@link Iterator} y se envían en formato
+ *         CSV por tramos de {@code filasPorTramo} filas; en memoria solo hay
+ *         un tramo a la vez.</li>
+ *     <li>El envío de cada tramo bloquea hasta que el socket lo acepta, y el
+ *         iterador no se avanza mientras tanto: si PostgreSQL va más lento, el
+ *         productor de cuotas espera (contrapresión), sin acumular filas.</li>
+ *     <li>Usa la conexión de {@link ConexionDB}: dentro de una
+ *         {@link UnidadDeTrabajo} la carga forma parte de su transacción.</li>
+ * </ul>
+ *
+ * COPY solo inserta: las cuotas de cronograma_de_pago no deben existir (por
+ * ejemplo, contratos nuevos o con el cronograma ya borrado). A diferencia de
+ * los DAO, los errores se lanzan como {@link SQLException}, porque estos
+ * procesos no tienen interfaz donde mostrarlos.
+ *
+ * Configuración (propiedades del sistema):
+ * <ul>
+ *     <li>cmh.copia.filasPorTramo (5000)</li>
+ * </ul>
+ */
+public class CargaMasivaCronogramas {
+
+    private static final int FILAS_POR_TRAMO =
+            Integer.getInteger("cmh.copia.filasPorTramo", 5_000);
+
+    private static final String COPY_CRONOGRAMA =
+            "COPY cronograma_de_pago " +
+            "(nro_cuota, codigo_contrato, estado_cuota, fecha_vencimiento, " +
+            " capital, interes, seguro_degravamen, seguros_comisiones, itf, " +
+            " monto_cuota, dias, saldo_capital) " +
+            "FROM STDIN WITH (FORMAT csv)";
+
+    private static final String COPY_HISTORIAL_DETALLE =
+            "COPY historial_cronograma_detalle " +
+            "(codigo_historial, nro_cuota, codigo_contrato, estado_cuota, fecha_vencimiento, " +
+            " capital, interes, seguro_degravamen, seguros_comisiones, itf, " +
+            " monto_cuota, dias, saldo_capital) " +
+            "FROM STDIN WITH (FORMAT csv)";
+
+    // Un solo aviso para todos los contratos (EscuchaCambiosCronograma.TODOS)
+    private static final String SQL_NOTIFICAR_TODOS =
+            "SELECT pg_notify('" + EscuchaCambiosCronograma.CANAL + "', '" +
+            EscuchaCambiosCronograma.TODOS + "')";
+
+    private final int filasPorTramo;
+
+    public CargaMasivaCronogramas() {
+        this(FILAS_POR_TRAMO);
+    }
+
+    /**
+     * @param filasPorTramo filas que se juntan antes de enviarlas al servidor
+     */
+    public CargaMasivaCronogramas(int filasPorTramo) {
+        if (filasPorTramo <= 0) {
+            throw new IllegalArgumentException("filasPorTramo debe ser mayor que 0.");
+        }
+        this.filasPorTramo = filasPorTramo;
+    }
+
+    /**
+     * Inserta las cuotas en cronograma_de_pago (cada una con su propio
+     * codigo_contrato). Al confirmar se limpia {@link CacheCronogramas} y se
+     * avisa a las demás instancias.
+     *
+     * @return cantidad de filas insertadas
+     */
+    public long cargarCronogramas(Iterator<Cuota> cuotas) throws SQLException {
+        long filas = copiar("cronogramas", COPY_CRONOGRAMA, cuotas, (sb, c) -> {
+            sb.append(c.getNroCuota()).append(',')
+              .append(c.getCodigoContrato()).append(',');
+            agregarCampos(sb, c, BigDecimal.ZERO);
+        }, true);
+        CacheCronogramas.limpiar();
+        return filas;
+    }
+
+    /**
+     * Inserta las cuotas en historial_cronograma_detalle.
+     *
+     * @param historialPorContrato codigo_historial (de
+     *                             historial_cambios_cronograma) al que va
+     *                             cada cuota, según su codigo_contrato
+     * @return cantidad de filas insertadas
+     */
+    public long cargarDetalleHistorial(Iterator<Cuota> cuotas,
+                                       IntUnaryOperator historialPorContrato) throws SQLException {
+        return copiar("historial", COPY_HISTORIAL_DETALLE, cuotas, (sb, c) -> {
+            sb.append(historialPorContrato.applyAsInt(c.getCodigoContrato())).append(',')
+              .append(c.getNroCuota()).append(',')
+              .append(c.getCodigoContrato()).append(',');
+            agregarCampos(sb, c, null);
+        }, false);
+    }
+
+    /* =========================================================
+     *  COPY
+     * ========================================================= */
+
+    /** Escribe una cuota como fila CSV (sin el salto de línea). */
+    private interface EscritorFila {
+        void escribir(StringBuilder sb, Cuota c);
+    }
+
+    private long copiar(String nombre,
+                        String sqlCopy,
+                        Iterator<Cuota> cuotas,
+                        EscritorFila escritor,
+                        boolean notificar) throws SQLException {
+        Connection cnx = ConexionDB.getConnection();
+        if (cnx == null) {
+            throw new SQLException("No hay conexión con la base de datos.");
+        }
+
+        long inicio = System.nanoTime();
+        long filas = 0;
+        CopyIn copia = null;
+        try {
+            CopyManager copyManager = cnx.unwrap(PGConnection.class).getCopyAPI();
+            copia = copyManager.copyIn(sqlCopy);
+
+            StringBuilder tramo = new StringBuilder(filasPorTramo * 96);
+            int enTramo = 0;
+            while (cuotas.hasNext()) {
+                escritor.escribir(tramo, cuotas.next());
+                tramo.append('\n');
+                filas++;
+                if (++enTramo == filasPorTramo) {
+                    enviar(copia, tramo);
+                    enTramo = 0;
+                }
+            }
+            if (enTramo > 0) {
+                enviar(copia, tramo);
+            }
+            copia.endCopy();
+            copia = null;
+
+            if (notificar && filas > 0) {
+                try (Statement st = cnx.createStatement()) {
+                    st.execute(SQL_NOTIFICAR_TODOS);
+                }
+            }
+            Metricas.sumar("copia." + nombre + ".filas", filas);
+            return filas;
+
+        } finally {
+            if (copia != null && copia.isActive()) {
+                try {
+                    copia.cancelCopy();
+                } catch (SQLException ignored) {}
+            }
+            Metricas.registrarTiempo("copia." + nombre, System.nanoTime() - inicio);
+            ConexionDB.close(cnx);
+        }
+    }
+
+    private static void enviar(CopyIn copia, StringBuilder tramo) throws SQLException {
+        byte[] datos = tramo.toString().getBytes(StandardCharsets.UTF_8);
+        copia.writeToCopy(datos, 0, datos.length);
+        tramo.setLength(0);
+    }
+
+    /**
+     * Columnas desde estado_cuota hasta saldo_capital. Los seguros y el ITF
+     * nulos van en 0, como en {@link CuotaDAO#actualizarCronogramaCompleto};
+     * el saldo nulo va como {@code saldoNulo} (null = campo vacío, NULL en CSV).
+     */
+    private static void agregarCampos(StringBuilder sb, Cuota c, BigDecimal saldoNulo) {
+        agregarTexto(sb, c.getEstadoCuota());
+        sb.append(',');
+        agregarFecha(sb, c.getFechaVencimiento());
+        sb.append(',');
+        agregarMonto(sb, c.getCapital(), null);
+        sb.append(',');
+        agregarMonto(sb, c.getInteres(), null);
+        sb.append(',');
+        agregarMonto(sb, c.getSeguroDegravamen(), BigDecimal.ZERO);
+        sb.append(',');
+        agregarMonto(sb, c.getSegurosComisiones(), BigDecimal.ZERO);
+        sb.append(',');
+        agregarMonto(sb, c.getItf(), BigDecimal.ZERO);
+        sb.append(',');
+        agregarMonto(sb, c.getMontoCuota(), null);
+        sb.append(',');
+        sb.append(c.getDias());
+        sb.append(',');
+        agregarMonto(sb, c.getSaldoCapital(), saldoNulo);
+    }
+
+    private static void agregarMonto(StringBuilder sb, BigDecimal valor, BigDecimal siNulo) {
+        BigDecimal v = (valor != null) ? valor : siNulo;
+        if (v != null) {
+            sb.append(v.toPlainString());
+        }
+    }
+
+    /** Misma fecha que se guarda con setDate (zona horaria local). */
+    private static void agregarFecha(StringBuilder sb, Date fecha) {
+        if (fecha != null) {
+            sb.append(new java.sql.Date(fecha.getTime()).toLocalDate());
+        }
+    }
+
+    /** Texto entre comillas; las comillas internas se duplican. */
+    private static void agregarTexto(StringBuilder sb, String texto) {
+        if (texto == null) {
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < texto.length(); i++) {
+            char ch = texto.charAt(i);
+            if (ch == '"') {
+                sb.append('"');
+            }
+            sb.append(ch);
+        }
+        sb.append('"');
+    }
+}
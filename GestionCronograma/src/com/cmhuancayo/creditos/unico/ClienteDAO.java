@@ -5,6 +5,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -15,7 +16,7 @@ import javax.swing.JOptionPane;
  *
  * Encargado de:
  * <ul>
- *     <li>Buscar clientes con filtros.</li>
+ *     <li>Buscar clientes con filtros, paginado por cursor.</li>
  *     <li>Registrar un cliente completo usando el procedimiento almacenado.</li>
  *     <li>Actualizar datos básicos del cliente (nombres / teléfono).</li>
  *     <li>Eliminar lógicamente un cliente.</li>
@@ -25,96 +26,192 @@ import javax.swing.JOptionPane;
  */
 public class ClienteDAO {
 
-    /**
-     * Busca clientes aplicando filtros por nombre, DNI y estado de sus créditos.
-     */
-    public List<Cliente> buscarClientes(String nombre, String dni, String estado) {
-        List<Cliente> clientes = new ArrayList<>();
-        Connection cnx = null;
-        PreparedStatement ps = null;
-        ResultSet rs = null;
+    // IMPORTANTE: usar CALL directo para que PostgreSQL lo trate como PROCEDURE
+    private static final String SQL_REGISTRAR_CLIENTE = "CALL sp_registrarclientecompleto(?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
+    private static final String SQL_ACTUALIZAR_CLIENTE =
+            "UPDATE cliente " +
+            "SET nombres = ?, apellido_paterno = ? " +
+            "WHERE numero_documento = ?";
+
+    private static final String SQL_ACTUALIZAR_TELEFONO =
+            "UPDATE telefono_cliente " +
+            "SET telefono_celular = ? " +
+            "WHERE codigo_cliente = ?";
+
+    private static final String SQL_INSERTAR_TELEFONO =
+            "INSERT INTO telefono_cliente (codigo_cliente, telefono_celular) " +
+            "VALUES (?, ?)";
+
+    private static final String SQL_ELIMINAR_CLIENTE = "CALL sp_eliminarclientelogico(?)";
 
-        // Subconsulta que calcula el estado general del cliente.
-        String estadoSubquery =
-            " (SELECT CASE WHEN COUNT(*) > 0 THEN 'Atrasado' ELSE 'Al Día' END " +
-            "    FROM cronograma_de_pago cp " +
-            "    JOIN contrato co ON cp.codigo_contrato = co.codigo_contrato " +
-            "    JOIN solicitud s ON co.codigo_solicitud = s.codigo_solicitud " +
-            "   WHERE s.codigo_cliente = c.codigo_cliente " +
-            "     AND cp.estado_cuota = 'Vencida' " +
-            "     AND cp.fecha_vencimiento < CURRENT_DATE" +
-            "  ) ";
-
-        StringBuilder sql = new StringBuilder(
+    private static final String SQL_SELECT_CLIENTE =
             "SELECT " +
             "    c.codigo_cliente, " +
             "    c.nombres, " +
             "    c.apellido_paterno, " +
             "    c.numero_documento, " +
             "    t.telefono_celular, " +
-            estadoSubquery + " AS estado_general " +
+            "    c.estado_general " +
             "FROM cliente c " +
-            "LEFT JOIN telefono_cliente t ON c.codigo_cliente = t.codigo_cliente " +
-            "WHERE 1 = 1 " +
-            "  AND COALESCE(c.estado_registro, 1) = 1 "
-        );
+            "LEFT JOIN telefono_cliente t ON c.codigo_cliente = t.codigo_cliente ";
 
-        // Filtro por nombre / apellidos
-        if (nombre != null && !nombre.trim().isEmpty()) {
-            sql.append(" AND (c.nombres ILIKE ? " +
-                       "      OR c.apellido_paterno ILIKE ? " +
-                       "      OR COALESCE(c.apellido_materno, '') ILIKE ?) ");
-        }
+    /** Tamaño máximo de página permitido en la búsqueda paginada. */
+    private static final int MAXIMO_POR_PAGINA = 500;
 
-        // Filtro por DNI
-        if (dni != null && !dni.trim().isEmpty()) {
-            sql.append(" AND c.numero_documento LIKE ? ");
-        }
+    /**
+     * Busca clientes por páginas, ordenados por codigo_cliente.
+     *
+     * <ul>
+     *     <li>nombre: contenido en nombres o apellidos, sin distinguir mayúsculas
+     *         (usa los índices trigram de pg_trgm).</li>
+     *     <li>dni: prefijo del número de documento (usa el índice text_pattern_ops).</li>
+     *     <li>estado: "Al Día" / "Atrasado" / "Todos"; se lee de la columna
+     *         mantenida cliente.estado_general (índice idx_cliente_estado_general).</li>
+     * </ul>
+     *
+     * @param despuesDe    cursor de la página anterior
+     *                     ({@link PaginaClientes#getCursorSiguiente()}), o null para la primera
+     * @param tamanoPagina cantidad de clientes por página (1 a 500)
+     * @return la página; si hubo un error, una página vacía sin cursor
+     */
+    public PaginaClientes buscarClientesPaginado(String nombre,
+                                                 String dni,
+                                                 String estado,
+                                                 Integer despuesDe,
+                                                 int tamanoPagina) {
+        return buscarClientesPaginado(nombre, dni, estado, despuesDe, tamanoPagina, null);
+    }
 
-        // Filtro por estado ("Al Día" / "Atrasado")
-        if (estado != null && !estado.equals("Todos")) {
-            sql.append(" AND ").append(estadoSubquery).append(" = ? ");
+    /**
+     * Igual que {@link #buscarClientesPaginado(String, String, String, Integer, int)},
+     * pero la consulta se puede cancelar desde otro hilo con
+     * {@link ConsultaCancelable#cancelar()} (p. ej. cuando el usuario sigue
+     * escribiendo y la búsqueda ya no sirve).
+     *
+     * @param consulta control de cancelación, o null
+     * @return la página; null si la consulta se canceló; si hubo un error
+     *         (también sin conexión), una página vacía sin cursor
+     */
+    public PaginaClientes buscarClientesPaginado(String nombre,
+                                                 String dni,
+                                                 String estado,
+                                                 Integer despuesDe,
+                                                 int tamanoPagina,
+                                                 ConsultaCancelable consulta) {
+        List<Cliente> clientes = new ArrayList<>();
+        Integer cursorSiguiente = null;
+        Connection cnx = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+
+        int limite = Math.max(1, Math.min(tamanoPagina, MAXIMO_POR_PAGINA));
+
+        // estado_general lo mantiene la BD (trigger sobre cronograma_de_pago)
+        StringBuilder sql = new StringBuilder(SQL_SELECT_CLIENTE + "WHERE COALESCE(c.estado_registro, 1) = 1 ");
+        agregarFiltros(sql, nombre, dni, estado);
+
+        // Cursor: solo clientes posteriores al último de la página anterior
+        if (despuesDe != null) {
+            sql.append(" AND c.codigo_cliente > ? ");
         }
 
-        sql.append(" ORDER BY c.codigo_cliente LIMIT 100");
+        // Se pide una fila de más para saber si hay otra página
+        sql.append(" ORDER BY c.codigo_cliente LIMIT ?");
 
         try {
             cnx = ConexionDB.getConnection();
+            if (cnx == null) {
+                // getConnection ya avisó al usuario; sin cursor, no se pide otra página
+                return new PaginaClientes(clientes, null);
+            }
             ps = cnx.prepareStatement(sql.toString());
 
-            int idx = 1;
+            int idx = asignarFiltros(ps, 1, nombre, dni, estado);
 
-            if (nombre != null && !nombre.trim().isEmpty()) {
-                String like = "%" + nombre.trim() + "%";
-                ps.setString(idx++, like);
-                ps.setString(idx++, like);
-                ps.setString(idx++, like);
+            if (despuesDe != null) {
+                ps.setInt(idx++, despuesDe);
             }
 
-            if (dni != null && !dni.trim().isEmpty()) {
-                ps.setString(idx++, "%" + dni.trim() + "%");
+            ps.setInt(idx++, limite + 1);
+
+            if (consulta != null && !consulta.registrar(ps)) {
+                return null;
+            }
+            rs = ps.executeQuery();
+            while (rs.next()) {
+                if (clientes.size() == limite) {
+                    cursorSiguiente = clientes.get(limite - 1).getCodigoCliente();
+                    break;
+                }
+                clientes.add(mapearCliente(rs));
             }
 
-            if (estado != null && !estado.equals("Todos")) {
-                ps.setString(idx++, estado);
+        } catch (SQLException e) {
+            // Cancelada a propósito (SQLState 57014): no es un error
+            if (consulta != null && consulta.isCancelada()) {
+                return null;
+            }
+            MensajesUI.mostrar(
+                null,
+                "Error al buscar clientes: " + e.getMessage(),
+                "Error SQL",
+                JOptionPane.ERROR_MESSAGE
+            );
+        } finally {
+            if (consulta != null) {
+                consulta.liberar();
             }
+            try {
+                if (rs != null) rs.close();
+                if (ps != null) ps.close();
+            } catch (SQLException ignore) {}
+            ConexionDB.close(cnx);
+        }
+        if (consulta != null && consulta.isCancelada()) {
+            return null;
+        }
+        return new PaginaClientes(clientes, cursorSiguiente);
+    }
+
+    /**
+     * Clientes con los códigos indicados, ordenados por codigo_cliente. Los
+     * que ya no existan simplemente no vienen.
+     *
+     * @return los clientes; si hubo un error, lista vacía
+     */
+    public List<Cliente> listarPorCodigos(int[] codigos) {
+        List<Cliente> clientes = new ArrayList<>(codigos.length);
+        if (codigos.length == 0) {
+            return clientes;
+        }
+        Connection cnx = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            cnx = ConexionDB.getConnection();
+            if (cnx == null) {
+                return clientes; // getConnection ya avisó al usuario
+            }
+            ps = cnx.prepareStatement(SQL_SELECT_CLIENTE
+                    + "WHERE c.codigo_cliente = ANY(?) ORDER BY c.codigo_cliente");
+
+            Integer[] valores = new Integer[codigos.length];
+            for (int i = 0; i < codigos.length; i++) {
+                valores[i] = codigos[i];
+            }
+            ps.setArray(1, cnx.createArrayOf("integer", valores));
 
             rs = ps.executeQuery();
             while (rs.next()) {
-                Cliente c = new Cliente();
-                c.setCodigoCliente(rs.getInt("codigo_cliente"));
-                c.setNombres(rs.getString("nombres"));
-                c.setApellidoPaterno(rs.getString("apellido_paterno"));
-                c.setNumeroDocumento(rs.getString("numero_documento"));
-                c.setTelefono(rs.getString("telefono_celular"));
-                c.setEstadoGeneral(rs.getString("estado_general"));
-                clientes.add(c);
+                clientes.add(mapearCliente(rs));
             }
 
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(
+            clientes.clear();
+            MensajesUI.mostrar(
                 null,
-                "Error al buscar clientes: " + e.getMessage(),
+                "Error al cargar clientes: " + e.getMessage(),
                 "Error SQL",
                 JOptionPane.ERROR_MESSAGE
             );
@@ -128,6 +225,65 @@ public class ClienteDAO {
         return clientes;
     }
 
+    /**
+     * Agrega al WHERE los filtros de búsqueda que tengan valor:
+     * nombre / apellidos (contiene; apellido_materno NULL no coincide),
+     * DNI (prefijo) y estado ("Al Día" / "Atrasado").
+     */
+    private static void agregarFiltros(StringBuilder sql, String nombre, String dni, String estado) {
+        if (nombre != null && !nombre.trim().isEmpty()) {
+            sql.append(" AND (c.nombres ILIKE ? " +
+                       "      OR c.apellido_paterno ILIKE ? " +
+                       "      OR c.apellido_materno ILIKE ?) ");
+        }
+        if (dni != null && !dni.trim().isEmpty()) {
+            sql.append(" AND c.numero_documento LIKE ? ");
+        }
+        if (estado != null && !estado.equals("Todos")) {
+            sql.append(" AND c.estado_general = ? ");
+        }
+    }
+
+    /**
+     * Asigna los parámetros de {@link #agregarFiltros}, en el mismo orden.
+     *
+     * @return índice del siguiente parámetro
+     */
+    private static int asignarFiltros(PreparedStatement ps, int idx,
+                                      String nombre, String dni, String estado) throws SQLException {
+        if (nombre != null && !nombre.trim().isEmpty()) {
+            String like = "%" + escaparLike(nombre.trim()) + "%";
+            ps.setString(idx++, like);
+            ps.setString(idx++, like);
+            ps.setString(idx++, like);
+        }
+        if (dni != null && !dni.trim().isEmpty()) {
+            ps.setString(idx++, escaparLike(dni.trim()) + "%");
+        }
+        if (estado != null && !estado.equals("Todos")) {
+            ps.setString(idx++, estado);
+        }
+        return idx;
+    }
+
+    private static Cliente mapearCliente(ResultSet rs) throws SQLException {
+        Cliente c = new Cliente();
+        c.setCodigoCliente(rs.getInt("codigo_cliente"));
+        c.setNombres(rs.getString("nombres"));
+        c.setApellidoPaterno(rs.getString("apellido_paterno"));
+        c.setNumeroDocumento(rs.getString("numero_documento"));
+        c.setTelefono(rs.getString("telefono_celular"));
+        c.setEstadoGeneral(rs.getString("estado_general"));
+        return c;
+    }
+
+    /**
+     * Escapa los comodines de LIKE (% y _) escritos por el usuario.
+     */
+    private static String escaparLike(String texto) {
+        return texto.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
     /**
      * Registra un cliente completo usando el procedimiento
      * sp_registrarclientecompleto (PostgreSQL PROCEDURE).
@@ -161,12 +317,9 @@ public class ClienteDAO {
         Connection cnx = null;
         PreparedStatement ps = null;
 
-        // IMPORTANTE: usar CALL directo para que PostgreSQL lo trate como PROCEDURE
-        String sql = "CALL sp_registrarclientecompleto(?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
-
         try {
             cnx = ConexionDB.getConnection();
-            ps = cnx.prepareStatement(sql);
+            ps = cnx.prepareStatement(SQL_REGISTRAR_CLIENTE);
 
             if (fechaNac == null) {
                 fechaNac = new Date();
@@ -213,7 +366,7 @@ public class ClienteDAO {
             return true;
 
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(
+            MensajesUI.mostrar(
                 null,
                 "Error SQL al registrar cliente: " + e.getMessage(),
                 "Error",
@@ -236,25 +389,11 @@ public class ClienteDAO {
         PreparedStatement psCliente = null;
         PreparedStatement psTelefono = null;
 
-        String sqlCliente =
-            "UPDATE cliente " +
-            "SET nombres = ?, apellido_paterno = ? " +
-            "WHERE numero_documento = ?";
-
-        String sqlTelefonoUpdate =
-            "UPDATE telefono_cliente " +
-            "SET telefono_celular = ? " +
-            "WHERE codigo_cliente = ?";
-
-        String sqlTelefonoInsert =
-            "INSERT INTO telefono_cliente (codigo_cliente, telefono_celular) " +
-            "VALUES (?, ?)";
-
         try {
             cnx = ConexionDB.getConnection();
             cnx.setAutoCommit(false);
 
-            psCliente = cnx.prepareStatement(sqlCliente);
+            psCliente = cnx.prepareStatement(SQL_ACTUALIZAR_CLIENTE);
             psCliente.setString(1, cliente.getNombres());
             psCliente.setString(2, cliente.getApellidoPaterno());
             psCliente.setString(3, cliente.getNumeroDocumento());
@@ -262,14 +401,14 @@ public class ClienteDAO {
 
             if (cliente.getTelefono() != null && !cliente.getTelefono().isEmpty()) {
 
-                psTelefono = cnx.prepareStatement(sqlTelefonoUpdate);
+                psTelefono = cnx.prepareStatement(SQL_ACTUALIZAR_TELEFONO);
                 psTelefono.setString(1, cliente.getTelefono());
                 psTelefono.setInt(2, cliente.getCodigoCliente());
                 int filasTel = psTelefono.executeUpdate();
                 psTelefono.close();
 
                 if (filasTel == 0) {
-                    psTelefono = cnx.prepareStatement(sqlTelefonoInsert);
+                    psTelefono = cnx.prepareStatement(SQL_INSERTAR_TELEFONO);
                     psTelefono.setInt(1, cliente.getCodigoCliente());
                     psTelefono.setString(2, cliente.getTelefono());
                     psTelefono.executeUpdate();
@@ -284,7 +423,7 @@ public class ClienteDAO {
                 if (cnx != null) cnx.rollback();
             } catch (SQLException ignore) {}
 
-            JOptionPane.showMessageDialog(
+            MensajesUI.mostrar(
                 null,
                 "Error SQL al actualizar cliente: " + e.getMessage(),
                 "Error",
@@ -308,17 +447,15 @@ public class ClienteDAO {
     public boolean eliminarClienteLogico(int codigoCliente) {
         Connection cnx = null;
         PreparedStatement ps = null;
-        String sql = "CALL sp_eliminarclientelogico(?)";
-
         try {
             cnx = ConexionDB.getConnection();
-            ps = cnx.prepareStatement(sql);
+            ps = cnx.prepareStatement(SQL_ELIMINAR_CLIENTE);
             ps.setInt(1, codigoCliente);
             ps.executeUpdate();
             return true;
 
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(
+            MensajesUI.mostrar(
                 null,
                 "Error SQL al eliminar lógicamente cliente: " + e.getMessage(),
                 "Error",
@@ -334,7 +471,40 @@ public class ClienteDAO {
         }
     }
 
+    /**
+     * Recalcula a hoy el estado de cuotas ('Vencida'), contratos y clientes
+     * ("Al Día" / "Atrasado") con {@link RecalculoEstados}: por tramos de
+     * clientes y en paralelo. Es el mismo proceso que se ejecuta de noche,
+     * pero forzado (recalcula todos los clientes aunque el de hoy ya haya
+     * terminado); desde la interfaz sirve para corregir los estados tras
+     * cargas masivas o cambios hechos fuera de la aplicación.
+     *
+     * Bloquea hasta terminar: llamarlo con {@link EjecutorTareas}.
+     *
+     * @return true si se procesaron todos los tramos
+     */
     public boolean recalcularEstadosCreditos() {
-        return true;
+        try {
+            ResultadoRecalculoEstados resultado = new RecalculoEstados().ejecutar(LocalDate.now(), true, null);
+            if (!resultado.getErrores().isEmpty()) {
+                MensajesUI.mostrar(
+                    null,
+                    "Error SQL al recalcular estados de clientes: "
+                            + resultado.getErrores().values().iterator().next(),
+                    "Error",
+                    JOptionPane.ERROR_MESSAGE
+                );
+            }
+            return resultado.isCompleto();
+
+        } catch (SQLException e) {
+            MensajesUI.mostrar(
+                null,
+                "Error SQL al recalcular estados de clientes: " + e.getMessage(),
+                "Error",
+                JOptionPane.ERROR_MESSAGE
+            );
+            return false;
+        }
     }
 }
@@ -3,6 +3,7 @@ package com.cmhuancayo.creditos.unico;
 import javax.swing.table.AbstractTableModel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * TableModel para mostrar la lista de clientes en la tabla de la interfaz.
@@ -16,13 +17,54 @@ import java.util.List;
  *     <li>Teléfono</li>
  *     <li>Estado (Al Día / Atrasado)</li>
  * </ol>
+ *
+ * El modelo recibe la primera página del resultado
+ * ({@link ClienteDAO#buscarClientesPaginado}) y pide las siguientes, de
+ * {@value #TAMANO_PAGINA} clientes, con el cursor de la anterior a medida
+ * que la tabla se desplaza. Así la búsqueda solo lee una página y se puede
+ * recorrer todo el resultado sin tenerlo entero en memoria:
+ * <ul>
+ *     <li>de cada página conocida se guarda el cursor con el que empieza
+ *         (el último codigo_cliente de la anterior); sus filas se descartan
+ *         cuando queda a más de {@value #DISTANCIA_MAXIMA} páginas de la
+ *         última pintada y se vuelven a pedir con ese cursor si se vuelve a
+ *         mostrar. En memoria hay a lo sumo 2 x {@value #DISTANCIA_MAXIMA} + 1
+ *         páginas (unas 1100 filas) más un entero por página recorrida;</li>
+ *     <li>las páginas se cargan en segundo plano ({@link EjecutorTareas}),
+ *         una a la vez; mientras tanto la fila muestra "Cargando...". Si la
+ *         barra se arrastra rápido, de lo pedido mientras tanto solo se
+ *         carga la última página;</li>
+ *     <li>la página siguiente se pide cuando se pinta alguna de las últimas
+ *         {@value #ANTICIPO} filas conocidas; mientras haya más páginas, la
+ *         tabla muestra una última fila "Cargando...";</li>
+ *     <li>si una carga falla (por ejemplo, sin conexión) no se reintenta en
+ *         cada repintado: se deja de pedir páginas nuevas y las descartadas
+ *         se vuelven a pedir recién tras {@value #ESPERA_TRAS_ERROR_MS} ms.</li>
+ * </ul>
+ *
+ * Una página que se vuelve a pedir muestra los clientes que hay en ese
+ * momento a partir de su cursor, con la misma cantidad de filas.
+ *
+ * No admite ordenar por columnas desde la tabla (un RowSorter leería todas
+ * las filas): el orden es siempre por código, el mismo del cursor.
+ *
+ * Solo se usa desde el hilo de eventos de Swing.
  */
 public class ClienteTableModel extends AbstractTableModel {
 
     private static final long serialVersionUID = 1L;
 
-    /** Lista de clientes mostrados en la tabla. */
-    private List<Cliente> clientes;
+    /** Clientes por página (una consulta por página). */
+    static final int TAMANO_PAGINA = 100;
+
+    /** Filas antes del final de lo conocido a partir de las que se pide la página siguiente. */
+    private static final int ANTICIPO = TAMANO_PAGINA / 2;
+
+    /** Páginas con filas que se conservan a cada lado de la última pintada. */
+    private static final int DISTANCIA_MAXIMA = 5;
+
+    /** Espera tras una carga fallida antes de volver a pedir una página. */
+    private static final long ESPERA_TRAS_ERROR_MS = 5_000L;
 
     /** Nombres de columnas que se muestran en el JTable. */
     private static final String[] COLUMNAS = {
@@ -34,26 +76,57 @@ public class ClienteTableModel extends AbstractTableModel {
             "Estado"
     };
 
-    /**
-     * Construye el modelo con una lista inicial de clientes.
-     * Si la lista es null, se inicializa vacía.
-     */
-    public ClienteTableModel(List<Cliente> clientes) {
-        this.clientes = (clientes != null) ? clientes : new ArrayList<>();
-    }
+    /** Cursor con el que empieza cada página conocida (null: desde el principio). */
+    private final List<Integer> inicios = new ArrayList<>();
+
+    /** Filas de cada página conocida; null si se descartaron. */
+    private final List<Cliente[]> paginas = new ArrayList<>();
+
+    /** Filas de todas las páginas conocidas. */
+    private int totalFilas;
+
+    /** Página que sigue al cursor indicado (en un hilo del ejecutor); null sin resultado. */
+    private transient Function<Integer, PaginaClientes> siguiente;
+
+    /** Cursor de la página siguiente a las conocidas; null si ya no hay más. */
+    private Integer cursor;
+
+    /** Página en carga y página pedida mientras tanto; -1 si ninguna. */
+    private int cargando = -1;
+    private int pendiente = -1;
+    private int ultimaPintada;
+
+    /** Tras un error no se cargan páginas antes de este instante (ms). */
+    private long noAntesDe;
+
+    /** Cambia con cada resultado nuevo; las cargas del anterior se descartan. */
+    private int generacion;
 
     /**
-     * Reemplaza la lista de clientes y notifica a la tabla
-     * que los datos han cambiado.
+     * Reemplaza el resultado por su primera página y notifica a la tabla.
+     *
+     * @param primera   primera página de la búsqueda
+     * @param siguiente página que sigue al cursor indicado, con los mismos
+     *                  filtros; normalmente
+     *                  {@link ClienteDAO#buscarClientesPaginado(String, String, String, Integer, int)}
      */
-    public void setClientes(List<Cliente> clientes) {
-        this.clientes = (clientes != null) ? clientes : new ArrayList<>();
+    public void setResultado(PaginaClientes primera, Function<Integer, PaginaClientes> siguiente) {
+        inicios.clear();
+        paginas.clear();
+        totalFilas = 0;
+        this.siguiente = siguiente;
+        cargando = -1;
+        pendiente = -1;
+        ultimaPintada = 0;
+        noAntesDe = 0;
+        generacion++;
+        agregarPagina(null, primera);
         fireTableDataChanged();
     }
 
     @Override
     public int getRowCount() {
-        return (clientes == null) ? 0 : clientes.size();
+        return totalFilas + (cursor != null ? 1 : 0);
     }
 
     @Override
@@ -68,11 +141,25 @@ public class ClienteTableModel extends AbstractTableModel {
 
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        if (clientes == null || rowIndex < 0 || rowIndex >= clientes.size()) {
+        if (rowIndex < 0 || rowIndex >= getRowCount()) {
             return null;
         }
+        int pagina = rowIndex / TAMANO_PAGINA;
+        ultimaPintada = pagina;
+
+        if (rowIndex >= totalFilas - ANTICIPO) {
+            solicitar(paginas.size());
+        }
+        Cliente[] filas = (rowIndex < totalFilas) ? paginas.get(pagina) : null;
+        if (filas == null) {
+            solicitar(pagina);
+            return (columnIndex == 1) ? "Cargando..." : null;
+        }
 
-        Cliente c = clientes.get(rowIndex);
+        Cliente c = filas[rowIndex - pagina * TAMANO_PAGINA];
+        if (c == null) {
+            return null; // la página recargada trajo menos clientes
+        }
         switch (columnIndex) {
             case 0: return c.getCodigoCliente();
             case 1: return c.getNombres();
@@ -85,12 +172,132 @@ public class ClienteTableModel extends AbstractTableModel {
     }
 
     /**
-     * Devuelve el cliente correspondiente a la fila indicada.
+     * Devuelve el cliente correspondiente a la fila indicada, o null si su
+     * página todavía no se cargó (se pide) o es la fila "Cargando...".
      */
     public Cliente getClienteAt(int rowIndex) {
-        if (clientes == null || rowIndex < 0 || rowIndex >= clientes.size()) {
+        if (rowIndex < 0 || rowIndex >= totalFilas) {
             return null;
         }
-        return clientes.get(rowIndex);
+        int pagina = rowIndex / TAMANO_PAGINA;
+        Cliente[] filas = paginas.get(pagina);
+        if (filas == null) {
+            solicitar(pagina);
+            return null;
+        }
+        return filas[rowIndex - pagina * TAMANO_PAGINA];
+    }
+
+    /* ==========================================================
+     * CARGA DE PÁGINAS
+     * ========================================================== */
+
+    /**
+     * Pide una página: una conocida cuyas filas se descartaron, o la
+     * siguiente a las conocidas ({@code pagina == paginas.size()}).
+     */
+    private void solicitar(int pagina) {
+        boolean nueva = (pagina == paginas.size());
+        if (nueva ? cursor == null : paginas.get(pagina) != null) {
+            return;
+        }
+        if (pagina == cargando) {
+            return;
+        }
+        if (cargando >= 0) {
+            pendiente = pagina;
+            return;
+        }
+        if (System.currentTimeMillis() < noAntesDe) {
+            return; // hubo un error hace poco
+        }
+        cargar(pagina, nueva);
+    }
+
+    private void cargar(int pagina, boolean nueva) {
+        Integer despuesDe = nueva ? cursor : inicios.get(pagina);
+        Function<Integer, PaginaClientes> cargador = siguiente;
+        int gen = generacion;
+
+        cargando = pagina;
+        EjecutorTareas.enSegundoPlano(() -> cargador.apply(despuesDe))
+                .whenCompleteAsync((resultado, error) -> {
+                    if (gen != generacion) {
+                        return; // página de una búsqueda anterior
+                    }
+                    cargando = -1;
+
+                    if (error != null || resultado == null) {
+                        // Sin reintentar en cada repintado: se deja de paginar hacia
+                        // adelante y las descartadas esperan antes de volver a pedirse
+                        noAntesDe = System.currentTimeMillis() + ESPERA_TRAS_ERROR_MS;
+                        pendiente = -1;
+                        if (nueva) {
+                            cursor = null;
+                            fireTableRowsDeleted(totalFilas, totalFilas);
+                        }
+                        return;
+                    }
+
+                    if (nueva) {
+                        // La fila "Cargando..." (la última) pasa a ser el primer cliente nuevo
+                        int desde = totalFilas;
+                        int antes = desde + 1;
+                        agregarPagina(despuesDe, resultado);
+                        int despues = getRowCount();
+                        if (despues > desde) {
+                            fireTableRowsUpdated(desde, desde);
+                        }
+                        if (despues > antes) {
+                            fireTableRowsInserted(antes, despues - 1);
+                        } else if (despues < antes) {
+                            fireTableRowsDeleted(desde, desde);
+                        }
+                    } else {
+                        int desde = pagina * TAMANO_PAGINA;
+                        int filas = filasDe(pagina);
+                        paginas.set(pagina, recortar(resultado.getClientes(), filas));
+                        fireTableRowsUpdated(desde, desde + filas - 1);
+                    }
+                    descartarLejanas();
+
+                    if (pendiente >= 0) {
+                        int siguientePedida = pendiente;
+                        pendiente = -1;
+                        solicitar(siguientePedida);
+                    }
+                }, EjecutorTareas.EDT);
+    }
+
+    private void agregarPagina(Integer inicio, PaginaClientes pagina) {
+        List<Cliente> clientes = pagina.getClientes();
+        inicios.add(inicio);
+        paginas.add(clientes.toArray(new Cliente[0]));
+        totalFilas += clientes.size();
+        cursor = pagina.getCursorSiguiente();
+    }
+
+    /** Filas de una página conocida: todas completas salvo quizá la última. */
+    private int filasDe(int pagina) {
+        return (pagina < paginas.size() - 1)
+                ? TAMANO_PAGINA
+                : totalFilas - pagina * TAMANO_PAGINA;
+    }
+
+    /** La página recargada ocupa las mismas filas que antes (con null si trae menos). */
+    private static Cliente[] recortar(List<Cliente> clientes, int filas) {
+        Cliente[] resultado = new Cliente[filas];
+        for (int i = 0; i < filas && i < clientes.size(); i++) {
+            resultado[i] = clientes.get(i);
+        }
+        return resultado;
+    }
+
+    private void descartarLejanas() {
+        for (int i = 0; i < paginas.size(); i++) {
+            if (paginas.get(i) != null && Math.abs(i - ultimaPintada) > DISTANCIA_MAXIMA) {
+                paginas.set(i, null);
+            }
+        }
     }
 }
@@ -3,8 +3,36 @@ package com.cmhuancayo.creditos.unico;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Properties;
 import javax.swing.JOptionPane;
 
+/**
+ * Punto único de acceso a la base de datos.
+ *
+ * Las conexiones salen de un pool interno ({@link PoolConexiones}); los DAO
+ * siguen usando {@link #getConnection()} y {@link #close(Connection)} igual que
+ * antes, pero close() devuelve la conexión al pool en lugar de cerrarla.
+ *
+ * Parámetros del pool (propiedades del sistema, opcionales):
+ * <ul>
+ *     <li>cmh.pool.minimoInactivas (2)</li>
+ *     <li>cmh.pool.maximo (10)</li>
+ *     <li>cmh.pool.esperaMaximaMs (10000)</li>
+ *     <li>cmh.pool.inactividadMaximaMs (300000)</li>
+ *     <li>cmh.pool.validarTrasMs (5000)</li>
+ *     <li>cmh.pool.umbralFugaMs (60000, 0 = desactivado)</li>
+ *     <li>cmh.pool.origenFugas (false; true guarda la pila de cada préstamo
+ *         para mostrarla si hay fuga)</li>
+ *     <li>cmh.pool.cacheSentencias (64 sentencias por conexión, 0 = desactivada)</li>
+ * </ul>
+ *
+ * Parámetros del driver para sentencias preparadas en el servidor:
+ * <ul>
+ *     <li>cmh.pg.prepareThreshold (3 ejecuciones antes de preparar en el servidor)</li>
+ *     <li>cmh.pg.preparedStatementCacheQueries (256)</li>
+ *     <li>cmh.pg.preparedStatementCacheSizeMiB (5)</li>
+ * </ul>
+ */
 public class ConexionDB {
 
     // Puerto por defecto. Si el usuario elige otro al crear la BD, se actualizará.
@@ -14,56 +42,47 @@ public class ConexionDB {
     private static final String USUARIO  = "administrador";
     private static final String PASSWORD = "admin123";
 
+    // Configuración del pool
+    private static final int  POOL_MINIMO_INACTIVAS = Integer.getInteger("cmh.pool.minimoInactivas", 2);
+    private static final int  POOL_MAXIMO           = Integer.getInteger("cmh.pool.maximo", 10);
+    private static final long POOL_ESPERA_MAX_MS    = Long.getLong("cmh.pool.esperaMaximaMs", 10_000L);
+    private static final long POOL_INACTIVIDAD_MS   = Long.getLong("cmh.pool.inactividadMaximaMs", 300_000L);
+    private static final long POOL_VALIDAR_TRAS_MS  = Long.getLong("cmh.pool.validarTrasMs", 5_000L);
+    private static final long POOL_UMBRAL_FUGA_MS   = Long.getLong("cmh.pool.umbralFugaMs", 60_000L);
+    private static final boolean POOL_ORIGEN_FUGAS  = Boolean.getBoolean("cmh.pool.origenFugas");
+    private static final int  POOL_CACHE_SENTENCIAS = Integer.getInteger("cmh.pool.cacheSentencias", 64);
+    private static final long POOL_MANTENIMIENTO_MS = 30_000L;
+
+    // Sentencias preparadas en el servidor (driver PostgreSQL)
+    private static final String PG_PREPARE_THRESHOLD = System.getProperty("cmh.pg.prepareThreshold", "3");
+    private static final String PG_CACHE_CONSULTAS   = System.getProperty("cmh.pg.preparedStatementCacheQueries", "256");
+    private static final String PG_CACHE_TAMANO_MIB  = System.getProperty("cmh.pg.preparedStatementCacheSizeMiB", "5");
+
+    /** Pool creado con la primera conexión exitosa. */
+    private static PoolConexiones pool;
+
+    /**
+     * Obtiene una conexión del pool. La primera vez, si la BD no existe,
+     * se ofrece crearla (igual que antes de tener pool).
+     *
+     * Si el hilo está dentro de una {@link UnidadDeTrabajo}, se devuelve la
+     * conexión de esa transacción.
+     *
+     * @return conexión lista para usar, o null si no se pudo conectar.
+     */
     public static Connection getConnection() {
+        Connection enTransaccion = UnidadDeTrabajo.conexionActual();
+        if (enTransaccion != null) {
+            return enTransaccion;
+        }
+
         Connection conexion = null;
 
         try {
-            Class.forName("org.postgresql.Driver");
-
-            try {
-                // 1) Intento normal (cuando la BD ya existe)
-                conexion = DriverManager.getConnection(URL, USUARIO, PASSWORD);
-
-            } catch (SQLException exConn) {
-                // 2) Si falla, pedimos datos de admin para crear la BD
-                final boolean[] creado = { false };
-
-                LoginAuxCreateDB.showDialog((port, adminUser, adminPass) -> {
-                    try {
-                        CreadorCompletoDB.crearTodo(port, adminUser, adminPass);
-
-                        // Actualizamos URL con el puerto elegido
-                        URL = "jdbc:postgresql://127.0.0.1:" + port
-                                + "/bd_creditos_personales_cmhuancayo";
-
-                        creado[0] = true;
-
-                        JOptionPane.showMessageDialog(
-                                null,
-                                "Base de datos creada correctamente.",
-                                "Información",
-                                JOptionPane.INFORMATION_MESSAGE
-                        );
-                    } catch (Exception e) {
-                        JOptionPane.showMessageDialog(
-                                null,
-                                "No se pudo crear la base de datos:\n" + e.getMessage(),
-                                "Error al crear BD",
-                                JOptionPane.ERROR_MESSAGE
-                        );
-                    }
-                });
-
-                if (!creado[0]) {
-                    throw new SQLException("No se pudo crear la base de datos.");
-                }
-
-                // 3) Nueva conexión ya con la BD creada
-                conexion = DriverManager.getConnection(URL, USUARIO, PASSWORD);
-            }
+            conexion = obtenerPool().prestar();
 
         } catch (ClassNotFoundException ex) {
-            JOptionPane.showMessageDialog(
+            MensajesUI.mostrar(
                     null,
                     "Error: No se encontró el driver JDBC de PostgreSQL.\n" +
                     "Verifica que el JAR del driver esté agregado al proyecto.",
@@ -71,7 +90,7 @@ public class ConexionDB {
                     JOptionPane.ERROR_MESSAGE
             );
         } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(
+            MensajesUI.mostrar(
                     null,
                     "Error de conexión a PostgreSQL: " + ex.getMessage(),
                     "ERROR",
@@ -82,6 +101,114 @@ public class ConexionDB {
         return conexion;
     }
 
+    /**
+     * Devuelve el pool, creándolo en el primer uso a partir de una conexión
+     * inicial (que puede implicar crear la base de datos).
+     */
+    private static synchronized PoolConexiones obtenerPool()
+            throws ClassNotFoundException, SQLException {
+        if (pool == null) {
+            Class.forName("org.postgresql.Driver");
+            Connection inicial = conectarOCrearBD();
+
+            PoolConexiones nuevo = new PoolConexiones(
+                    ConexionDB::abrirConexionFisica,
+                    POOL_MINIMO_INACTIVAS,
+                    POOL_MAXIMO,
+                    POOL_ESPERA_MAX_MS,
+                    POOL_INACTIVIDAD_MS,
+                    POOL_VALIDAR_TRAS_MS,
+                    POOL_UMBRAL_FUGA_MS,
+                    POOL_ORIGEN_FUGAS,
+                    POOL_CACHE_SENTENCIAS,
+                    POOL_MANTENIMIENTO_MS
+            );
+            nuevo.incorporar(inicial);
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread(nuevo::cerrar, "pool-conexiones-cierre"));
+            pool = nuevo;
+        }
+        return pool;
+    }
+
+    /**
+     * Cierra el pool y todas sus conexiones inactivas.
+     */
+    public static synchronized void cerrarPool() {
+        if (pool != null) {
+            pool.cerrar();
+            pool = null;
+        }
+    }
+
+    /**
+     * Abre una conexión física nueva (la usa el pool para crecer).
+     */
+    static Connection abrirConexionFisica() throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("user", USUARIO);
+        props.setProperty("password", PASSWORD);
+        props.setProperty("prepareThreshold", PG_PREPARE_THRESHOLD);
+        props.setProperty("preparedStatementCacheQueries", PG_CACHE_CONSULTAS);
+        props.setProperty("preparedStatementCacheSizeMiB", PG_CACHE_TAMANO_MIB);
+        return DriverManager.getConnection(URL, props);
+    }
+
+    /**
+     * Primera conexión de la aplicación. Si falla, pide datos de
+     * administrador para crear la base de datos y vuelve a intentar.
+     */
+    private static Connection conectarOCrearBD() throws SQLException {
+        Connection conexion;
+
+        try {
+            // 1) Intento normal (cuando la BD ya existe)
+            conexion = abrirConexionFisica();
+
+        } catch (SQLException exConn) {
+            // 2) Si falla, pedimos datos de admin para crear la BD
+            final boolean[] creado = { false };
+
+            LoginAuxCreateDB.showDialog((port, adminUser, adminPass) -> {
+                try {
+                    CreadorCompletoDB.crearTodo(port, adminUser, adminPass);
+
+                    // Actualizamos URL con el puerto elegido
+                    URL = "jdbc:postgresql://127.0.0.1:" + port
+                            + "/bd_creditos_personales_cmhuancayo";
+
+                    creado[0] = true;
+
+                    JOptionPane.showMessageDialog(
+                            null,
+                            "Base de datos creada correctamente.",
+                            "Información",
+                            JOptionPane.INFORMATION_MESSAGE
+                    );
+                } catch (Exception e) {
+                    JOptionPane.showMessageDialog(
+                            null,
+                            "No se pudo crear la base de datos:\n" + e.getMessage(),
+                            "Error al crear BD",
+                            JOptionPane.ERROR_MESSAGE
+                    );
+                }
+            });
+
+            if (!creado[0]) {
+                throw new SQLException("No se pudo crear la base de datos.");
+            }
+
+            // 3) Nueva conexión ya con la BD creada
+            conexion = abrirConexionFisica();
+        }
+
+        return conexion;
+    }
+
+    /**
+     * Devuelve la conexión al pool (o la cierra si no proviene de él).
+     */
     public static void close(Connection conexion) {
         try {
             if (conexion != null && !conexion.isClosed()) {
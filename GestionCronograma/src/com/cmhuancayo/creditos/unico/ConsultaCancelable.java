@@ -0,0 +1,63 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Permite cancelar desde otro hilo una consulta que un DAO está ejecutando.
+ *
+ * El DAO registra su sentencia antes de ejecutarla y la quita antes de
+ * cerrarla; {@link #cancelar()} llama a {@link Statement#cancel()} sobre la
+ * sentencia registrada, con lo que PostgreSQL aborta la consulta
+ * (SQLState 57014) y el DAO recibe una SQLException. Si la consulta todavía
+ * no empezó, el DAO ve {@link #isCancelada()} y ni siquiera la ejecuta.
+ *
+ * Registrar, quitar y cancelar están sincronizados: nunca se cancela una
+ * sentencia que ya volvió a la caché de sentencias del pool.
+ */
+public class ConsultaCancelable {
+
+    private Statement sentencia;
+    private volatile boolean cancelada;
+
+    /**
+     * Registra la sentencia que se va a ejecutar.
+     *
+     * @return false si la consulta ya fue cancelada (no hay que ejecutarla)
+     */
+    synchronized boolean registrar(Statement st) {
+        if (cancelada) {
+            return false;
+        }
+        this.sentencia = st;
+        return true;
+    }
+
+    /** Quita la sentencia registrada; se llama antes de cerrarla. */
+    synchronized void liberar() {
+        this.sentencia = null;
+    }
+
+    /**
+     * Cancela la consulta. Se puede llamar desde cualquier hilo y más de una
+     * vez; si la consulta ya terminó no hace nada.
+     */
+    public synchronized void cancelar() {
+        if (cancelada) {
+            return;
+        }
+        cancelada = true;
+        if (sentencia != null) {
+            try {
+                sentencia.cancel();
+                Metricas.incrementar("consultas.canceladas");
+            } catch (SQLException ignored) {
+                // La consulta terminará sola; su resultado se descarta igual
+            }
+        }
+    }
+
+    public boolean isCancelada() {
+        return cancelada;
+    }
+}
@@ -16,6 +16,7 @@ import java.util.Date;
  *     <li>codigoCliente: titular del crédito.</li>
  *     <li>montoDesembolso: monto de capital desembolsado.</li>
  *     <li>tasaInteresCompensatorio: TEA del crédito.</li>
+ *     <li>tasaCostoEfectivoAnual: TCEA, con la que se calcula la cuota fija.</li>
  *     <li>numeroCuotas: cantidad de cuotas del cronograma.</li>
  *     <li>fechaDesembolso: fecha de inicio/vigencia del crédito.</li>
  *     <li>saldoCapital: saldo de capital pendiente (calculado).</li>
@@ -39,6 +40,9 @@ public class Credito {
     /** Tasa de interés compensatorio anual (TEA). */
     private BigDecimal tasaInteresCompensatorio;
 
+    /** Tasa de costo efectivo anual (TCEA); define la cuota fija en la BD. */
+    private BigDecimal tasaCostoEfectivoAnual;
+
     /** Número total de cuotas del crédito. */
     private int numeroCuotas;
 
@@ -95,6 +99,14 @@ public class Credito {
         this.tasaInteresCompensatorio = tasaInteresCompensatorio;
     }
 
+    public BigDecimal getTasaCostoEfectivoAnual() {
+        return tasaCostoEfectivoAnual;
+    }
+
+    public void setTasaCostoEfectivoAnual(BigDecimal tasaCostoEfectivoAnual) {
+        this.tasaCostoEfectivoAnual = tasaCostoEfectivoAnual;
+    }
+
     public int getNumeroCuotas() {
         return numeroCuotas;
     }
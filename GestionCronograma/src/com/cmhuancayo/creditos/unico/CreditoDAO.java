@@ -25,24 +25,13 @@ import javax.swing.JOptionPane;
  */
 public class CreditoDAO {
 
-    /**
-     * Lista los contratos (créditos) de un cliente.
-     *
-     * Relación usada:
-     *   cliente -> solicitud -> pre_aprobacion -> contrato
-     */
-    public List<Credito> listarPorCliente(int codigoCliente) {
-        List<Credito> creditos = new ArrayList<>();
-        Connection cnx = null;
-        PreparedStatement ps = null;
-        ResultSet rs = null;
-
-        String sql =
+    private static final String SQL_LISTAR_POR_CLIENTE =
             "SELECT c.codigo_contrato, " +
             "       s.codigo_solicitud, " +
             "       s.codigo_cliente, " +
             "       c.monto_desembolso, " +
             "       c.tasa_interes_compensatorio, " +
+            "       c.tasa_costo_efectivo_anual, " +
             "       c.numero_cuotas, " +
             "       c.fecha_vigencia, " +
             "       c.estado_contrato " +
@@ -53,9 +42,44 @@ public class CreditoDAO {
             "  AND c.estado_contrato = 'VIGENTE' " +
             "ORDER BY c.codigo_contrato";
 
+    // IMPORTANTE: 6 placeholders (5 IN + 1 INOUT)
+    private static final String SQL_CREAR_CREDITO = "CALL sp_crearcreditoclientebasico(?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_ACTUALIZAR_REPROGRAMADO =
+            "UPDATE contrato " +
+            "SET tasa_interes_compensatorio = ?, " +
+            "    numero_cuotas = ?, " +
+            "    plazo_credito = ? " +
+            "WHERE codigo_contrato = ?";
+
+    private static final String SQL_MARCAR_REFINANCIADO =
+            "UPDATE contrato " +
+            "SET estado_contrato = 'REFINANCIADO' " +
+            "WHERE codigo_contrato = ?";
+
+    /**
+     * Lista los contratos (créditos) de un cliente.
+     *
+     * Relación usada:
+     *   cliente -> solicitud -> pre_aprobacion -> contrato
+     *
+     * Usa {@link CacheCronogramas}.
+     */
+    public List<Credito> listarPorCliente(int codigoCliente) {
+        List<Credito> enCache = CacheCronogramas.creditos(codigoCliente);
+        if (enCache != null) {
+            return enCache;
+        }
+        long version = CacheCronogramas.version();
+
+        List<Credito> creditos = new ArrayList<>();
+        Connection cnx = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+
         try {
             cnx = ConexionDB.getConnection();
-            ps = cnx.prepareStatement(sql);
+            ps = cnx.prepareStatement(SQL_LISTAR_POR_CLIENTE);
             ps.setInt(1, codigoCliente);
             rs = ps.executeQuery();
 
@@ -66,6 +90,7 @@ public class CreditoDAO {
                 c.setCodigoCliente(rs.getInt("codigo_cliente"));
                 c.setMontoDesembolso(rs.getBigDecimal("monto_desembolso"));
                 c.setTasaInteresCompensatorio(rs.getBigDecimal("tasa_interes_compensatorio"));
+                c.setTasaCostoEfectivoAnual(rs.getBigDecimal("tasa_costo_efectivo_anual"));
                 c.setNumeroCuotas(rs.getInt("numero_cuotas"));
                 c.setFechaDesembolso(rs.getDate("fecha_vigencia"));
                 // De inicio asumimos saldo = monto desembolsado
@@ -73,9 +98,10 @@ public class CreditoDAO {
                 c.setEstadoContrato(rs.getString("estado_contrato"));
                 creditos.add(c);
             }
+            CacheCronogramas.guardarCreditos(codigoCliente, creditos, version);
 
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(
+            MensajesUI.mostrar(
                 null,
                 "Error al listar créditos: " + e.getMessage(),
                 "Error SQL",
@@ -107,12 +133,9 @@ public class CreditoDAO {
         Connection cnx = null;
         CallableStatement cs = null;
 
-        // IMPORTANTE: 6 placeholders (5 IN + 1 INOUT)
-        String sql = "CALL sp_crearcreditoclientebasico(?, ?, ?, ?, ?, ?)";
-
         try {
             cnx = ConexionDB.getConnection();
-            cs = cnx.prepareCall(sql);
+            cs = cnx.prepareCall(SQL_CREAR_CREDITO);
 
             if (fechaDesembolso == null) {
                 fechaDesembolso = new Date();
@@ -129,20 +152,21 @@ public class CreditoDAO {
             cs.execute();
 
             int codigoContrato = cs.getInt(6);
+            CacheCronogramas.invalidarCliente(codigoCliente);
             return codigoContrato;
 
         } catch (SQLException e) {
             String sqlState = e.getSQLState();
             // Tu SP usa: USING ERRCODE = '45000';
             if ("45000".equals(sqlState)) {
-                JOptionPane.showMessageDialog(
+                MensajesUI.mostrar(
                     null,
                     e.getMessage(),
                     "Límite de créditos",
                     JOptionPane.WARNING_MESSAGE
                 );
             } else {
-                JOptionPane.showMessageDialog(
+                MensajesUI.mostrar(
                     null,
                     "Error SQL al crear crédito: " + e.getMessage(),
                     "Error",
@@ -168,16 +192,9 @@ public class CreditoDAO {
         Connection cnx = null;
         PreparedStatement ps = null;
 
-        String sql =
-            "UPDATE contrato " +
-            "SET tasa_interes_compensatorio = ?, " +
-            "    numero_cuotas = ?, " +
-            "    plazo_credito = ? " +
-            "WHERE codigo_contrato = ?";
-
         try {
             cnx = ConexionDB.getConnection();
-            ps = cnx.prepareStatement(sql);
+            ps = cnx.prepareStatement(SQL_ACTUALIZAR_REPROGRAMADO);
 
             ps.setBigDecimal(1, (nuevaTasaAnual == null) ? BigDecimal.ZERO : nuevaTasaAnual);
             ps.setInt(2, nuevoNumeroCuotas);
@@ -185,10 +202,11 @@ public class CreditoDAO {
             ps.setInt(4, codigoContrato);
 
             int filas = ps.executeUpdate();
+            CacheCronogramas.invalidarContrato(codigoContrato);
             return filas > 0;
 
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(
+            MensajesUI.mostrar(
                 null,
                 "Error SQL al actualizar contrato reprogramado: " + e.getMessage(),
                 "Error",
@@ -210,21 +228,17 @@ public class CreditoDAO {
         Connection cnx = null;
         PreparedStatement ps = null;
 
-        String sql =
-            "UPDATE contrato " +
-            "SET estado_contrato = 'REFINANCIADO' " +
-            "WHERE codigo_contrato = ?";
-
         try {
             cnx = ConexionDB.getConnection();
-            ps = cnx.prepareStatement(sql);
+            ps = cnx.prepareStatement(SQL_MARCAR_REFINANCIADO);
             ps.setInt(1, codigoContrato);
 
             int filas = ps.executeUpdate();
+            CacheCronogramas.invalidarContrato(codigoContrato);
             return filas > 0;
 
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(
+            MensajesUI.mostrar(
                 null,
                 "Error SQL al marcar contrato refinanciado: " + e.getMessage(),
                 "Error",
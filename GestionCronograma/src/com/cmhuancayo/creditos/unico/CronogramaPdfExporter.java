@@ -1,14 +1,24 @@
 package com.cmhuancayo.creditos.unico;
 
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDType1Font;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -18,13 +28,35 @@ import java.util.List;
  * Utilitario para exportar a PDF el cronograma de un crédito
  * usando Apache PDFBox.
  *
- * Se usa desde PanelGestionCliente.descargarCronograma(...)
+ * Se usa desde PanelGestionCliente.descargarCronograma(...) y, para
+ * muchos contratos a la vez, desde {@link ExportadorCronogramasLote}.
+ *
+ * Cada fila de la tabla se escribe en un solo objeto de texto (una fuente
+ * y un desplazamiento por celda), y cada página se cierra apenas se llena:
+ * su contenido pasa al archivo temporal de PDFBox si el documento supera
+ * la memoria asignada, y al final se escribe directo al destino (archivo,
+ * OutputStream o byte[]).
+ *
+ * Una instancia no es segura entre hilos: tiene sus propios formatos y
+ * fuentes, que reutiliza en cada documento que genera. Para exportar en
+ * paralelo se usa una instancia por hilo.
  */
 public class CronogramaPdfExporter {
 
-    // Formatos
-    private static final DecimalFormat MONEDA = new DecimalFormat("###,##0.00");
-    private static final SimpleDateFormat F_FECHA = new SimpleDateFormat("yyyy-MM-dd");
+    /**
+     * Memoria de cada documento en generación antes de pasar a un archivo
+     * temporal (cmh.pdf.memoriaDocumento, en bytes).
+     */
+    private static final long MEMORIA_POR_DOCUMENTO =
+            Long.getLong("cmh.pdf.memoriaDocumento", 4L * 1024 * 1024);
+
+    // Formatos (DecimalFormat y SimpleDateFormat no son seguros entre hilos)
+    private final DecimalFormat moneda = new DecimalFormat("###,##0.00");
+    private final SimpleDateFormat fFecha = new SimpleDateFormat("yyyy-MM-dd");
+
+    // Fuentes propias: PDType1Font guarda cachés internas sin sincronizar
+    private final PDType1Font fuente;
+    private final PDType1Font fuenteNegrita;
 
     // Tamaños y márgenes
     private static final float MARGIN = 50f;
@@ -32,6 +64,11 @@ public class CronogramaPdfExporter {
     private static final float TEXT_FONT_SIZE = 10f;
     private static final float ROW_HEIGHT = 18f;
 
+    public CronogramaPdfExporter() throws IOException {
+        this.fuente = fuenteEstandar("Helvetica");
+        this.fuenteNegrita = fuenteEstandar("Helvetica-Bold");
+    }
+
     /**
      * Genera el PDF del cronograma.
      *
@@ -44,7 +81,58 @@ public class CronogramaPdfExporter {
                                 Cliente cliente,
                                 List<Cuota> cuotas,
                                 File destino) throws IOException {
+        new CronogramaPdfExporter().generar(credito, cliente, cuotas, destino);
+    }
+
+    /**
+     * Igual que {@link #exportar}, con los formatos y fuentes de esta
+     * instancia.
+     *
+     * El PDF se escribe en un archivo temporal de la misma carpeta que
+     * reemplaza a destino solo si se generó completo: si los datos no son
+     * válidos o falla la generación, destino queda como estaba (un archivo
+     * existente no se pierde y no queda un PDF a medias).
+     */
+    public void generar(Credito credito,
+                        Cliente cliente,
+                        List<Cuota> cuotas,
+                        File destino) throws IOException {
+        validar(credito, cliente, cuotas);
+
+        File carpeta = destino.getAbsoluteFile().getParentFile();
+        File temporal = File.createTempFile(destino.getName() + ".", ".tmp", carpeta);
+        boolean listo = false;
+        try {
+            try (OutputStream salida = new BufferedOutputStream(new FileOutputStream(temporal))) {
+                generar(credito, cliente, cuotas, salida);
+            }
+            try {
+                Files.move(temporal.toPath(), destino.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temporal.toPath(), destino.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            listo = true;
+        } finally {
+            if (!listo) {
+                Files.deleteIfExists(temporal.toPath());
+            }
+        }
+    }
+
+    /**
+     * Genera el PDF en memoria, por ejemplo para enviarlo por un canal sin
+     * pasar por un archivo.
+     */
+    public byte[] generarBytes(Credito credito,
+                               Cliente cliente,
+                               List<Cuota> cuotas) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(16 * 1024);
+        generar(credito, cliente, cuotas, salida);
+        return salida.toByteArray();
+    }
 
+    private static void validar(Credito credito, Cliente cliente, List<Cuota> cuotas) {
         if (credito == null) {
             throw new IllegalArgumentException("El crédito no puede ser null");
         }
@@ -54,8 +142,19 @@ public class CronogramaPdfExporter {
         if (cuotas == null || cuotas.isEmpty()) {
             throw new IllegalArgumentException("La lista de cuotas está vacía");
         }
+    }
+
+    /**
+     * Genera el PDF y lo escribe en la salida indicada (no la cierra).
+     */
+    public void generar(Credito credito,
+                        Cliente cliente,
+                        List<Cuota> cuotas,
+                        OutputStream salida) throws IOException {
+
+        validar(credito, cliente, cuotas);
 
-        try (PDDocument doc = new PDDocument()) {
+        try (PDDocument doc = new PDDocument(MemoryUsageSetting.setupMixed(MEMORIA_POR_DOCUMENTO))) {
 
             PDPage page = new PDPage(PDRectangle.A4);
             doc.addPage(page);
@@ -67,7 +166,7 @@ public class CronogramaPdfExporter {
             // ----------------------------------------------------------
             // Título
             // ----------------------------------------------------------
-            drawText(cs, PDType1Font.HELVETICA_BOLD, TITLE_FONT_SIZE,
+            drawText(cs, fuenteNegrita, TITLE_FONT_SIZE,
                     MARGIN, y, "CRONOGRAMA DE PAGOS");
             y -= 30f;
 
@@ -82,26 +181,26 @@ public class CronogramaPdfExporter {
             String cuotasStr = String.valueOf(credito.getNumeroCuotas());
             String vigencia = formatFecha(credito.getFechaDesembolso());
 
-            drawText(cs, PDType1Font.HELVETICA, TEXT_FONT_SIZE,
+            drawText(cs, fuente, TEXT_FONT_SIZE,
                     MARGIN, y, "CLIENTE: " + nombreCliente);
             y -= ROW_HEIGHT;
-            drawText(cs, PDType1Font.HELVETICA, TEXT_FONT_SIZE,
+            drawText(cs, fuente, TEXT_FONT_SIZE,
                     MARGIN, y, "DOC.: " + docCliente);
             y -= ROW_HEIGHT;
-            drawText(cs, PDType1Font.HELVETICA, TEXT_FONT_SIZE,
+            drawText(cs, fuente, TEXT_FONT_SIZE,
                     MARGIN, y, "CONTRATO: " + contrato);
             y -= ROW_HEIGHT;
-            drawText(cs, PDType1Font.HELVETICA, TEXT_FONT_SIZE,
+            drawText(cs, fuente, TEXT_FONT_SIZE,
                     MARGIN, y, "VIGENCIA: " + vigencia);
             y -= (ROW_HEIGHT + 5);
 
-            drawText(cs, PDType1Font.HELVETICA, TEXT_FONT_SIZE,
+            drawText(cs, fuente, TEXT_FONT_SIZE,
                     MARGIN, y, "DESEMBOLSO: " + desembolso);
             y -= ROW_HEIGHT;
-            drawText(cs, PDType1Font.HELVETICA, TEXT_FONT_SIZE,
+            drawText(cs, fuente, TEXT_FONT_SIZE,
                     MARGIN, y, "CUOTAS: " + cuotasStr);
             y -= ROW_HEIGHT;
-            drawText(cs, PDType1Font.HELVETICA, TEXT_FONT_SIZE,
+            drawText(cs, fuente, TEXT_FONT_SIZE,
                     MARGIN, y, "TASA ANUAL: " + tasa);
             y -= (ROW_HEIGHT + 10);
 
@@ -128,12 +227,7 @@ public class CronogramaPdfExporter {
                     "Saldo capital"
             };
 
-            float x = MARGIN;
-            for (int i = 0; i < headers.length; i++) {
-                drawText(cs, PDType1Font.HELVETICA_BOLD, TEXT_FONT_SIZE,
-                        x, y, headers[i]);
-                x += colWidths[i];
-            }
+            drawRow(cs, fuenteNegrita, y, colWidths, headers);
             y -= (ROW_HEIGHT + 4);
 
             // ----------------------------------------------------------
@@ -151,17 +245,10 @@ public class CronogramaPdfExporter {
                     y = page.getMediaBox().getUpperRightY() - MARGIN;
 
                     // Reimprimir cabecera en la nueva página
-                    x = MARGIN;
-                    for (int i = 0; i < headers.length; i++) {
-                        drawText(cs, PDType1Font.HELVETICA_BOLD, TEXT_FONT_SIZE,
-                                x, y, headers[i]);
-                        x += colWidths[i];
-                    }
+                    drawRow(cs, fuenteNegrita, y, colWidths, headers);
                     y -= (ROW_HEIGHT + 4);
                 }
 
-                x = MARGIN;
-
                 // IMPORTANTE: ajusta getters si tu clase Cuota se llama distinto
                 String nro = String.valueOf(cuota.getNroCuota());
                 String fechaV = formatFecha(cuota.getFechaVencimiento());
@@ -175,21 +262,52 @@ public class CronogramaPdfExporter {
                         nro, fechaV, capital, interes, segDegrav, montoCuota, saldo
                 };
 
-                for (int i = 0; i < valores.length; i++) {
-                    drawText(cs, PDType1Font.HELVETICA, TEXT_FONT_SIZE,
-                            x, y, valores[i]);
-                    x += colWidths[i];
-                }
+                drawRow(cs, fuente, y, colWidths, valores);
                 y -= ROW_HEIGHT;
             }
 
             cs.close();
-            doc.save(destino);
+            doc.save(salida);
         }
     }
 
     /* =================== Helpers =================== */
 
+    /**
+     * Fuente estándar de PDF (no se incrusta), igual a las constantes de
+     * PDType1Font pero como instancia propia.
+     */
+    private static PDType1Font fuenteEstandar(String nombre) throws IOException {
+        COSDictionary dic = new COSDictionary();
+        dic.setItem(COSName.TYPE, COSName.FONT);
+        dic.setItem(COSName.SUBTYPE, COSName.TYPE1);
+        dic.setName(COSName.BASE_FONT, nombre);
+        dic.setItem(COSName.ENCODING, COSName.WIN_ANSI_ENCODING);
+        return new PDType1Font(dic);
+    }
+
+    /**
+     * Escribe una fila de la tabla en un solo objeto de texto: cada celda se
+     * ubica con un desplazamiento relativo desde la anterior, en las mismas
+     * posiciones que si se escribieran por separado.
+     */
+    private static void drawRow(PDPageContentStream cs,
+                                PDType1Font font,
+                                float y,
+                                float[] colWidths,
+                                String[] textos) throws IOException {
+        cs.beginText();
+        cs.setFont(font, TEXT_FONT_SIZE);
+        cs.newLineAtOffset(MARGIN, y);
+        for (int i = 0; i < textos.length; i++) {
+            if (i > 0) {
+                cs.newLineAtOffset(colWidths[i - 1], 0);
+            }
+            cs.showText(textos[i] != null ? textos[i] : "");
+        }
+        cs.endText();
+    }
+
     private static void drawText(PDPageContentStream cs,
                                  PDType1Font font,
                                  float size,
@@ -203,14 +321,14 @@ public class CronogramaPdfExporter {
         cs.endText();
     }
 
-    private static String formatBig(BigDecimal valor) {
+    private String formatBig(BigDecimal valor) {
         if (valor == null) return "0.00";
-        return MONEDA.format(valor);
+        return moneda.format(valor);
     }
 
-    private static String formatFecha(Date fecha) {
+    private String formatFecha(Date fecha) {
         if (fecha == null) return "-";
-        return F_FECHA.format(fecha);
+        return fFecha.format(fecha);
     }
 
     private static String construirNombreCliente(Cliente c) {
@@ -20,6 +20,7 @@ import java.util.Date;
  *     <li>dias: número de días del período (para cálculo de interés).</li>
  *     <li>montoCuota: importe total a pagar en la cuota.</li>
  *     <li>saldoCapital: saldo de capital después de aplicar la cuota.</li>
+ *     <li>montoPagado / fechaUltimoPago: lo pagado hasta ahora (mantenido en BD).</li>
  * </ul>
  *
  * Se usa como DTO/POJO entre la base de datos, la lógica de cálculo
@@ -63,6 +64,12 @@ public class Cuota {
     /** Saldo de capital pendiente después de aplicar esta cuota. */
     private BigDecimal saldoCapital;
 
+    /** Total pagado de esta cuota (PAGO_CUOTA + PAGO_PARCIAL). */
+    private BigDecimal montoPagado = BigDecimal.ZERO;
+
+    /** Fecha y hora del último pago recibido; null si no tiene pagos. */
+    private Date fechaUltimoPago;
+
     // ---------------------------------------------------------
     // Getters y Setters
     // ---------------------------------------------------------
@@ -163,6 +170,32 @@ public class Cuota {
         this.saldoCapital = saldoCapital;
     }
 
+    public BigDecimal getMontoPagado() {
+        return montoPagado;
+    }
+
+    public void setMontoPagado(BigDecimal montoPagado) {
+        this.montoPagado = montoPagado;
+    }
+
+    public Date getFechaUltimoPago() {
+        return fechaUltimoPago;
+    }
+
+    public void setFechaUltimoPago(Date fechaUltimoPago) {
+        this.fechaUltimoPago = fechaUltimoPago;
+    }
+
+    /**
+     * Lo que falta pagar de la cuota (montoCuota - montoPagado, nunca negativo).
+     */
+    public BigDecimal getSaldoPendiente() {
+        BigDecimal total = (montoCuota == null) ? BigDecimal.ZERO : montoCuota;
+        BigDecimal pagado = (montoPagado == null) ? BigDecimal.ZERO : montoPagado;
+        BigDecimal saldo = total.subtract(pagado);
+        return (saldo.signum() < 0) ? BigDecimal.ZERO : saldo;
+    }
+
     @Override
     public String toString() {
         return "Cuota{" +
@@ -174,6 +207,7 @@ public class Cuota {
                 ", interes=" + interes +
                 ", montoCuota=" + montoCuota +
                 ", saldoCapital=" + saldoCapital +
+                ", montoPagado=" + montoPagado +
                 '}';
     }
 }
@@ -3,7 +3,10 @@ package com.cmhuancayo.creditos.unico;
 import javax.swing.JOptionPane;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import java.math.BigDecimal;
 
 /**
@@ -12,52 +15,159 @@ import java.math.BigDecimal;
  */
 public class CuotaDAO {
 
+    private static final String SQL_LISTAR_POR_CONTRATO =
+            "SELECT nro_cuota, codigo_contrato, estado_cuota, fecha_vencimiento, " +
+            "       capital, interes, seguro_degravamen, seguros_comisiones, itf, " +
+            "       monto_cuota, dias, saldo_capital, monto_pagado, fecha_ultimo_pago " +
+            "FROM cronograma_de_pago " +
+            "WHERE codigo_contrato = ? " +
+            "ORDER BY nro_cuota";
+
+    // Mismas columnas que SQL_LISTAR_POR_CONTRATO, para leer por cursor
+    private static final String SQL_LEER_POR_CONTRATOS =
+            "SELECT nro_cuota, codigo_contrato, estado_cuota, fecha_vencimiento, " +
+            "       capital, interes, seguro_degravamen, seguros_comisiones, itf, " +
+            "       monto_cuota, dias, saldo_capital, monto_pagado, fecha_ultimo_pago " +
+            "FROM cronograma_de_pago " +
+            "WHERE codigo_contrato = ANY(?) " +
+            "ORDER BY codigo_contrato, nro_cuota";
+
+    // IMPORTANTE: sin llaves {} para que se ejecute como CALL a un PROCEDURE
+    private static final String SQL_REGISTRAR_PAGO_CUOTA = "CALL sp_registrar_pago_cuota(?, ?, ?, ?)";
+
+    private static final String SQL_ACTUALIZAR_ESTADO_CUOTA =
+            "UPDATE cronograma_de_pago " +
+            "SET estado_cuota = ? " +
+            "WHERE codigo_contrato = ? AND nro_cuota = ?";
+
+    // Función (no PROCEDURE): devuelve el reparto del pago, una fila por cuota
+    private static final String SQL_REGISTRAR_PAGO_PARCIAL =
+            "SELECT cuota, monto_aplicado, saldo_restante, estado_resultante " +
+            "FROM fn_registrarpagoparcial(?, ?, ?, ?)";
+
+    /*
+     * Reemplazo del cronograma por diferencias, en una sola sentencia: el
+     * cronograma nuevo llega como arreglos (uno por columna) y se comparan
+     * por nro_cuota con las filas actuales del contrato. Solo se borran las
+     * cuotas que ya no están, se insertan las nuevas y se actualizan las que
+     * cambiaron. Las columnas se convierten al tipo de la tabla para comparar
+     * los valores ya redondeados como quedarían guardados.
+     * Todas las partes ven las filas previas a la sentencia, así que el
+     * INSERT y el DELETE no se pisan con el UPDATE.
+     *
+     * Regla de los pagos (la misma que fn_verificarmontospagados: monto_pagado
+     * es la suma de los pagos vigentes de la cuota):
+     * - Una cuota con las mismas condiciones (vencimiento, montos, días y
+     *   saldo) es la misma cuota: no se toca, y conserva monto_pagado,
+     *   fecha_ultimo_pago, su estado (que depende de lo pagado) y sus
+     *   movimientos vigentes.
+     * - Una cuota cuyas condiciones cambian, o que se borra, es otra cuota
+     *   aunque tenga el mismo nro_cuota (los cronogramas nuevos se numeran
+     *   desde 1): sus movimientos se cierran (vigente = FALSE) y queda con
+     *   monto_pagado 0. Lo pagado queda en el historial, que se archiva
+     *   antes del reemplazo.
+     */
+    private static final String SQL_REEMPLAZAR_CRONOGRAMA =
+            "WITH nuevo AS ( " +
+            "    SELECT * FROM unnest(?::integer[], ?::varchar(20)[], ?::date[], " +
+            "                         ?::numeric(8,2)[], ?::numeric(8,2)[], ?::numeric(8,2)[], " +
+            "                         ?::numeric(8,2)[], ?::numeric(8,4)[], ?::numeric(8,2)[], " +
+            "                         ?::integer[], ?::numeric(10,2)[]) " +
+            "        AS n(nro_cuota, estado_cuota, fecha_vencimiento, capital, interes, " +
+            "             seguro_degravamen, seguros_comisiones, itf, monto_cuota, dias, saldo_capital) " +
+            "), contrato AS ( " +
+            "    SELECT ?::integer AS codigo " +
+            "), iguales AS ( " +
+            "    SELECT cp.nro_cuota " +
+            "      FROM cronograma_de_pago cp " +
+            "      JOIN contrato k ON cp.codigo_contrato = k.codigo " +
+            "      JOIN nuevo n ON n.nro_cuota = cp.nro_cuota " +
+            "     WHERE (cp.fecha_vencimiento, cp.capital, cp.interes, " +
+            "            cp.seguro_degravamen, cp.seguros_comisiones, cp.itf, cp.monto_cuota, " +
+            "            cp.dias, cp.saldo_capital) " +
+            "           IS NOT DISTINCT FROM " +
+            "           (n.fecha_vencimiento, n.capital, n.interes, " +
+            "            n.seguro_degravamen, n.seguros_comisiones, n.itf, n.monto_cuota, " +
+            "            n.dias, n.saldo_capital) " +
+            "), borradas AS ( " +
+            "    DELETE FROM cronograma_de_pago cp " +
+            "     USING contrato k " +
+            "     WHERE cp.codigo_contrato = k.codigo " +
+            "       AND NOT EXISTS (SELECT 1 FROM nuevo n WHERE n.nro_cuota = cp.nro_cuota) " +
+            "    RETURNING 1 " +
+            "), actualizadas AS ( " +
+            "    UPDATE cronograma_de_pago cp " +
+            "       SET estado_cuota = n.estado_cuota, fecha_vencimiento = n.fecha_vencimiento, " +
+            "           capital = n.capital, interes = n.interes, " +
+            "           seguro_degravamen = n.seguro_degravamen, seguros_comisiones = n.seguros_comisiones, " +
+            "           itf = n.itf, monto_cuota = n.monto_cuota, dias = n.dias, " +
+            "           saldo_capital = n.saldo_capital, monto_pagado = 0, fecha_ultimo_pago = NULL " +
+            "      FROM nuevo n, contrato k " +
+            "     WHERE cp.codigo_contrato = k.codigo " +
+            "       AND cp.nro_cuota = n.nro_cuota " +
+            "       AND NOT EXISTS (SELECT 1 FROM iguales i WHERE i.nro_cuota = cp.nro_cuota) " +
+            "    RETURNING 1 " +
+            "), insertadas AS ( " +
+            "    INSERT INTO cronograma_de_pago " +
+            "    (nro_cuota, codigo_contrato, estado_cuota, fecha_vencimiento, " +
+            "     capital, interes, seguro_degravamen, seguros_comisiones, itf, " +
+            "     monto_cuota, dias, saldo_capital) " +
+            "    SELECT n.nro_cuota, k.codigo, n.estado_cuota, n.fecha_vencimiento, " +
+            "           n.capital, n.interes, n.seguro_degravamen, n.seguros_comisiones, n.itf, " +
+            "           n.monto_cuota, n.dias, n.saldo_capital " +
+            "      FROM nuevo n, contrato k " +
+            "     WHERE NOT EXISTS (SELECT 1 FROM cronograma_de_pago cp " +
+            "                        WHERE cp.codigo_contrato = k.codigo AND cp.nro_cuota = n.nro_cuota) " +
+            "    RETURNING 1 " +
+            "), pagos_cerrados AS ( " +
+            "    UPDATE movimiento_pago m " +
+            "       SET vigente = FALSE " +
+            "      FROM contrato k " +
+            "     WHERE m.codigo_contrato = k.codigo " +
+            "       AND m.vigente " +
+            "       AND NOT EXISTS (SELECT 1 FROM iguales i WHERE i.nro_cuota = m.nro_cuota) " +
+            "    RETURNING 1 " +
+            ") " +
+            "SELECT (SELECT COUNT(*) FROM borradas), " +
+            "       (SELECT COUNT(*) FROM actualizadas), " +
+            "       (SELECT COUNT(*) FROM insertadas), " +
+            "       (SELECT COUNT(*) FROM pagos_cerrados)";
+
+    private static final String SQL_VERIFICAR_MONTOS_PAGADOS =
+            "SELECT COUNT(*) FROM fn_verificarmontospagados(?)";
+
+    // También es PROCEDURE en PostgreSQL
+    private static final String SQL_ARCHIVAR_CRONOGRAMA = "CALL sp_archivarcronogramaactual(?, ?, ?, ?)";
+
     /**
      * Lista todas las cuotas (cronograma) de un contrato.
+     * Usa {@link CacheCronogramas}.
      */
     public List<Cuota> listarPorContrato(int codigoContrato) {
+        List<Cuota> enCache = CacheCronogramas.cuotas(codigoContrato);
+        if (enCache != null) {
+            return enCache;
+        }
+        long version = CacheCronogramas.version();
+
         List<Cuota> cronograma = new ArrayList<>();
         Connection cnx = null;
         PreparedStatement ps = null;
         ResultSet rs = null;
 
-        String sql =
-                "SELECT nro_cuota, codigo_contrato, estado_cuota, fecha_vencimiento, " +
-                "       capital, interes, seguro_degravamen, seguros_comisiones, itf, " +
-                "       monto_cuota, dias, saldo_capital " +
-                "FROM cronograma_de_pago " +
-                "WHERE codigo_contrato = ? " +
-                "ORDER BY nro_cuota";
-
         try {
             cnx = ConexionDB.getConnection();
-            ps = cnx.prepareStatement(sql);
+            ps = cnx.prepareStatement(SQL_LISTAR_POR_CONTRATO);
             ps.setInt(1, codigoContrato);
             rs = ps.executeQuery();
 
             while (rs.next()) {
-                Cuota c = new Cuota();
-                c.setNroCuota(rs.getInt("nro_cuota"));
-                c.setCodigoContrato(rs.getInt("codigo_contrato"));
-                c.setEstadoCuota(rs.getString("estado_cuota"));
-                c.setFechaVencimiento(rs.getDate("fecha_vencimiento"));
-                c.setCapital(rs.getBigDecimal("capital"));
-                c.setInteres(rs.getBigDecimal("interes"));
-                c.setSeguroDegravamen(rs.getBigDecimal("seguro_degravamen"));
-                c.setSegurosComisiones(rs.getBigDecimal("seguros_comisiones"));
-                c.setItf(rs.getBigDecimal("itf"));
-                c.setMontoCuota(rs.getBigDecimal("monto_cuota"));
-                c.setDias(rs.getInt("dias"));
-                try {
-                    c.setSaldoCapital(rs.getBigDecimal("saldo_capital"));
-                } catch (SQLException ex) {
-                    c.setSaldoCapital(BigDecimal.ZERO);
-                }
-                cronograma.add(c);
+                cronograma.add(mapearCuota(rs));
             }
+            CacheCronogramas.guardarCuotas(codigoContrato, cronograma, version);
 
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(
+            MensajesUI.mostrar(
                     null,
                     "Error al listar cronograma: " + e.getMessage(),
                     "Error SQL",
@@ -74,6 +184,62 @@ public class CuotaDAO {
         return cronograma;
     }
 
+    /**
+     * Cuotas de varios contratos, ordenadas por contrato y nro_cuota, leídas
+     * por cursor a medida que se consumen (ver {@link LectorCursor}). Para
+     * exportaciones grandes: la memoria no crece con el resultado. No usa
+     * {@link CacheCronogramas}.
+     *
+     * El Stream tiene una conexión tomada: se debe cerrar (try-with-resources).
+     *
+     * @throws SQLException si no se pudo ejecutar la consulta
+     */
+    public Stream<Cuota> leerPorContratos(int[] codigosContrato) throws SQLException {
+        return LectorCursor.abrir(SQL_LEER_POR_CONTRATOS,
+                (ps, cnx) -> ps.setArray(1, cnx.createArrayOf("integer",
+                        Arrays.stream(codigosContrato).boxed().toArray(Integer[]::new))),
+                CuotaDAO::mapearCuota);
+    }
+
+    /**
+     * Igual que {@link #leerPorContratos}, pero pasa cada cuota al consumidor.
+     *
+     * @return cantidad de cuotas leídas, o -1 si hubo un error de BD
+     */
+    public long recorrerPorContratos(int[] codigosContrato, Consumer<Cuota> consumidor) {
+        return LectorCursor.recorrer(SQL_LEER_POR_CONTRATOS,
+                (ps, cnx) -> ps.setArray(1, cnx.createArrayOf("integer",
+                        Arrays.stream(codigosContrato).boxed().toArray(Integer[]::new))),
+                CuotaDAO::mapearCuota, consumidor, "cronogramas");
+    }
+
+    /**
+     * Convierte la fila actual de SQL_LISTAR_POR_CONTRATO en una Cuota.
+     * Es de paquete para poder medirla en los benchmarks sin base de datos.
+     */
+    static Cuota mapearCuota(ResultSet rs) throws SQLException {
+        Cuota c = new Cuota();
+        c.setNroCuota(rs.getInt("nro_cuota"));
+        c.setCodigoContrato(rs.getInt("codigo_contrato"));
+        c.setEstadoCuota(rs.getString("estado_cuota"));
+        c.setFechaVencimiento(rs.getDate("fecha_vencimiento"));
+        c.setCapital(rs.getBigDecimal("capital"));
+        c.setInteres(rs.getBigDecimal("interes"));
+        c.setSeguroDegravamen(rs.getBigDecimal("seguro_degravamen"));
+        c.setSegurosComisiones(rs.getBigDecimal("seguros_comisiones"));
+        c.setItf(rs.getBigDecimal("itf"));
+        c.setMontoCuota(rs.getBigDecimal("monto_cuota"));
+        c.setDias(rs.getInt("dias"));
+        try {
+            c.setSaldoCapital(rs.getBigDecimal("saldo_capital"));
+        } catch (SQLException ex) {
+            c.setSaldoCapital(BigDecimal.ZERO);
+        }
+        c.setMontoPagado(rs.getBigDecimal("monto_pagado"));
+        c.setFechaUltimoPago(rs.getTimestamp("fecha_ultimo_pago"));
+        return c;
+    }
+
     /**
      * Llama al procedimiento sp_registrar_pago_cuota en PostgreSQL.
      */
@@ -81,22 +247,20 @@ public class CuotaDAO {
         Connection cnx = null;
         CallableStatement cs = null;
 
-        // IMPORTANTE: sin llaves {} para que se ejecute como CALL a un PROCEDURE
-        String sql = "CALL sp_registrar_pago_cuota(?, ?, ?, ?)";
-
         try {
             cnx = ConexionDB.getConnection();
-            cs = cnx.prepareCall(sql);
+            cs = cnx.prepareCall(SQL_REGISTRAR_PAGO_CUOTA);
             cs.setInt(1, codigoContrato);
             cs.setInt(2, nroCuota);
             cs.setBigDecimal(3, monto);
             cs.setString(4, usuario);
 
             cs.execute();
+            CacheCronogramas.invalidarContrato(codigoContrato);
             return true;
 
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(
+            MensajesUI.mostrar(
                     null,
                     "Error al registrar pago de cuota: " + e.getMessage(),
                     "Error SQL",
@@ -118,22 +282,19 @@ public class CuotaDAO {
         Connection cnx = null;
         PreparedStatement ps = null;
 
-        String sql = "UPDATE cronograma_de_pago " +
-                     "SET estado_cuota = ? " +
-                     "WHERE codigo_contrato = ? AND nro_cuota = ?";
-
         try {
             cnx = ConexionDB.getConnection();
-            ps = cnx.prepareStatement(sql);
+            ps = cnx.prepareStatement(SQL_ACTUALIZAR_ESTADO_CUOTA);
             ps.setString(1, nuevoEstado);
             ps.setInt(2, codigoContrato);
             ps.setInt(3, nroCuota);
 
             int filas = ps.executeUpdate();
+            CacheCronogramas.invalidarContrato(codigoContrato);
             return filas > 0;
 
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(
+            MensajesUI.mostrar(
                     null,
                     "Error al actualizar estado de cuota: " + e.getMessage(),
                     "Error SQL",
@@ -149,104 +310,152 @@ public class CuotaDAO {
     }
 
     /**
-     * Pago parcial: llama al procedimiento sp_registrarpagoparcial en PostgreSQL.
+     * Pago parcial: reparte el monto desde la cuota indicada en adelante.
      */
     public boolean registrarPagoParcialCuota(int codigoContrato,
                                              int nroCuotaInicio,
                                              BigDecimal montoPago,
                                              String usuario) {
-        Connection cnx = null;
-        CallableStatement cs = null;
+        return registrarPagoParcialDetallado(codigoContrato, nroCuotaInicio, montoPago, usuario) != null;
+    }
 
-        // También sin llaves {}, es un PROCEDURE
-        String sql = "CALL sp_registrarpagoparcial(?, ?, ?, ?)";
+    /**
+     * Pago parcial: llama a la función fn_registrarpagoparcial en PostgreSQL,
+     * que reparte el monto sobre las cuotas pendientes en una sola sentencia.
+     *
+     * @return cómo se repartió el pago (una entrada por cuota, en orden);
+     *         lista vacía si no había cuotas pendientes; null si hubo un error.
+     */
+    public List<AplicacionPago> registrarPagoParcialDetallado(int codigoContrato,
+                                                              int nroCuotaInicio,
+                                                              BigDecimal montoPago,
+                                                              String usuario) {
+        List<AplicacionPago> aplicaciones = new ArrayList<>();
+        Connection cnx = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
 
         try {
             cnx = ConexionDB.getConnection();
-            cs = cnx.prepareCall(sql);
-            cs.setInt(1, codigoContrato);
-            cs.setInt(2, nroCuotaInicio);
-            cs.setBigDecimal(3, montoPago);
-            cs.setString(4, usuario);
+            ps = cnx.prepareStatement(SQL_REGISTRAR_PAGO_PARCIAL);
+            ps.setInt(1, codigoContrato);
+            ps.setInt(2, nroCuotaInicio);
+            ps.setBigDecimal(3, montoPago);
+            ps.setString(4, usuario);
 
-            cs.execute();
-            return true;
+            rs = ps.executeQuery();
+            while (rs.next()) {
+                AplicacionPago a = new AplicacionPago();
+                a.setNroCuota(rs.getInt("cuota"));
+                a.setMontoAplicado(rs.getBigDecimal("monto_aplicado"));
+                a.setSaldoRestante(rs.getBigDecimal("saldo_restante"));
+                a.setEstadoResultante(rs.getString("estado_resultante"));
+                aplicaciones.add(a);
+            }
+            CacheCronogramas.invalidarContrato(codigoContrato);
+            return aplicaciones;
 
         } catch (SQLException e) {
             // En el script usamos ERRCODE '45000' para validaciones de negocio
             if ("45000".equals(e.getSQLState()) || "P0001".equals(e.getSQLState())) {
-                JOptionPane.showMessageDialog(
+                MensajesUI.mostrar(
                         null,
                         e.getMessage(),
                         "Validación",
                         JOptionPane.WARNING_MESSAGE
                 );
             } else {
-                JOptionPane.showMessageDialog(
+                MensajesUI.mostrar(
                         null,
                         "Error SQL al registrar pago parcial: " + e.getMessage(),
                         "Error SQL",
                         JOptionPane.ERROR_MESSAGE
                 );
             }
-            return false;
+            return null;
         } finally {
             try {
-                if (cs != null) cs.close();
+                if (rs != null) rs.close();
+                if (ps != null) ps.close();
             } catch (SQLException ignored) {}
             ConexionDB.close(cnx);
         }
     }
 
     /**
-     * Reemplaza por completo el cronograma de un contrato.
+     * Reemplaza por completo el cronograma de un contrato: al terminar, el
+     * contrato tiene exactamente las cuotas de la lista. Las cuotas que no
+     * cambian de condiciones conservan lo pagado y su estado; las demás
+     * quedan con monto_pagado en 0 y sus pagos cerrados en movimiento_pago
+     * (vigente = FALSE). Lo pagado de cada cuota anterior se conserva al
+     * archivarla ({@link #archivarCronogramaActual}).
+     *
+     * Se escribe solo la diferencia con el cronograma guardado (ver
+     * SQL_REEMPLAZAR_CRONOGRAMA), en una sentencia y un viaje a la BD;
+     * las cuotas iguales no se reescriben.
      */
     public boolean actualizarCronogramaCompleto(int codigoContrato, List<Cuota> nuevoCronograma) {
         Connection cnx = null;
-        PreparedStatement psDelete = null;
-        PreparedStatement psInsert = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
 
-        String sqlDelete = "DELETE FROM cronograma_de_pago WHERE codigo_contrato = ?";
-        String sqlInsert = "INSERT INTO cronograma_de_pago " +
-                "(nro_cuota, codigo_contrato, estado_cuota, fecha_vencimiento, " +
-                " capital, interes, seguro_degravamen, seguros_comisiones, itf, " +
-                " monto_cuota, dias, saldo_capital) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        int n = nuevoCronograma.size();
+        Integer[] nros = new Integer[n];
+        String[] estados = new String[n];
+        java.sql.Date[] vencimientos = new java.sql.Date[n];
+        BigDecimal[] capitales = new BigDecimal[n];
+        BigDecimal[] intereses = new BigDecimal[n];
+        BigDecimal[] degravamen = new BigDecimal[n];
+        BigDecimal[] comisiones = new BigDecimal[n];
+        BigDecimal[] itfs = new BigDecimal[n];
+        BigDecimal[] montos = new BigDecimal[n];
+        Integer[] dias = new Integer[n];
+        BigDecimal[] saldos = new BigDecimal[n];
+
+        for (int i = 0; i < n; i++) {
+            Cuota c = nuevoCronograma.get(i);
+            nros[i] = c.getNroCuota();
+            estados[i] = c.getEstadoCuota();
+            vencimientos[i] = new java.sql.Date(c.getFechaVencimiento().getTime());
+            capitales[i] = c.getCapital();
+            intereses[i] = c.getInteres();
+            degravamen[i] = c.getSeguroDegravamen() != null ? c.getSeguroDegravamen() : BigDecimal.ZERO;
+            comisiones[i] = c.getSegurosComisiones() != null ? c.getSegurosComisiones() : BigDecimal.ZERO;
+            itfs[i] = c.getItf() != null ? c.getItf() : BigDecimal.ZERO;
+            montos[i] = c.getMontoCuota();
+            dias[i] = c.getDias();
+            saldos[i] = c.getSaldoCapital() != null ? c.getSaldoCapital() : BigDecimal.ZERO;
+        }
 
         try {
             cnx = ConexionDB.getConnection();
-            cnx.setAutoCommit(false);
-
-            psDelete = cnx.prepareStatement(sqlDelete);
-            psDelete.setInt(1, codigoContrato);
-            psDelete.executeUpdate();
-
-            psInsert = cnx.prepareStatement(sqlInsert);
-            for (Cuota c : nuevoCronograma) {
-                psInsert.setInt(1, c.getNroCuota());
-                psInsert.setInt(2, codigoContrato);
-                psInsert.setString(3, c.getEstadoCuota());
-                psInsert.setDate(4, new java.sql.Date(c.getFechaVencimiento().getTime()));
-                psInsert.setBigDecimal(5, c.getCapital());
-                psInsert.setBigDecimal(6, c.getInteres());
-                psInsert.setBigDecimal(7, c.getSeguroDegravamen() != null ? c.getSeguroDegravamen() : BigDecimal.ZERO);
-                psInsert.setBigDecimal(8, c.getSegurosComisiones() != null ? c.getSegurosComisiones() : BigDecimal.ZERO);
-                psInsert.setBigDecimal(9, c.getItf() != null ? c.getItf() : BigDecimal.ZERO);
-                psInsert.setBigDecimal(10, c.getMontoCuota());
-                psInsert.setInt(11, c.getDias());
-                psInsert.setBigDecimal(12, c.getSaldoCapital() != null ? c.getSaldoCapital() : BigDecimal.ZERO);
-                psInsert.addBatch();
-            }
+            ps = cnx.prepareStatement(SQL_REEMPLAZAR_CRONOGRAMA);
+            ps.setArray(1, cnx.createArrayOf("integer", nros));
+            ps.setArray(2, cnx.createArrayOf("varchar", estados));
+            ps.setArray(3, cnx.createArrayOf("date", vencimientos));
+            ps.setArray(4, cnx.createArrayOf("numeric", capitales));
+            ps.setArray(5, cnx.createArrayOf("numeric", intereses));
+            ps.setArray(6, cnx.createArrayOf("numeric", degravamen));
+            ps.setArray(7, cnx.createArrayOf("numeric", comisiones));
+            ps.setArray(8, cnx.createArrayOf("numeric", itfs));
+            ps.setArray(9, cnx.createArrayOf("numeric", montos));
+            ps.setArray(10, cnx.createArrayOf("integer", dias));
+            ps.setArray(11, cnx.createArrayOf("numeric", saldos));
+            ps.setInt(12, codigoContrato);
 
-            psInsert.executeBatch();
-            cnx.commit();
+            rs = ps.executeQuery();
+            if (rs.next()) {
+                Metricas.sumar("cronograma.reemplazo.borradas", rs.getLong(1));
+                Metricas.sumar("cronograma.reemplazo.actualizadas", rs.getLong(2));
+                Metricas.sumar("cronograma.reemplazo.insertadas", rs.getLong(3));
+                Metricas.sumar("cronograma.reemplazo.sin_cambios", n - rs.getLong(2) - rs.getLong(3));
+                Metricas.sumar("cronograma.reemplazo.pagos_cerrados", rs.getLong(4));
+            }
+            CacheCronogramas.invalidarContrato(codigoContrato);
             return true;
 
         } catch (SQLException e) {
-            try {
-                if (cnx != null) cnx.rollback();
-            } catch (SQLException ignored) {}
-            JOptionPane.showMessageDialog(
+            MensajesUI.mostrar(
                     null,
                     "Error al actualizar cronograma: " + e.getMessage(),
                     "Error SQL",
@@ -255,9 +464,8 @@ public class CuotaDAO {
             return false;
         } finally {
             try {
-                if (psDelete != null) psDelete.close();
-                if (psInsert != null) psInsert.close();
-                if (cnx != null) cnx.setAutoCommit(true);
+                if (rs != null) rs.close();
+                if (ps != null) ps.close();
             } catch (SQLException ignored) {}
             ConexionDB.close(cnx);
         }
@@ -273,12 +481,9 @@ public class CuotaDAO {
         Connection cnx = null;
         CallableStatement cs = null;
 
-        // También es PROCEDURE en PostgreSQL
-        String sql = "CALL sp_archivarcronogramaactual(?, ?, ?, ?)";
-
         try {
             cnx = ConexionDB.getConnection();
-            cs = cnx.prepareCall(sql);
+            cs = cnx.prepareCall(SQL_ARCHIVAR_CRONOGRAMA);
             cs.setInt(1, codigoContrato);
             cs.setString(2, tipoCambio);
             cs.setString(3, descripcion);
@@ -288,7 +493,7 @@ public class CuotaDAO {
             return true;
 
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(
+            MensajesUI.mostrar(
                     null,
                     "Error al archivar cronograma: " + e.getMessage(),
                     "Error SQL",
@@ -302,4 +507,43 @@ public class CuotaDAO {
             ConexionDB.close(cnx);
         }
     }
+
+    /**
+     * Compara monto_pagado / fecha_ultimo_pago del cronograma con los
+     * movimientos de pago (fn_verificarmontospagados).
+     *
+     * @param corregir true para reconstruir desde los movimientos las cuotas que no coinciden
+     * @return cantidad de cuotas que no coincidían, o -1 si hubo un error
+     */
+    public int verificarMontosPagados(boolean corregir) {
+        Connection cnx = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+
+        try {
+            cnx = ConexionDB.getConnection();
+            ps = cnx.prepareStatement(SQL_VERIFICAR_MONTOS_PAGADOS);
+            ps.setBoolean(1, corregir);
+            rs = ps.executeQuery();
+            if (corregir) {
+                CacheCronogramas.limpiar();
+            }
+            return rs.next() ? rs.getInt(1) : 0;
+
+        } catch (SQLException e) {
+            MensajesUI.mostrar(
+                    null,
+                    "Error al verificar montos pagados: " + e.getMessage(),
+                    "Error SQL",
+                    JOptionPane.ERROR_MESSAGE
+            );
+            return -1;
+        } finally {
+            try {
+                if (rs != null) rs.close();
+                if (ps != null) ps.close();
+            } catch (SQLException ignored) {}
+            ConexionDB.close(cnx);
+        }
+    }
 }
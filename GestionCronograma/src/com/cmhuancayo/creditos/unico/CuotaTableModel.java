@@ -2,9 +2,6 @@ package com.cmhuancayo.creditos.unico;
 
 import javax.swing.table.AbstractTableModel;
 import java.util.List;
-import java.math.BigDecimal;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 
 /**
  * TableModel para mostrar el cronograma de pagos (lista de Cuota)
@@ -19,11 +16,19 @@ import java.util.Date;
  *  5 - Monto total de la cuota
  *  6 - Saldo de capital después de la cuota
  *  7 - Estado de la cuota (Pendiente, Pagada, Vencida, Parcial, etc.)
+ *
+ * Los textos de las celdas se calculan una sola vez en {@link #setCuotas}
+ * (con {@link FormatosUI}); getValueAt solo los devuelve, así que repintar
+ * la tabla al desplazarse o redimensionar no crea objetos. Si se modifica una
+ * cuota de la lista, hay que volver a llamar a setCuotas.
  */
 public class CuotaTableModel extends AbstractTableModel {
 
     private List<Cuota> cuotas;
 
+    /** Texto de cada celda, por fila y columna. */
+    private String[][] celdas = new String[0][];
+
     // Encabezados de columnas
     private static final String[] COLUMNAS = {
             "N°",
@@ -38,6 +43,7 @@ public class CuotaTableModel extends AbstractTableModel {
 
     public CuotaTableModel(List<Cuota> cuotas) {
         this.cuotas = cuotas;
+        this.celdas = formatear(cuotas);
     }
 
     /**
@@ -45,6 +51,7 @@ public class CuotaTableModel extends AbstractTableModel {
      */
     public void setCuotas(List<Cuota> cuotas) {
         this.cuotas = cuotas;
+        this.celdas = formatear(cuotas);
         fireTableDataChanged();
     }
 
@@ -72,49 +79,37 @@ public class CuotaTableModel extends AbstractTableModel {
 
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        if (cuotas == null || rowIndex < 0 || rowIndex >= cuotas.size()) {
+        if (rowIndex < 0 || rowIndex >= celdas.length
+                || columnIndex < 0 || columnIndex >= COLUMNAS.length) {
             return null;
         }
-        Cuota c = cuotas.get(rowIndex);
-
-        switch (columnIndex) {
-            case 0: // N°
-                return String.format("%03d", c.getNroCuota());
-            case 1: // Fecha venc.
-                return formatFecha(c.getFechaVencimiento());
-            case 2: // Capital
-                return formatMoneda(c.getCapital());
-            case 3: // Interés
-                return formatMoneda(c.getInteres());
-            case 4: // Seguro de desgravamen
-                return formatMoneda(c.getSeguroDegravamen());
-            case 5: // Monto de la cuota
-                return formatMoneda(c.getMontoCuota());
-            case 6: // Saldo capital
-                return formatMoneda(c.getSaldoCapital());
-            case 7: // Estado
-                return c.getEstadoCuota();
-            default:
-                return null;
-        }
+        return celdas[rowIndex][columnIndex];
     }
 
     /**
-     * Da formato de moneda en soles, con 2 decimales y separador de miles.
-     * Ejemplo: S/ 1,234.56
+     * Calcula los textos de todas las celdas.
+     * Montos en soles con separador de miles (S/ 1,234.56), fechas en
+     * yyyy-MM-dd y N° con 3 dígitos.
      */
-    private String formatMoneda(BigDecimal valor) {
-        if (valor == null) return "S/ 0.00";
-        return String.format("S/ %,.2f", valor);
-    }
-
-    /**
-     * Da formato a la fecha en yyyy-MM-dd.
-     */
-    private String formatFecha(Date fecha) {
-        if (fecha == null) return "-";
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-        return sdf.format(fecha);
+    private static String[][] formatear(List<Cuota> cuotas) {
+        if (cuotas == null) {
+            return new String[0][];
+        }
+        String[][] filas = new String[cuotas.size()][];
+        for (int i = 0; i < filas.length; i++) {
+            Cuota c = cuotas.get(i);
+            filas[i] = new String[] {
+                    FormatosUI.nroCuota(c.getNroCuota()),           // N°
+                    FormatosUI.fecha(c.getFechaVencimiento()),      // Fecha venc.
+                    FormatosUI.moneda(c.getCapital()),              // Capital
+                    FormatosUI.moneda(c.getInteres()),              // Interés
+                    FormatosUI.moneda(c.getSeguroDegravamen()),     // Seguro de desgravamen
+                    FormatosUI.moneda(c.getMontoCuota()),           // Monto de la cuota
+                    FormatosUI.moneda(c.getSaldoCapital()),         // Saldo capital
+                    c.getEstadoCuota()                              // Estado
+            };
+        }
+        return filas;
     }
 
     /**
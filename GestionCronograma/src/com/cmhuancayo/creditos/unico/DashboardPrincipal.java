@@ -144,6 +144,16 @@ public class DashboardPrincipal extends JFrame {
 
             // 2) Si todo OK, recién mostramos la ventana principal
             new DashboardPrincipal().setVisible(true);
+
+            // 3) Avisos de cambios de cronograma hechos desde otras instancias
+            EscuchaCambiosCronograma.iniciar();
+
+            // 4) Cuotas que vencen mientras la aplicación está abierta
+            //    (solo si se activó cmh.vencidas.programar en esta instancia)
+            ProgramadorCuotasVencidas.iniciar();
+
+            // 5) Métricas internas en la salida estándar (periódicas y al cerrar)
+            Metricas.iniciarRegistro();
         } else {
             // Si de verdad no se pudo conectar / crear, avisamos y salimos
             JOptionPane.showMessageDialog(
@@ -0,0 +1,116 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
+
+/**
+ * Hilos para ejecutar el acceso a base de datos fuera del hilo de eventos de
+ * Swing (EDT), de modo que la ventana no se congele mientras se espera a
+ * PostgreSQL.
+ *
+ * El ejecutor es acotado: tiene pocos hilos (no tiene sentido tener más que
+ * conexiones en el pool) y una cola de espera limitada. Si la cola se llena,
+ * la tarea falla con {@link RejectedExecutionException} en lugar de
+ * acumularse. Los hilos son daemon para no impedir el cierre de la aplicación.
+ *
+ * Configuración (propiedades del sistema):
+ * <ul>
+ *     <li>cmh.tareas.hilos (4)</li>
+ *     <li>cmh.tareas.cola (64)</li>
+ * </ul>
+ */
+public final class EjecutorTareas {
+
+    private static final int HILOS = Integer.getInteger("cmh.tareas.hilos", 4);
+    private static final int COLA = Integer.getInteger("cmh.tareas.cola", 64);
+
+    private static final ThreadPoolExecutor EJECUTOR = crearEjecutor();
+
+    /** Ejecuta en el hilo de eventos de Swing; para los callbacks *Async de CompletableFuture. */
+    public static final Executor EDT = SwingUtilities::invokeLater;
+
+    private EjecutorTareas() {
+    }
+
+    private static ThreadPoolExecutor crearEjecutor() {
+        AtomicInteger contador = new AtomicInteger();
+        ThreadPoolExecutor ejecutor = new ThreadPoolExecutor(
+                HILOS, HILOS,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(COLA),
+                r -> {
+                    Thread t = new Thread(r, "cmh-tarea-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        ejecutor.allowCoreThreadTimeOut(true);
+        return ejecutor;
+    }
+
+    /**
+     * Ejecuta la tarea en un hilo del ejecutor.
+     *
+     * Si el futuro devuelto se cancela antes de que la tarea empiece, la tarea
+     * no se ejecuta; si ya empezó, se interrumpe su hilo (una consulta JDBC en
+     * curso no se detiene por eso, pero su resultado se descarta).
+     * Las excepciones de la tarea completan el futuro excepcionalmente.
+     */
+    public static <T> CompletableFuture<T> enSegundoPlano(Callable<T> tarea) {
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        Future<?> ejecucion;
+        try {
+            ejecucion = EJECUTOR.submit(() -> {
+                if (resultado.isDone()) {
+                    return;
+                }
+                long inicio = System.nanoTime();
+                try {
+                    resultado.complete(tarea.call());
+                } catch (Throwable ex) {
+                    resultado.completeExceptionally(ex);
+                } finally {
+                    Metricas.registrarTiempo("tareas.ejecucion", System.nanoTime() - inicio);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            Metricas.incrementar("tareas.rechazadas");
+            resultado.completeExceptionally(ex);
+            return resultado;
+        }
+
+        resultado.whenComplete((r, ex) -> {
+            if (resultado.isCancelled()) {
+                Metricas.incrementar("tareas.canceladas");
+                ejecucion.cancel(true);
+            }
+        });
+        return resultado;
+    }
+
+    /**
+     * Causa real de un error recibido en un callback de CompletableFuture
+     * (sin los envoltorios CompletionException).
+     */
+    public static Throwable causa(Throwable ex) {
+        Throwable t = ex;
+        while (t instanceof CompletionException && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    /** Tareas en ejecución más las que esperan en la cola. */
+    public static int pendientes() {
+        return EJECUTOR.getActiveCount() + EJECUTOR.getQueue().size();
+    }
+}
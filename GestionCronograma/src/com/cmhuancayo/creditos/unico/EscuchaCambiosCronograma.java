@@ -0,0 +1,197 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
+import javax.swing.SwingUtilities;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+/**
+ * Escucha los cambios de cronograma hechos desde cualquier instancia de la
+ * aplicación (LISTEN en el canal {@value #CANAL} de PostgreSQL).
+ *
+ * Los procedimientos de pago y de cambio de cronograma de la BD hacen
+ * pg_notify con el codigo_contrato (ver CargaDb3). Por cada aviso se
+ * invalida el contrato en {@link CacheCronogramas} y se avisa a los oyentes
+ * registrados (las pestañas de gestión abiertas) para que se refresquen.
+ *
+ * <ul>
+ *     <li>Usa una sola conexión física propia, fuera del pool: LISTEN vale
+ *         para la sesión y el pool reparte sus conexiones entre hilos.</li>
+ *     <li>Un hilo daemon espera los avisos con
+ *         {@link PGConnection#getNotifications(int)}; los que llegan juntos
+ *         se agrupan y se entrega cada contrato una sola vez.</li>
+ *     <li>Si se pierde la conexión, se reconecta con espera creciente (hasta
+ *         30 s). Los avisos enviados mientras tanto se perdieron, así que al
+ *         reconectar se limpia la caché y los oyentes reciben {@link #TODOS}.</li>
+ * </ul>
+ *
+ * Los oyentes se llaman en el hilo de eventos de Swing.
+ */
+public final class EscuchaCambiosCronograma {
+
+    /** Canal de NOTIFY usado por los procedimientos de la BD. */
+    static final String CANAL = "cronograma_cambios";
+
+    /** Código que reciben los oyentes cuando pudo cambiar cualquier contrato. */
+    public static final int TODOS = 0;
+
+    /** Espera máxima de cada llamada a getNotifications; luego se valida la conexión. */
+    private static final int ESPERA_AVISOS_MS = 5_000;
+
+    private static final long REINTENTO_INICIAL_MS = 1_000L;
+    private static final long REINTENTO_MAXIMO_MS = 30_000L;
+
+    private static final List<IntConsumer> OYENTES = new CopyOnWriteArrayList<>();
+
+    private static Thread hilo;
+    private static volatile boolean activa;
+    private static volatile Connection conexion;
+
+    private EscuchaCambiosCronograma() {
+    }
+
+    /** Inicia la escucha (si ya estaba iniciada, no hace nada). */
+    public static synchronized void iniciar() {
+        if (hilo != null) {
+            return;
+        }
+        activa = true;
+        hilo = new Thread(EscuchaCambiosCronograma::escuchar, "cmh-escucha-cronogramas");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /** Detiene la escucha y cierra su conexión. */
+    public static synchronized void detener() {
+        activa = false;
+        if (hilo != null) {
+            hilo.interrupt();
+            hilo = null;
+        }
+        cerrar(conexion);
+    }
+
+    /**
+     * Registra un oyente; recibe el codigo_contrato que cambió, o
+     * {@link #TODOS}. Se llama en el EDT.
+     */
+    public static void agregarOyente(IntConsumer oyente) {
+        OYENTES.add(oyente);
+    }
+
+    public static void quitarOyente(IntConsumer oyente) {
+        OYENTES.remove(oyente);
+    }
+
+    /* =========================================================
+     *  HILO DE ESCUCHA
+     * ========================================================= */
+
+    private static void escuchar() {
+        long reintento = REINTENTO_INICIAL_MS;
+        boolean primeraConexion = true;
+
+        while (activa) {
+            Connection cnx = null;
+            try {
+                cnx = ConexionDB.abrirConexionFisica();
+                conexion = cnx;
+                try (Statement st = cnx.createStatement()) {
+                    st.execute("LISTEN " + CANAL);
+                }
+                PGConnection pg = cnx.unwrap(PGConnection.class);
+                Metricas.incrementar("escucha.conexiones");
+
+                if (!primeraConexion) {
+                    recibir(Set.of(TODOS));
+                }
+                primeraConexion = false;
+                reintento = REINTENTO_INICIAL_MS;
+
+                while (activa) {
+                    PGNotification[] avisos = pg.getNotifications(ESPERA_AVISOS_MS);
+                    if (avisos == null || avisos.length == 0) {
+                        // Sin avisos: comprobar que la conexión siga viva
+                        if (!cnx.isValid(5)) {
+                            throw new SQLException("Se perdió la conexión de escucha.");
+                        }
+                        continue;
+                    }
+                    Set<Integer> contratos = new LinkedHashSet<>();
+                    for (PGNotification aviso : avisos) {
+                        try {
+                            contratos.add(Integer.parseInt(aviso.getParameter().trim()));
+                        } catch (NumberFormatException ex) {
+                            contratos.add(TODOS);
+                        }
+                    }
+                    Metricas.sumar("escucha.avisos", avisos.length);
+                    recibir(contratos);
+                }
+
+            } catch (SQLException ex) {
+                if (!activa) {
+                    break;
+                }
+                Metricas.incrementar("escucha.errores");
+                System.err.println("Escucha de cambios de cronograma: " + ex.getMessage()
+                        + " (reintento en " + reintento + " ms)");
+                try {
+                    Thread.sleep(reintento);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                reintento = Math.min(reintento * 2, REINTENTO_MAXIMO_MS);
+
+            } finally {
+                conexion = null;
+                cerrar(cnx);
+            }
+        }
+    }
+
+    /** Invalida la caché y avisa a los oyentes en el EDT. */
+    private static void recibir(Set<Integer> contratos) {
+        if (contratos.contains(TODOS)) {
+            CacheCronogramas.limpiar();
+            contratos = Set.of(TODOS);
+        } else {
+            for (int contrato : contratos) {
+                CacheCronogramas.invalidarContrato(contrato);
+            }
+        }
+
+        if (OYENTES.isEmpty()) {
+            return;
+        }
+        Set<Integer> aEntregar = contratos;
+        SwingUtilities.invokeLater(() -> {
+            for (int contrato : aEntregar) {
+                for (IntConsumer oyente : OYENTES) {
+                    try {
+                        oyente.accept(contrato);
+                    } catch (RuntimeException ex) {
+                        System.err.println("Error en oyente de cambios de cronograma: " + ex.getMessage());
+                    }
+                }
+            }
+        });
+    }
+
+    private static void cerrar(Connection cnx) {
+        if (cnx == null) {
+            return;
+        }
+        try {
+            cnx.close();
+        } catch (SQLException ignored) {}
+    }
+}
@@ -117,6 +117,9 @@ public class EstilosUI {
         ));
     }
 
+    /** Margen interior de las celdas de tabla (compartido por todos los renderizadores). */
+    private static final Border BORDE_CELDA = new EmptyBorder(0, 10, 0, 10);
+
     /**
      * Estiliza una JTable (cabecera roja, trama de cebra).
      */
@@ -140,7 +143,16 @@ public class EstilosUI {
         header.setPreferredSize(new Dimension(100, 40));
 
         // Aplicar trama (Zebra)
-        TableCellRenderer rendererZebra = new DefaultTableCellRenderer() {
+        tabla.setDefaultRenderer(Object.class, crearRendererTabla(SwingConstants.LEADING));
+    }
+
+    /**
+     * Renderizador de celdas con la trama de cebra y la alineación indicada
+     * (SwingConstants.RIGHT para montos, CENTER para números cortos).
+     * No crea objetos al pintar: los colores y el borde son compartidos.
+     */
+    public static TableCellRenderer crearRendererTabla(int alineacion) {
+        DefaultTableCellRenderer renderer = new DefaultTableCellRenderer() {
             @Override
             public Component getTableCellRendererComponent(JTable table, Object value,
                                                            boolean isSelected, boolean hasFocus,
@@ -150,11 +162,12 @@ public class EstilosUI {
                     c.setBackground(row % 2 == 0 ? BLANCO : GRIS_TABLA_ZEBRA);
                 }
                 // Añadir padding a las celdas
-                setBorder(BorderFactory.createEmptyBorder(0, 10, 0, 10));
+                setBorder(BORDE_CELDA);
                 return c;
             }
         };
-        tabla.setDefaultRenderer(Object.class, rendererZebra);
+        renderer.setHorizontalAlignment(alineacion);
+        return renderer;
     }
 
     /**
@@ -0,0 +1,300 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * Exporta a PDF los cronogramas de muchos contratos a la vez (envío de fin
+ * de mes), generando varios documentos en paralelo.
+ *
+ * <ul>
+ *     <li>Los contratos se reparten en un grupo acotado de hilos
+ *         (cmh.pdf.hilos, hasta 4 por defecto). La cola de espera es corta:
+ *         si se llena, el hilo que reparte genera él mismo el siguiente PDF,
+ *         así nunca hay muchos contratos cargados a la vez.</li>
+ *     <li>Cada hilo usa su propio {@link CronogramaPdfExporter} (formatos y
+ *         fuentes) y lo reutiliza para todos sus documentos.</li>
+ *     <li>Los clientes se leen una sola vez al empezar. Las cuotas de todos
+ *         los contratos salen de un solo cursor ordenado por contrato (sin
+ *         pasar por {@link CacheCronogramas}): el hilo que reparte lo va
+ *         leyendo, separa las cuotas de cada contrato y entrega el contrato
+ *         con sus cuotas a un hilo. Por la cola corta, solo hay unos pocos
+ *         contratos leídos a la vez.</li>
+ *     <li>Cada documento usa poca memoria y el resto en archivo temporal
+ *         (cmh.pdf.memoriaDocumento). La unión copia las páginas de cada
+ *         parte a un solo documento respaldado en archivo temporal y cierra
+ *         la parte enseguida, así hay una sola parte abierta a la vez.</li>
+ * </ul>
+ *
+ * Los métodos de exportación bloquean hasta terminar; desde la interfaz se
+ * llaman con {@link EjecutorTareas}. Un contrato con error no detiene el
+ * lote: queda en {@link ResultadoExportacionLote#getErrores()}.
+ */
+public class ExportadorCronogramasLote {
+
+    /** Avance del lote; se llama desde los hilos de exportación. */
+    public interface Progreso {
+        void actualizar(int terminados, int total);
+    }
+
+    private static final int HILOS = Integer.getInteger("cmh.pdf.hilos",
+            Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private final int hilos;
+    private final ClienteDAO clienteDAO = new ClienteDAO();
+    private final CuotaDAO cuotaDAO = new CuotaDAO();
+
+    private volatile boolean cancelado;
+
+    public ExportadorCronogramasLote() {
+        this(HILOS);
+    }
+
+    public ExportadorCronogramasLote(int hilos) {
+        this.hilos = Math.max(1, hilos);
+    }
+
+    /**
+     * Pide detener la exportación; los PDF ya empezados se terminan. Vale
+     * también si se llama antes de empezar. Una instancia cancelada no
+     * vuelve a exportar: para otro lote, se crea otra.
+     */
+    public void cancelar() {
+        cancelado = true;
+    }
+
+    /**
+     * Un PDF por contrato en la carpeta indicada, con el mismo nombre que al
+     * descargarlo desde la gestión del cliente
+     * (cronograma_contrato_&lt;codigo&gt;.pdf).
+     *
+     * @param progreso puede ser null
+     */
+    public ResultadoExportacionLote exportarPorContrato(List<Credito> creditos,
+                                                        File carpeta,
+                                                        Progreso progreso) throws IOException {
+        Files.createDirectories(carpeta.toPath());
+        return exportar(creditos, i -> new File(carpeta,
+                "cronograma_contrato_" + creditos.get(i).getCodigoContrato() + ".pdf"), progreso);
+    }
+
+    /**
+     * Un solo PDF con los cronogramas de todos los contratos, en el orden de
+     * la lista (se omiten los que tuvieron error).
+     *
+     * @param progreso puede ser null
+     */
+    public ResultadoExportacionLote exportarUnido(List<Credito> creditos,
+                                                  File destino,
+                                                  Progreso progreso) throws IOException {
+        File temporal = Files.createTempDirectory("cmh-cronogramas").toFile();
+        File[] partes = new File[creditos.size()];
+        try {
+            ResultadoExportacionLote resultado = exportar(creditos, i -> {
+                partes[i] = new File(temporal, i + ".pdf");
+                return partes[i];
+            }, progreso);
+
+            if (!resultado.isCancelada() && resultado.getExportados() > 0) {
+                long inicio = System.nanoTime();
+                unir(creditos, partes, resultado, destino);
+                Metricas.registrarTiempo("pdf.lote.union", System.nanoTime() - inicio);
+            }
+            return resultado;
+
+        } finally {
+            File[] archivos = temporal.listFiles();
+            if (archivos != null) {
+                for (File f : archivos) {
+                    f.delete();
+                }
+            }
+            temporal.delete();
+        }
+    }
+
+    /**
+     * Copia las páginas de cada parte (en orden, sin las que tuvieron error)
+     * a un solo documento y lo guarda en el destino. appendDocument copia
+     * también el contenido de las páginas, así cada parte se puede cerrar
+     * apenas se agrega; el documento unido guarda todo en archivo temporal.
+     */
+    private static void unir(List<Credito> creditos, File[] partes,
+                             ResultadoExportacionLote resultado, File destino) throws IOException {
+        PDFMergerUtility union = new PDFMergerUtility();
+        try (PDDocument unido = new PDDocument(MemoryUsageSetting.setupTempFileOnly())) {
+            for (int i = 0; i < partes.length; i++) {
+                if (partes[i] == null
+                        || resultado.getErrores().containsKey(creditos.get(i).getCodigoContrato())) {
+                    continue;
+                }
+                try (PDDocument parte = PDDocument.load(partes[i], MemoryUsageSetting.setupTempFileOnly())) {
+                    union.appendDocument(unido, parte);
+                }
+                partes[i].delete();
+            }
+            unido.save(destino);
+        }
+    }
+
+    /* =========================================================
+     *  GENERACIÓN EN PARALELO
+     * ========================================================= */
+
+    private ResultadoExportacionLote exportar(List<Credito> creditos,
+                                              IntFunction<File> destinoDe,
+                                              Progreso progreso) {
+        long inicio = System.nanoTime();
+        int total = creditos.size();
+
+        Map<Integer, Cliente> clientes = cargarClientes(creditos);
+        Map<Integer, String> errores = new ConcurrentSkipListMap<>();
+        AtomicInteger terminados = new AtomicInteger();
+        AtomicInteger exportados = new AtomicInteger();
+
+        ThreadLocal<CronogramaPdfExporter> exportadores = ThreadLocal.withInitial(() -> {
+            try {
+                return new CronogramaPdfExporter();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+
+        // Los contratos se reparten en el orden del cursor (por código); cada
+        // uno sigue yendo a su posición de la lista (destinoDe)
+        int[] orden = IntStream.range(0, total).boxed()
+                .sorted(Comparator.comparingInt(i -> creditos.get(i).getCodigoContrato()))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        int[] codigosContrato = creditos.stream()
+                .mapToInt(Credito::getCodigoContrato)
+                .distinct()
+                .toArray();
+
+        ThreadPoolExecutor ejecutor = crearEjecutor();
+        int repartidos = 0;
+        try {
+            try (Stream<Cuota> cursor = cuotaDAO.leerPorContratos(codigosContrato)) {
+                Iterator<Cuota> filas = cursor.iterator();
+                Cuota fila = filas.hasNext() ? filas.next() : null;
+                List<Cuota> cuotas = new ArrayList<>();
+                int contratoAnterior = 0;
+
+                for (; repartidos < total && !cancelado; repartidos++) {
+                    int i = orden[repartidos];
+                    Credito credito = creditos.get(i);
+                    int contrato = credito.getCodigoContrato();
+
+                    // Un contrato repetido en la lista usa las mismas cuotas
+                    if (repartidos == 0 || contrato != contratoAnterior) {
+                        cuotas = new ArrayList<>();
+                        while (fila != null && fila.getCodigoContrato() == contrato) {
+                            cuotas.add(fila);
+                            fila = filas.hasNext() ? filas.next() : null;
+                        }
+                        contratoAnterior = contrato;
+                    }
+
+                    List<Cuota> delContrato = cuotas;
+                    File destino = destinoDe.apply(i);
+                    ejecutor.execute(() -> {
+                        if (cancelado) {
+                            return;
+                        }
+                        try {
+                            Cliente cliente = clientes.get(credito.getCodigoCliente());
+                            if (cliente == null) {
+                                throw new IllegalArgumentException(
+                                        "No se encontró el cliente " + credito.getCodigoCliente());
+                            }
+                            exportadores.get().generar(credito, cliente, delContrato, destino);
+                            exportados.incrementAndGet();
+                        } catch (IOException | RuntimeException ex) {
+                            errores.put(contrato, String.valueOf(ex.getMessage()));
+                        }
+                        if (progreso != null) {
+                            progreso.actualizar(terminados.incrementAndGet(), total);
+                        }
+                    });
+                }
+
+            } catch (SQLException | IllegalStateException ex) {
+                // Sin el cursor no hay cuotas: los contratos que faltaban quedan con el error
+                for (int k = repartidos; k < total; k++) {
+                    errores.put(creditos.get(orden[k]).getCodigoContrato(), String.valueOf(ex.getMessage()));
+                    if (progreso != null) {
+                        progreso.actualizar(terminados.incrementAndGet(), total);
+                    }
+                }
+            }
+            ejecutor.shutdown();
+            ejecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            cancelado = true;
+        } finally {
+            ejecutor.shutdownNow();
+        }
+
+        long duracion = System.nanoTime() - inicio;
+        Metricas.registrarTiempo("pdf.lote", duracion);
+        Metricas.sumar("pdf.lote.exportados", exportados.get());
+        Metricas.sumar("pdf.lote.errores", errores.size());
+
+        boolean incompleta = cancelado && exportados.get() + errores.size() < total;
+        return new ResultadoExportacionLote(total, exportados.get(), errores,
+                incompleta, duracion, hilos);
+    }
+
+    /**
+     * Hilos acotados con una cola corta; con la cola llena la tarea la
+     * ejecuta el hilo que reparte, lo que frena el reparto (contrapresión).
+     */
+    private ThreadPoolExecutor crearEjecutor() {
+        AtomicInteger contador = new AtomicInteger();
+        return new ThreadPoolExecutor(
+                hilos, hilos,
+                0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(hilos * 2),
+                r -> {
+                    Thread t = new Thread(r, "cmh-pdf-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /** Los clientes de todo el lote, en una sola consulta. */
+    private Map<Integer, Cliente> cargarClientes(List<Credito> creditos) {
+        int[] codigos = creditos.stream()
+                .mapToInt(Credito::getCodigoCliente)
+                .distinct()
+                .toArray();
+        Map<Integer, Cliente> clientes = new HashMap<>(codigos.length * 2);
+        for (Cliente c : clienteDAO.listarPorCodigos(codigos)) {
+            clientes.put(c.getCodigoCliente(), c);
+        }
+        return clientes;
+    }
+}
@@ -0,0 +1,65 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Formatos de montos y fechas para mostrar en la interfaz.
+ *
+ * Los formateadores se crean una sola vez: DateTimeFormatter es inmutable y
+ * se comparte; DecimalFormat no es seguro entre hilos, así que hay uno por
+ * hilo. El resultado es el mismo que el de los String.format /
+ * SimpleDateFormat que se usaban antes ("S/ 1,234.56", "2025-01-31", "007").
+ */
+public final class FormatosUI {
+
+    private static final DateTimeFormatter FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    /** Mismos separadores que String.format("%,.2f") con la configuración regional por defecto. */
+    private static final ThreadLocal<DecimalFormat> MONEDA = ThreadLocal.withInitial(() -> {
+        DecimalFormat df = new DecimalFormat("S/ #,##0.00;S/ -#,##0.00",
+                DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT)));
+        df.setRoundingMode(RoundingMode.HALF_UP);
+        return df;
+    });
+
+    /** Números de cuota 000 a 999 ya formateados. */
+    private static final String[] NRO_CUOTA = new String[1000];
+
+    static {
+        for (int i = 0; i < NRO_CUOTA.length; i++) {
+            NRO_CUOTA[i] = String.format("%03d", i);
+        }
+    }
+
+    private FormatosUI() {
+    }
+
+    /** Monto en soles con separador de miles y 2 decimales; "S/ 0.00" si es null. */
+    public static String moneda(BigDecimal valor) {
+        if (valor == null) return "S/ 0.00";
+        return MONEDA.get().format(valor);
+    }
+
+    /** Fecha en yyyy-MM-dd (zona horaria por defecto); "-" si es null. */
+    public static String fecha(Date fecha) {
+        if (fecha == null) return "-";
+        // getTime() y no toInstant(): java.sql.Date no admite toInstant()
+        return FECHA.format(Instant.ofEpochMilli(fecha.getTime()).atZone(ZoneId.systemDefault()));
+    }
+
+    /** Número de cuota con 3 dígitos (001, 002, ...). */
+    public static String nroCuota(int nro) {
+        if (nro >= 0 && nro < NRO_CUOTA.length) {
+            return NRO_CUOTA[nro];
+        }
+        return String.format("%03d", nro);
+    }
+}
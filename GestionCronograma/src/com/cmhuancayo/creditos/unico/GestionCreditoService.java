@@ -0,0 +1,151 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Operaciones de la gestión de un cliente (créditos, cronograma, pagos y
+ * cambios de cronograma) ejecutadas fuera del hilo de eventos de Swing.
+ *
+ * Cada método devuelve un {@link CompletableFuture} que se completa en un
+ * hilo de {@link EjecutorTareas}; para tocar la interfaz con el resultado se
+ * usan los callbacks *Async con {@link EjecutorTareas#EDT}. Los DAO siguen
+ * informando sus propios errores (con {@link MensajesUI}) y devuelven
+ * false / null / -1 como siempre; aquí solo se agrupan en transacciones.
+ */
+public class GestionCreditoService {
+
+    private final CalculadoraCreditoService calculadora;
+    private final ClienteDAO clienteDAO;
+    private final CreditoDAO creditoDAO;
+    private final CuotaDAO cuotaDAO;
+    private final HistorialCronogramaDAO historialDAO;
+
+    public GestionCreditoService(CalculadoraCreditoService calculadora,
+                                 ClienteDAO clienteDAO,
+                                 CreditoDAO creditoDAO,
+                                 CuotaDAO cuotaDAO,
+                                 HistorialCronogramaDAO historialDAO) {
+        this.calculadora = calculadora;
+        this.clienteDAO = clienteDAO;
+        this.creditoDAO = creditoDAO;
+        this.cuotaDAO = cuotaDAO;
+        this.historialDAO = historialDAO;
+    }
+
+    /* =========================================================
+     *  CONSULTAS
+     * ========================================================= */
+
+    public CompletableFuture<List<Credito>> listarCreditos(int codigoCliente) {
+        return EjecutorTareas.enSegundoPlano(() -> creditoDAO.listarPorCliente(codigoCliente));
+    }
+
+    /**
+     * Cronograma del crédito. Si todavía no tiene cuotas en la BD y tiene
+     * monto, se muestra el cronograma calculado (sin guardarlo): el mismo que
+     * generaría sp_generarcronogramadepago si el crédito tiene TCEA, o el
+     * cálculo simple con la TEA si no la tiene.
+     */
+    public CompletableFuture<List<Cuota>> cargarCronograma(Credito credito) {
+        return EjecutorTareas.enSegundoPlano(() -> {
+            List<Cuota> cuotas = cuotaDAO.listarPorContrato(credito.getCodigoContrato());
+            if (cuotas.isEmpty()
+                    && credito.getMontoDesembolso() != null
+                    && credito.getMontoDesembolso().compareTo(BigDecimal.ZERO) > 0) {
+                cuotas = calculadora.generarCronogramaComoBD(credito);
+                if (cuotas.isEmpty()) {
+                    cuotas = calculadora.generarCronograma(credito);
+                }
+            }
+            return cuotas;
+        });
+    }
+
+    /* =========================================================
+     *  CLIENTE Y PAGOS
+     * ========================================================= */
+
+    public CompletableFuture<Boolean> actualizarCliente(Cliente cliente) {
+        return EjecutorTareas.enSegundoPlano(() -> clienteDAO.actualizarCliente(cliente));
+    }
+
+    public CompletableFuture<Boolean> registrarPagoCuota(int codigoContrato,
+                                                         int nroCuota,
+                                                         BigDecimal monto,
+                                                         String usuario) {
+        return EjecutorTareas.enSegundoPlano(() ->
+                cuotaDAO.registrarPagoCuota(codigoContrato, nroCuota, monto, usuario));
+    }
+
+    /** @see CuotaDAO#registrarPagoParcialDetallado */
+    public CompletableFuture<List<AplicacionPago>> registrarPagoParcial(int codigoContrato,
+                                                                        int nroCuota,
+                                                                        BigDecimal monto,
+                                                                        String usuario) {
+        return EjecutorTareas.enSegundoPlano(() ->
+                cuotaDAO.registrarPagoParcialDetallado(codigoContrato, nroCuota, monto, usuario));
+    }
+
+    /* =========================================================
+     *  CAMBIOS DE CRONOGRAMA (UNA TRANSACCIÓN CADA UNO)
+     * ========================================================= */
+
+    /** Archivar + reemplazar cronograma + historial, todo o nada. */
+    public CompletableFuture<Boolean> aplicarAmortizacion(int codigoContrato,
+                                                          List<Cuota> nuevoCronograma,
+                                                          String descripcion,
+                                                          String usuario) {
+        return EjecutorTareas.enSegundoPlano(() -> UnidadDeTrabajo.ejecutar(() ->
+                cuotaDAO.archivarCronogramaActual(codigoContrato, "AMORTIZACION", descripcion, usuario)
+                && cuotaDAO.actualizarCronogramaCompleto(codigoContrato, nuevoCronograma)
+                && historialDAO.registrarCambio(codigoContrato, "AMORTIZACION", descripcion, usuario)));
+    }
+
+    /** Archivar + reemplazar cronograma + actualizar contrato + historial, todo o nada. */
+    public CompletableFuture<Boolean> aplicarReprogramacion(int codigoContrato,
+                                                            List<Cuota> nuevoCronograma,
+                                                            BigDecimal nuevaTasa,
+                                                            int nuevasCuotas,
+                                                            String descripcion,
+                                                            String usuario) {
+        return EjecutorTareas.enSegundoPlano(() -> UnidadDeTrabajo.ejecutar(() ->
+                cuotaDAO.archivarCronogramaActual(codigoContrato, "REPROGRAMACION_PLAZO", descripcion, usuario)
+                && cuotaDAO.actualizarCronogramaCompleto(codigoContrato, nuevoCronograma)
+                && creditoDAO.actualizarContratoReprogramado(codigoContrato, nuevaTasa, nuevasCuotas)
+                && historialDAO.registrarCambio(codigoContrato, "REPROGRAMACION_PLAZO", descripcion, usuario)));
+    }
+
+    /**
+     * Crea el crédito nuevo, archiva el cronograma del original, lo marca
+     * REFINANCIADO y registra el historial, en una sola transacción.
+     *
+     * @return código del contrato creado, o -1 si no se realizó ningún cambio
+     */
+    public CompletableFuture<Integer> refinanciar(int contratoOriginal,
+                                                  int codigoCliente,
+                                                  BigDecimal montoNuevo,
+                                                  int nuevasCuotas,
+                                                  BigDecimal nuevaTasa,
+                                                  Date fechaDesembolso,
+                                                  String usuario) {
+        return EjecutorTareas.enSegundoPlano(() -> {
+            final int[] contratoCreado = { -1 };
+            boolean ok = UnidadDeTrabajo.ejecutar(() -> {
+                contratoCreado[0] = creditoDAO.crearCreditoParaCliente(
+                        codigoCliente, montoNuevo, nuevasCuotas, nuevaTasa, fechaDesembolso);
+                if (contratoCreado[0] <= 0) {
+                    return false;
+                }
+                String descripcion = "Refinanciamiento al contrato " + contratoCreado[0] +
+                        " por monto S/ " + montoNuevo;
+                return cuotaDAO.archivarCronogramaActual(contratoOriginal, "REFINANCIACION", descripcion, usuario)
+                        && creditoDAO.marcarContratoComoRefinanciado(contratoOriginal)
+                        && historialDAO.registrarCambio(contratoOriginal, "REFINANCIACION", descripcion, usuario);
+            });
+            return ok ? contratoCreado[0] : -1;
+        });
+    }
+}
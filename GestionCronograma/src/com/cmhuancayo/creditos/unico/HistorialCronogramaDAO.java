@@ -3,7 +3,10 @@ package com.cmhuancayo.creditos.unico;
 import javax.swing.*;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * DAO para administrar el historial de cambios del cronograma de pago.
@@ -14,11 +17,34 @@ import java.util.List;
  * Funcionalidad:
  *   - registrarCambio(..): inserta un registro de cambio de cronograma
  *   - listarPorContrato(..): lista todos los cambios de un contrato
+ *   - leerPorContratos(..) / recorrerPorContratos(..): cambios de muchos
+ *     contratos, leídos por cursor (ver {@link LectorCursor})
  *
  * Usa la conexión centralizada de {@link ConexionDB}, ya adaptada a PostgreSQL.
  */
 public class HistorialCronogramaDAO {
 
+    // CURRENT_TIMESTAMP es estándar SQL y compatible con PostgreSQL
+    private static final String SQL_REGISTRAR_CAMBIO =
+            "INSERT INTO historial_cambios_cronograma " +
+            "  (codigo_contrato, fecha_cambio, tipo_cambio, " +
+            "   descripcion_cambio, usuario_registro) " +
+            "VALUES (?, CURRENT_TIMESTAMP, ?, ?, ?)";
+
+    private static final String SQL_LISTAR_POR_CONTRATO =
+            "SELECT codigo_historial, codigo_contrato, fecha_cambio, " +
+            "       tipo_cambio, descripcion_cambio, usuario_registro " +
+            "FROM historial_cambios_cronograma " +
+            "WHERE codigo_contrato = ? " +
+            "ORDER BY fecha_cambio DESC, codigo_historial DESC";
+
+    private static final String SQL_LEER_POR_CONTRATOS =
+            "SELECT codigo_historial, codigo_contrato, fecha_cambio, " +
+            "       tipo_cambio, descripcion_cambio, usuario_registro " +
+            "FROM historial_cambios_cronograma " +
+            "WHERE codigo_contrato = ANY(?) " +
+            "ORDER BY codigo_contrato, fecha_cambio DESC, codigo_historial DESC";
+
     /**
      * Registra un cambio de cronograma en la tabla historial_cambios_cronograma.
      *
@@ -36,15 +62,9 @@ public class HistorialCronogramaDAO {
         Connection cnx = null;
         PreparedStatement ps = null;
 
-        // CURRENT_TIMESTAMP es estándar SQL y compatible con PostgreSQL
-        String sql = "INSERT INTO historial_cambios_cronograma " +
-                     "  (codigo_contrato, fecha_cambio, tipo_cambio, " +
-                     "   descripcion_cambio, usuario_registro) " +
-                     "VALUES (?, CURRENT_TIMESTAMP, ?, ?, ?)";
-
         try {
             cnx = ConexionDB.getConnection();
-            ps = cnx.prepareStatement(sql);
+            ps = cnx.prepareStatement(SQL_REGISTRAR_CAMBIO);
             ps.setInt(1, codigoContrato);
             ps.setString(2, tipoCambio);
             ps.setString(3, descripcion);
@@ -54,7 +74,7 @@ public class HistorialCronogramaDAO {
             return true;
 
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(
+            MensajesUI.mostrar(
                     null,
                     "Error al registrar historial de cronograma: " + e.getMessage(),
                     "Error SQL",
@@ -83,31 +103,18 @@ public class HistorialCronogramaDAO {
         PreparedStatement ps = null;
         ResultSet rs = null;
 
-        String sql = "SELECT codigo_historial, codigo_contrato, fecha_cambio, " +
-                     "       tipo_cambio, descripcion_cambio, usuario_registro " +
-                     "FROM historial_cambios_cronograma " +
-                     "WHERE codigo_contrato = ? " +
-                     "ORDER BY fecha_cambio DESC, codigo_historial DESC";
-
         try {
             cnx = ConexionDB.getConnection();
-            ps = cnx.prepareStatement(sql);
+            ps = cnx.prepareStatement(SQL_LISTAR_POR_CONTRATO);
             ps.setInt(1, codigoContrato);
             rs = ps.executeQuery();
 
             while (rs.next()) {
-                HistorialCambioCronograma h = new HistorialCambioCronograma();
-                h.setCodigoHistorial(rs.getInt("codigo_historial"));
-                h.setCodigoContrato(rs.getInt("codigo_contrato"));
-                h.setFechaCambio(rs.getTimestamp("fecha_cambio"));
-                h.setTipoCambio(rs.getString("tipo_cambio"));
-                h.setDescripcionCambio(rs.getString("descripcion_cambio"));
-                h.setUsuarioRegistro(rs.getString("usuario_registro"));
-                lista.add(h);
+                lista.add(mapearHistorial(rs));
             }
 
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(
+            MensajesUI.mostrar(
                     null,
                     "Error al listar historial de cronograma: " + e.getMessage(),
                     "Error SQL",
@@ -123,4 +130,43 @@ public class HistorialCronogramaDAO {
 
         return lista;
     }
+
+    /**
+     * Cambios de varios contratos, agrupados por contrato y del más reciente
+     * al más antiguo, leídos por cursor a medida que se consumen.
+     *
+     * El Stream tiene una conexión tomada: se debe cerrar (try-with-resources).
+     *
+     * @throws SQLException si no se pudo ejecutar la consulta
+     */
+    public Stream<HistorialCambioCronograma> leerPorContratos(int[] codigosContrato) throws SQLException {
+        return LectorCursor.abrir(SQL_LEER_POR_CONTRATOS,
+                (ps, cnx) -> ps.setArray(1, cnx.createArrayOf("integer",
+                        Arrays.stream(codigosContrato).boxed().toArray(Integer[]::new))),
+                HistorialCronogramaDAO::mapearHistorial);
+    }
+
+    /**
+     * Igual que {@link #leerPorContratos}, pero pasa cada cambio al consumidor.
+     *
+     * @return cantidad de cambios leídos, o -1 si hubo un error de BD
+     */
+    public long recorrerPorContratos(int[] codigosContrato,
+                                     Consumer<HistorialCambioCronograma> consumidor) {
+        return LectorCursor.recorrer(SQL_LEER_POR_CONTRATOS,
+                (ps, cnx) -> ps.setArray(1, cnx.createArrayOf("integer",
+                        Arrays.stream(codigosContrato).boxed().toArray(Integer[]::new))),
+                HistorialCronogramaDAO::mapearHistorial, consumidor, "historial de cronograma");
+    }
+
+    private static HistorialCambioCronograma mapearHistorial(ResultSet rs) throws SQLException {
+        HistorialCambioCronograma h = new HistorialCambioCronograma();
+        h.setCodigoHistorial(rs.getInt("codigo_historial"));
+        h.setCodigoContrato(rs.getInt("codigo_contrato"));
+        h.setFechaCambio(rs.getTimestamp("fecha_cambio"));
+        h.setTipoCambio(rs.getString("tipo_cambio"));
+        h.setDescripcionCambio(rs.getString("descripcion_cambio"));
+        h.setUsuarioRegistro(rs.getString("usuario_registro"));
+        return h;
+    }
 }
@@ -0,0 +1,72 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+
+/**
+ * Barra de "trabajando..." para una operación en segundo plano: barra de
+ * progreso indeterminada, texto y, si la operación se puede cancelar, un
+ * botón Cancelar. Está oculta mientras no hay operación.
+ *
+ * Solo se usa desde el hilo de eventos de Swing.
+ */
+public class IndicadorOcupado extends JPanel {
+
+    private final JProgressBar barra = new JProgressBar();
+    private final JLabel lblMensaje = new JLabel();
+    private final JButton btnCancelar = new JButton("Cancelar");
+
+    private Runnable alCancelar;
+
+    public IndicadorOcupado() {
+        super(new BorderLayout(10, 0));
+        setOpaque(false);
+        setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+
+        barra.setIndeterminate(true);
+        barra.setPreferredSize(new Dimension(160, 14));
+        EstilosUI.estilizarLabel(lblMensaje);
+        EstilosUI.estilizarBotonSecundario(btnCancelar);
+        btnCancelar.addActionListener(e -> {
+            Runnable accion = alCancelar;
+            if (accion != null) {
+                accion.run();
+            }
+        });
+
+        JPanel izquierda = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
+        izquierda.setOpaque(false);
+        izquierda.add(barra);
+        izquierda.add(lblMensaje);
+
+        add(izquierda, BorderLayout.CENTER);
+        add(btnCancelar, BorderLayout.EAST);
+        setVisible(false);
+    }
+
+    /**
+     * Muestra el indicador.
+     *
+     * @param mensaje    texto a mostrar (p. ej. "Cargando cronograma...")
+     * @param alCancelar acción del botón Cancelar; null si no se puede cancelar
+     */
+    public void mostrar(String mensaje, Runnable alCancelar) {
+        this.alCancelar = alCancelar;
+        lblMensaje.setText(mensaje);
+        btnCancelar.setVisible(alCancelar != null);
+        setVisible(true);
+        revalidate();
+    }
+
+    public void ocultar() {
+        this.alCancelar = null;
+        setVisible(false);
+        revalidate();
+    }
+}
@@ -0,0 +1,152 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.swing.JOptionPane;
+
+/**
+ * Lectura de consultas grandes por cursor, sin cargar todo el resultado en
+ * memoria (exportaciones de muchos contratos, reportes).
+ *
+ * Con autocommit activo el driver de PostgreSQL trae el resultado completo
+ * al ejecutar la consulta. Para que lo traiga por partes de
+ * {@value #FILAS_POR_LECTURA} filas (cmh.cursor.filas) hacen falta
+ * autocommit desactivado, fetchSize y un ResultSet de solo avance; aquí se
+ * prepara eso y se devuelve un {@link Stream} que lee la fila siguiente
+ * recién cuando se pide.
+ *
+ * El Stream tiene la conexión tomada hasta que se cierra: se debe usar con
+ * try-with-resources. Dentro de una {@link UnidadDeTrabajo} se lee con la
+ * conexión de la unidad y no se toca su transacción.
+ */
+final class LectorCursor {
+
+    static final int FILAS_POR_LECTURA = Integer.getInteger("cmh.cursor.filas", 1_000);
+
+    /** Asigna los parámetros de la consulta (la conexión sirve para createArrayOf). */
+    interface Parametros {
+        void asignar(PreparedStatement ps, Connection cnx) throws SQLException;
+    }
+
+    interface MapeadorFila<T> {
+        T mapear(ResultSet rs) throws SQLException;
+    }
+
+    private LectorCursor() {
+    }
+
+    /**
+     * Ejecuta la consulta y devuelve sus filas a medida que se leen.
+     *
+     * @throws SQLException si no se pudo abrir el cursor; los errores al leer
+     *                      después se lanzan como IllegalStateException con
+     *                      la SQLException como causa
+     */
+    static <T> Stream<T> abrir(String sql,
+                               Parametros parametros,
+                               MapeadorFila<T> mapeador) throws SQLException {
+        Connection cnx = ConexionDB.getConnection();
+        if (cnx == null) {
+            throw new SQLException("No hay conexión con la base de datos.");
+        }
+
+        PreparedStatement ps = null;
+        ResultSet rs;
+        try {
+            cnx.setAutoCommit(false);
+            // Sin pasar por la caché de sentencias, que conservaría el fetchSize
+            ps = cnx.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(FILAS_POR_LECTURA);
+            parametros.asignar(ps, cnx);
+            rs = ps.executeQuery();
+        } catch (SQLException | RuntimeException e) {
+            cerrar(null, ps, cnx, 0);
+            throw e;
+        }
+
+        long[] filas = { 0 };
+        PreparedStatement sentencia = ps;
+        Spliterator<T> lector = new Spliterators.AbstractSpliterator<T>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> accion) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    filas[0]++;
+                    accion.accept(mapeador.mapear(rs));
+                    return true;
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+            }
+        };
+        return StreamSupport.stream(lector, false)
+                .onClose(() -> cerrar(rs, sentencia, cnx, filas[0]));
+    }
+
+    /**
+     * Pasa cada fila al consumidor. Los errores de BD se informan como en
+     * los DAO.
+     *
+     * @param descripcion qué se lee, para el mensaje de error
+     * @return filas leídas, o -1 si hubo un error de BD
+     */
+    static <T> long recorrer(String sql,
+                             Parametros parametros,
+                             MapeadorFila<T> mapeador,
+                             Consumer<? super T> consumidor,
+                             String descripcion) {
+        long[] filas = { 0 };
+        try (Stream<T> stream = abrir(sql, parametros, mapeador)) {
+            stream.forEach(fila -> {
+                consumidor.accept(fila);
+                filas[0]++;
+            });
+            return filas[0];
+
+        } catch (SQLException e) {
+            mostrarError(descripcion, e);
+            return -1;
+        } catch (IllegalStateException e) {
+            if (!(e.getCause() instanceof SQLException)) {
+                throw e;
+            }
+            mostrarError(descripcion, (SQLException) e.getCause());
+            return -1;
+        }
+    }
+
+    private static void mostrarError(String descripcion, SQLException e) {
+        MensajesUI.mostrar(
+                null,
+                "Error al leer " + descripcion + ": " + e.getMessage(),
+                "Error SQL",
+                JOptionPane.ERROR_MESSAGE
+        );
+    }
+
+    private static void cerrar(ResultSet rs, PreparedStatement ps, Connection cnx, long filas) {
+        try {
+            if (rs != null) rs.close();
+            if (ps != null) ps.close();
+        } catch (SQLException ignored) {}
+        // Termina la transacción de lectura (dentro de una unidad no hace nada)
+        try {
+            cnx.commit();
+        } catch (SQLException ignored) {}
+        try {
+            cnx.setAutoCommit(true);
+        } catch (SQLException ignored) {}
+        ConexionDB.close(cnx);
+        Metricas.sumar("cursor.filas", filas);
+    }
+}
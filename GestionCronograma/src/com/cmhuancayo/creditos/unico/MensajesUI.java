@@ -0,0 +1,32 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.awt.Component;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+/**
+ * Mensajes al usuario que se pueden mostrar desde cualquier hilo.
+ *
+ * Los DAO informan sus errores con un diálogo, pero ahora se ejecutan en los
+ * hilos de {@link EjecutorTareas}. Swing solo se puede usar desde el hilo de
+ * eventos (EDT): si el mensaje se pide desde otro hilo, se encola en el EDT
+ * y el hilo que lo pidió sigue sin esperar a que el usuario lo cierre.
+ */
+public final class MensajesUI {
+
+    private MensajesUI() {
+    }
+
+    /**
+     * Igual que {@link JOptionPane#showMessageDialog(Component, Object, String, int)},
+     * pero seguro desde cualquier hilo.
+     */
+    public static void mostrar(Component padre, Object mensaje, String titulo, int tipo) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            JOptionPane.showMessageDialog(padre, mensaje, titulo, tipo);
+        } else {
+            SwingUtilities.invokeLater(() ->
+                    JOptionPane.showMessageDialog(padre, mensaje, titulo, tipo));
+        }
+    }
+}
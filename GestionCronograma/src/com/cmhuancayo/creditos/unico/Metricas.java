@@ -0,0 +1,191 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Registro central de métricas internas de la aplicación.
+ *
+ * Maneja tres tipos de métricas, todas identificadas por nombre
+ * (por ejemplo "pool.espera" o "pool.activas"):
+ * <ul>
+ *     <li>Contadores: valores que solo crecen (conexiones creadas, fugas, etc.).</li>
+ *     <li>Temporizadores: cantidad, tiempo total y máximo de una operación.</li>
+ *     <li>Indicadores: valores instantáneos leídos bajo demanda (conexiones activas).</li>
+ * </ul>
+ *
+ * Todas las operaciones son seguras entre hilos y no bloquean a quien registra.
+ *
+ * Con {@link #iniciarRegistro()} las métricas se escriben en la salida
+ * estándar: una línea cada cmh.metricas.intervaloMinutos (15; 0 = nunca) y
+ * el {@link #resumen()} completo al cerrar la aplicación.
+ */
+public final class Metricas {
+
+    private static final Map<String, LongAdder> CONTADORES = new ConcurrentHashMap<>();
+    private static final Map<String, Temporizador> TEMPORIZADORES = new ConcurrentHashMap<>();
+    private static final Map<String, LongSupplier> INDICADORES = new ConcurrentHashMap<>();
+
+    private static final long INTERVALO_REGISTRO_MINUTOS =
+            Long.getLong("cmh.metricas.intervaloMinutos", 15L);
+
+    private static boolean registroIniciado;
+
+    private Metricas() {
+    }
+
+    // ---------------------------------------------------------
+    // Contadores
+    // ---------------------------------------------------------
+
+    public static void incrementar(String nombre) {
+        sumar(nombre, 1L);
+    }
+
+    public static void sumar(String nombre, long delta) {
+        CONTADORES.computeIfAbsent(nombre, k -> new LongAdder()).add(delta);
+    }
+
+    public static long contador(String nombre) {
+        LongAdder a = CONTADORES.get(nombre);
+        return (a == null) ? 0L : a.sum();
+    }
+
+    // ---------------------------------------------------------
+    // Temporizadores
+    // ---------------------------------------------------------
+
+    /**
+     * Registra la duración (en nanosegundos) de una ejecución de la operación indicada.
+     */
+    public static void registrarTiempo(String nombre, long nanos) {
+        TEMPORIZADORES.computeIfAbsent(nombre, k -> new Temporizador()).registrar(nanos);
+    }
+
+    public static Temporizador temporizador(String nombre) {
+        return TEMPORIZADORES.computeIfAbsent(nombre, k -> new Temporizador());
+    }
+
+    // ---------------------------------------------------------
+    // Indicadores
+    // ---------------------------------------------------------
+
+    /**
+     * Registra (o reemplaza) un indicador cuyo valor se lee al momento de consultar.
+     */
+    public static void registrarIndicador(String nombre, LongSupplier fuente) {
+        INDICADORES.put(nombre, fuente);
+    }
+
+    public static long indicador(String nombre) {
+        LongSupplier s = INDICADORES.get(nombre);
+        return (s == null) ? 0L : s.getAsLong();
+    }
+
+    // ---------------------------------------------------------
+    // Consulta
+    // ---------------------------------------------------------
+
+    /**
+     * Devuelve una foto de todas las métricas, ordenada por nombre.
+     * Los temporizadores se expanden en .cuenta, .promedio_us y .max_us.
+     */
+    public static Map<String, Long> snapshot() {
+        Map<String, Long> foto = new TreeMap<>();
+        CONTADORES.forEach((k, v) -> foto.put(k, v.sum()));
+        INDICADORES.forEach((k, v) -> foto.put(k, v.getAsLong()));
+        TEMPORIZADORES.forEach((k, v) -> {
+            foto.put(k + ".cuenta", v.getCuenta());
+            foto.put(k + ".promedio_us", v.getPromedioNanos() / 1_000L);
+            foto.put(k + ".max_us", v.getMaximoNanos() / 1_000L);
+        });
+        return foto;
+    }
+
+    /**
+     * Texto legible con todas las métricas (una por línea), útil para logs.
+     */
+    public static String resumen() {
+        StringBuilder sb = new StringBuilder();
+        snapshot().forEach((k, v) -> sb.append(k).append(" = ").append(v).append('\n'));
+        return sb.toString();
+    }
+
+    /**
+     * Todas las métricas en una sola línea ("nombre=valor, ..."), para el
+     * registro periódico.
+     */
+    public static String resumenEnLinea() {
+        StringJoiner linea = new StringJoiner(", ", "Métricas: ", "");
+        snapshot().forEach((k, v) -> linea.add(k + "=" + v));
+        return linea.toString();
+    }
+
+    // ---------------------------------------------------------
+    // Registro
+    // ---------------------------------------------------------
+
+    /**
+     * Empieza a escribir las métricas en la salida estándar: una línea cada
+     * cmh.metricas.intervaloMinutos, en un hilo daemon, y el resumen
+     * completo al cerrar la aplicación. Si ya estaba iniciado, no hace nada.
+     */
+    public static synchronized void iniciarRegistro() {
+        if (registroIniciado) {
+            return;
+        }
+        registroIniciado = true;
+        if (INTERVALO_REGISTRO_MINUTOS > 0) {
+            ScheduledExecutorService registro = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "cmh-metricas");
+                t.setDaemon(true);
+                return t;
+            });
+            registro.scheduleAtFixedRate(() -> System.out.println(resumenEnLinea()),
+                    INTERVALO_REGISTRO_MINUTOS, INTERVALO_REGISTRO_MINUTOS, TimeUnit.MINUTES);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> System.out.print("Métricas al cerrar:\n" + resumen()), "cmh-metricas-cierre"));
+    }
+
+    /**
+     * Acumula cantidad, tiempo total y tiempo máximo de una operación.
+     */
+    public static final class Temporizador {
+
+        private final LongAdder cuenta = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maximoNanos = new LongAccumulator(Math::max, 0L);
+
+        void registrar(long nanos) {
+            cuenta.increment();
+            totalNanos.add(nanos);
+            maximoNanos.accumulate(nanos);
+        }
+
+        public long getCuenta() {
+            return cuenta.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaximoNanos() {
+            return maximoNanos.get();
+        }
+
+        public long getPromedioNanos() {
+            long n = cuenta.sum();
+            return (n == 0) ? 0L : totalNanos.sum() / n;
+        }
+    }
+}
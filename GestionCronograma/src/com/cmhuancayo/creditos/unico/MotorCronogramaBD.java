@@ -0,0 +1,310 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Réplica en Java de sp_generarcronogramadepago (ver CargaDb3): mismo
+ * resultado, centavo a centavo, sin ir a la base de datos.
+ *
+ * El procedimiento calcula con NUMERIC de PostgreSQL. Para obtener los
+ * mismos valores aquí se reproduce la aritmética de PostgreSQL paso a paso:
+ * <ul>
+ *     <li>Cada asignación a una variable o columna NUMERIC(p,s) redondea a s
+ *         decimales, con empates lejos del cero (HALF_UP).</li>
+ *     <li>Sumas, restas y productos son exactos (el producto con la suma de
+ *         las escalas), igual que en PostgreSQL.</li>
+ *     <li>La división redondea a la escala que elegiría PostgreSQL
+ *         (select_div_scale: al menos 16 dígitos significativos).</li>
+ *     <li>power() redondea a la escala que elegiría PostgreSQL (power_var y
+ *         power_var_int); aquí se calcula con más precisión y se redondea a
+ *         esa misma escala.</li>
+ *     <li>Fechas: fecha + INTERVAL '1 month' acota al último día del mes, como
+ *         {@link LocalDate#plusMonths(long)}.</li>
+ * </ul>
+ *
+ * Si el procedimiento cambia, hay que cambiar esta clase en el mismo commit;
+ * VerificadorMotorBD (en bench) compara ambos contra una base de datos.
+ */
+final class MotorCronogramaBD {
+
+    /** Dígitos significativos mínimos de PostgreSQL (NUMERIC_MIN_SIG_DIGITS). */
+    private static final int MIN_DIGITOS_SIG = 16;
+
+    /** Precisión de los cálculos intermedios de ln/exp, muy por encima de 20 decimales. */
+    private static final MathContext PRECISION = new MathContext(60, RoundingMode.HALF_EVEN);
+
+    private static final BigDecimal CIEN = BigDecimal.valueOf(100);
+    private static final BigDecimal TREINTA = new BigDecimal("30.0");
+
+    // v_tasa_prima_seguro_mensual y v_tasa_itf son NUMERIC(10,5)
+    private static final BigDecimal TASA_PRIMA_SEGURO = new BigDecimal("0.00080");
+    private static final BigDecimal TASA_ITF = new BigDecimal("0.00005");
+
+    private static final BigDecimal CERO_COMISIONES = new BigDecimal("0.00");
+
+    /** Tasa diaria o mensual de una tasa anual (ln/exp con 60 dígitos: lo más caro). */
+    private static final TablaFactoresInteres<BigDecimal> TASAS_PERIODICAS =
+            new TablaFactoresInteres<>("bd.tasas", MotorCronogramaBD::tasaPeriodica);
+
+    /** (1 + tasa)^n, para la cuota fija y para el interés de cada cuota según sus días. */
+    private static final TablaFactoresInteres<BigDecimal> POTENCIAS =
+            new TablaFactoresInteres<>("bd.potencias", MotorCronogramaBD::potenciaEntera);
+
+    private MotorCronogramaBD() {
+    }
+
+    /**
+     * Cronograma que generaría sp_generarcronogramadepago para un contrato
+     * con estos datos.
+     *
+     * @param tea  tasa_interes_compensatorio (interés diario de cada cuota)
+     * @param tcea tasa_costo_efectivo_anual (cuota fija)
+     * @throws ArithmeticException donde el procedimiento fallaría (TCEA 0:
+     *                             división por cero; montos fuera de rango)
+     */
+    static List<Cuota> generar(int codigoContrato,
+                               BigDecimal montoDesembolso,
+                               int numeroCuotas,
+                               LocalDate fechaVigencia,
+                               BigDecimal tea,
+                               BigDecimal tcea) {
+        Metricas.incrementar("cronograma.calculo.bd");
+
+        BigDecimal monto = asignar(montoDesembolso, 10, 2);
+        BigDecimal teaAnual = asignar(tea, 5, 2);
+        BigDecimal tceaAnual = asignar(tcea, 5, 2);
+
+        // 3) Cálculos iniciales
+        BigDecimal tasaDiaria = TASAS_PERIODICAS.obtener(teaAnual, 360);
+        BigDecimal tasaMensual = TASAS_PERIODICAS.obtener(tceaAnual, 12);
+
+        BigDecimal factor = POTENCIAS.obtener(BigDecimal.ONE.add(tasaMensual), numeroCuotas);
+        BigDecimal cuotaFija = asignar(
+                dividir(monto.multiply(tasaMensual.multiply(factor)),
+                        factor.subtract(BigDecimal.ONE)), 10, 2);
+
+        // (1 + tasa diaria)^días: solo hay 28 a 31 días distintos
+        BigDecimal baseDiaria = BigDecimal.ONE.add(tasaDiaria);
+
+        // 4) Generar cuotas
+        List<Cuota> cuotas = new ArrayList<>(Math.max(numeroCuotas, 0));
+        BigDecimal saldo = monto;
+        LocalDate fechaAnterior = fechaVigencia;
+        for (int i = 1; i <= numeroCuotas; i++) {
+            LocalDate fechaVencimiento = fechaAnterior.plusMonths(1);
+            int dias = (int) ChronoUnit.DAYS.between(fechaAnterior, fechaVencimiento);
+
+            BigDecimal factorInteres = POTENCIAS.obtener(baseDiaria, dias).subtract(BigDecimal.ONE);
+            BigDecimal interes = asignar(saldo.multiply(factorInteres), 8, 2);
+            BigDecimal seguro = asignar(saldo.multiply(TASA_PRIMA_SEGURO)
+                    .multiply(dividir(BigDecimal.valueOf(dias), TREINTA)), 8, 2);
+            BigDecimal itf = asignar(cuotaFija.multiply(TASA_ITF), 8, 4);
+            BigDecimal capital = asignar(cuotaFija.subtract(interes).subtract(seguro).subtract(itf), 8, 2);
+
+            if (i == numeroCuotas) {
+                capital = asignar(saldo, 8, 2);
+                cuotaFija = asignar(capital.add(interes).add(seguro).add(itf), 10, 2);
+            }
+
+            BigDecimal saldoPosterior = asignar(saldo.subtract(capital), 10, 2);
+
+            Cuota c = new Cuota();
+            c.setNroCuota(i);
+            c.setCodigoContrato(codigoContrato);
+            c.setEstadoCuota("Pendiente");
+            c.setFechaVencimiento(java.sql.Date.valueOf(fechaVencimiento));
+            c.setCapital(capital);
+            c.setInteres(interes);
+            c.setSeguroDegravamen(seguro);
+            c.setSegurosComisiones(CERO_COMISIONES);
+            c.setItf(itf);
+            c.setMontoCuota(asignar(capital.add(interes).add(seguro).add(itf), 8, 2));
+            c.setDias(dias);
+            c.setSaldoCapital(saldoPosterior);
+            c.setMontoPagado(CERO_COMISIONES);
+            cuotas.add(c);
+
+            saldo = saldoPosterior;
+            fechaAnterior = fechaVencimiento;
+        }
+        return cuotas;
+    }
+
+    /**
+     * power(1 + (tasaAnual / 100), 1.0/periodos) - 1, asignado a
+     * NUMERIC(20,10), como v_tasa_diaria_interes (360) y v_tasa_mensual_cuota (12).
+     */
+    private static BigDecimal tasaPeriodica(BigDecimal tasaAnual, int periodos) {
+        BigDecimal exponente = dividir(new BigDecimal("1.0"), new BigDecimal(periodos + ".0"));
+        return asignar(potencia(BigDecimal.ONE.add(dividir(tasaAnual, CIEN)), exponente)
+                .subtract(BigDecimal.ONE), 20, 10);
+    }
+
+    /* =========================================================
+     *  ARITMÉTICA NUMERIC DE POSTGRESQL
+     * ========================================================= */
+
+    /** Asignación a NUMERIC(precision, escala): redondeo y control de rango. */
+    static BigDecimal asignar(BigDecimal valor, int precision, int escala) {
+        BigDecimal v = valor.setScale(escala, RoundingMode.HALF_UP);
+        if (v.signum() != 0 && v.precision() - v.scale() > precision - escala) {
+            throw new ArithmeticException("numeric field overflow: " + v
+                    + " no cabe en NUMERIC(" + precision + "," + escala + ")");
+        }
+        return v;
+    }
+
+    /** a / b con la escala del resultado de PostgreSQL (select_div_scale). */
+    static BigDecimal dividir(BigDecimal a, BigDecimal b) {
+        int escala = MIN_DIGITOS_SIG - cocientePeso(a, b) * 4;
+        escala = Math.max(escala, Math.max(a.scale(), b.scale()));
+        escala = Math.max(escala, 0);
+        return a.divide(b, escala, RoundingMode.HALF_UP);
+    }
+
+    /** Peso (en dígitos de base 10000) estimado del cociente, como select_div_scale. */
+    private static int cocientePeso(BigDecimal a, BigDecimal b) {
+        int pesoA = peso(a);
+        int pesoB = peso(b);
+        int q = pesoA - pesoB;
+        if (primerDigito(a, pesoA) <= primerDigito(b, pesoB)) {
+            q--;
+        }
+        return q;
+    }
+
+    /**
+     * Peso del primer dígito distinto de cero en base 10000 (NBASE): el
+     * número es primerDigito * 10000^peso + resto. Para 0 es 0.
+     */
+    private static int peso(BigDecimal v) {
+        if (v.signum() == 0) {
+            return 0;
+        }
+        int exponente = v.precision() - v.scale() - 1; // posición decimal del primer dígito
+        return Math.floorDiv(exponente, 4);
+    }
+
+    private static int primerDigito(BigDecimal v, int peso) {
+        if (v.signum() == 0) {
+            return 0;
+        }
+        return v.abs().movePointLeft(4 * peso).intValue();
+    }
+
+    /**
+     * power(base, n) con n entero (power_var_int): resultado redondeado a
+     * 16 dígitos significativos como mínimo y no menos decimales que la base.
+     */
+    static BigDecimal potenciaEntera(BigDecimal base, int n) {
+        double f = pesoDecimalEstimado(base) * n;
+        int escala = MIN_DIGITOS_SIG - (int) f;
+        escala = Math.max(escala, base.scale());
+        escala = Math.max(escala, 0);
+        return base.pow(n).setScale(escala, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * log10(base) como lo estima power_var_int: con los primeros dígitos de
+     * base 10000 (hasta 16 dígitos decimales), en double.
+     */
+    private static double pesoDecimalEstimado(BigDecimal base) {
+        if (base.signum() == 0) {
+            return 0;
+        }
+        // Dígitos de base 10000 alineados con la coma decimal
+        BigDecimal abs = base.abs().stripTrailingZeros();
+        int peso = peso(abs);
+        int escalaAlineada = Math.max(0, ((abs.scale() + 3) / 4) * 4);
+        BigInteger unidades = abs.setScale(escalaAlineada).unscaledValue();
+        String texto = unidades.toString();
+        int relleno = (4 - texto.length() % 4) % 4;
+        texto = "0".repeat(relleno) + texto;
+
+        double f = 0;
+        int p = peso * 4;
+        int grupos = texto.length() / 4;
+        for (int i = 0; i < grupos && i < 4; i++) {
+            int digito = Integer.parseInt(texto.substring(i * 4, i * 4 + 4));
+            if (i == 0) {
+                f = digito;
+            } else {
+                f = f * 10000 + digito;
+                p -= 4;
+            }
+        }
+        return Math.log10(Math.abs(f)) + p;
+    }
+
+    /**
+     * power(base, exponente) con exponente no entero (power_var): exp(ln(base)
+     * * exponente), redondeado a 16 dígitos significativos como mínimo y no
+     * menos decimales que la base ni que el exponente. Solo para base &gt; 0.
+     */
+    static BigDecimal potencia(BigDecimal base, BigDecimal exponente) {
+        BigDecimal lnNum = ln(base).multiply(exponente, PRECISION);
+        double pesoResultado = lnNum.doubleValue() * 0.434294481903252;
+        int escala = MIN_DIGITOS_SIG - (int) pesoResultado;
+        escala = Math.max(escala, base.scale());
+        escala = Math.max(escala, exponente.scale());
+        escala = Math.max(escala, 0);
+        return exp(lnNum).setScale(escala, RoundingMode.HALF_UP);
+    }
+
+    /** Logaritmo natural con {@link #PRECISION} dígitos, para x &gt; 0. */
+    private static BigDecimal ln(BigDecimal x) {
+        if (x.signum() <= 0) {
+            throw new ArithmeticException("ln de un número no positivo: " + x);
+        }
+        // ln(x) = 2^k ln(x^(1/2^k)), acercando x a 1 para que la serie converja rápido
+        BigDecimal limite = new BigDecimal("1.1");
+        BigDecimal inferior = new BigDecimal("0.9");
+        int k = 0;
+        BigDecimal v = x;
+        while (v.compareTo(limite) > 0 || v.compareTo(inferior) < 0) {
+            v = v.sqrt(PRECISION);
+            k++;
+        }
+        // ln(v) = 2 atanh(z), z = (v - 1) / (v + 1)
+        BigDecimal z = v.subtract(BigDecimal.ONE).divide(v.add(BigDecimal.ONE), PRECISION);
+        BigDecimal z2 = z.multiply(z, PRECISION);
+        BigDecimal termino = z;
+        BigDecimal suma = z;
+        BigDecimal umbral = BigDecimal.ONE.movePointLeft(PRECISION.getPrecision() + 5);
+        for (int i = 3; termino.abs().compareTo(umbral) > 0; i += 2) {
+            termino = termino.multiply(z2, PRECISION);
+            suma = suma.add(termino.divide(BigDecimal.valueOf(i), PRECISION), PRECISION);
+        }
+        return suma.multiply(BigDecimal.valueOf(2).pow(k + 1), PRECISION);
+    }
+
+    /** e^y con {@link #PRECISION} dígitos. */
+    private static BigDecimal exp(BigDecimal y) {
+        // e^y = (e^(y/2^k))^(2^k), con |y/2^k| < 0.5
+        int k = 0;
+        BigDecimal v = y;
+        BigDecimal medio = new BigDecimal("0.5");
+        while (v.abs().compareTo(medio) > 0) {
+            v = v.divide(BigDecimal.valueOf(2), PRECISION);
+            k++;
+        }
+        BigDecimal termino = BigDecimal.ONE;
+        BigDecimal suma = BigDecimal.ONE;
+        BigDecimal umbral = BigDecimal.ONE.movePointLeft(PRECISION.getPrecision() + 5);
+        for (int i = 1; termino.abs().compareTo(umbral) > 0; i++) {
+            termino = termino.multiply(v, PRECISION).divide(BigDecimal.valueOf(i), PRECISION);
+            suma = suma.add(termino, PRECISION);
+        }
+        for (int i = 0; i < k; i++) {
+            suma = suma.multiply(suma, PRECISION);
+        }
+        return suma;
+    }
+}
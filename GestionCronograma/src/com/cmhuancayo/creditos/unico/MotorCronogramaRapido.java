@@ -0,0 +1,486 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Núcleo de cálculo de cronogramas con tipos primitivos.
+ *
+ * Los montos se manejan como centavos en {@code long} y las tasas mensuales
+ * como enteros en escala 10 (la misma escala que usa
+ * {@link CalculadoraCreditoService}). El interés de cada cuota se calcula como
+ * saldo (escala 2) por tasa (escala 10) y se redondea HALF_UP a centavos, que
+ * es exactamente lo que hace {@code saldo.multiply(tasa).setScale(2, HALF_UP)};
+ * el resto de operaciones son sumas y restas de centavos, sin redondeo. Así el
+ * resultado es idéntico, centavo a centavo, al del cálculo con BigDecimal.
+ *
+ * El cronograma se guarda como arreglos paralelos (un arreglo por columna) en
+ * {@link Cronograma}; los objetos {@link Cuota} solo se crean cuando se piden.
+ *
+ * Si algún dato no se puede representar exactamente (montos con más de dos
+ * decimales, tasas con más de diez, o productos que desbordarían un long),
+ * los métodos devuelven null y el llamador debe usar el cálculo con BigDecimal.
+ */
+public final class MotorCronogramaRapido {
+
+    /** 10^10: factor de la escala de la tasa mensual. */
+    private static final long ESCALA_TASA = 10_000_000_000L;
+
+    /** Milisegundos de un día. */
+    private static final long MS_DIA = 86_400_000L;
+
+    /** Valor de {@link Cronograma#diaVencimiento(int)} para una cuota sin fecha. */
+    public static final int SIN_FECHA = Integer.MIN_VALUE;
+
+    /**
+     * Saldo que se entrega como {@code BigDecimal.ZERO} (escala 0) en lugar de
+     * 0.00, como hace el cálculo con BigDecimal al cancelar el saldo en
+     * {@link #reduciendoPlazo}. Cualquier saldo negativo se entrega igual.
+     */
+    private static final long CERO_SIN_ESCALA = -1;
+
+    private MotorCronogramaRapido() {
+    }
+
+    // =========================================================
+    // KERNELS
+    // =========================================================
+
+    /**
+     * Cronograma de cuota fija (sistema francés) con fechas generadas: la cuota
+     * i (desde 0) vence {@code primerMes + i} meses después de la fecha base.
+     * La última cuota se ajusta para dejar el saldo en cero.
+     *
+     * @return el cronograma, o null si los datos no se pueden representar en centavos
+     */
+    static Cronograma cuotaFija(int codigoContrato,
+                                BigDecimal principal,
+                                BigDecimal tasaMensual,
+                                BigDecimal cuotaFija,
+                                int n,
+                                Date fechaBase,
+                                int primerMes) {
+        Cronograma cr = new Cronograma(codigoContrato, n, principal);
+        if (!calcularCuotaFija(cr, principal, tasaMensual, cuotaFija, n)) {
+            return null;
+        }
+
+        TimeZone zona = TimeZone.getDefault();
+        LocalDate base = LocalDate.ofEpochDay(diaEpoch(fechaBase.getTime(), zona));
+        int anio = base.getYear();
+        int mes = base.getMonthValue();
+        int dia = base.getDayOfMonth();
+        for (int i = 0; i < n; i++) {
+            cr.dias[i] = sumarMeses(anio, mes, dia, primerMes + i);
+        }
+        cr.fechaBase = fechaBase;
+        cr.primerMes = primerMes;
+        return cr;
+    }
+
+    /**
+     * Cronograma de cuota fija que conserva la fecha de vencimiento de las
+     * cuotas indicadas (una cuota nueva por cada una de ellas).
+     *
+     * @return el cronograma, o null si los datos no se pueden representar en centavos
+     */
+    static Cronograma cuotaFija(int codigoContrato,
+                                BigDecimal principal,
+                                BigDecimal tasaMensual,
+                                BigDecimal cuotaFija,
+                                List<Cuota> fechasDe) {
+        int n = fechasDe.size();
+        Cronograma cr = new Cronograma(codigoContrato, n, principal);
+        if (!calcularCuotaFija(cr, principal, tasaMensual, cuotaFija, n)) {
+            return null;
+        }
+        copiarFechas(cr, fechasDe, n);
+        return cr;
+    }
+
+    /**
+     * Cronograma que mantiene la cuota de referencia y reduce el plazo hasta
+     * cancelar el saldo, usando como máximo una cuota por cada una de las
+     * indicadas y conservando sus fechas.
+     *
+     * @return el cronograma, o null si los datos no se pueden representar en centavos
+     */
+    static Cronograma reduciendoPlazo(int codigoContrato,
+                                      BigDecimal principal,
+                                      BigDecimal tasaMensual,
+                                      BigDecimal cuotaReferencia,
+                                      List<Cuota> fechasDe) {
+        int nMax = fechasDe.size();
+        if (!esCentavos(principal) || !esCentavos(cuotaReferencia) || !esTasa(tasaMensual)) {
+            return null;
+        }
+        long saldo = centavos(principal);
+        long referencia = centavos(cuotaReferencia);
+        long tasa = tasaEscalada(tasaMensual);
+        long limite = limiteSaldo(tasa);
+
+        Cronograma cr = new Cronograma(codigoContrato, nMax, principal);
+        int i = 0;
+        for (; i < nMax && saldo > 0; i++) {
+            if (saldo > limite) {
+                return null;
+            }
+            long interes = redondearCentavos(saldo * tasa);
+            long capital = referencia - interes;
+
+            cr.interes[i] = interes;
+            if (capital <= 0 || i == nMax - 1) {
+                // Se cancela todo el saldo en esta cuota
+                cr.capital[i] = saldo;
+                cr.cuota[i] = saldo + interes;
+                cr.saldo[i] = CERO_SIN_ESCALA;
+                cr.primeraCapitalEsPrincipal = (i == 0);
+                i++;
+                break;
+            }
+            saldo -= capital;
+            cr.capital[i] = capital;
+            cr.cuota[i] = referencia;
+            cr.saldo[i] = saldo;
+        }
+        cr.tamano = i;
+        copiarFechas(cr, fechasDe, i);
+        return cr;
+    }
+
+    /**
+     * Llena capital, interés, cuota y saldo del sistema francés.
+     *
+     * @return false si algún dato no se puede representar en centavos
+     */
+    private static boolean calcularCuotaFija(Cronograma cr,
+                                             BigDecimal principal,
+                                             BigDecimal tasaMensual,
+                                             BigDecimal cuotaFija,
+                                             int n) {
+        if (!esCentavos(principal) || !esCentavos(cuotaFija) || !esTasa(tasaMensual)) {
+            return false;
+        }
+        long saldo = centavos(principal);
+        long fija = centavos(cuotaFija);
+        long tasa = tasaEscalada(tasaMensual);
+        long limite = limiteSaldo(tasa);
+
+        long[] capital = cr.capital;
+        long[] interes = cr.interes;
+        long[] cuota = cr.cuota;
+        long[] saldos = cr.saldo;
+        for (int i = 0; i < n; i++) {
+            if (Math.abs(saldo) > limite) {
+                return false;
+            }
+            long interesCuota = redondearCentavos(saldo * tasa);
+            long capitalCuota = fija - interesCuota;
+            long monto = fija;
+
+            // En la última cuota se ajusta el capital para que el saldo quede en 0
+            if (i == n - 1) {
+                capitalCuota = saldo;
+                monto = capitalCuota + interesCuota;
+            }
+            saldo -= capitalCuota;
+
+            capital[i] = capitalCuota;
+            interes[i] = interesCuota;
+            cuota[i] = monto;
+            saldos[i] = saldo;
+        }
+        cr.primeraCapitalEsPrincipal = (n == 1);
+        return true;
+    }
+
+    private static void copiarFechas(Cronograma cr, List<Cuota> fechasDe, int n) {
+        TimeZone zona = TimeZone.getDefault();
+        Date[] fechas = new Date[n];
+        for (int i = 0; i < n; i++) {
+            Date f = fechasDe.get(i).getFechaVencimiento();
+            fechas[i] = f;
+            cr.dias[i] = (f == null) ? SIN_FECHA : diaEpoch(f.getTime(), zona);
+        }
+        cr.fechas = fechas;
+    }
+
+    // =========================================================
+    // ARITMÉTICA
+    // =========================================================
+
+    /** Divide un producto en escala 12 entre 10^10 con redondeo HALF_UP (a centavos). */
+    static long redondearCentavos(long producto) {
+        long q = producto / ESCALA_TASA;
+        long r = producto % ESCALA_TASA;
+        if (Math.abs(r) * 2 >= ESCALA_TASA) {
+            q += (producto < 0) ? -1 : 1;
+        }
+        return q;
+    }
+
+    /** Mayor saldo (en valor absoluto) que se puede multiplicar por la tasa sin desbordar. */
+    private static long limiteSaldo(long tasa) {
+        return (tasa == 0) ? Long.MAX_VALUE : Long.MAX_VALUE / Math.abs(tasa);
+    }
+
+    /** true si el monto tiene a lo sumo dos decimales y cabe en un long como centavos. */
+    private static boolean esCentavos(BigDecimal monto) {
+        return monto.scale() <= 2 && monto.precision() - monto.scale() <= 16;
+    }
+
+    private static boolean esTasa(BigDecimal tasa) {
+        return tasa.scale() <= 10 && tasa.precision() - tasa.scale() <= 8;
+    }
+
+    private static long centavos(BigDecimal monto) {
+        return monto.movePointRight(2).longValueExact();
+    }
+
+    private static long tasaEscalada(BigDecimal tasa) {
+        return tasa.movePointRight(10).longValueExact();
+    }
+
+    private static BigDecimal moneda(long centavos) {
+        return BigDecimal.valueOf(centavos, 2);
+    }
+
+    // =========================================================
+    // FECHAS (DÍAS DESDE 1970-01-01)
+    // =========================================================
+
+    /** Día (en la zona indicada) al que corresponde un instante. */
+    static int diaEpoch(long millis, TimeZone zona) {
+        return (int) Math.floorDiv(millis + zona.getOffset(millis), MS_DIA);
+    }
+
+    /**
+     * Suma meses a una fecha dada por año, mes y día, ajustando el día al
+     * último del mes si hace falta (igual que Calendar.add(MONTH, ...)).
+     */
+    private static int sumarMeses(int anio, int mes, int dia, int meses) {
+        int total = mes - 1 + meses;
+        int a = anio + Math.floorDiv(total, 12);
+        int m = Math.floorMod(total, 12) + 1;
+        return diaEpoch(a, m, Math.min(dia, diasDelMes(a, m)));
+    }
+
+    private static int diasDelMes(int anio, int mes) {
+        switch (mes) {
+            case 2:
+                boolean bisiesto = (anio % 4 == 0) && (anio % 100 != 0 || anio % 400 == 0);
+                return bisiesto ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /** Días desde 1970-01-01 de una fecha del calendario gregoriano. */
+    private static int diaEpoch(int anio, int mes, int dia) {
+        int a = (mes <= 2) ? anio - 1 : anio;
+        int era = Math.floorDiv(a, 400);
+        int anioEra = a - era * 400;
+        int diaAnio = (153 * (mes + (mes > 2 ? -3 : 9)) + 2) / 5 + dia - 1;
+        int diaEra = anioEra * 365 + anioEra / 4 - anioEra / 100 + diaAnio;
+        return era * 146_097 + diaEra - 719_468;
+    }
+
+    // =========================================================
+    // CRONOGRAMA EN ARREGLOS
+    // =========================================================
+
+    /**
+     * Cronograma guardado por columnas: la cuota i está en la posición i de
+     * cada arreglo. Los montos están en centavos y las fechas en días desde
+     * 1970-01-01 ({@link #SIN_FECHA} si la cuota no tiene fecha).
+     *
+     * No es seguro entre hilos para escritura, pero una vez devuelto por el
+     * motor solo se lee.
+     */
+    public static final class Cronograma {
+
+        private final int codigoContrato;
+        private int tamano;
+        private final long[] capital;
+        private final long[] interes;
+        private final long[] cuota;
+        private final long[] saldo;
+        private final int[] dias;
+
+        /** Principal recibido, para devolverlo tal cual si la primera cuota lo cancela. */
+        private final BigDecimal principal;
+        private boolean primeraCapitalEsPrincipal;
+
+        /** Fechas generadas: base y meses que se suman a la primera cuota. */
+        private Date fechaBase;
+        private int primerMes;
+
+        /** Fechas copiadas de otro cronograma (si no se generaron). */
+        private Date[] fechas;
+
+        /** Cuotas ya calculadas con BigDecimal (cuando el motor no pudo usarse). */
+        private List<Cuota> calculadas;
+
+        private Cronograma(int codigoContrato, int n, BigDecimal principal) {
+            this.codigoContrato = codigoContrato;
+            this.tamano = n;
+            this.capital = new long[n];
+            this.interes = new long[n];
+            this.cuota = new long[n];
+            this.saldo = new long[n];
+            this.dias = new int[n];
+            this.principal = principal;
+        }
+
+        /**
+         * Envuelve un cronograma calculado con BigDecimal. Los centavos se
+         * obtienen redondeando HALF_UP; {@link #aCuotas()} devuelve las
+         * mismas cuotas recibidas.
+         */
+        static Cronograma deCuotas(int codigoContrato, List<Cuota> cuotas) {
+            int n = cuotas.size();
+            Cronograma cr = new Cronograma(codigoContrato, n, null);
+            TimeZone zona = TimeZone.getDefault();
+            for (int i = 0; i < n; i++) {
+                Cuota c = cuotas.get(i);
+                cr.capital[i] = aCentavos(c.getCapital());
+                cr.interes[i] = aCentavos(c.getInteres());
+                cr.cuota[i] = aCentavos(c.getMontoCuota());
+                cr.saldo[i] = aCentavos(c.getSaldoCapital());
+                Date f = c.getFechaVencimiento();
+                cr.dias[i] = (f == null) ? SIN_FECHA : diaEpoch(f.getTime(), zona);
+            }
+            cr.calculadas = cuotas;
+            return cr;
+        }
+
+        private static long aCentavos(BigDecimal monto) {
+            return (monto == null) ? 0 : monto.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+        }
+
+        public int getCodigoContrato() {
+            return codigoContrato;
+        }
+
+        /** Número de cuotas. */
+        public int tamano() {
+            return tamano;
+        }
+
+        public long capitalCentavos(int i) {
+            return capital[indice(i)];
+        }
+
+        public long interesCentavos(int i) {
+            return interes[indice(i)];
+        }
+
+        public long cuotaCentavos(int i) {
+            return cuota[indice(i)];
+        }
+
+        /** Saldo de capital luego de pagar la cuota (nunca negativo). */
+        public long saldoCentavos(int i) {
+            return Math.max(0, saldo[indice(i)]);
+        }
+
+        /** Fecha de vencimiento en días desde 1970-01-01, o {@link #SIN_FECHA}. */
+        public int diaVencimiento(int i) {
+            return dias[indice(i)];
+        }
+
+        public long totalCapitalCentavos() {
+            return sumar(capital);
+        }
+
+        public long totalInteresCentavos() {
+            return sumar(interes);
+        }
+
+        public long totalCuotasCentavos() {
+            return sumar(cuota);
+        }
+
+        private long sumar(long[] columna) {
+            long total = 0;
+            for (int i = 0; i < tamano; i++) {
+                total += columna[i];
+            }
+            return total;
+        }
+
+        private int indice(int i) {
+            if (i < 0 || i >= tamano) {
+                throw new IndexOutOfBoundsException("Cuota " + i + " de " + tamano);
+            }
+            return i;
+        }
+
+        /** Crea la cuota i (numerada desde 1, en estado "Pendiente"). */
+        public Cuota cuota(int i) {
+            if (calculadas != null) {
+                return calculadas.get(indice(i));
+            }
+            return crearCuota(indice(i), (fechaBase != null) ? Calendar.getInstance() : null);
+        }
+
+        /** Crea todas las cuotas del cronograma. */
+        public List<Cuota> aCuotas() {
+            if (calculadas != null) {
+                return new ArrayList<>(calculadas);
+            }
+            if (tamano == 0) {
+                return Collections.emptyList();
+            }
+            Calendar cal = (fechaBase != null) ? Calendar.getInstance() : null;
+            List<Cuota> cuotas = new ArrayList<>(tamano);
+            for (int i = 0; i < tamano; i++) {
+                cuotas.add(crearCuota(i, cal));
+            }
+            return cuotas;
+        }
+
+        private Cuota crearCuota(int i, Calendar cal) {
+            Cuota c = new Cuota();
+            c.setCodigoContrato(codigoContrato);
+            c.setNroCuota(i + 1);
+            c.setEstadoCuota("Pendiente");
+            c.setFechaVencimiento(fecha(i, cal));
+
+            c.setCapital((i == 0 && primeraCapitalEsPrincipal) ? principal : moneda(capital[i]));
+            c.setInteres(moneda(interes[i]));
+            c.setSeguroDegravamen(BigDecimal.ZERO);
+            c.setSegurosComisiones(BigDecimal.ZERO);
+            c.setItf(BigDecimal.ZERO);
+            c.setDias(30);
+            c.setMontoCuota(moneda(cuota[i]));
+            c.setSaldoCapital(saldo[i] < 0 ? BigDecimal.ZERO : moneda(saldo[i]));
+            return c;
+        }
+
+        /**
+         * Las fechas generadas se arman con Calendar (uno por llamada, no por
+         * cuota) para conservar la hora y la zona igual que el cálculo original.
+         */
+        private Date fecha(int i, Calendar cal) {
+            if (fechas != null) {
+                return fechas[i];
+            }
+            cal.setTime(fechaBase);
+            cal.add(Calendar.MONTH, primerMes + i);
+            return cal.getTime();
+        }
+    }
+}
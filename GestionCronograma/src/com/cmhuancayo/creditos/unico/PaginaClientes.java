@@ -0,0 +1,36 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Página de resultados de {@link ClienteDAO#buscarClientesPaginado}.
+ *
+ * La paginación es por cursor (keyset) sobre codigo_cliente: para pedir la
+ * página siguiente se pasa {@link #getCursorSiguiente()} como "despuesDe".
+ * Así cada página cuesta lo mismo sin importar cuántas se hayan leído antes.
+ */
+public class PaginaClientes {
+
+    private final List<Cliente> clientes;
+
+    /** Último codigo_cliente de esta página; null si no hay más resultados. */
+    private final Integer cursorSiguiente;
+
+    public PaginaClientes(List<Cliente> clientes, Integer cursorSiguiente) {
+        this.clientes = Collections.unmodifiableList(clientes);
+        this.cursorSiguiente = cursorSiguiente;
+    }
+
+    public List<Cliente> getClientes() {
+        return clientes;
+    }
+
+    public Integer getCursorSiguiente() {
+        return cursorSiguiente;
+    }
+
+    public boolean hayMas() {
+        return cursorSiguiente != null;
+    }
+}
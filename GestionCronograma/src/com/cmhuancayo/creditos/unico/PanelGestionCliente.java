@@ -3,7 +3,7 @@ package com.cmhuancayo.creditos.unico;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
-import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableCellRenderer;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.io.File;              // <-- añadido
@@ -13,6 +13,10 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import javax.swing.ListSelectionModel;
 
 /**
@@ -27,6 +31,12 @@ import javax.swing.ListSelectionModel;
  *  - Reprogramar créditos (cambio de plazo / tasa).
  *  - Generar un nuevo crédito por refinanciamiento.
  *  - Ver el historial de cambios del cronograma.
+ *
+ * El acceso a BD se hace en segundo plano ({@link GestionCreditoService}):
+ * mientras tanto se muestra un {@link IndicadorOcupado} y se bloquean los
+ * controles del panel, pero el resto de la ventana (otras pestañas) sigue
+ * respondiendo. Las cargas se pueden cancelar; las operaciones que escriben
+ * en la BD no, porque ya están dentro de una transacción.
  */
 public class PanelGestionCliente extends JPanel {
 
@@ -49,6 +59,22 @@ public class PanelGestionCliente extends JPanel {
     private CreditoDAO creditoDAO;
     private CuotaDAO cuotaDAO;
     private HistorialCronogramaDAO historialDAO;
+    private GestionCreditoService gestionService;
+
+    // Operación en segundo plano en curso (solo se toca desde el EDT)
+    private IndicadorOcupado indicador;
+    private CompletableFuture<?> operacionActual;
+    private boolean operacionCancelable;
+
+    /**
+     * Recarga por cambios de cronograma avisados por la BD (de esta u otra
+     * instancia); agrupa los avisos que llegan seguidos en una sola recarga.
+     */
+    private final Timer recargaPorAviso = new Timer(300, e -> recargarPorAviso());
+    private final IntConsumer oyenteCambios = this::cronogramaCambiado;
+
+    /** Controles que se deshabilitan mientras hay una operación en curso. */
+    private final List<JComponent> controlesBloqueables = new ArrayList<>();
 
     // Controles de datos básicos del cliente
     private JTextField txtNombre;
@@ -74,6 +100,8 @@ public class PanelGestionCliente extends JPanel {
         this.creditoDAO = new CreditoDAO();
         this.cuotaDAO = new CuotaDAO();
         this.historialDAO = new HistorialCronogramaDAO();
+        this.gestionService = new GestionCreditoService(
+                calculadoraService, clienteDAO, creditoDAO, cuotaDAO, historialDAO);
 
         setLayout(new BorderLayout(10, 10));
         setBorder(EstilosUI.BORDE_PANEL_INTERNO);
@@ -82,8 +110,30 @@ public class PanelGestionCliente extends JPanel {
         add(crearPanelIzquierdo(), BorderLayout.WEST);
         add(crearPanelCentralCronograma(), BorderLayout.CENTER);
 
+        recargaPorAviso.setRepeats(false);
+
         cargarDatosClienteEnUI();
-        cargarListaDeCreditos();
+        cargarListaDeCreditos(0);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        EscuchaCambiosCronograma.agregarOyente(oyenteCambios);
+    }
+
+    /**
+     * Al cerrar la pestaña se descarta la carga en curso. Una operación que
+     * escribe en la BD termina igual y muestra su resultado.
+     */
+    @Override
+    public void removeNotify() {
+        super.removeNotify();
+        EscuchaCambiosCronograma.quitarOyente(oyenteCambios);
+        recargaPorAviso.stop();
+        if (operacionActual != null && operacionCancelable) {
+            operacionActual.cancel(true);
+        }
     }
 
     /* =========================================================
@@ -141,6 +191,7 @@ public class PanelGestionCliente extends JPanel {
         btnGuardarCliente = new JButton("Guardar cambios");
         EstilosUI.estilizarBotonPrincipal(btnGuardarCliente);
         btnGuardarCliente.addActionListener(this::guardarDatosCliente);
+        controlesBloqueables.add(btnGuardarCliente);
 
         gbc.gridx = 0;
         gbc.gridy = 4; gbc.gridwidth = 2;
@@ -168,6 +219,7 @@ public class PanelGestionCliente extends JPanel {
         cmbCreditos = new JComboBox<>();
         EstilosUI.estilizarComboBox(cmbCreditos);
         panelCreditos.add(cmbCreditos, gbc);
+        controlesBloqueables.add(cmbCreditos);
 
         // Render del ComboBox
         cmbCreditos.setRenderer(new DefaultListCellRenderer() {
@@ -196,6 +248,7 @@ public class PanelGestionCliente extends JPanel {
         JButton btnVerCronograma = new JButton("Ver Cronograma");
         EstilosUI.estilizarBotonSecundario(btnVerCronograma);
         btnVerCronograma.addActionListener(e -> cargarCronogramaSeleccionado());
+        controlesBloqueables.add(btnVerCronograma);
 
         gbc.gridx = 0; gbc.gridy = 2; gbc.gridwidth = 1;
         gbc.weightx = 0.5;
@@ -205,6 +258,7 @@ public class PanelGestionCliente extends JPanel {
         JButton btnSolicitar = new JButton("Solicitar Préstamo");
         EstilosUI.estilizarBotonPrincipal(btnSolicitar);
         btnSolicitar.addActionListener(e -> solicitarNuevoCredito());
+        controlesBloqueables.add(btnSolicitar);
 
         gbc.gridx = 1; gbc.gridy = 2; gbc.gridwidth = 1;
         gbc.weightx = 0.5;
@@ -281,12 +335,9 @@ public class PanelGestionCliente extends JPanel {
         tablaCronograma.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         tablaCronograma.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
 
-        // Renderizadores
-        DefaultTableCellRenderer centerRenderer = new DefaultTableCellRenderer();
-        centerRenderer.setHorizontalAlignment(SwingConstants.CENTER);
-        
-        DefaultTableCellRenderer rightRenderer = new DefaultTableCellRenderer();
-        rightRenderer.setHorizontalAlignment(SwingConstants.RIGHT);
+        // Renderizadores (con la misma trama de cebra que el resto de columnas)
+        TableCellRenderer centerRenderer = EstilosUI.crearRendererTabla(SwingConstants.CENTER);
+        TableCellRenderer rightRenderer = EstilosUI.crearRendererTabla(SwingConstants.RIGHT);
         
         // Ajuste de columnas
         for (int i = 0; i < cuotaTableModel.getColumnCount(); i++) {
@@ -351,7 +402,22 @@ public class PanelGestionCliente extends JPanel {
         toolBarAcciones.add(btnPagoParcial);
         toolBarAcciones.add(btnRegistrarPago);
 
-        panel.add(toolBarAcciones, BorderLayout.SOUTH);
+        controlesBloqueables.add(btnRegistrarPago);
+        controlesBloqueables.add(btnPagoParcial);
+        controlesBloqueables.add(btnAmortizacion);
+        controlesBloqueables.add(btnReprogramar);
+        controlesBloqueables.add(btnRefinanciar);
+        controlesBloqueables.add(btnHistorial);
+        controlesBloqueables.add(btnDescargar);
+
+        // Indicador de operación en curso, sobre la barra de acciones
+        indicador = new IndicadorOcupado();
+
+        JPanel panelInferior = new JPanel(new BorderLayout());
+        panelInferior.setOpaque(false);
+        panelInferior.add(indicador, BorderLayout.NORTH);
+        panelInferior.add(toolBarAcciones, BorderLayout.CENTER);
+        panel.add(panelInferior, BorderLayout.SOUTH);
 
         return panel;
     }
@@ -368,21 +434,31 @@ public class PanelGestionCliente extends JPanel {
         txtTelefono.setText(cliente.getTelefono() != null ? cliente.getTelefono() : "");
     }
 
-    private void cargarListaDeCreditos() {
-        List<Credito> creditos = creditoDAO.listarPorCliente(cliente.getCodigoCliente());
-        cmbCreditos.removeAllItems();
-        for (Credito c : creditos) {
-            cmbCreditos.addItem(c); 
-        }
-
-        if (cmbCreditos.getItemCount() > 0) {
-            cmbCreditos.setSelectedIndex(0);
-            cargarCronogramaSeleccionado();
-        } else {
-            creditoSeleccionado = null;
-            cuotaTableModel.setCuotas(new ArrayList<>());
-            actualizarResumen(null);
-        }
+    /**
+     * Carga los créditos del cliente y luego el cronograma del contrato
+     * indicado (o del primero si es 0 o no está en la lista).
+     */
+    private void cargarListaDeCreditos(int contratoASeleccionar) {
+        enSegundoPlano("Cargando créditos del cliente...", true,
+                gestionService.listarCreditos(cliente.getCodigoCliente()),
+                creditos -> {
+                    cmbCreditos.removeAllItems();
+                    for (Credito c : creditos) {
+                        cmbCreditos.addItem(c);
+                    }
+
+                    if (cmbCreditos.getItemCount() > 0) {
+                        cmbCreditos.setSelectedIndex(0);
+                        if (contratoASeleccionar > 0) {
+                            seleccionarContratoEnCombo(contratoASeleccionar);
+                        }
+                        cargarCronogramaSeleccionado();
+                    } else {
+                        creditoSeleccionado = null;
+                        cuotaTableModel.setCuotas(new ArrayList<>());
+                        actualizarResumen(null);
+                    }
+                });
     }
 
     private void cargarCronogramaSeleccionado() {
@@ -393,18 +469,19 @@ public class PanelGestionCliente extends JPanel {
             actualizarResumen(null);
             return;
         }
-        this.creditoSeleccionado = seleccionado;
 
-        List<Cuota> cuotas = cuotaDAO.listarPorContrato(seleccionado.getCodigoContrato());
-        
-        if (cuotas.isEmpty()
-                && seleccionado.getMontoDesembolso() != null
-                && seleccionado.getMontoDesembolso().compareTo(BigDecimal.ZERO) > 0) {
-            cuotas = calculadoraService.generarCronograma(seleccionado);
-        }
-        
-        cuotaTableModel.setCuotas(cuotas);
+        // Hasta que llegue su cronograma no hay crédito sobre el cual operar
+        this.creditoSeleccionado = null;
+        cuotaTableModel.setCuotas(List.of());
         actualizarResumen(seleccionado);
+
+        enSegundoPlano("Cargando cronograma del contrato " + seleccionado.getCodigoContrato() + "...", true,
+                gestionService.cargarCronograma(seleccionado),
+                cuotas -> {
+                    this.creditoSeleccionado = seleccionado;
+                    cuotaTableModel.setCuotas(cuotas);
+                    actualizarResumen(seleccionado);
+                });
     }
 
     private void actualizarResumen(Credito c) {
@@ -457,19 +534,22 @@ public class PanelGestionCliente extends JPanel {
         cliente.setApellidoPaterno(txtApellido.getText().trim());
         cliente.setTelefono(txtTelefono.getText().trim());
 
-        boolean ok = clienteDAO.actualizarCliente(cliente);
-        if (ok) {
-            JOptionPane.showMessageDialog(this,
-                    "Datos del cliente actualizados correctamente.",
-                    "Información",
-                    JOptionPane.INFORMATION_MESSAGE);
-        } else {
-            JOptionPane.showMessageDialog(this,
-                    "No se pudo actualizar el cliente.",
-                    "Error",
-                    JOptionPane.ERROR_MESSAGE);
-        }
-        actualizarResumen(); 
+        enSegundoPlano("Guardando datos del cliente...", false,
+                gestionService.actualizarCliente(cliente),
+                ok -> {
+                    if (ok) {
+                        JOptionPane.showMessageDialog(this,
+                                "Datos del cliente actualizados correctamente.",
+                                "Información",
+                                JOptionPane.INFORMATION_MESSAGE);
+                    } else {
+                        JOptionPane.showMessageDialog(this,
+                                "No se pudo actualizar el cliente.",
+                                "Error",
+                                JOptionPane.ERROR_MESSAGE);
+                    }
+                    actualizarResumen();
+                });
     }
 
     private void solicitarNuevoCredito() {
@@ -481,12 +561,38 @@ public class PanelGestionCliente extends JPanel {
         dialogo.setVisible(true);
 
         if (dialogo.isGuardado()) {
-            int nuevoContrato = dialogo.getCodigoContratoCreado();
-            cargarListaDeCreditos();
-            if (nuevoContrato > 0) {
-                seleccionarContratoEnCombo(nuevoContrato);
+            cargarListaDeCreditos(dialogo.getCodigoContratoCreado());
+        }
+    }
+
+    /** Aviso de {@link EscuchaCambiosCronograma}: cambió un contrato (o todos). */
+    private void cronogramaCambiado(int codigoContrato) {
+        if (codigoContrato == EscuchaCambiosCronograma.TODOS || contieneContrato(codigoContrato)) {
+            recargaPorAviso.restart();
+        }
+    }
+
+    /**
+     * Recarga créditos y cronograma manteniendo el contrato seleccionado. Si
+     * hay una operación en curso se espera a que termine.
+     */
+    private void recargarPorAviso() {
+        if (operacionActual != null) {
+            recargaPorAviso.restart();
+            return;
+        }
+        Credito seleccionado = (Credito) cmbCreditos.getSelectedItem();
+        cargarListaDeCreditos(seleccionado != null ? seleccionado.getCodigoContrato() : 0);
+    }
+
+    private boolean contieneContrato(int codigoContrato) {
+        ComboBoxModel<Credito> model = cmbCreditos.getModel();
+        for (int i = 0; i < model.getSize(); i++) {
+            if (model.getElementAt(i).getCodigoContrato() == codigoContrato) {
+                return true;
             }
         }
+        return false;
     }
 
     private void seleccionarContratoEnCombo(int codigoContrato) {
@@ -495,7 +601,6 @@ public class PanelGestionCliente extends JPanel {
             Credito c = model.getElementAt(i);
             if (c.getCodigoContrato() == codigoContrato) {
                 cmbCreditos.setSelectedIndex(i);
-                cargarCronogramaSeleccionado();
                 break;
             }
         }
@@ -534,6 +639,13 @@ public class PanelGestionCliente extends JPanel {
                     JOptionPane.WARNING_MESSAGE);
             return;
         }
+        if ("Cerrada".equalsIgnoreCase(cuota.getEstadoCuota())) {
+            JOptionPane.showMessageDialog(this,
+                    "Esta cuota es de un contrato que ya no está vigente.",
+                    "Advertencia",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
 
         int confirm = JOptionPane.showConfirmDialog(this,
                 "¿Confirmar pago total de " + formatearMoneda(cuota.getMontoCuota()) +
@@ -543,24 +655,26 @@ public class PanelGestionCliente extends JPanel {
 
         if (confirm != JOptionPane.YES_OPTION) return;
 
-        boolean ok = cuotaDAO.registrarPagoCuota(
-                cuota.getCodigoContrato(),
-                cuota.getNroCuota(),
-                cuota.getMontoCuota(),
-                "sistema"
-        );
-        if (ok) {
-            JOptionPane.showMessageDialog(this,
-                    "Pago registrado correctamente.",
-                    "Éxito",
-                    JOptionPane.INFORMATION_MESSAGE);
-            cargarCronogramaSeleccionado();
-        } else {
-            JOptionPane.showMessageDialog(this,
-                    "No se pudo registrar el pago.",
-                    "Error",
-                    JOptionPane.ERROR_MESSAGE);
-        }
+        enSegundoPlano("Registrando pago de la cuota N° " + cuota.getNroCuota() + "...", false,
+                gestionService.registrarPagoCuota(
+                        cuota.getCodigoContrato(),
+                        cuota.getNroCuota(),
+                        cuota.getMontoCuota(),
+                        "sistema"),
+                ok -> {
+                    if (ok) {
+                        JOptionPane.showMessageDialog(this,
+                                "Pago registrado correctamente.",
+                                "Éxito",
+                                JOptionPane.INFORMATION_MESSAGE);
+                        cargarCronogramaSeleccionado();
+                    } else {
+                        JOptionPane.showMessageDialog(this,
+                                "No se pudo registrar el pago.",
+                                "Error",
+                                JOptionPane.ERROR_MESSAGE);
+                    }
+                });
     }
 
     private void pagoParcial(ActionEvent e) {
@@ -582,6 +696,13 @@ public class PanelGestionCliente extends JPanel {
                     JOptionPane.WARNING_MESSAGE);
             return;
         }
+        if ("Cerrada".equalsIgnoreCase(cuota.getEstadoCuota())) {
+            JOptionPane.showMessageDialog(this,
+                    "Esta cuota es de un contrato que ya no está vigente.",
+                    "Advertencia",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
 
         String montoStr = JOptionPane.showInputDialog(this,
                 "Ingrese el monto a pagar (pago parcial) para la cuota N° "
@@ -620,24 +741,27 @@ public class PanelGestionCliente extends JPanel {
         
         if (confirmar != JOptionPane.YES_OPTION) return;
 
-        boolean ok = cuotaDAO.registrarPagoParcialCuota(
-                creditoSeleccionado.getCodigoContrato(),
-                cuota.getNroCuota(),
-                montoPago,
-                "sistema"
-        );
-        if (ok) {
-            JOptionPane.showMessageDialog(this,
-                    "Pago parcial registrado correctamente.",
-                    "Éxito",
-                    JOptionPane.INFORMATION_MESSAGE);
-            cargarCronogramaSeleccionado();
-        } else {
-             JOptionPane.showMessageDialog(this,
-                     "No se pudo registrar el pago parcial.",
-                     "Error",
-                     JOptionPane.ERROR_MESSAGE);
-        }
+        enSegundoPlano("Registrando pago parcial...", false,
+                gestionService.registrarPagoParcial(
+                        creditoSeleccionado.getCodigoContrato(),
+                        cuota.getNroCuota(),
+                        montoPago,
+                        "sistema"),
+                aplicaciones -> {
+                    if (aplicaciones != null) {
+                        JOptionPane.showMessageDialog(this,
+                                "Pago parcial registrado correctamente.\n\n"
+                                        + describirAplicaciones(aplicaciones, montoPago),
+                                "Éxito",
+                                JOptionPane.INFORMATION_MESSAGE);
+                        cargarCronogramaSeleccionado();
+                    } else {
+                        JOptionPane.showMessageDialog(this,
+                                "No se pudo registrar el pago parcial.",
+                                "Error",
+                                JOptionPane.ERROR_MESSAGE);
+                    }
+                });
     }
 
     private void amortizacionCapital(ActionEvent e) {
@@ -703,43 +827,28 @@ public class PanelGestionCliente extends JPanel {
             return;
         }
 
-        boolean archivado = cuotaDAO.archivarCronogramaActual(
-                creditoSeleccionado.getCodigoContrato(),
-                "AMORTIZACION",
-                "Amortización extraordinaria de capital por S/ " + montoAmortizacion,
-                "sistema"
-        );
-        if (!archivado) {
-            JOptionPane.showMessageDialog(this,
-                    "No se pudo archivar el cronograma anterior. Operación cancelada.",
-                    "Error",
-                    JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        boolean okCronograma = cuotaDAO.actualizarCronogramaCompleto(
-                creditoSeleccionado.getCodigoContrato(), nuevoCronograma);
-        if (!okCronograma) {
-            JOptionPane.showMessageDialog(this,
-                    "No se pudo actualizar el cronograma. Operación cancelada.",
-                    "Error",
-                    JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        historialDAO.registrarCambio(
-                creditoSeleccionado.getCodigoContrato(),
-                "AMORTIZACION",
-                "Amortización extraordinaria de capital por S/ " + montoAmortizacion,
-                "sistema"
-        );
-
-        cuotaTableModel.setCuotas(nuevoCronograma);
-
-        JOptionPane.showMessageDialog(this,
-                "Amortización aplicada y cronograma recalculado.",
-                "Éxito",
-                JOptionPane.INFORMATION_MESSAGE);
+        // Archivar + reemplazar cronograma + historial en una sola transacción
+        final int codigoContrato = creditoSeleccionado.getCodigoContrato();
+        final String descripcion = "Amortización extraordinaria de capital por S/ " + montoAmortizacion;
+
+        enSegundoPlano("Aplicando amortización...", false,
+                gestionService.aplicarAmortizacion(codigoContrato, nuevoCronograma, descripcion, "sistema"),
+                ok -> {
+                    if (!ok) {
+                        JOptionPane.showMessageDialog(this,
+                                "No se pudo aplicar la amortización. No se realizó ningún cambio.",
+                                "Error",
+                                JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+
+                    cuotaTableModel.setCuotas(nuevoCronograma);
+
+                    JOptionPane.showMessageDialog(this,
+                            "Amortización aplicada y cronograma recalculado.",
+                            "Éxito",
+                            JOptionPane.INFORMATION_MESSAGE);
+                });
     }
 
     private void reprogramarCredito(ActionEvent e) {
@@ -777,55 +886,34 @@ public class PanelGestionCliente extends JPanel {
             return;
         }
 
-        boolean archivado = cuotaDAO.archivarCronogramaActual(
-                creditoSeleccionado.getCodigoContrato(),
-                "REPROGRAMACION_PLAZO",
-                "Reprogramación: nuevas cuotas = " + nuevasCuotas +
-                        ", nueva tasa anual = " + nuevaTasa,
-                "sistema"
-        );
-        if (!archivado) {
-            JOptionPane.showMessageDialog(this,
-                    "No se pudo archivar el cronograma anterior. Operación cancelada.",
-                    "Error",
-                    JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        boolean okCronograma = cuotaDAO.actualizarCronogramaCompleto(
-                creditoSeleccionado.getCodigoContrato(), nuevoCronograma);
-        if (!okCronograma) {
-            JOptionPane.showMessageDialog(this,
-                    "No se pudo actualizar el cronograma. Operación cancelada.",
-                    "Error",
-                    JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        boolean contratoOk = creditoDAO.actualizarContratoReprogramado(
-                creditoSeleccionado.getCodigoContrato(),
-                nuevaTasa,
-                nuevasCuotas
-        );
-        if (contratoOk) {
-            creditoSeleccionado.setNumeroCuotas(nuevasCuotas);
-            creditoSeleccionado.setTasaInteresCompensatorio(nuevaTasa);
-            actualizarResumen(creditoSeleccionado);
-        }
-
-        historialDAO.registrarCambio(
-                creditoSeleccionado.getCodigoContrato(),
-                "REPROGRAMACION_PLAZO",
-                "Reprogramación: nuevas cuotas = " + nuevasCuotas +
-                        ", nueva tasa anual = " + nuevaTasa,
-                "sistema"
-        );
-        cuotaTableModel.setCuotas(nuevoCronograma);
-
-        JOptionPane.showMessageDialog(this,
-                "Reprogramación aplicada y cronograma recalculado.",
-                "Éxito",
-                JOptionPane.INFORMATION_MESSAGE);
+        // Archivar + reemplazar cronograma + actualizar contrato + historial, todo o nada
+        final Credito credito = creditoSeleccionado;
+        final String descripcion = "Reprogramación: nuevas cuotas = " + nuevasCuotas +
+                ", nueva tasa anual = " + nuevaTasa;
+
+        enSegundoPlano("Aplicando reprogramación...", false,
+                gestionService.aplicarReprogramacion(credito.getCodigoContrato(), nuevoCronograma,
+                        nuevaTasa, nuevasCuotas, descripcion, "sistema"),
+                ok -> {
+                    if (!ok) {
+                        JOptionPane.showMessageDialog(this,
+                                "No se pudo aplicar la reprogramación. No se realizó ningún cambio.",
+                                "Error",
+                                JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+
+                    credito.setNumeroCuotas(nuevasCuotas);
+                    credito.setTasaInteresCompensatorio(nuevaTasa);
+                    actualizarResumen(credito);
+
+                    cuotaTableModel.setCuotas(nuevoCronograma);
+
+                    JOptionPane.showMessageDialog(this,
+                            "Reprogramación aplicada y cronograma recalculado.",
+                            "Éxito",
+                            JOptionPane.INFORMATION_MESSAGE);
+                });
     }
 
     private void refinanciarCredito(ActionEvent e) {
@@ -880,63 +968,32 @@ public class PanelGestionCliente extends JPanel {
             return;
         }
 
-        int nuevoContrato = creditoDAO.crearCreditoParaCliente(
-                cliente.getCodigoCliente(),
-                montoNuevo,
-                nuevasCuotas,
-                nuevaTasa,
-                fechaDesembolso
-        );
-
-        if (nuevoContrato <= 0) {
-            JOptionPane.showMessageDialog(this,
-                    "No se pudo crear el nuevo crédito para refinanciamiento.",
-                    "Error",
-                    JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        boolean archivado = cuotaDAO.archivarCronogramaActual(
-                creditoSeleccionado.getCodigoContrato(),
-                "REFINANCIACION",
-                "Refinanciamiento al contrato " + nuevoContrato +
-                        " por monto S/ " + montoNuevo,
-                "sistema"
-        );
-        if (!archivado) {
-            JOptionPane.showMessageDialog(this,
-                    "Se creó el nuevo crédito pero NO se pudo archivar el cronograma anterior.\n" +
-                    "Revise el historial manualmente.",
-                    "Advertencia",
-                    JOptionPane.WARNING_MESSAGE);
-        }
-
-        boolean marcado = creditoDAO.marcarContratoComoRefinanciado(
-                creditoSeleccionado.getCodigoContrato()
-        );
-        if (!marcado) {
-            JOptionPane.showMessageDialog(this,
-                    "No se pudo marcar el contrato original como REFINANCIADO.\n" +
-                    "Revise el estado del contrato en la base de datos.",
-                    "Advertencia",
-                    JOptionPane.WARNING_MESSAGE);
-        }
-
-        historialDAO.registrarCambio(
-                creditoSeleccionado.getCodigoContrato(),
-                "REFINANCIACION",
-                "Refinanciamiento al contrato " + nuevoContrato +
-                        " por monto S/ " + montoNuevo,
-                "sistema"
-        );
-        
-        cargarListaDeCreditos();
-        seleccionarContratoEnCombo(nuevoContrato);
-
-        JOptionPane.showMessageDialog(this,
-                "Refinanciamiento realizado. Se creó el contrato " + nuevoContrato + ".",
-                "Éxito",
-                JOptionPane.INFORMATION_MESSAGE);
+        // Crear crédito nuevo + archivar + marcar REFINANCIADO + historial en una sola transacción
+        enSegundoPlano("Realizando refinanciamiento...", false,
+                gestionService.refinanciar(
+                        creditoSeleccionado.getCodigoContrato(),
+                        cliente.getCodigoCliente(),
+                        montoNuevo,
+                        nuevasCuotas,
+                        nuevaTasa,
+                        fechaDesembolso,
+                        "sistema"),
+                nuevoContrato -> {
+                    if (nuevoContrato <= 0) {
+                        JOptionPane.showMessageDialog(this,
+                                "No se pudo realizar el refinanciamiento. No se realizó ningún cambio.",
+                                "Error",
+                                JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+
+                    cargarListaDeCreditos(nuevoContrato);
+
+                    JOptionPane.showMessageDialog(this,
+                            "Refinanciamiento realizado. Se creó el contrato " + nuevoContrato + ".",
+                            "Éxito",
+                            JOptionPane.INFORMATION_MESSAGE);
+                });
     }
 
     private void verHistorialCronograma(ActionEvent e) {
@@ -1014,13 +1071,101 @@ public class PanelGestionCliente extends JPanel {
         }
     }
 
+    /* =========================================================
+     *  OPERACIONES EN SEGUNDO PLANO
+     * ========================================================= */
+
+    /**
+     * Espera una operación en segundo plano sin bloquear el EDT: muestra el
+     * indicador y bloquea los controles del panel hasta que termine, y luego
+     * llama a alTerminar en el EDT con el resultado.
+     *
+     * Solo hay una operación a la vez por panel; si llega otra, la anterior
+     * se cancela (si se podía) y su resultado se descarta.
+     *
+     * @param cancelable true si el usuario puede cancelarla (solo lecturas)
+     */
+    private <T> void enSegundoPlano(String mensaje,
+                                    boolean cancelable,
+                                    CompletableFuture<T> operacion,
+                                    Consumer<T> alTerminar) {
+        if (operacionActual != null && operacionCancelable) {
+            operacionActual.cancel(true);
+        }
+        operacionActual = operacion;
+        operacionCancelable = cancelable;
+
+        bloquearControles(true);
+        indicador.mostrar(mensaje, cancelable ? () -> operacion.cancel(true) : null);
+
+        operacion.whenCompleteAsync((resultado, error) -> {
+            if (operacionActual != operacion) {
+                return; // reemplazada por otra operación
+            }
+            operacionActual = null;
+            indicador.ocultar();
+            bloquearControles(false);
+
+            if (operacion.isCancelled()) {
+                return;
+            }
+            if (error != null) {
+                Throwable causa = EjecutorTareas.causa(error);
+                JOptionPane.showMessageDialog(this,
+                        (causa instanceof RejectedExecutionException)
+                                ? "El sistema está atendiendo demasiadas operaciones. Intente nuevamente."
+                                : "Error inesperado: " + causa.getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            alTerminar.accept(resultado);
+        }, EjecutorTareas.EDT);
+    }
+
+    private void bloquearControles(boolean bloquear) {
+        for (JComponent c : controlesBloqueables) {
+            c.setEnabled(!bloquear);
+        }
+        setCursor(bloquear
+                ? Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR)
+                : Cursor.getDefaultCursor());
+    }
+
     /* =========================================================
      *  MÉTODOS AUXILIARES DE FORMATO
      * ========================================================= */
 
+    /**
+     * Texto con el reparto de un pago parcial: cuánto recibió cada cuota
+     * y en qué estado quedó.
+     */
+    private String describirAplicaciones(List<AplicacionPago> aplicaciones, BigDecimal montoPago) {
+        if (aplicaciones.isEmpty()) {
+            return "No había cuotas pendientes desde la cuota seleccionada.";
+        }
+        StringBuilder sb = new StringBuilder("Detalle de aplicación:\n");
+        BigDecimal aplicado = BigDecimal.ZERO;
+        for (AplicacionPago a : aplicaciones) {
+            sb.append("  Cuota N° ").append(a.getNroCuota())
+              .append(": ").append(formatearMoneda(a.getMontoAplicado()))
+              .append(" -> ").append(a.getEstadoResultante());
+            if (a.getSaldoRestante() != null && a.getSaldoRestante().signum() > 0) {
+                sb.append(" (saldo ").append(formatearMoneda(a.getSaldoRestante())).append(")");
+            }
+            sb.append('\n');
+            aplicado = aplicado.add(a.getMontoAplicado());
+        }
+        BigDecimal sobrante = montoPago.subtract(aplicado);
+        if (sobrante.signum() > 0) {
+            sb.append("Monto no aplicado (sin más cuotas pendientes): ")
+              .append(formatearMoneda(sobrante));
+        }
+        return sb.toString();
+    }
+
     private String formatearMoneda(BigDecimal valor) {
-        if (valor == null) return "S/ 0.00";
-        return String.format("S/ %,.2f", valor);
+        return FormatosUI.moneda(valor);
     }
 
     private String formatearPorcentaje(BigDecimal tasa) {
@@ -1029,8 +1174,6 @@ public class PanelGestionCliente extends JPanel {
     }
 
     private String formatearFecha(Date fecha) {
-        if (fecha == null) return "-";
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-        return sdf.format(fecha);
+        return FormatosUI.fecha(fecha);
     }
 }
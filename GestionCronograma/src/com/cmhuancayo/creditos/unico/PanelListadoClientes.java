@@ -4,8 +4,10 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 /**
  * Panel principal de la aplicación que muestra:
@@ -15,9 +17,34 @@ import java.util.List;
  *  - Botones para CRUD básico (nuevo, eliminar lógico, refrescar)
  *
  * Desde aquí se abre la pestaña de gestión de cada cliente en el DashboardPrincipal.
+ *
+ * La búsqueda se hace mientras se escribe, sin bloquear la ventana y sin
+ * saturar PostgreSQL:
+ *  - se espera {@value #ESPERA_BUSQUEDA_MS} ms sin teclear antes de consultar;
+ *  - hay como máximo una consulta en curso: si llega otra, la anterior se
+ *    cancela en el servidor ({@link ConsultaCancelable});
+ *  - el nombre necesita {@value #MINIMO_LETRAS_NOMBRE} letras para buscar
+ *    solo (con menos, el índice trigram no sirve); con el botón Buscar se
+ *    busca igual;
+ *  - los resultados se guardan unos segundos en una {@link CacheLRU}, así que
+ *    borrar y volver a escribir lo mismo no vuelve a consultar.
+ *
+ * La búsqueda solo trae la primera página de clientes (paginación por cursor,
+ * {@link ClienteDAO#buscarClientesPaginado}); la tabla
+ * ({@link ClienteTableModel}) pide las siguientes al desplazarse, así que se
+ * puede recorrer toda la cartera sin leerla entera en cada búsqueda.
  */
 public class PanelListadoClientes extends JPanel {
 
+    /** Milisegundos sin teclear antes de lanzar la búsqueda automática. */
+    private static final int ESPERA_BUSQUEDA_MS = 250;
+
+    /** Letras mínimas del filtro por nombre para la búsqueda automática. */
+    private static final int MINIMO_LETRAS_NOMBRE = 3;
+
+    /** Primera página de las búsquedas recientes (clave: filtros), 30 segundos de vida. */
+    private final CacheLRU<String, PaginaClientes> cacheBusquedas = new CacheLRU<>(64, 30_000);
+
     /** Referencia a la ventana principal para poder abrir pestañas de gestión. */
     private final DashboardPrincipal dashboard;
 
@@ -33,6 +60,12 @@ public class PanelListadoClientes extends JPanel {
     private JTextField txtBusquedaDNI;
     private JComboBox<String> cmbEstado;
 
+    /** Búsqueda automática (debounce) y búsqueda en curso; solo desde el EDT. */
+    private Timer temporizadorBusqueda;
+    private CompletableFuture<PaginaClientes> busquedaActual;
+    private ConsultaCancelable consultaActual;
+    private IndicadorOcupado indicador;
+
     public PanelListadoClientes(DashboardPrincipal dashboard) {
         this.dashboard = dashboard;
         this.clienteDAO = new ClienteDAO();
@@ -42,9 +75,27 @@ public class PanelListadoClientes extends JPanel {
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10)); 
         EstilosUI.aplicarFondoClaro(this);
 
+        indicador = new IndicadorOcupado();
+        JPanel panelCentral = new JPanel(new BorderLayout());
+        panelCentral.setOpaque(false);
+        panelCentral.add(indicador, BorderLayout.NORTH);
+        panelCentral.add(crearPanelTabla(), BorderLayout.CENTER);
+
         add(crearPanelFiltros(), BorderLayout.NORTH);
-        add(crearPanelTabla(), BorderLayout.CENTER);
+        add(panelCentral, BorderLayout.CENTER);
         add(crearPanelBotonesInferiores(), BorderLayout.SOUTH);
+
+        // Búsqueda mientras se escribe
+        temporizadorBusqueda = new Timer(ESPERA_BUSQUEDA_MS, e -> buscar(false));
+        temporizadorBusqueda.setRepeats(false);
+        DocumentListener alEscribir = new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { temporizadorBusqueda.restart(); }
+            @Override public void removeUpdate(DocumentEvent e) { temporizadorBusqueda.restart(); }
+            @Override public void changedUpdate(DocumentEvent e) { temporizadorBusqueda.restart(); }
+        };
+        txtBusquedaNombre.getDocument().addDocumentListener(alEscribir);
+        txtBusquedaDNI.getDocument().addDocumentListener(alEscribir);
+        cmbEstado.addActionListener(e -> buscar(false));
         
         // Carga inicial del listado
         cargarClientes();
@@ -122,14 +173,14 @@ public class PanelListadoClientes extends JPanel {
      * PANEL CENTRAL: TABLA DE CLIENTES
      * ========================================================== */
     private JScrollPane crearPanelTabla() {
-        tableModel = new ClienteTableModel(new ArrayList<>());
+        tableModel = new ClienteTableModel();
         tablaClientes = new JTable(tableModel);
         
         // Estilo unificado de tabla (cabecera roja, filas en cebra)
         EstilosUI.estilizarTabla(tablaClientes);
         
         tablaClientes.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        tablaClientes.setAutoCreateRowSorter(true); // Permite ordenar por columnas
+        // Sin RowSorter: ordenar en la tabla obligaría a cargar todas las filas
 
         // Doble clic sobre una fila para abrir la gestión del cliente
         tablaClientes.addMouseListener(new MouseAdapter() {
@@ -137,10 +188,10 @@ public class PanelListadoClientes extends JPanel {
             public void mouseClicked(MouseEvent e) {
                 if (e.getClickCount() == 2 && tablaClientes.getSelectedRow() != -1) {
                     int fila = tablaClientes.getSelectedRow();
-                    // Convertir índice de vista a índice de modelo (por el sorter)
-                    fila = tablaClientes.convertRowIndexToModel(fila);
                     Cliente c = tableModel.getClienteAt(fila);
-                    dashboard.abrirPestanaGestion(c);
+                    if (c != null) { // null: fila "Cargando..."
+                        dashboard.abrirPestanaGestion(c);
+                    }
                 }
             }
         });
@@ -170,7 +221,10 @@ public class PanelListadoClientes extends JPanel {
 
         btnNuevo.addActionListener(e -> nuevoCliente());
         btnEliminar.addActionListener(e -> eliminarClienteLogico());
-        btnRefrescar.addActionListener(e -> cargarClientes());
+        btnRefrescar.addActionListener(e -> {
+            cacheBusquedas.limpiar();
+            cargarClientes();
+        });
 
         // Orden: refrescar, eliminar, nuevo (nuevo al extremo derecho)
         panel.add(btnRefrescar);
@@ -185,16 +239,108 @@ public class PanelListadoClientes extends JPanel {
      * ========================================================== */
 
     /**
-     * Carga la lista de clientes en la tabla según los filtros ingresados.
-     * Usa ClienteDAO.buscarClientes (ya adaptado a PostgreSQL).
+     * Carga la lista de clientes en la tabla según los filtros ingresados
+     * (botón Buscar / Refrescar): consulta la BD aunque el resultado esté en
+     * caché y sin mínimo de letras.
      */
     private void cargarClientes() {
+        buscar(true);
+    }
+
+    /**
+     * Busca en segundo plano con los filtros actuales y muestra el resultado.
+     * Cancela la búsqueda anterior si todavía no terminó.
+     *
+     * @param forzar true para ir siempre a la BD (botones); false para la
+     *               búsqueda automática, que usa la caché y el mínimo de letras
+     */
+    private void buscar(boolean forzar) {
+        temporizadorBusqueda.stop();
+
         String nombre = txtBusquedaNombre.getText().trim();
         String dni = txtBusquedaDNI.getText().trim();
         String estado = (String) cmbEstado.getSelectedItem();
 
-        List<Cliente> lista = clienteDAO.buscarClientes(nombre, dni, estado);
-        tableModel.setClientes(lista);
+        if (!forzar && !nombre.isEmpty() && nombre.length() < MINIMO_LETRAS_NOMBRE) {
+            return; // sigue escribiendo
+        }
+
+        cancelarBusqueda();
+
+        // ILIKE no distingue mayúsculas: "Pér" y "pér" son la misma búsqueda
+        String clave = nombre.toLowerCase() + '\u0001' + dni + '\u0001' + estado;
+        if (!forzar) {
+            PaginaClientes enCache = cacheBusquedas.obtener(clave);
+            if (enCache != null) {
+                Metricas.incrementar("busqueda.clientes.cache.aciertos");
+                mostrarResultado(enCache, nombre, dni, estado);
+                return;
+            }
+        }
+
+        ConsultaCancelable consulta = new ConsultaCancelable();
+        CompletableFuture<PaginaClientes> busqueda = EjecutorTareas.enSegundoPlano(() ->
+                clienteDAO.buscarClientesPaginado(nombre, dni, estado, null,
+                        ClienteTableModel.TAMANO_PAGINA, consulta));
+        busquedaActual = busqueda;
+        consultaActual = consulta;
+        indicador.mostrar("Buscando clientes...", null);
+
+        busqueda.whenCompleteAsync((pagina, error) -> {
+            if (busqueda != busquedaActual) {
+                return; // llegó otra búsqueda
+            }
+            busquedaActual = null;
+            consultaActual = null;
+            indicador.ocultar();
+
+            if (error != null) {
+                Throwable causa = EjecutorTareas.causa(error);
+                if (!(causa instanceof CancellationException)) {
+                    JOptionPane.showMessageDialog(this,
+                            "No se pudo buscar clientes: " + causa.getMessage(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+                return;
+            }
+            if (pagina == null) {
+                return; // cancelada
+            }
+            cacheBusquedas.guardar(clave, pagina);
+            mostrarResultado(pagina, nombre, dni, estado);
+        }, EjecutorTareas.EDT);
+    }
+
+    /**
+     * Muestra la primera página de una búsqueda; la tabla pide las siguientes
+     * con los mismos filtros y el cursor de la anterior.
+     */
+    private void mostrarResultado(PaginaClientes primera, String nombre, String dni, String estado) {
+        tableModel.setResultado(primera, despuesDe ->
+                clienteDAO.buscarClientesPaginado(nombre, dni, estado, despuesDe,
+                        ClienteTableModel.TAMANO_PAGINA));
+    }
+
+    /**
+     * Descarta la búsqueda en curso y cancela su consulta en el servidor.
+     * Statement.cancel abre una conexión aparte con PostgreSQL, por eso se
+     * envía desde un hilo del ejecutor y no desde el EDT.
+     */
+    private void cancelarBusqueda() {
+        if (busquedaActual == null) {
+            return;
+        }
+        ConsultaCancelable consulta = consultaActual;
+        busquedaActual.cancel(true);
+        busquedaActual = null;
+        consultaActual = null;
+        indicador.ocultar();
+        Metricas.incrementar("busqueda.clientes.descartadas");
+        EjecutorTareas.enSegundoPlano(() -> {
+            consulta.cancelar();
+            return null;
+        });
     }
 
     /**
@@ -208,6 +354,7 @@ public class PanelListadoClientes extends JPanel {
         );
         dlg.setVisible(true);
         if (dlg.isGuardado()) {
+            cacheBusquedas.limpiar();
             cargarClientes();
         }
     }
@@ -229,8 +376,10 @@ public class PanelListadoClientes extends JPanel {
             return;
         }
 
-        int filaModelo = tablaClientes.convertRowIndexToModel(filaVista);
-        Cliente c = tableModel.getClienteAt(filaModelo);
+        Cliente c = tableModel.getClienteAt(filaVista);
+        if (c == null) {
+            return; // fila "Cargando..."
+        }
         
         int r = JOptionPane.showConfirmDialog(
                 this,
@@ -243,6 +392,7 @@ public class PanelListadoClientes extends JPanel {
         if (r == JOptionPane.YES_OPTION) {
             boolean ok = clienteDAO.eliminarClienteLogico(c.getCodigoCliente());
             if (ok) {
+                cacheBusquedas.limpiar();
                 cargarClientes();
             }
         }
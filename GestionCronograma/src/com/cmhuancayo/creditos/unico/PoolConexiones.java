@@ -0,0 +1,444 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool acotado de conexiones JDBC usado internamente por {@link ConexionDB}.
+ *
+ * Características:
+ * <ul>
+ *     <li>Mínimo de conexiones inactivas listas para usarse.</li>
+ *     <li>Máximo de conexiones prestadas a la vez (el resto espera).</li>
+ *     <li>Validación al prestar si la conexión estuvo inactiva un tiempo.</li>
+ *     <li>Cierre de conexiones inactivas por exceso de tiempo.</li>
+ *     <li>Detección de fugas: avisa si una conexión no se devuelve a tiempo
+ *         (opcionalmente con la pila de quien la pidió: capturarla cuesta
+ *         una excepción por préstamo, así que viene desactivado).</li>
+ *     <li>Caché de sentencias preparadas por conexión ({@link CacheSentencias}).</li>
+ * </ul>
+ *
+ * Las conexiones se entregan envueltas en un proxy: al llamar a close()
+ * vuelven al pool en lugar de cerrarse físicamente, así los DAO siguen
+ * usando {@code ConexionDB.getConnection()} / {@code ConexionDB.close()} sin cambios.
+ */
+final class PoolConexiones {
+
+    /** Crea una conexión física nueva contra la base de datos. */
+    interface FabricaConexiones {
+        Connection abrir() throws SQLException;
+    }
+
+    /** Segundos máximos para Connection.isValid() al validar. */
+    private static final int TIMEOUT_VALIDACION_S = 2;
+
+    private final FabricaConexiones fabrica;
+    private final int minimoInactivas;
+    private final int maximo;
+    private final long esperaMaximaMs;
+    private final long inactividadMaximaMs;
+    private final long validarTrasMs;
+    private final long umbralFugaMs;
+    private final boolean rastrearOrigenFugas;
+    private final int tamanoCacheSentencias;
+
+    /** Un permiso por conexión que se puede prestar al mismo tiempo. */
+    private final Semaphore permisos;
+
+    /** Conexiones libres (LIFO: la más recientemente usada sale primero). Protegido por this. */
+    private final Deque<ConexionFisica> inactivas = new ArrayDeque<>();
+
+    /** Conexiones físicas abiertas (prestadas + inactivas + en creación). Protegido por this. */
+    private int totales;
+
+    private final Set<ConexionFisica> prestadas = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService mantenimiento;
+
+    private volatile boolean cerrado;
+
+    PoolConexiones(FabricaConexiones fabrica,
+                   int minimoInactivas,
+                   int maximo,
+                   long esperaMaximaMs,
+                   long inactividadMaximaMs,
+                   long validarTrasMs,
+                   long umbralFugaMs,
+                   boolean rastrearOrigenFugas,
+                   int tamanoCacheSentencias,
+                   long periodoMantenimientoMs) {
+        this.fabrica = fabrica;
+        this.minimoInactivas = Math.max(0, minimoInactivas);
+        this.maximo = Math.max(1, maximo);
+        this.esperaMaximaMs = esperaMaximaMs;
+        this.inactividadMaximaMs = inactividadMaximaMs;
+        this.validarTrasMs = validarTrasMs;
+        this.umbralFugaMs = umbralFugaMs;
+        this.rastrearOrigenFugas = rastrearOrigenFugas && umbralFugaMs > 0;
+        this.tamanoCacheSentencias = Math.max(0, tamanoCacheSentencias);
+        this.permisos = new Semaphore(this.maximo, true);
+
+        Metricas.registrarIndicador("pool.activas", prestadas::size);
+        Metricas.registrarIndicador("pool.inactivas", this::contarInactivas);
+        Metricas.registrarIndicador("pool.totales", this::contarTotales);
+        Metricas.registrarIndicador("pool.en_espera", permisos::getQueueLength);
+
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pool-conexiones-mantenimiento");
+            t.setDaemon(true);
+            return t;
+        });
+        this.mantenimiento.scheduleWithFixedDelay(this::mantener,
+                periodoMantenimientoMs, periodoMantenimientoMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Agrega al pool una conexión física ya abierta (por ejemplo la primera,
+     * creada durante el arranque) como conexión inactiva.
+     */
+    void incorporar(Connection fisica) {
+        ConexionFisica cf = new ConexionFisica(fisica, tamanoCacheSentencias);
+        synchronized (this) {
+            totales++;
+            inactivas.push(cf);
+        }
+    }
+
+    /**
+     * Presta una conexión. Si no hay libres y ya se alcanzó el máximo,
+     * espera hasta esperaMaximaMs antes de fallar.
+     */
+    Connection prestar() throws SQLException {
+        if (cerrado) {
+            throw new SQLException("El pool de conexiones está cerrado.");
+        }
+
+        long inicio = System.nanoTime();
+        try {
+            if (!permisos.tryAcquire(esperaMaximaMs, TimeUnit.MILLISECONDS)) {
+                Metricas.incrementar("pool.agotado");
+                throw new SQLException("No hay conexiones disponibles (activas = "
+                        + prestadas.size() + ", máximo = " + maximo + ").");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando una conexión.", ex);
+        }
+        Metricas.registrarTiempo("pool.espera", System.nanoTime() - inicio);
+
+        try {
+            ConexionFisica cf = tomarInactivaValida();
+            if (cf == null) {
+                cf = crearReservada();
+            }
+            cf.prestadaEnMs = System.currentTimeMillis();
+            cf.origenPrestamo = rastrearOrigenFugas
+                    ? new Throwable("Conexión prestada desde aquí")
+                    : null;
+            cf.fugaReportada = false;
+            prestadas.add(cf);
+
+            Connection proxy = (Connection) Proxy.newProxyInstance(
+                    PoolConexiones.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new ConexionPrestada(cf));
+
+            Metricas.registrarTiempo("pool.prestamo", System.nanoTime() - inicio);
+            return proxy;
+
+        } catch (SQLException | RuntimeException ex) {
+            permisos.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Cierra todas las conexiones inactivas y evita nuevos préstamos.
+     * Las prestadas se cierran físicamente al devolverse.
+     */
+    void cerrar() {
+        cerrado = true;
+        mantenimiento.shutdownNow();
+        List<ConexionFisica> aCerrar;
+        synchronized (this) {
+            aCerrar = new ArrayList<>(inactivas);
+            inactivas.clear();
+        }
+        for (ConexionFisica cf : aCerrar) {
+            descartar(cf);
+        }
+    }
+
+    /* =========================================================
+     *  PRÉSTAMO Y DEVOLUCIÓN
+     * ========================================================= */
+
+    private ConexionFisica tomarInactivaValida() {
+        while (true) {
+            ConexionFisica cf;
+            synchronized (this) {
+                cf = inactivas.poll();
+            }
+            if (cf == null) {
+                return null;
+            }
+            if (esValida(cf)) {
+                return cf;
+            }
+            descartar(cf);
+        }
+    }
+
+    private boolean esValida(ConexionFisica cf) {
+        try {
+            if (cf.fisica.isClosed()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - cf.ultimoUsoMs < validarTrasMs) {
+                return true;
+            }
+            return cf.fisica.isValid(TIMEOUT_VALIDACION_S);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    /** Crea una conexión física reservando antes su lugar en el total. */
+    private ConexionFisica crearReservada() throws SQLException {
+        synchronized (this) {
+            totales++;
+        }
+        try {
+            ConexionFisica cf = new ConexionFisica(fabrica.abrir(), tamanoCacheSentencias);
+            Metricas.incrementar("pool.creadas");
+            return cf;
+        } catch (SQLException | RuntimeException ex) {
+            synchronized (this) {
+                totales--;
+            }
+            throw ex;
+        }
+    }
+
+    private void devolver(ConexionFisica cf) {
+        prestadas.remove(cf);
+        try {
+            boolean sana = restablecer(cf);
+            if (!sana || cerrado) {
+                descartar(cf);
+                return;
+            }
+            cf.ultimoUsoMs = System.currentTimeMillis();
+            synchronized (this) {
+                inactivas.push(cf);
+            }
+        } finally {
+            permisos.release();
+        }
+    }
+
+    /**
+     * Deja la conexión como nueva para el siguiente préstamo:
+     * deshace transacciones abiertas y restaura autocommit.
+     */
+    private boolean restablecer(ConexionFisica cf) {
+        try {
+            if (cf.fisica.isClosed()) {
+                return false;
+            }
+            if (!cf.fisica.getAutoCommit()) {
+                cf.fisica.rollback();
+                cf.fisica.setAutoCommit(true);
+            }
+            cf.fisica.clearWarnings();
+            return true;
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private void descartar(ConexionFisica cf) {
+        synchronized (this) {
+            totales--;
+        }
+        Metricas.incrementar("pool.descartadas");
+        cf.sentencias.cerrarTodas();
+        try {
+            cf.fisica.close();
+        } catch (SQLException ignored) {}
+    }
+
+    /* =========================================================
+     *  MANTENIMIENTO (hilo en segundo plano)
+     * ========================================================= */
+
+    private void mantener() {
+        try {
+            expulsarInactivas();
+            reportarFugas();
+            completarMinimo();
+        } catch (RuntimeException ex) {
+            System.err.println("Error en mantenimiento del pool: " + ex.getMessage());
+        }
+    }
+
+    /** Cierra las conexiones inactivas por demasiado tiempo, respetando el mínimo. */
+    private void expulsarInactivas() {
+        long ahora = System.currentTimeMillis();
+        List<ConexionFisica> expiradas = new ArrayList<>();
+        synchronized (this) {
+            Iterator<ConexionFisica> it = inactivas.descendingIterator(); // de la más antigua a la más nueva
+            while (it.hasNext() && inactivas.size() > minimoInactivas) {
+                ConexionFisica cf = it.next();
+                if (ahora - cf.ultimoUsoMs > inactividadMaximaMs) {
+                    it.remove();
+                    expiradas.add(cf);
+                }
+            }
+        }
+        for (ConexionFisica cf : expiradas) {
+            descartar(cf);
+        }
+    }
+
+    private void reportarFugas() {
+        if (umbralFugaMs <= 0) {
+            return;
+        }
+        long ahora = System.currentTimeMillis();
+        for (ConexionFisica cf : prestadas) {
+            if (!cf.fugaReportada && ahora - cf.prestadaEnMs > umbralFugaMs) {
+                cf.fugaReportada = true;
+                Metricas.incrementar("pool.fugas");
+                System.err.println("Posible fuga de conexión: prestada hace "
+                        + (ahora - cf.prestadaEnMs) + " ms y aún no devuelta.");
+                if (cf.origenPrestamo != null) {
+                    cf.origenPrestamo.printStackTrace();
+                } else {
+                    System.err.println("  (para ver desde dónde se pidió: -Dcmh.pool.origenFugas=true)");
+                }
+            }
+        }
+    }
+
+    /** Abre conexiones hasta tener el mínimo de inactivas (sin pasar el máximo). */
+    private void completarMinimo() {
+        while (!cerrado) {
+            synchronized (this) {
+                if (inactivas.size() >= minimoInactivas || totales >= maximo) {
+                    return;
+                }
+                totales++;
+            }
+            try {
+                ConexionFisica cf = new ConexionFisica(fabrica.abrir(), tamanoCacheSentencias);
+                Metricas.incrementar("pool.creadas");
+                synchronized (this) {
+                    inactivas.addLast(cf);
+                }
+            } catch (SQLException | RuntimeException ex) {
+                synchronized (this) {
+                    totales--;
+                }
+                return; // se reintenta en el siguiente ciclo
+            }
+        }
+    }
+
+    private synchronized long contarInactivas() {
+        return inactivas.size();
+    }
+
+    private synchronized long contarTotales() {
+        return totales;
+    }
+
+    /* =========================================================
+     *  CLASES INTERNAS
+     * ========================================================= */
+
+    /** Conexión física, sus sentencias en caché y sus datos de uso. */
+    private static final class ConexionFisica {
+        final Connection fisica;
+        final CacheSentencias sentencias;
+        volatile long ultimoUsoMs = System.currentTimeMillis();
+        volatile long prestadaEnMs;
+        volatile Throwable origenPrestamo;
+        volatile boolean fugaReportada;
+
+        ConexionFisica(Connection fisica, int tamanoCacheSentencias) {
+            this.fisica = fisica;
+            this.sentencias = new CacheSentencias(fisica, tamanoCacheSentencias);
+        }
+    }
+
+    /**
+     * Manejador del proxy entregado a los DAO: close() devuelve la conexión
+     * al pool (una sola vez), prepareStatement(String) y prepareCall(String)
+     * pasan por la caché de sentencias y el resto se delega a la física.
+     */
+    private final class ConexionPrestada implements InvocationHandler {
+
+        private final ConexionFisica cf;
+        private boolean cerrada;
+
+        ConexionPrestada(ConexionFisica cf) {
+            this.cf = cf;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String nombre = method.getName();
+
+            if ("close".equals(nombre) && method.getParameterCount() == 0) {
+                if (!cerrada) {
+                    cerrada = true;
+                    devolver(cf);
+                }
+                return null;
+            }
+            if ("isClosed".equals(nombre) && method.getParameterCount() == 0) {
+                return cerrada || cf.fisica.isClosed();
+            }
+            if ("equals".equals(nombre) && method.getParameterCount() == 1) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(nombre) && method.getParameterCount() == 0) {
+                return System.identityHashCode(proxy);
+            }
+            if ("toString".equals(nombre) && method.getParameterCount() == 0) {
+                return "ConexionPrestada[" + cf.fisica + "]";
+            }
+            if (cerrada) {
+                throw new SQLException("La conexión ya fue devuelta al pool.");
+            }
+            if ("prepareStatement".equals(nombre) && method.getParameterCount() == 1) {
+                return cf.sentencias.preparar((Connection) proxy, (String) args[0], false);
+            }
+            if ("prepareCall".equals(nombre) && method.getParameterCount() == 1) {
+                return cf.sentencias.preparar((Connection) proxy, (String) args[0], true);
+            }
+
+            try {
+                return method.invoke(cf.fisica, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+}
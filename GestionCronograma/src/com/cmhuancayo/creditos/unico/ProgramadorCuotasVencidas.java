@@ -0,0 +1,176 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Marca como 'Vencida' las cuotas que vencieron (fn_marcarcuotasvencidas),
+ * para que el estado "Atrasado" de los clientes aparezca sin esperar al
+ * recálculo nocturno ({@link RecalculoEstados}).
+ *
+ * <ul>
+ *     <li>Dentro de la aplicación solo se programa si cmh.vencidas.programar
+ *         es true (lo normal es que lo corra un único proceso aparte, p. ej.
+ *         desde cron); entonces se ejecuta al iniciar y luego cada
+ *         cmh.vencidas.intervaloMinutos, en un hilo daemon propio.</li>
+ *     <li>Aunque lo ejecuten varios procesos a la vez, solo marca el que
+ *         obtiene el bloqueo consultivo (pg_try_advisory_lock); los demás
+ *         salen sin hacer nada y lo cuentan en vencidas.omitidas.</li>
+ *     <li>Cada ejecución marca las cuotas por lotes de
+ *         cmh.vencidas.filasPorLote, una transacción por lote, así nunca
+ *         bloquea muchas filas a la vez ni por mucho tiempo. Las cuotas de un
+ *         pago en curso se saltan y quedan para la ejecución siguiente.</li>
+ *     <li>Las candidatas se buscan solo con un índice parcial por fecha de
+ *         vencimiento de las cuotas Pendiente / PARCIAL, que son únicamente
+ *         las de contratos VIGENTE: al salir de VIGENTE, un trigger las deja
+ *         'Cerrada' y salen del índice. Si no hay nada nuevo vencido, la
+ *         ejecución es una sola consulta barata.</li>
+ *     <li>La función actualiza cliente.cuotas_vencidas una vez por lote,
+ *         con un UPDATE agrupado por cliente, en vez del trigger por fila.</li>
+ *     <li>Registra en {@link Metricas} las cuotas marcadas, los lotes y el
+ *         tiempo de cada ejecución (vencidas.*).</li>
+ * </ul>
+ *
+ * Usa una conexión física propia por ejecución, fuera del pool. Si se marcó
+ * alguna cuota se avisa a todos en el canal de
+ * {@link EscuchaCambiosCronograma} (clientes y cronogramas abiertos se
+ * refrescan).
+ *
+ * Configuración (propiedades del sistema):
+ * <ul>
+ *     <li>cmh.vencidas.programar (false)</li>
+ *     <li>cmh.vencidas.intervaloMinutos (60)</li>
+ *     <li>cmh.vencidas.filasPorLote (1000)</li>
+ * </ul>
+ *
+ * Uso como proceso aparte: ProgramadorCuotasVencidas [fecha AAAA-MM-DD]
+ */
+public final class ProgramadorCuotasVencidas {
+
+    private static final boolean PROGRAMAR = Boolean.getBoolean("cmh.vencidas.programar");
+    private static final long INTERVALO_MINUTOS = Long.getLong("cmh.vencidas.intervaloMinutos", 60L);
+    private static final int FILAS_POR_LOTE = Integer.getInteger("cmh.vencidas.filasPorLote", 1_000);
+
+    private static final String SQL_MARCAR = "SELECT fn_marcarcuotasvencidas(?, ?)";
+
+    // Un solo proceso marca a la vez, aunque haya varias instancias abiertas
+    private static final String SQL_BLOQUEAR =
+            "SELECT pg_try_advisory_lock(hashtext('fn_marcarcuotasvencidas'))";
+    private static final String SQL_DESBLOQUEAR =
+            "SELECT pg_advisory_unlock(hashtext('fn_marcarcuotasvencidas'))";
+
+    // Un solo aviso para todos los contratos (EscuchaCambiosCronograma.TODOS)
+    private static final String SQL_NOTIFICAR_TODOS =
+            "SELECT pg_notify('" + EscuchaCambiosCronograma.CANAL + "', '" +
+            EscuchaCambiosCronograma.TODOS + "')";
+
+    private static ScheduledExecutorService programador;
+
+    private ProgramadorCuotasVencidas() {
+    }
+
+    public static void main(String[] args) throws SQLException {
+        LocalDate fecha = (args.length > 0) ? LocalDate.parse(args[0]) : LocalDate.now();
+        long inicio = System.nanoTime();
+        int marcadas = marcarVencidas(fecha);
+        System.out.printf("%,d cuotas marcadas como vencidas al %s en %,.1f ms%n",
+                marcadas, fecha, (System.nanoTime() - inicio) / 1_000_000.0);
+    }
+
+    /**
+     * Inicia las ejecuciones periódicas si cmh.vencidas.programar es true
+     * (si no, o si ya estaban iniciadas, no hace nada).
+     */
+    public static synchronized void iniciar() {
+        if (!PROGRAMAR || programador != null) {
+            return;
+        }
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cmh-cuotas-vencidas");
+            t.setDaemon(true);
+            return t;
+        });
+        programador.scheduleWithFixedDelay(ProgramadorCuotasVencidas::ejecutar,
+                0, INTERVALO_MINUTOS, TimeUnit.MINUTES);
+    }
+
+    /** Detiene las ejecuciones; la que esté en curso termina su lote actual. */
+    public static synchronized void detener() {
+        if (programador != null) {
+            programador.shutdownNow();
+            programador = null;
+        }
+    }
+
+    /** Una ejecución programada: los errores se informan y se reintenta en la siguiente. */
+    private static void ejecutar() {
+        try {
+            marcarVencidas(LocalDate.now());
+        } catch (SQLException | RuntimeException ex) {
+            Metricas.incrementar("vencidas.errores");
+            System.err.println("Marcado de cuotas vencidas: " + ex.getMessage()
+                    + " (se reintenta en " + INTERVALO_MINUTOS + " min)");
+        }
+    }
+
+    /**
+     * Marca como 'Vencida' las cuotas con vencimiento anterior a la fecha,
+     * por lotes, hasta que no quedan (o se interrumpe el hilo). Si otro
+     * proceso ya está marcando, sale sin hacer nada.
+     *
+     * @return cuotas marcadas (0 si otro proceso tenía el bloqueo)
+     */
+    public static int marcarVencidas(LocalDate fecha) throws SQLException {
+        long inicio = System.nanoTime();
+        int total = 0;
+        int lotes = 0;
+        try (Connection cn = ConexionDB.abrirConexionFisica();
+             Statement st = cn.createStatement();
+             PreparedStatement ps = cn.prepareStatement(SQL_MARCAR)) {
+            // Cada llamada, una transacción: los bloqueos duran un lote
+            cn.setAutoCommit(true);
+
+            // Bloqueo de sesión: se libera al final o al cerrarse la conexión
+            try (ResultSet rs = st.executeQuery(SQL_BLOQUEAR)) {
+                rs.next();
+                if (!rs.getBoolean(1)) {
+                    Metricas.incrementar("vencidas.omitidas");
+                    return 0;
+                }
+            }
+            try {
+                ps.setDate(1, java.sql.Date.valueOf(fecha));
+                ps.setInt(2, FILAS_POR_LOTE);
+
+                int marcadas;
+                do {
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        marcadas = rs.getInt(1);
+                    }
+                    total += marcadas;
+                    lotes++;
+                } while (marcadas == FILAS_POR_LOTE && !Thread.currentThread().isInterrupted());
+
+                if (total > 0) {
+                    st.execute(SQL_NOTIFICAR_TODOS);
+                }
+            } finally {
+                st.execute(SQL_DESBLOQUEAR);
+            }
+
+        } finally {
+            Metricas.registrarTiempo("vencidas.ejecucion", System.nanoTime() - inicio);
+            Metricas.sumar("vencidas.lotes", lotes);
+            Metricas.sumar("vencidas.marcadas", total);
+        }
+        return total;
+    }
+}
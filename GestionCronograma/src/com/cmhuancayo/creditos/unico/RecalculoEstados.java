@@ -0,0 +1,357 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recálculo nocturno de estados: marca como 'Vencida' las cuotas con
+ * vencimiento anterior a la fecha de proceso y actualiza el estado de
+ * contratos y clientes (fn_recalcularestadostramo).
+ *
+ * <ul>
+ *     <li>Los clientes se dividen en tramos de codigo_cliente
+ *         (cmh.recalculo.clientesPorTramo); cada tramo es una transacción
+ *         corta con sentencias de conjunto, no un recorrido cliente por
+ *         cliente.</li>
+ *     <li>Varios tramos se procesan a la vez, cada uno con su propia
+ *         conexión (cmh.recalculo.hilos). Los tramos no comparten clientes ni
+ *         contratos, así que no se bloquean entre sí.</li>
+ *     <li>Los tramos se registran en recalculo_estados_tramo. Cada conexión
+ *         toma el siguiente tramo PENDIENTE con FOR UPDATE SKIP LOCKED y lo
+ *         marca TERMINADO en la misma transacción en que lo procesa: si la
+ *         ejecución se interrumpe, volver a ejecutarla con la misma fecha
+ *         sigue con los tramos que faltan. También pueden repartirse los
+ *         tramos varios procesos a la vez.</li>
+ *     <li>Para recalcular otra vez una fecha ya terminada (por ejemplo tras
+ *         una carga masiva) se ejecuta con forzar: se descartan los tramos de
+ *         la fecha y se crean de nuevo.</li>
+ * </ul>
+ *
+ * Usa conexiones propias (no las del pool de {@link ConexionDB}), para no
+ * dejar sin conexiones a la interfaz mientras dura el proceso. Como
+ * {@link CargaMasivaCronogramas}, lanza los errores como
+ * {@link SQLException}; un tramo con error no detiene a los demás: queda
+ * PENDIENTE y en {@link ResultadoRecalculoEstados#getErrores()}.
+ *
+ * Configuración (propiedades del sistema):
+ * <ul>
+ *     <li>cmh.recalculo.hilos (4)</li>
+ *     <li>cmh.recalculo.clientesPorTramo (1000)</li>
+ * </ul>
+ *
+ * Uso como proceso nocturno: RecalculoEstados [--forzar] [fecha AAAA-MM-DD]
+ */
+public class RecalculoEstados {
+
+    /** Avance del proceso; se llama desde los hilos del recálculo. */
+    public interface Progreso {
+        void actualizar(int terminados, int total);
+    }
+
+    private static final int HILOS = Integer.getInteger("cmh.recalculo.hilos", 4);
+    private static final int CLIENTES_POR_TRAMO =
+            Integer.getInteger("cmh.recalculo.clientesPorTramo", 1_000);
+
+    // Solo si la fecha todavía no tiene tramos (si no, se reanuda con los que hay;
+    // con forzar, antes se borran los de la fecha con SQL_DESCARTAR_TRAMOS).
+    // El último tramo queda abierto hacia arriba para los clientes creados después.
+    private static final String SQL_CREAR_TRAMOS =
+            "INSERT INTO recalculo_estados_tramo (fecha_proceso, cliente_desde, cliente_hasta) " +
+            "SELECT ?, t.desde, " +
+            "       CASE WHEN t.desde > r.maximo - ? THEN 2147483647 ELSE t.desde + ? - 1 END " +
+            "  FROM (SELECT MIN(codigo_cliente) AS minimo, MAX(codigo_cliente) AS maximo " +
+            "          FROM cliente) r, " +
+            "       generate_series(r.minimo, r.maximo, ?) AS t(desde) " +
+            " WHERE NOT EXISTS (SELECT 1 FROM recalculo_estados_tramo " +
+            "                    WHERE fecha_proceso = ?) " +
+            "ON CONFLICT DO NOTHING";
+
+    // Espera a los tramos que otro proceso tenga tomados (FOR UPDATE)
+    private static final String SQL_DESCARTAR_TRAMOS =
+            "DELETE FROM recalculo_estados_tramo WHERE fecha_proceso = ?";
+
+    private static final String SQL_CONTAR_TRAMOS =
+            "SELECT COUNT(*), COUNT(*) FILTER (WHERE estado = 'TERMINADO') " +
+            "  FROM recalculo_estados_tramo " +
+            " WHERE fecha_proceso = ?";
+
+    private static final String SQL_TOMAR_TRAMO =
+            "SELECT cliente_desde, cliente_hasta " +
+            "  FROM recalculo_estados_tramo " +
+            " WHERE fecha_proceso = ? " +
+            "   AND estado = 'PENDIENTE' " +
+            "   AND NOT (cliente_desde = ANY (?)) " +
+            " ORDER BY cliente_desde " +
+            " LIMIT 1 " +
+            "   FOR UPDATE SKIP LOCKED";
+
+    private static final String SQL_RECALCULAR_TRAMO =
+            "SELECT marcadas_vencidas, devueltas_al_dia, contratos_a_cancelado, clientes_ajustados " +
+            "  FROM fn_recalcularestadostramo(?, ?, ?)";
+
+    private static final String SQL_TERMINAR_TRAMO =
+            "UPDATE recalculo_estados_tramo " +
+            "   SET estado = 'TERMINADO', " +
+            "       cuotas_vencidas = ?, cuotas_al_dia = ?, " +
+            "       contratos_cancelados = ?, clientes_corregidos = ?, " +
+            "       terminado_en = CURRENT_TIMESTAMP " +
+            " WHERE fecha_proceso = ? AND cliente_desde = ?";
+
+    private final int hilos;
+    private final int clientesPorTramo;
+
+    private volatile boolean cancelado;
+
+    public RecalculoEstados() {
+        this(HILOS, CLIENTES_POR_TRAMO);
+    }
+
+    /**
+     * @param hilos            conexiones que procesan tramos a la vez
+     * @param clientesPorTramo códigos de cliente por tramo (solo se usa al
+     *                         crear los tramos de una fecha nueva)
+     */
+    public RecalculoEstados(int hilos, int clientesPorTramo) {
+        if (clientesPorTramo <= 0) {
+            throw new IllegalArgumentException("clientesPorTramo debe ser mayor que 0.");
+        }
+        this.hilos = Math.max(1, hilos);
+        this.clientesPorTramo = clientesPorTramo;
+    }
+
+    public static void main(String[] args) throws SQLException {
+        boolean forzar = false;
+        LocalDate fecha = LocalDate.now();
+        for (String arg : args) {
+            if ("--forzar".equals(arg)) {
+                forzar = true;
+            } else {
+                fecha = LocalDate.parse(arg);
+            }
+        }
+        ResultadoRecalculoEstados resultado = new RecalculoEstados().ejecutar(fecha, forzar, null);
+        System.out.println(resultado);
+        resultado.getErrores().forEach((desde, error) ->
+                System.out.println("  tramo desde el cliente " + desde + ": " + error));
+        if (!resultado.isCompleto()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Pide detener el proceso; los tramos ya empezados se terminan. Una
+     * instancia cancelada no vuelve a procesar tramos: para seguir, se crea
+     * otra.
+     */
+    public void cancelar() {
+        cancelado = true;
+    }
+
+    /**
+     * Procesa los tramos pendientes de la fecha, creándolos si es la primera
+     * ejecución para esa fecha; si la fecha ya se terminó, no hace nada.
+     * Equivale a {@code ejecutar(fecha, false, progreso)}.
+     */
+    public ResultadoRecalculoEstados ejecutar(LocalDate fecha, Progreso progreso) throws SQLException {
+        return ejecutar(fecha, false, progreso);
+    }
+
+    /**
+     * Procesa los tramos pendientes de la fecha. Bloquea hasta terminar.
+     *
+     * @param fecha    las cuotas con vencimiento anterior a esta fecha quedan vencidas
+     * @param forzar   true para descartar los tramos que ya tenga la fecha
+     *                 (terminados o no) y recalcular todos los clientes;
+     *                 false para crearlos solo si la fecha no tiene y
+     *                 seguir con los que falten
+     * @param progreso puede ser null
+     */
+    public ResultadoRecalculoEstados ejecutar(LocalDate fecha, boolean forzar, Progreso progreso)
+            throws SQLException {
+        long inicio = System.nanoTime();
+        java.sql.Date fechaProceso = java.sql.Date.valueOf(fecha);
+
+        int[] conteo = prepararTramos(fechaProceso, forzar);
+        int total = conteo[0];
+        int terminadosAntes = conteo[1];
+
+        Map<Integer, String> errores = new ConcurrentSkipListMap<>();
+        AtomicInteger terminados = new AtomicInteger(terminadosAntes);
+        AtomicInteger procesados = new AtomicInteger();
+        AtomicLong[] cambios = { new AtomicLong(), new AtomicLong(), new AtomicLong(), new AtomicLong() };
+
+        AtomicInteger contador = new AtomicInteger();
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos, r -> {
+            Thread t = new Thread(r, "cmh-recalculo-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> trabajadores = new ArrayList<>(hilos);
+            for (int i = 0; i < hilos; i++) {
+                trabajadores.add(ejecutor.submit(() -> {
+                    procesarTramos(fechaProceso, errores, cambios, procesados, () -> {
+                        if (progreso != null) {
+                            progreso.actualizar(terminados.incrementAndGet(), total);
+                        }
+                    });
+                    return null;
+                }));
+            }
+            for (Future<?> trabajador : trabajadores) {
+                trabajador.get();
+            }
+
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            cancelado = true;
+        } catch (ExecutionException ex) {
+            // Sin conexión: no se pudo tomar ningún tramo más
+            Throwable causa = ex.getCause();
+            throw (causa instanceof SQLException)
+                    ? (SQLException) causa
+                    : new SQLException("Error en el recálculo de estados", causa);
+        } finally {
+            ejecutor.shutdownNow();
+        }
+
+        long cuotasCambiadas = cambios[0].get() + cambios[1].get();
+        if (cuotasCambiadas > 0) {
+            // Los demás procesos se enteran por el aviso de fn_recalcularestadostramo
+            CacheCronogramas.limpiar();
+        }
+
+        long duracion = System.nanoTime() - inicio;
+        Metricas.registrarTiempo("recalculo.estados", duracion);
+        Metricas.sumar("recalculo.estados.tramos", procesados.get());
+        Metricas.sumar("recalculo.estados.cuotasVencidas", cambios[0].get());
+        Metricas.sumar("recalculo.estados.errores", errores.size());
+
+        return new ResultadoRecalculoEstados(fecha, total, terminadosAntes, procesados.get(),
+                cambios[0].get(), cambios[1].get(), cambios[2].get(), cambios[3].get(),
+                errores, cancelado && terminadosAntes + procesados.get() < total,
+                duracion, hilos);
+    }
+
+    /**
+     * Crea los tramos de la fecha si no existen; con forzar, antes descarta
+     * los que haya. Todo en una transacción, para que otro proceso no vea la
+     * fecha sin tramos a medio camino.
+     *
+     * @return {tramos de la fecha, tramos ya terminados}
+     */
+    private int[] prepararTramos(java.sql.Date fechaProceso, boolean forzar) throws SQLException {
+        try (Connection cn = ConexionDB.abrirConexionFisica()) {
+            cn.setAutoCommit(false);
+            if (forzar) {
+                try (PreparedStatement ps = cn.prepareStatement(SQL_DESCARTAR_TRAMOS)) {
+                    ps.setDate(1, fechaProceso);
+                    ps.executeUpdate();
+                }
+            }
+            try (PreparedStatement ps = cn.prepareStatement(SQL_CREAR_TRAMOS)) {
+                ps.setDate(1, fechaProceso);
+                ps.setInt(2, clientesPorTramo);
+                ps.setInt(3, clientesPorTramo);
+                ps.setInt(4, clientesPorTramo);
+                ps.setDate(5, fechaProceso);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = cn.prepareStatement(SQL_CONTAR_TRAMOS)) {
+                ps.setDate(1, fechaProceso);
+                int[] conteo;
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    conteo = new int[] { rs.getInt(1), rs.getInt(2) };
+                }
+                cn.commit();
+                return conteo;
+            }
+        }
+    }
+
+    /**
+     * Bucle de una conexión: toma un tramo pendiente, lo procesa y lo marca
+     * terminado, en una transacción por tramo, hasta que no quedan tramos.
+     * Los tramos que fallan no se vuelven a tomar en esta ejecución.
+     */
+    private void procesarTramos(java.sql.Date fechaProceso,
+                                Map<Integer, String> errores,
+                                AtomicLong[] cambios,
+                                AtomicInteger procesados,
+                                Runnable alTerminarTramo) throws SQLException {
+        try (Connection cn = ConexionDB.abrirConexionFisica();
+             PreparedStatement tomar = cn.prepareStatement(SQL_TOMAR_TRAMO);
+             PreparedStatement recalcular = cn.prepareStatement(SQL_RECALCULAR_TRAMO);
+             PreparedStatement terminar = cn.prepareStatement(SQL_TERMINAR_TRAMO)) {
+            cn.setAutoCommit(false);
+
+            while (!cancelado && !Thread.currentThread().isInterrupted()) {
+                long inicio = System.nanoTime();
+                int desde = -1;
+                try {
+                    tomar.setDate(1, fechaProceso);
+                    Array fallidos = cn.createArrayOf("integer", errores.keySet().toArray());
+                    tomar.setArray(2, fallidos);
+                    int hasta;
+                    try (ResultSet rs = tomar.executeQuery()) {
+                        if (!rs.next()) {
+                            cn.commit();
+                            return;
+                        }
+                        desde = rs.getInt(1);
+                        hasta = rs.getInt(2);
+                    }
+
+                    int[] filas = new int[4];
+                    recalcular.setInt(1, desde);
+                    recalcular.setInt(2, hasta);
+                    recalcular.setDate(3, fechaProceso);
+                    try (ResultSet rs = recalcular.executeQuery()) {
+                        rs.next();
+                        for (int i = 0; i < filas.length; i++) {
+                            filas[i] = rs.getInt(i + 1);
+                        }
+                    }
+
+                    for (int i = 0; i < filas.length; i++) {
+                        terminar.setInt(i + 1, filas[i]);
+                    }
+                    terminar.setDate(5, fechaProceso);
+                    terminar.setInt(6, desde);
+                    terminar.executeUpdate();
+                    cn.commit();
+
+                    for (int i = 0; i < filas.length; i++) {
+                        cambios[i].addAndGet(filas[i]);
+                    }
+                    procesados.incrementAndGet();
+                    Metricas.registrarTiempo("recalculo.estados.tramo", System.nanoTime() - inicio);
+                    alTerminarTramo.run();
+
+                } catch (SQLException ex) {
+                    cn.rollback();
+                    if (desde < 0) {
+                        throw ex; // no se pudo ni tomar un tramo
+                    }
+                    errores.put(desde, String.valueOf(ex.getMessage()));
+                }
+            }
+            cn.rollback();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Resumen de una exportación en lote de cronogramas a PDF
+ * ({@link ExportadorCronogramasLote}).
+ */
+public class ResultadoExportacionLote {
+
+    private final int contratos;
+    private final int exportados;
+    private final Map<Integer, String> errores;
+    private final boolean cancelada;
+    private final long duracionNanos;
+    private final int paralelismo;
+
+    public ResultadoExportacionLote(int contratos,
+                                    int exportados,
+                                    Map<Integer, String> errores,
+                                    boolean cancelada,
+                                    long duracionNanos,
+                                    int paralelismo) {
+        this.contratos = contratos;
+        this.exportados = exportados;
+        this.errores = Collections.unmodifiableMap(errores);
+        this.cancelada = cancelada;
+        this.duracionNanos = duracionNanos;
+        this.paralelismo = paralelismo;
+    }
+
+    /** Contratos recibidos. */
+    public int getContratos() {
+        return contratos;
+    }
+
+    public int getExportados() {
+        return exportados;
+    }
+
+    /** Mensaje de error por codigo_contrato de los que no se pudieron exportar. */
+    public Map<Integer, String> getErrores() {
+        return errores;
+    }
+
+    /** true si se canceló antes de terminar (quedaron contratos sin procesar). */
+    public boolean isCancelada() {
+        return cancelada;
+    }
+
+    public long getDuracionNanos() {
+        return duracionNanos;
+    }
+
+    /** Hilos usados para generar los PDF. */
+    public int getParalelismo() {
+        return paralelismo;
+    }
+
+    public double getContratosPorSegundo() {
+        return (duracionNanos <= 0) ? 0.0 : exportados * 1_000_000_000.0 / duracionNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%,d de %,d contratos exportados (%,d con error%s) en %,.1f ms con %d hilos: "
+                        + "%,.0f contratos/s",
+                exportados, contratos, errores.size(), cancelada ? ", cancelada" : "",
+                duracionNanos / 1_000_000.0, paralelismo, getContratosPorSegundo());
+    }
+}
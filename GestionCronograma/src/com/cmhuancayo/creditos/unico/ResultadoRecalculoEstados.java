@@ -0,0 +1,124 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Resumen de una ejecución del recálculo de estados por tramos
+ * ({@link RecalculoEstados}).
+ */
+public class ResultadoRecalculoEstados {
+
+    private final LocalDate fechaProceso;
+    private final int tramos;
+    private final int terminadosAntes;
+    private final int procesados;
+    private final long cuotasVencidas;
+    private final long cuotasAlDia;
+    private final long contratosCancelados;
+    private final long clientesCorregidos;
+    private final Map<Integer, String> errores;
+    private final boolean cancelada;
+    private final long duracionNanos;
+    private final int paralelismo;
+
+    public ResultadoRecalculoEstados(LocalDate fechaProceso,
+                                     int tramos,
+                                     int terminadosAntes,
+                                     int procesados,
+                                     long cuotasVencidas,
+                                     long cuotasAlDia,
+                                     long contratosCancelados,
+                                     long clientesCorregidos,
+                                     Map<Integer, String> errores,
+                                     boolean cancelada,
+                                     long duracionNanos,
+                                     int paralelismo) {
+        this.fechaProceso = fechaProceso;
+        this.tramos = tramos;
+        this.terminadosAntes = terminadosAntes;
+        this.procesados = procesados;
+        this.cuotasVencidas = cuotasVencidas;
+        this.cuotasAlDia = cuotasAlDia;
+        this.contratosCancelados = contratosCancelados;
+        this.clientesCorregidos = clientesCorregidos;
+        this.errores = Collections.unmodifiableMap(errores);
+        this.cancelada = cancelada;
+        this.duracionNanos = duracionNanos;
+        this.paralelismo = paralelismo;
+    }
+
+    public LocalDate getFechaProceso() {
+        return fechaProceso;
+    }
+
+    /** Tramos de clientes de la fecha de proceso. */
+    public int getTramos() {
+        return tramos;
+    }
+
+    /** Tramos que ya estaban terminados por una ejecución anterior (reanudación). */
+    public int getTerminadosAntes() {
+        return terminadosAntes;
+    }
+
+    /** Tramos terminados en esta ejecución. */
+    public int getProcesados() {
+        return procesados;
+    }
+
+    /** Cuotas que pasaron a 'Vencida' en esta ejecución. */
+    public long getCuotasVencidas() {
+        return cuotasVencidas;
+    }
+
+    /** Cuotas 'Vencida' que volvieron a Pendiente / PARCIAL en esta ejecución. */
+    public long getCuotasAlDia() {
+        return cuotasAlDia;
+    }
+
+    public long getContratosCancelados() {
+        return contratosCancelados;
+    }
+
+    /** Clientes cuyo conteo de cuotas vencidas estaba desfasado. */
+    public long getClientesCorregidos() {
+        return clientesCorregidos;
+    }
+
+    /** Mensaje de error por cliente_desde de los tramos que fallaron (quedan PENDIENTE). */
+    public Map<Integer, String> getErrores() {
+        return errores;
+    }
+
+    /** true si se canceló antes de terminar (quedaron tramos PENDIENTE). */
+    public boolean isCancelada() {
+        return cancelada;
+    }
+
+    /** true si todos los tramos de la fecha están terminados. */
+    public boolean isCompleto() {
+        return terminadosAntes + procesados == tramos;
+    }
+
+    public long getDuracionNanos() {
+        return duracionNanos;
+    }
+
+    /** Conexiones usadas a la vez. */
+    public int getParalelismo() {
+        return paralelismo;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "Recálculo al %s: %,d de %,d tramos procesados (%,d ya terminados, %,d con error%s) "
+                        + "en %,.1f ms con %d conexiones; %,d cuotas vencidas, %,d al día, "
+                        + "%,d contratos cancelados, %,d clientes corregidos",
+                fechaProceso, procesados, tramos, terminadosAntes, errores.size(),
+                cancelada ? ", cancelado" : "", duracionNanos / 1_000_000.0, paralelismo,
+                cuotasVencidas, cuotasAlDia, contratosCancelados, clientesCorregidos);
+    }
+}
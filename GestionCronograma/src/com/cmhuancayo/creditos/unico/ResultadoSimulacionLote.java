@@ -0,0 +1,74 @@
+package com.cmhuancayo.creditos.unico;
+
+/**
+ * Resumen de una simulación en lote de cronogramas
+ * ({@link CalculadoraCreditoService#generarCronogramasEnLote}).
+ *
+ * Solo guarda contadores y tiempos; las cuotas generadas se entregan al
+ * consumidor a medida que se calculan y no se conservan aquí.
+ */
+public class ResultadoSimulacionLote {
+
+    private final long creditosProcesados;
+    private final long creditosSinCronograma;
+    private final long cuotasGeneradas;
+    private final long duracionNanos;
+    private final int paralelismo;
+
+    public ResultadoSimulacionLote(long creditosProcesados,
+                                   long creditosSinCronograma,
+                                   long cuotasGeneradas,
+                                   long duracionNanos,
+                                   int paralelismo) {
+        this.creditosProcesados = creditosProcesados;
+        this.creditosSinCronograma = creditosSinCronograma;
+        this.cuotasGeneradas = cuotasGeneradas;
+        this.duracionNanos = duracionNanos;
+        this.paralelismo = paralelismo;
+    }
+
+    /** Créditos recibidos (incluye los que no generaron cuotas). */
+    public long getCreditosProcesados() {
+        return creditosProcesados;
+    }
+
+    /** Créditos con datos incompletos, para los que no se generó cronograma. */
+    public long getCreditosSinCronograma() {
+        return creditosSinCronograma;
+    }
+
+    public long getCuotasGeneradas() {
+        return cuotasGeneradas;
+    }
+
+    public long getDuracionNanos() {
+        return duracionNanos;
+    }
+
+    /** Hilos usados para la simulación. */
+    public int getParalelismo() {
+        return paralelismo;
+    }
+
+    public double getCreditosPorSegundo() {
+        return porSegundo(creditosProcesados);
+    }
+
+    public double getCuotasPorSegundo() {
+        return porSegundo(cuotasGeneradas);
+    }
+
+    private double porSegundo(long cantidad) {
+        return (duracionNanos <= 0) ? 0.0 : cantidad * 1_000_000_000.0 / duracionNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%,d créditos (%,d sin cronograma), %,d cuotas en %,.1f ms con %d hilos: "
+                        + "%,.0f créditos/s, %,.0f cuotas/s",
+                creditosProcesados, creditosSinCronograma, cuotasGeneradas,
+                duracionNanos / 1_000_000.0, paralelismo,
+                getCreditosPorSegundo(), getCuotasPorSegundo());
+    }
+}
@@ -0,0 +1,97 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Factores de interés ya calculados, por tasa y exponente: (1 + r)^n, la
+ * tasa periódica de una tasa anual, etc.
+ *
+ * En una cartera se repiten pocas combinaciones de tasa y plazo (o de tasa
+ * diaria y días del mes) millones de veces; con la tabla cada potencia se
+ * calcula una sola vez y las siguientes son una búsqueda.
+ *
+ * La tabla la comparten todos los hilos. Leer no bloquea; si dos hilos
+ * calculan el mismo factor a la vez, ambos obtienen el mismo valor y se
+ * guarda uno. Por eso el cálculo debe depender solo de la tasa y del
+ * exponente, y el valor debe ser inmutable. La tasa se compara con equals:
+ * 0.10 y 0.1 son claves distintas, como debe ser donde la escala cambia el
+ * resultado.
+ *
+ * Cuando la tabla llega a su máximo deja de guardar (los factores se siguen
+ * calculando), para no crecer sin límite con datos inesperados.
+ *
+ * Configuración (propiedades del sistema):
+ * <ul>
+ *     <li>cmh.factores.maximo (100000), por tabla</li>
+ * </ul>
+ *
+ * @param <V> factor
+ */
+final class TablaFactoresInteres<V> {
+
+    private static final int MAXIMO = Integer.getInteger("cmh.factores.maximo", 100_000);
+
+    private final String metricaCalculados;
+    private final BiFunction<BigDecimal, Integer, V> calculo;
+    private final ConcurrentHashMap<Clave, V> factores = new ConcurrentHashMap<>();
+
+    /**
+     * @param nombre  para las métricas (factores.&lt;nombre&gt;.calculados)
+     * @param calculo factor de una tasa y un exponente
+     */
+    TablaFactoresInteres(String nombre, BiFunction<BigDecimal, Integer, V> calculo) {
+        this.metricaCalculados = "factores." + nombre + ".calculados";
+        this.calculo = calculo;
+    }
+
+    /** Factor de la tasa y el exponente; lo calcula si todavía no está. */
+    V obtener(BigDecimal tasa, int exponente) {
+        Clave clave = new Clave(tasa, exponente);
+        V factor = factores.get(clave);
+        if (factor != null) {
+            return factor;
+        }
+
+        Metricas.incrementar(metricaCalculados);
+        factor = calculo.apply(tasa, exponente);
+        if (factores.size() < MAXIMO) {
+            V anterior = factores.putIfAbsent(clave, factor);
+            if (anterior != null) {
+                return anterior;
+            }
+        }
+        return factor;
+    }
+
+    int tamano() {
+        return factores.size();
+    }
+
+    private static final class Clave {
+        private final BigDecimal tasa;
+        private final int exponente;
+        private final int hash;
+
+        Clave(BigDecimal tasa, int exponente) {
+            this.tasa = tasa;
+            this.exponente = exponente;
+            this.hash = 31 * tasa.hashCode() + exponente;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Clave)) {
+                return false;
+            }
+            Clave otra = (Clave) o;
+            return exponente == otra.exponente && tasa.equals(otra.tasa);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.cmhuancayo.creditos.unico;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.JOptionPane;
+
+/**
+ * Unidad de trabajo (transacción) a la que se unen los DAO.
+ *
+ * Mientras {@link #ejecutar(Tarea)} está en curso, toda llamada a
+ * {@link ConexionDB#getConnection()} desde el mismo hilo recibe la misma
+ * conexión, con autocommit desactivado. Así varias operaciones de DAO
+ * (archivar cronograma, reemplazarlo, registrar historial, ...) se aplican
+ * con un solo COMMIT, o no se aplica ninguna.
+ *
+ * Dentro de la unidad, las llamadas de los DAO a close(), commit() y
+ * setAutoCommit() no tienen efecto, y rollback() marca la unidad para
+ * deshacerse al final. Ejemplo:
+ *
+ * <pre>
+ * boolean ok = UnidadDeTrabajo.ejecutar(() -&gt;
+ *         cuotaDAO.archivarCronogramaActual(...)
+ *         &amp;&amp; cuotaDAO.actualizarCronogramaCompleto(...)
+ *         &amp;&amp; historialDAO.registrarCambio(...));
+ * </pre>
+ */
+public final class UnidadDeTrabajo {
+
+    /** Operación a ejecutar dentro de la transacción. Devuelve false para deshacerla. */
+    @FunctionalInterface
+    public interface Tarea {
+        boolean ejecutar() throws SQLException;
+    }
+
+    private static final ThreadLocal<UnidadDeTrabajo> ACTUAL = new ThreadLocal<>();
+
+    /** Conexión del pool que usa la unidad. */
+    private final Connection conexion;
+
+    /** Proxy que reciben los DAO mientras la unidad está activa. */
+    private final Connection participante;
+
+    /** Acciones a ejecutar solo si la transacción se confirma. */
+    private final List<Runnable> alConfirmar = new ArrayList<>();
+
+    private boolean soloRollback;
+
+    private UnidadDeTrabajo(Connection conexion) {
+        this.conexion = conexion;
+        this.participante = (Connection) Proxy.newProxyInstance(
+                UnidadDeTrabajo.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new ConexionParticipante());
+    }
+
+    /**
+     * Ejecuta la tarea en una sola transacción.
+     * Si ya hay una unidad activa en el hilo, la tarea se une a ella.
+     *
+     * @return true si la tarea devolvió true y se confirmó (COMMIT);
+     *         false si se deshizo (ROLLBACK) o no hubo conexión.
+     */
+    public static boolean ejecutar(Tarea tarea) {
+        UnidadDeTrabajo existente = ACTUAL.get();
+        if (existente != null) {
+            return existente.ejecutarUnida(tarea);
+        }
+
+        Connection cnx = ConexionDB.getConnection();
+        if (cnx == null) {
+            return false;
+        }
+
+        long inicio = System.nanoTime();
+        UnidadDeTrabajo unidad = new UnidadDeTrabajo(cnx);
+        try {
+            cnx.setAutoCommit(false);
+            ACTUAL.set(unidad);
+
+            boolean ok = tarea.ejecutar();
+
+            if (ok && !unidad.soloRollback) {
+                cnx.commit();
+                ACTUAL.remove();
+                Metricas.incrementar("uow.confirmadas");
+                unidad.ejecutarAccionesConfirmacion();
+                return true;
+            }
+
+            cnx.rollback();
+            Metricas.incrementar("uow.revertidas");
+            return false;
+
+        } catch (SQLException e) {
+            deshacer(cnx);
+            Metricas.incrementar("uow.revertidas");
+            MensajesUI.mostrar(
+                    null,
+                    "Error en la transacción: " + e.getMessage(),
+                    "Error SQL",
+                    JOptionPane.ERROR_MESSAGE
+            );
+            return false;
+
+        } catch (RuntimeException e) {
+            deshacer(cnx);
+            Metricas.incrementar("uow.revertidas");
+            throw e;
+
+        } finally {
+            ACTUAL.remove();
+            Metricas.registrarTiempo("uow.duracion", System.nanoTime() - inicio);
+            try {
+                cnx.setAutoCommit(true);
+            } catch (SQLException ignored) {}
+            ConexionDB.close(cnx);
+        }
+    }
+
+    /**
+     * @return true si el hilo actual está dentro de una unidad de trabajo.
+     */
+    public static boolean activa() {
+        return ACTUAL.get() != null;
+    }
+
+    /**
+     * Marca la unidad activa para que termine en ROLLBACK.
+     */
+    public static void marcarSoloRollback() {
+        UnidadDeTrabajo u = ACTUAL.get();
+        if (u != null) {
+            u.soloRollback = true;
+        }
+    }
+
+    /**
+     * Registra una acción a ejecutar cuando la unidad activa se confirme.
+     * Si no hay unidad activa, la acción se ejecuta de inmediato.
+     */
+    public static void alConfirmar(Runnable accion) {
+        UnidadDeTrabajo u = ACTUAL.get();
+        if (u == null) {
+            accion.run();
+        } else {
+            u.alConfirmar.add(accion);
+        }
+    }
+
+    /**
+     * Conexión a entregar a los DAO si hay una unidad activa en el hilo; null si no.
+     */
+    static Connection conexionActual() {
+        UnidadDeTrabajo u = ACTUAL.get();
+        return (u == null) ? null : u.participante;
+    }
+
+    /* =========================================================
+     *  AUXILIARES
+     * ========================================================= */
+
+    private boolean ejecutarUnida(Tarea tarea) {
+        try {
+            boolean ok = tarea.ejecutar();
+            if (!ok) {
+                soloRollback = true;
+            }
+            return ok;
+        } catch (SQLException e) {
+            soloRollback = true;
+            MensajesUI.mostrar(
+                    null,
+                    "Error en la transacción: " + e.getMessage(),
+                    "Error SQL",
+                    JOptionPane.ERROR_MESSAGE
+            );
+            return false;
+        } catch (RuntimeException e) {
+            soloRollback = true;
+            throw e;
+        }
+    }
+
+    private void ejecutarAccionesConfirmacion() {
+        for (Runnable r : alConfirmar) {
+            try {
+                r.run();
+            } catch (RuntimeException ex) {
+                System.err.println("Error en acción posterior al COMMIT: " + ex.getMessage());
+            }
+        }
+    }
+
+    private static void deshacer(Connection cnx) {
+        try {
+            cnx.rollback();
+        } catch (SQLException ignored) {}
+    }
+
+    /**
+     * Proxy de la conexión de la unidad: ignora el control de transacción
+     * que hacen los DAO por su cuenta y delega todo lo demás.
+     */
+    private final class ConexionParticipante implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String nombre = method.getName();
+            int nParams = method.getParameterCount();
+
+            if (("close".equals(nombre) || "commit".equals(nombre)) && nParams == 0) {
+                return null;
+            }
+            if ("setAutoCommit".equals(nombre) && nParams == 1) {
+                return null;
+            }
+            if ("rollback".equals(nombre) && nParams == 0) {
+                soloRollback = true;
+                return null;
+            }
+            if ("isClosed".equals(nombre) && nParams == 0) {
+                return false;
+            }
+            if ("equals".equals(nombre) && nParams == 1) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(nombre) && nParams == 0) {
+                return System.identityHashCode(proxy);
+            }
+
+            try {
+                return method.invoke(conexion, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+}